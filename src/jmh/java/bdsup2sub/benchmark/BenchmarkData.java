@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.benchmark;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import bdsup2sub.supstream.StreamGenerator;
+import bdsup2sub.supstream.SubPicture;
+
+/**
+ * Reproducible benchmark input resembling real captions: two text lines of glyph-like runs
+ * framed by outline pixels on a transparent background, as drawn by {@link StreamGenerator}.
+ */
+public final class BenchmarkData {
+
+    /** Width of a HD caption */
+    public static final int HD_WIDTH = 1440;
+    /** Height of a two line HD caption */
+    public static final int HD_HEIGHT = 140;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Create a caption bitmap.
+     * @param width     Width in pixels
+     * @param height    Height in pixels
+     * @param numColors Number of palette entries to use, entry 0 is the transparent background
+     * @param seed      Random seed
+     * @return Caption bitmap
+     */
+    public static Bitmap createCaption(int width, int height, int numColors, long seed) {
+        return StreamGenerator.createCaption(width, height, numColors, 0, seed);
+    }
+
+    /**
+     * Create a palette with a transparent entry 0 and random opaque colors.
+     * @param size Number of entries
+     * @param seed Random seed
+     * @return Palette
+     */
+    public static Palette createPalette(int size, long seed) {
+        return StreamGenerator.createPalette(size, seed);
+    }
+
+    /**
+     * Create caption info for the given image size, centered at the bottom of a 1080p screen.
+     * @param width  Image width
+     * @param height Image height
+     * @param index  Caption number, determines the time stamps
+     * @return Caption info
+     */
+    public static SubPicture createSubPicture(int width, int height, int index) {
+        SubPicture pic = new SubPicture();
+        pic.setWidth(1920);
+        pic.setHeight(1080);
+        pic.setImageWidth(width);
+        pic.setImageHeight(height);
+        pic.setOfsX((1920 - width) / 2);
+        pic.setOfsY(1080 - height - 40);
+        pic.setStartTime(90000L * (4 * index + 1));
+        pic.setEndTime(90000L * (4 * index + 3));
+        pic.setCompositionNumber(2 * index);
+        return pic;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.bitmap;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RGB/YCbCr conversion of a full 256 entry palette as done for every decoded caption.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ColorSpaceBenchmark {
+
+    @Param({"false", "true"})
+    public boolean useBT601;
+
+    private int[] values;
+
+    @Setup
+    public void setUp() {
+        values = new int[256 * 3];
+        Random random = new Random(1);
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt(256);
+        }
+    }
+
+    @Benchmark
+    public void yCbCrToRgb(Blackhole blackhole) {
+        for (int i = 0; i < values.length; i += 3) {
+            blackhole.consume(ColorSpaceUtils.YCbCr2RGB(values[i], values[i + 1], values[i + 2], useBT601));
+        }
+    }
+
+    @Benchmark
+    public void rgbToYCbCr(Blackhole blackhole) {
+        for (int i = 0; i < values.length; i += 3) {
+            blackhole.consume(ColorSpaceUtils.RGB2YCbCr(values[i], values[i + 1], values[i + 2], useBT601));
+        }
+    }
+}
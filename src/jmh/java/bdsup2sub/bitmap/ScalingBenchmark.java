@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.bitmap;
+
+import bdsup2sub.benchmark.BenchmarkData;
+import bdsup2sub.core.ScalingFilter;
+import com.mortennobel.imagescaling.ResampleFilter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.mortennobel.imagescaling.ResampleFilters.*;
+
+/**
+ * Scaling a HD caption to DVD size with each scaling filter, in the three ways Core uses:
+ * keeping the palette (BD export), reducing to 4 colors (DVD export) and creating a new palette.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ScalingBenchmark {
+
+    @Param
+    public ScalingFilter filter;
+
+    private static final int TARGET_WIDTH = 540;
+    private static final int TARGET_HEIGHT = 62;
+    private static final int ALPHA_THRESHOLD = 80;
+    private static final int[] LUMINANCE_THRESHOLD = {210, 160};
+
+    private Bitmap bitmap;
+    private Palette palette;
+    private ResampleFilter resampleFilter;
+
+    @Setup
+    public void setUp() {
+        bitmap = BenchmarkData.createCaption(BenchmarkData.HD_WIDTH, BenchmarkData.HD_HEIGHT, 16, 1);
+        palette = BenchmarkData.createPalette(256, 1);
+        switch (filter) {
+            case BELL:
+                resampleFilter = getBellFilter();
+                break;
+            case BICUBIC:
+                resampleFilter = getBiCubicFilter();
+                break;
+            case BICUBIC_SPLINE:
+                resampleFilter = getBSplineFilter();
+                break;
+            case HERMITE:
+                resampleFilter = getHermiteFilter();
+                break;
+            case LANCZOS3:
+                resampleFilter = getLanczos3Filter();
+                break;
+            case TRIANGLE:
+                resampleFilter = getTriangleFilter();
+                break;
+            case MITCHELL:
+                resampleFilter = getMitchellFilter();
+                break;
+            default:
+                resampleFilter = null;
+        }
+    }
+
+    @Benchmark
+    public Bitmap keepPalette() {
+        if (resampleFilter != null) {
+            return bitmap.scaleFilter(TARGET_WIDTH, TARGET_HEIGHT, palette, resampleFilter);
+        } else if (filter == ScalingFilter.BILINEAR_FIXED_POINT) {
+            return bitmap.scaleBilinearFixedPoint(TARGET_WIDTH, TARGET_HEIGHT, palette);
+        } else {
+            return bitmap.scaleBilinear(TARGET_WIDTH, TARGET_HEIGHT, palette);
+        }
+    }
+
+    @Benchmark
+    public Bitmap reduceToFourColors() {
+        if (resampleFilter != null) {
+            return bitmap.scaleFilterLm(TARGET_WIDTH, TARGET_HEIGHT, palette, ALPHA_THRESHOLD, LUMINANCE_THRESHOLD, resampleFilter);
+        } else if (filter == ScalingFilter.BILINEAR_FIXED_POINT) {
+            return bitmap.scaleBilinearFixedPointLm(TARGET_WIDTH, TARGET_HEIGHT, palette, ALPHA_THRESHOLD, LUMINANCE_THRESHOLD);
+        } else {
+            return bitmap.scaleBilinearLm(TARGET_WIDTH, TARGET_HEIGHT, palette, ALPHA_THRESHOLD, LUMINANCE_THRESHOLD);
+        }
+    }
+
+    @Benchmark
+    public BitmapWithPalette createPalette() {
+        if (resampleFilter != null) {
+            return bitmap.scaleFilter(TARGET_WIDTH, TARGET_HEIGHT, palette, resampleFilter, false);
+        } else if (filter == ScalingFilter.BILINEAR_FIXED_POINT) {
+            return bitmap.scaleBilinearFixedPoint(TARGET_WIDTH, TARGET_HEIGHT, palette, false);
+        } else {
+            return bitmap.scaleBilinear(TARGET_WIDTH, TARGET_HEIGHT, palette, false);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.bd;
+
+import bdsup2sub.benchmark.BenchmarkData;
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import bdsup2sub.core.CoreException;
+import bdsup2sub.supstream.SubPicture;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PGS run length encoding (SupBDWriter) and decoding (SupBD) of HD captions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SupBDBenchmark {
+
+    private static final int NUM_CAPTIONS = 16;
+
+    private SupBDWriter writer;
+    private SubPicture[] pics;
+    private Bitmap[] bitmaps;
+    private Palette palette;
+    private ByteBuffer buffer;
+    private File file;
+    private SupBD supBD;
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException, CoreException {
+        writer = new SupBDWriter();
+        pics = new SubPicture[NUM_CAPTIONS];
+        bitmaps = new Bitmap[NUM_CAPTIONS];
+        for (int i = 0; i < NUM_CAPTIONS; i++) {
+            pics[i] = BenchmarkData.createSubPicture(BenchmarkData.HD_WIDTH, BenchmarkData.HD_HEIGHT, i);
+            bitmaps[i] = BenchmarkData.createCaption(BenchmarkData.HD_WIDTH, BenchmarkData.HD_HEIGHT, 16, i);
+        }
+        palette = BenchmarkData.createPalette(256, 1);
+        buffer = ByteBuffer.allocate(0x100000);
+
+        file = File.createTempFile("benchmark", ".sup");
+        FileChannel channel = new FileOutputStream(file).getChannel();
+        try {
+            for (int i = 0; i < NUM_CAPTIONS; i++) {
+                writer.writeSupFrame(pics[i], bitmaps[i], palette, channel);
+            }
+        } finally {
+            channel.close();
+        }
+        supBD = new SupBD(file.getAbsolutePath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        supBD.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public int encode() {
+        int i = index++ % NUM_CAPTIONS;
+        buffer.clear();
+        return writer.writeSupFrame(pics[i], bitmaps[i], palette, buffer);
+    }
+
+    @Benchmark
+    public Bitmap decode() throws CoreException {
+        supBD.decode(index++ % NUM_CAPTIONS);
+        return supBD.getBitmap();
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.dvd;
+
+import bdsup2sub.benchmark.BenchmarkData;
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.core.Constants;
+import bdsup2sub.core.CoreException;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DVD run length encoding (SupDvdUtil.encodeLines) and decoding of SUP/IFO captions (SupDvdUtil.decodeImage).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SupDvdBenchmark {
+
+    private static final int NUM_CAPTIONS = 16;
+    private static final int WIDTH = 620;
+    private static final int HEIGHT = 80;
+
+    private Bitmap[] bitmaps;
+    private NibbleBuffer nibbles;
+    private File supFile;
+    private File ifoFile;
+    private SupDvd supDvd;
+    private int index;
+
+    @Setup
+    public void setUp() throws IOException, CoreException {
+        bitmaps = new Bitmap[NUM_CAPTIONS];
+        for (int i = 0; i < NUM_CAPTIONS; i++) {
+            bitmaps[i] = BenchmarkData.createCaption(WIDTH, HEIGHT, 4, i);
+        }
+        nibbles = new NibbleBuffer(WIDTH * HEIGHT / 4 + 4);
+
+        supFile = File.createTempFile("benchmark", ".sup");
+        ifoFile = new File(supFile.getPath().replaceAll("\\.sup$", ".ifo"));
+        SupDvdWriter writer = new SupDvdWriter();
+        FileChannel channel = new FileOutputStream(supFile).getChannel();
+        try {
+            for (int i = 0; i < NUM_CAPTIONS; i++) {
+                SubPictureDVD pic = new SubPictureDVD();
+                pic.copyInfo(BenchmarkData.createSubPicture(WIDTH, HEIGHT, i));
+                pic.setWidth(720);
+                pic.setHeight(576);
+                pic.setOfsX(50);
+                pic.setOfsY(460);
+                pic.setPal(new int[] {0, 1, 2, 3});
+                pic.setAlpha(new int[] {0, 15, 15, 15});
+                writer.writeSupFrame(pic, bitmaps[i], channel);
+            }
+        } finally {
+            channel.close();
+        }
+        IfoWriter.writeIFO(ifoFile.getAbsolutePath(), 576, Constants.DEFAULT_DVD_PALETTE);
+        supDvd = new SupDvd(supFile.getAbsolutePath(), ifoFile.getAbsolutePath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        supDvd.close();
+        supFile.delete();
+        ifoFile.delete();
+    }
+
+    @Benchmark
+    public int encodeLines() {
+        Bitmap bitmap = bitmaps[index++ % NUM_CAPTIONS];
+        SupDvdUtil.encodeLines(bitmap, true, nibbles);
+        int size = nibbles.size();
+        SupDvdUtil.encodeLines(bitmap, false, nibbles);
+        return size + nibbles.size();
+    }
+
+    @Benchmark
+    public Bitmap decode() throws CoreException {
+        supDvd.decode(index++ % NUM_CAPTIONS);
+        return supDvd.getBitmap();
+    }
+}
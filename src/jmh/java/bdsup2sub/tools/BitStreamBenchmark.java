@@ -0,0 +1,73 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a HD-DVD RLE buffer with BitStream: fixed two bit values and the mixed field sizes
+ * read per run by SupHD.decodeLine.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BitStreamBenchmark {
+
+    private static final int BUFFER_SIZE = 0x8000;
+
+    private byte[] buffer;
+
+    @Setup
+    public void setUp() {
+        buffer = new byte[BUFFER_SIZE];
+        new Random(1).nextBytes(buffer);
+    }
+
+    @Benchmark
+    public int twoBitValues() {
+        BitStream src = new BitStream(buffer);
+        int sum = 0;
+        while (src.bitsLeft() >= 2) {
+            sum += src.readBits(2);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int runs() {
+        BitStream src = new BitStream(buffer);
+        int sum = 0;
+        while (src.bitsLeft() >= 19) {
+            int rleType = src.readBits(1);
+            int color = src.readBits(1) == 1 ? src.readBits(8) : src.readBits(2);
+            int numPixels = 1;
+            if (rleType == 1) {
+                numPixels = src.readBits(1) == 1 ? src.readBits(7) + 9 : src.readBits(3) + 2;
+            }
+            if ((numPixels & 0x3f) == 0) {
+                src.syncToByte();
+            }
+            sum += color * numPixels;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * FileBuffer access patterns of the parsers on a file larger than its memory buffer: reading every byte,
+ * reading words, reading packet headers at a fixed stride (VobSub packs), copying blocks (RLE fragments)
+ * and random access, which refills the buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FileBufferBenchmark {
+
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+    private static final int PACK_SIZE = 0x800;
+    private static final int BLOCK_SIZE = 0x7000;
+    private static final int NUM_RANDOM_READS = 1024;
+
+    private File file;
+    private FileBuffer fileBuffer;
+    private long[] randomOffsets;
+    private byte[] block;
+
+    @Setup
+    public void setUp() throws IOException, FileBufferException {
+        Random random = new Random(1);
+        byte[] data = new byte[FILE_SIZE];
+        random.nextBytes(data);
+        file = File.createTempFile("benchmark", ".sup");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        fileBuffer = new FileBuffer(file.getAbsolutePath());
+        randomOffsets = new long[NUM_RANDOM_READS];
+        for (int i = 0; i < randomOffsets.length; i++) {
+            randomOffsets[i] = random.nextInt(FILE_SIZE - 4);
+        }
+        block = new byte[BLOCK_SIZE];
+    }
+
+    @TearDown
+    public void tearDown() {
+        fileBuffer.close();
+        file.delete();
+    }
+
+    @Benchmark
+    public int sequentialBytes() throws FileBufferException {
+        int sum = 0;
+        for (long ofs = 0; ofs < FILE_SIZE; ofs++) {
+            sum += fileBuffer.getByte(ofs);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int sequentialDWords() throws FileBufferException {
+        int sum = 0;
+        for (long ofs = 0; ofs < FILE_SIZE; ofs += 4) {
+            sum += fileBuffer.getDWord(ofs);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int packHeaders() throws FileBufferException {
+        int sum = 0;
+        for (long ofs = 0; ofs < FILE_SIZE; ofs += PACK_SIZE) {
+            sum += fileBuffer.getDWord(ofs) + fileBuffer.getWord(ofs + 0x12) + fileBuffer.getByte(ofs + 0x16);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int blocks() throws FileBufferException {
+        int sum = 0;
+        for (long ofs = 0; ofs + BLOCK_SIZE <= FILE_SIZE; ofs += BLOCK_SIZE) {
+            fileBuffer.getBytes(ofs, block, BLOCK_SIZE);
+            sum += block[BLOCK_SIZE - 1];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int randomWords() throws FileBufferException {
+        int sum = 0;
+        for (long ofs : randomOffsets) {
+            sum += fileBuffer.getWord(ofs);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import bdsup2sub.benchmark.BenchmarkData;
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding a HD caption to PNG with EnhancedPngEncoder and with IndexedPngWriter, which replaced it for BDN XML export.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PngEncoderBenchmark {
+
+    private Bitmap bitmap;
+    private Palette palette;
+    private EnhancedPngEncoder enhancedPngEncoder;
+    private IndexedPngWriter indexedPngWriter;
+    private ByteArrayOutputStream out;
+
+    @Setup
+    public void setUp() {
+        bitmap = BenchmarkData.createCaption(BenchmarkData.HD_WIDTH, BenchmarkData.HD_HEIGHT, 16, 1);
+        palette = BenchmarkData.createPalette(256, 1);
+        enhancedPngEncoder = new EnhancedPngEncoder(bitmap.getImage(palette.getColorModel()), true);
+        indexedPngWriter = new IndexedPngWriter();
+        out = new ByteArrayOutputStream(0x20000);
+    }
+
+    @TearDown
+    public void tearDown() {
+        indexedPngWriter.end();
+    }
+
+    @Benchmark
+    public byte[] enhancedPngEncoder() {
+        // the encoder keeps the result until a new image is set
+        enhancedPngEncoder.setImage(bitmap.getImage(palette.getColorModel()));
+        return enhancedPngEncoder.pngEncode();
+    }
+
+    @Benchmark
+    public int indexedPngWriter() throws IOException {
+        out.reset();
+        indexedPngWriter.write(bitmap, palette, out);
+        return out.size();
+    }
+}
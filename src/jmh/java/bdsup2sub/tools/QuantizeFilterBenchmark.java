@@ -0,0 +1,68 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import bdsup2sub.benchmark.BenchmarkData;
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reducing a HD caption to 255 colors: ARGB pixels as created by scaling (with and without dithering)
+ * and palette indices as quantized by SupBDWriter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QuantizeFilterBenchmark {
+
+    private Bitmap bitmap;
+    private int[] colors;
+    private int[] argb;
+    private byte[] out;
+
+    @Setup
+    public void setUp() {
+        bitmap = BenchmarkData.createCaption(BenchmarkData.HD_WIDTH, BenchmarkData.HD_HEIGHT, 256, 1);
+        Palette palette = BenchmarkData.createPalette(256, 1);
+        colors = new int[256];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = palette.getARGB(i);
+        }
+        argb = bitmap.toARGB(palette);
+        out = new byte[argb.length];
+    }
+
+    @Benchmark
+    public int[] argb() {
+        return new QuantizeFilter().quantize(argb, out, bitmap.getWidth(), bitmap.getHeight(), 255, false, false);
+    }
+
+    @Benchmark
+    public int[] argbDithered() {
+        return new QuantizeFilter().quantize(argb, out, bitmap.getWidth(), bitmap.getHeight(), 255, true, true);
+    }
+
+    @Benchmark
+    public int[] paletteIndices() {
+        return new QuantizeFilter().quantize(bitmap.getInternalBuffer(), colors, out, argb.length, 255);
+    }
+}
@@ -21,19 +21,17 @@ import bdsup2sub.gui.main.MainFrame;
 import bdsup2sub.tools.Props;
 import bdsup2sub.utils.*;
 import org.apache.commons.cli.ParseException;
-import org.simplericity.macify.eawt.Application;
-import org.simplericity.macify.eawt.DefaultApplication;
 
-import javax.swing.*;
-import java.awt.*;
 import java.io.File;
-
-import static bdsup2sub.gui.support.GuiUtils.applyGtkThemeWorkarounds;
+import java.util.EnumMap;
+import java.util.Map;
 
 public class BDSup2Sub {
 
     private static final Configuration configuration = Configuration.getInstance();
     private static final Logger logger = Logger.getInstance();
+    /** Log messages are printed in one batch per interval */
+    private static final int CONSOLE_REFRESH_MILLIS = 100;
 
     private CommandLineParser options;
 
@@ -78,6 +76,12 @@ public class BDSup2Sub {
         if (options.getDelay().isPresent()) {
             configuration.setDelayPTS((int) SubtitleUtils.syncTimePTS((long) (options.getDelay().get() * 90.0), configuration.getFpsTrg(), configuration.getFpsTrg()));
         }
+        if (options.getTimeRangeStart().isPresent()) {
+            configuration.setTimeRangeStartPTS(options.getTimeRangeStart().get());
+        }
+        if (options.getTimeRangeEnd().isPresent()) {
+            configuration.setTimeRangeEndPTS(options.getTimeRangeEnd().get());
+        }
         if (options.getScalingFilter().isPresent()) {
             configuration.setScalingFilter(options.getScalingFilter().get());
         }
@@ -125,6 +129,18 @@ public class BDSup2Sub {
             configuration.setLanguageIdx(options.getLanguageIndex().get());
         }
         processPaletteFile();
+        if (options.getPngCompressionLevel().isPresent()) {
+            configuration.setPngCompressionLevel(options.getPngCompressionLevel().get());
+        }
+        if (options.getPngCompressionStrategy().isPresent()) {
+            configuration.setPngCompressionStrategy(options.getPngCompressionStrategy().get());
+        }
+        if (options.getXmlPngCopyMode().isPresent()) {
+            configuration.setXmlPngCopyMode(options.getXmlPngCopyMode().get());
+        }
+        if (options.getQuantizationMethod().isPresent()) {
+            configuration.setQuantizationMethod(options.getQuantizationMethod().get());
+        }
     }
 
     private void processFrameRate() {
@@ -206,7 +222,8 @@ public class BDSup2Sub {
                     int red = Integer.valueOf(sp[0].trim()) & 0xff;
                     int green = Integer.valueOf(sp[1].trim()) & 0xff;
                     int blue = Integer.valueOf(sp[2].trim()) & 0xff;
-                    Core.getCurrentDVDPalette().setColor(c + 1, new Color(red, green, blue));
+                    Core.getCurrentDVDPalette().setRGB(c + 1, red, green, blue);
+                    Core.getCurrentDVDPalette().setAlpha(c + 1, 0xff);
                 }
             }
         }
@@ -219,42 +236,20 @@ public class BDSup2Sub {
             System.out.println(Constants.APP_NAME + " " + Constants.APP_VERSION);
         } else {
             if (!options.isCliMode()) {
-                setupGUI();
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        configuration.setCliMode(false);
-                        Application app = new DefaultApplication();
-                        MainFrame mainFrame = new MainFrame(options.getInputFile());
-                        app.addApplicationListener(mainFrame.getApplicationListener());
-                        mainFrame.setVisible(true);
-                    }
-                });
+                MainFrame.start(options.getInputFile());
             } else {
                 runCliLoop();
             }
         }
     }
 
-    private static void setupGUI() {
-        try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
-        } catch (Exception e) {
-            // ignore
-        }
-
-        if (PlatformUtils.isLinux()) {
-            applyGtkThemeWorkarounds();
-        }
-
-        if (PlatformUtils.isMac()) {
-            System.setProperty("apple.laf.useScreenMenuBar", "true");
-            System.setProperty("com.apple.mrj.application.apple.menu.about.name", Constants.APP_NAME);
-        }
-    }
-
     private void runCliLoop() {
+        logger.startFlushing(CONSOLE_REFRESH_MILLIS, false);
         String inputFile = options.getInputFile().getAbsolutePath();
-        String outputFile = options.getOutputFile().getAbsolutePath();
+        Map<OutputMode, String> outputFiles = new EnumMap<OutputMode, String>(OutputMode.class);
+        for (Map.Entry<OutputMode, File> output : options.getOutputFiles().entrySet()) {
+            outputFiles.put(output.getKey(), output.getValue().getAbsolutePath());
+        }
         try {
             boolean xml = FilenameUtils.getExtension(inputFile).equalsIgnoreCase("xml");
             boolean idx = FilenameUtils.getExtension(inputFile).equalsIgnoreCase("idx");
@@ -267,16 +262,19 @@ public class BDSup2Sub {
             configuration.setCurrentStreamID(sid);
 
             // check output file(s)
-            File indexFile, subtitleFile;
-            if (configuration.getOutputMode() == OutputMode.VOBSUB) {
-                indexFile = new File(FilenameUtils.removeExtension(outputFile) + ".idx");
-                subtitleFile = new File(FilenameUtils.removeExtension(outputFile) + ".sub");
-            } else {
-                subtitleFile = new File(FilenameUtils.removeExtension(outputFile) + ".sup");
-                indexFile = null;
-            }
-            if ((indexFile != null && indexFile.exists() && !indexFile.canWrite()) || (subtitleFile.exists() && !subtitleFile.canWrite())) {
-                throw new CoreException("Target file '" + outputFile + "' is write protected.");
+            for (Map.Entry<OutputMode, String> output : outputFiles.entrySet()) {
+                String outputFile = output.getValue();
+                File indexFile, subtitleFile;
+                if (output.getKey() == OutputMode.VOBSUB) {
+                    indexFile = new File(FilenameUtils.removeExtension(outputFile) + ".idx");
+                    subtitleFile = new File(FilenameUtils.removeExtension(outputFile) + ".sub");
+                } else {
+                    subtitleFile = new File(FilenameUtils.removeExtension(outputFile) + ".sup");
+                    indexFile = null;
+                }
+                if ((indexFile != null && indexFile.exists() && !indexFile.canWrite()) || (subtitleFile.exists() && !subtitleFile.canWrite())) {
+                    throw new CoreException("Target file '" + outputFile + "' is write protected.");
+                }
             }
 
             // read input file
@@ -302,23 +300,29 @@ public class BDSup2Sub {
                 throw new CoreException("No forced subtitles found.");
             }
             // write output
-            Core.writeSub(outputFile);
+            Core.writeSub(outputFiles);
         } catch (CoreException ex) {
             logger.error(ex.getMessage());
         } catch (Exception ex) {
-            ToolBox.showException(ex);
+            ex.printStackTrace();
             logger.error(ex.getMessage());
         }
         // clean up
         logger.printWarningsAndErrorsAndResetCounters();
         Core.exit();
+        logger.stopFlushing();
 
         System.out.println("\nConversion finished.");
+        // on its own stream, so it can be parsed without the log
+        if (options.isPrintStatistics()) {
+            System.err.println(ConversionStatistics.getInstance().toJson());
+        }
         System.exit(0);
     }
 
     private static void fatalError(String message) {
         Core.exit();
+        logger.stopFlushing();
         System.out.println("ERROR: " + message);
         System.exit(1);
     }
@@ -15,13 +15,14 @@
  */
 package bdsup2sub.bitmap;
 
+import bdsup2sub.core.Configuration;
+import bdsup2sub.core.ConversionStatistics;
 import bdsup2sub.core.Logger;
 import bdsup2sub.tools.QuantizeFilter;
 import com.mortennobel.imagescaling.ResampleFilter;
 
 import java.awt.image.*;
 import java.util.Arrays;
-import java.util.HashMap;
 
 import static bdsup2sub.bitmap.ColorSpaceUtils.RGB2YCbCr;
 
@@ -30,7 +31,9 @@ import static bdsup2sub.bitmap.ColorSpaceUtils.RGB2YCbCr;
  */
 public class Bitmap {
 
+    private static final Configuration configuration = Configuration.getInstance();
     private static final Logger logger = Logger.getInstance();
+    private static final ConversionStatistics statistics = ConversionStatistics.getInstance();
 
     private final int width;
     private final int height;
@@ -159,7 +162,7 @@ public class Bitmap {
      */
     public Bitmap getBitmapWithNormalizedPalette(byte[] alphaValues, int alphaThreshold, byte[] lumaValues, int lumaThreshold[]) {
         Bitmap bm = new Bitmap(width, height);
-        HashMap<Integer, Integer> p = new HashMap<Integer, Integer>();
+        IntIntMap p = new IntIntMap();
 
         int newColorIndex;
         for (int i = 0; i < buffer.length; i++) {
@@ -167,9 +170,9 @@ public class Bitmap {
             int alpha = alphaValues[colorIndex] & 0xff;
             int luma = lumaValues[colorIndex] & 0xff;
 
-            Integer existingColorIndex = p.get((alpha << 8) | luma);
+            int existingColorIndex = p.get((alpha << 8) | luma, -1);
 
-            if (existingColorIndex != null) {
+            if (existingColorIndex != -1) {
                 newColorIndex = existingColorIndex;
             }
             else {
@@ -309,44 +312,49 @@ public class Bitmap {
      * @return Scaled Bitmap which uses a fixed frame Palette.
      */
     public Bitmap scaleFilterLm(final int sizeX, final int sizeY, final Palette pal, final int alphaThr, final int lumThr[], final ResampleFilter f) {
-        final int[] trg = new FilterOp(f, sizeX, sizeY).filter(this, pal);
-
-        Bitmap bm = new Bitmap(sizeX, sizeY);
-
-        // select nearest colors in existing palette
-        HashMap<Integer, Integer> p = new HashMap<Integer, Integer>();
+        final Bitmap bm = new Bitmap(sizeX, sizeY);
 
-        for (int i = 0; i < trg.length; i++) {
-            int color = trg[i];
-            int colIdx;
-            Integer idxEx = p.get(color);
-            if (idxEx != null) {
-                colIdx = idxEx;
-            }
-            else {
-                int alpha = (color >> 24) & 0xff;
-                int red   = (color >> 16) & 0xff;
-                int green = (color >>  8) & 0xff;
-                int blue  =  color        & 0xff;
-                int cyp   = RGB2YCbCr(red, green, blue, false)[0];
-
-                // determine index in target
-                if (alpha < alphaThr) {
-                    colIdx = 0; // transparent color
-                } else {
-                    colIdx = 1; // default: lightest color
-                    for (int threshold : lumThr) {
-                        if (cyp > threshold) {
-                            break;
+        // select nearest colors in existing palette while the scaled rows are produced, with one color cache per band
+        new FilterOp(f, sizeX, sizeY).filter(this, pal, new FilterOp.RowConsumerFactory() {
+            @Override
+            public FilterOp.RowConsumer createRowConsumer() {
+                return new FilterOp.RowConsumer() {
+                    private final IntIntMap p = new IntIntMap();
+
+                    @Override
+                    public void consumeRow(int y, int[] row) {
+                        int ofs = y * sizeX;
+                        for (int x = 0; x < sizeX; x++) {
+                            int color = row[x];
+                            int colIdx = p.get(color, -1);
+                            if (colIdx == -1) {
+                                int alpha = (color >> 24) & 0xff;
+                                int red   = (color >> 16) & 0xff;
+                                int green = (color >>  8) & 0xff;
+                                int blue  =  color        & 0xff;
+                                int cyp   = RGB2YCbCr(red, green, blue, false)[0];
+
+                                // determine index in target
+                                if (alpha < alphaThr) {
+                                    colIdx = 0; // transparent color
+                                } else {
+                                    colIdx = 1; // default: lightest color
+                                    for (int threshold : lumThr) {
+                                        if (cyp > threshold) {
+                                            break;
+                                        }
+                                        colIdx++; // try next darker color
+                                    }
+                                }
+                                p.put(color, colIdx);
+                            }
+                            // write target pixel
+                            bm.buffer[ofs + x] = (byte)colIdx;
                         }
-                        colIdx++; // try next darker color
                     }
-                }
-                p.put(color, colIdx);
+                };
             }
-            // write target pixel
-            bm.buffer[i] = (byte)colIdx;
-        }
+        });
         return bm;
     }
 
@@ -556,9 +564,12 @@ public class Bitmap {
             }
         }
         // quantize image
+        ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.QUANTIZE);
         QuantizeFilter qf = new QuantizeFilter();
+        qf.setMethod(configuration.getQuantizationMethod());
         final Bitmap bm = new Bitmap(sizeX, sizeY);
         int[] ct = qf.quantize(trg, bm.buffer, sizeX, sizeY, 255, dither, dither);
+        timer.end(sizeX, sizeY, 0);
         int size = ct.length;
         if (size > 255) {
             size = 255;
@@ -573,6 +584,292 @@ public class Bitmap {
         return new BitmapWithPalette(bm, trgPal);
     }
 
+    /**
+     * Same as {@link #scaleBilinearLm(int, int, Palette, int, int[])}, but uses 16.16 fixed point weights
+     * precomputed per row and column instead of double precision arithmetic.
+     * @param sizeX		Target width
+     * @param sizeY		Target height
+     * @param pal 		Palette of the source Bitmap
+     * @param alphaThr	Threshold for alpha (transparency), lower = more transparent
+     * @param lumThr    Threshold for luminances. For N-1 luminances, N-2 thresholds are needed
+     *                  lumThr[0] is the threshold for the lightest color (-> idx 1)
+     *                  lumThr[N-2] is the threshold for the darkest color (-> idx N-1)
+     * @return Scaled Bitmap which uses a fixed frame Palette.
+     */
+    public Bitmap scaleBilinearFixedPointLm(final int sizeX, final int sizeY, final Palette pal, final int alphaThr, final int lumThr[]) {
+        final byte[] cy = pal.getY();
+        final byte[] a = pal.getAlpha();
+
+        final int[] posX = getFixedPointPositions(width, sizeX);
+        final int[] posY = getFixedPointPositions(height, sizeY);
+
+        int lastCY = 0;
+        int lastA  = 0;
+        int lastColIdx = 0; // 0 is the transparent color
+
+        Bitmap trg = new Bitmap(sizeX, sizeY);
+
+        int ofsTrg = 0;
+        for (int yt = 0; yt < sizeY; yt++) {
+            int ysi = posY[yt] >>> 16;
+            int wy = posY[yt] & 0xffff;
+            int ofsTop = ysi * width;
+            int ofsBottom = (ysi < height - 1) ? ofsTop + width : -1; // -1: assume transparent black
+
+            for (int xt = 0; xt < sizeX; xt++) {
+                int xsi = posX[xt] >>> 16;
+                int wx = posX[xt] & 0xffff;
+                boolean right = xsi < width - 1; // else assume transparent black
+
+                // interpolate pixel
+                int idx = buffer[ofsTop + xsi] & 0xff;
+                int aTop  = (a[idx] & 0xff) * (0x10000 - wx);
+                int cyTop = (cy[idx] & 0xff) * (0x10000 - wx);
+                if (right) {
+                    idx = buffer[ofsTop + xsi + 1] & 0xff;
+                    aTop  += (a[idx] & 0xff) * wx;
+                    cyTop += (cy[idx] & 0xff) * wx;
+                }
+                int aBottom = 0;
+                int cyBottom = 0;
+                if (ofsBottom >= 0) {
+                    idx = buffer[ofsBottom + xsi] & 0xff;
+                    aBottom  = (a[idx] & 0xff) * (0x10000 - wx);
+                    cyBottom = (cy[idx] & 0xff) * (0x10000 - wx);
+                    if (right) {
+                        idx = buffer[ofsBottom + xsi + 1] & 0xff;
+                        aBottom  += (a[idx] & 0xff) * wx;
+                        cyBottom += (cy[idx] & 0xff) * wx;
+                    }
+                }
+
+                int ati  = interpolateFixedPoint(aTop, aBottom, wy, 0);
+                int cyti = interpolateFixedPoint(cyTop, cyBottom, wy, 0);
+
+                // find color index in palette
+
+                // already known ?
+                int colIdx = lastColIdx;
+                if (ati != lastA || cyti != lastCY ) {
+                    // determine index in target
+                    if (ati < alphaThr) {
+                        colIdx = 0; // transparent color
+                    } else {
+                        colIdx = 1; // default: lightest color
+                        for (int threshold : lumThr) {
+                            if (cyti > threshold) {
+                                break;
+                            }
+                            colIdx++; // try next darker color
+                        }
+                    }
+                    // remember
+                    lastA = ati;
+                    lastCY = cyti;
+                    lastColIdx = colIdx;
+                }
+                // write target pixel
+                trg.buffer[ofsTrg++] = (byte)colIdx;
+            }
+        }
+        return trg;
+    }
+
+    /**
+     * Same as {@link #scaleBilinear(int, int, Palette)}, but uses 16.16 fixed point weights
+     * precomputed per row and column instead of double precision arithmetic.
+     * @param sizeX Target width
+     * @param sizeY Target height
+     * @param pal   Palette of the source Bitmap
+     * @return Scaled Bitmap which uses the same Palette as the source Bitmap.
+     */
+    public Bitmap scaleBilinearFixedPoint(final int sizeX, final int sizeY, final Palette pal) {
+        final int[] argb = scaleBilinearFixedPointToARGB(sizeX, sizeY, pal, 1L << 31);
+
+        int lastColor = 0;
+        int lastColIdx = pal.getIndexOfMostTransparentPaletteEntry();
+
+        final Bitmap trg = new Bitmap(sizeX, sizeY);
+        for (int i = 0; i < argb.length; i++) {
+            int color = argb[i];
+            // already known ?
+            if (color != lastColor) {
+                lastColIdx = findNearestColorIndex(color, pal, lastColIdx);
+                lastColor = color;
+            }
+            trg.buffer[i] = (byte)lastColIdx;
+        }
+        return trg;
+    }
+
+    /**
+     * Same as {@link #scaleBilinear(int, int, Palette, boolean)}, but uses 16.16 fixed point weights
+     * precomputed per row and column instead of double precision arithmetic.
+     * @param sizeX  Target width
+     * @param sizeY  Target height
+     * @param pal    Palette of the source Bitmap
+     * @param dither True: apply dithering
+     * @return Scaled Bitmap and new Palette
+     */
+    public BitmapWithPalette scaleBilinearFixedPoint(final int sizeX, final int sizeY, final Palette pal, final boolean dither) {
+        final int[] trg = scaleBilinearFixedPointToARGB(sizeX, sizeY, pal, 0);
+
+        // quantize image
+        ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.QUANTIZE);
+        QuantizeFilter qf = new QuantizeFilter();
+        qf.setMethod(configuration.getQuantizationMethod());
+        final Bitmap bm = new Bitmap(sizeX, sizeY);
+        int[] ct = qf.quantize(trg, bm.buffer, sizeX, sizeY, 255, dither, dither);
+        timer.end(sizeX, sizeY, 0);
+        int size = ct.length;
+        if (size > 255) {
+            size = 255;
+            logger.warn("Quantizer failed.\n");
+        }
+        // create palette
+        Palette trgPal = new Palette(256);
+        for (int i = 0; i < size; i++) {
+            trgPal.setARGB(i, ct[i]);
+        }
+
+        return new BitmapWithPalette(bm, trgPal);
+    }
+
+    /**
+     * Bilinear interpolation of all four ARGB components using 16.16 fixed point weights.
+     * @param sizeX    Target width
+     * @param sizeY    Target height
+     * @param pal      Palette of the source Bitmap
+     * @param rounding Value added before dropping the 32 fractional bits: 0 truncates, 1L << 31 rounds
+     * @return Target image as ARGB values
+     */
+    private int[] scaleBilinearFixedPointToARGB(final int sizeX, final int sizeY, final Palette pal, final long rounding) {
+        final byte[] r = pal.getR();
+        final byte[] g = pal.getG();
+        final byte[] b = pal.getB();
+        final byte[] a = pal.getAlpha();
+
+        final int[] posX = getFixedPointPositions(width, sizeX);
+        final int[] posY = getFixedPointPositions(height, sizeY);
+
+        final int[] trg = new int[sizeX * sizeY];
+
+        int ofsTrg = 0;
+        for (int yt = 0; yt < sizeY; yt++) {
+            int ysi = posY[yt] >>> 16;
+            int wy = posY[yt] & 0xffff;
+            int ofsTop = ysi * width;
+            int ofsBottom = (ysi < height - 1) ? ofsTop + width : -1; // -1: assume transparent black
+
+            for (int xt = 0; xt < sizeX; xt++) {
+                int xsi = posX[xt] >>> 16;
+                int wx = posX[xt] & 0xffff;
+                int wx1 = 0x10000 - wx;
+                boolean right = xsi < width - 1; // else assume transparent black
+
+                // interpolate pixel
+                int idx = buffer[ofsTop + xsi] & 0xff;
+                int aTop = (a[idx] & 0xff) * wx1;
+                int rTop = (r[idx] & 0xff) * wx1;
+                int gTop = (g[idx] & 0xff) * wx1;
+                int bTop = (b[idx] & 0xff) * wx1;
+                if (right) {
+                    idx = buffer[ofsTop + xsi + 1] & 0xff;
+                    aTop += (a[idx] & 0xff) * wx;
+                    rTop += (r[idx] & 0xff) * wx;
+                    gTop += (g[idx] & 0xff) * wx;
+                    bTop += (b[idx] & 0xff) * wx;
+                }
+                int aBottom = 0;
+                int rBottom = 0;
+                int gBottom = 0;
+                int bBottom = 0;
+                if (ofsBottom >= 0) {
+                    idx = buffer[ofsBottom + xsi] & 0xff;
+                    aBottom = (a[idx] & 0xff) * wx1;
+                    rBottom = (r[idx] & 0xff) * wx1;
+                    gBottom = (g[idx] & 0xff) * wx1;
+                    bBottom = (b[idx] & 0xff) * wx1;
+                    if (right) {
+                        idx = buffer[ofsBottom + xsi + 1] & 0xff;
+                        aBottom += (a[idx] & 0xff) * wx;
+                        rBottom += (r[idx] & 0xff) * wx;
+                        gBottom += (g[idx] & 0xff) * wx;
+                        bBottom += (b[idx] & 0xff) * wx;
+                    }
+                }
+
+                int ati = interpolateFixedPoint(aTop, aBottom, wy, rounding);
+                int rti = interpolateFixedPoint(rTop, rBottom, wy, rounding);
+                int gti = interpolateFixedPoint(gTop, gBottom, wy, rounding);
+                int bti = interpolateFixedPoint(bTop, bBottom, wy, rounding);
+
+                trg[ofsTrg++] = ((ati << 24) | (rti << 16) | (gti << 8) | bti);
+            }
+        }
+        return trg;
+    }
+
+    /**
+     * Calculate the 16.16 fixed point source coordinates of all target coordinates.
+     * @param srcSize Source width or height
+     * @param trgSize Target width or height
+     * @return Source coordinate (integer part in the upper 16 bits, weight of the next pixel in the lower 16 bits)
+     */
+    private static int[] getFixedPointPositions(int srcSize, int trgSize) {
+        int[] positions = new int[trgSize];
+        if (trgSize > 1) {
+            for (int i = 0; i < trgSize; i++) {
+                positions[i] = (int)(((long)i * (srcSize - 1) << 16) / (trgSize - 1));
+            }
+        }
+        return positions;
+    }
+
+    private static int interpolateFixedPoint(int top, int bottom, int wy, long rounding) {
+        int value = (int)(((long)top * (0x10000 - wy) + (long)bottom * wy + rounding) >>> 32);
+        return value > 255 ? 255 : value;
+    }
+
+    /**
+     * Find the palette entry with the smallest euclidean ARGB distance to the given color.
+     * @param color     ARGB color
+     * @param pal       Palette to search
+     * @param defaultIdx Index to return if no entry is closer than the initial distance
+     * @return Index of the nearest palette entry
+     */
+    private static int findNearestColorIndex(int color, Palette pal, int defaultIdx) {
+        final byte[] r = pal.getR();
+        final byte[] g = pal.getG();
+        final byte[] b = pal.getB();
+        final byte[] a = pal.getAlpha();
+
+        int alpha = (color >> 24) & 0xff;
+        int red   = (color >> 16) & 0xff;
+        int green = (color >>  8) & 0xff;
+        int blue  =  color        & 0xff;
+
+        int colIdx = defaultIdx;
+        int minDistance = 0xffffff; // init > 0xff*0xff*4 = 0x03f804
+        for (int idx = 0; idx < pal.getSize(); idx++) {
+            // distance vector (skip sqrt)
+            int ad = alpha - (a[idx] & 0xff);
+            int rd = red   - (r[idx] & 0xff);
+            int gd = green - (g[idx] & 0xff);
+            int bd = blue  - (b[idx] & 0xff);
+            int distance = rd * rd + gd * gd + bd * bd + ad * ad;
+            // new minimum distance ?
+            if (distance < minDistance) {
+                colIdx = idx;
+                minDistance = distance;
+                if (minDistance == 0) {
+                    break;
+                }
+            }
+        }
+        return colIdx;
+    }
+
     /** Scales a palettized Bitmap to a Bitmap with the same Palette using a given scaling filter.
      * @param sizeX Target width
      * @param sizeY Target height
@@ -586,47 +883,53 @@ public class Bitmap {
         final byte[] b = pal.getB();
         final byte[] a = pal.getAlpha();
 
-        final int[] trg = new FilterOp(f, sizeX, sizeY).filter(this, pal);
-
         final Bitmap bm = new Bitmap(sizeX, sizeY);
 
-        // select nearest colors in existing palette
-        HashMap<Integer, Integer> p = new HashMap<Integer, Integer>();
-
-        for (int i = 0; i < trg.length; i++) {
-            int color = trg[i];
-            int colIdx;
-            Integer idxEx = p.get(color);
-            if (idxEx != null) {
-                colIdx = idxEx;
-            } else {
-                colIdx = 0;
-                int minDistance = 0xffffff; // init > 0xff*0xff*4 = 0x03f804
-                int alpha = (color >> 24) & 0xff;
-                int red   = (color >> 16) & 0xff;
-                int green = (color >>  8) & 0xff;
-                int blue  =  color        & 0xff;
-                for (int idx = 0; idx < pal.getSize(); idx++) {
-                    // distance vector (skip sqrt)
-                    int ad = alpha - (a[idx] & 0xff);
-                    int rd = red   - (r[idx] & 0xff);
-                    int gd = green - (g[idx] & 0xff);
-                    int bd = blue  - (b[idx] & 0xff);
-                    int distance = rd * rd + gd * gd + bd * bd + ad * ad;
-                    // new minimum distance ?
-                    if ( distance < minDistance) {
-                        colIdx = idx;
-                        minDistance = distance;
-                        if (minDistance == 0) {
-                            break;
+        // select nearest colors in existing palette while the scaled rows are produced, with one color cache per band
+        new FilterOp(f, sizeX, sizeY).filter(this, pal, new FilterOp.RowConsumerFactory() {
+            @Override
+            public FilterOp.RowConsumer createRowConsumer() {
+                return new FilterOp.RowConsumer() {
+                    private final IntIntMap p = new IntIntMap();
+
+                    @Override
+                    public void consumeRow(int y, int[] row) {
+                        int ofs = y * sizeX;
+                        for (int x = 0; x < sizeX; x++) {
+                            int color = row[x];
+                            int colIdx = p.get(color, -1);
+                            if (colIdx == -1) {
+                                colIdx = 0;
+                                int minDistance = 0xffffff; // init > 0xff*0xff*4 = 0x03f804
+                                int alpha = (color >> 24) & 0xff;
+                                int red   = (color >> 16) & 0xff;
+                                int green = (color >>  8) & 0xff;
+                                int blue  =  color        & 0xff;
+                                for (int idx = 0; idx < pal.getSize(); idx++) {
+                                    // distance vector (skip sqrt)
+                                    int ad = alpha - (a[idx] & 0xff);
+                                    int rd = red   - (r[idx] & 0xff);
+                                    int gd = green - (g[idx] & 0xff);
+                                    int bd = blue  - (b[idx] & 0xff);
+                                    int distance = rd * rd + gd * gd + bd * bd + ad * ad;
+                                    // new minimum distance ?
+                                    if ( distance < minDistance) {
+                                        colIdx = idx;
+                                        minDistance = distance;
+                                        if (minDistance == 0) {
+                                            break;
+                                        }
+                                    }
+                                }
+                                p.put(color, colIdx);
+                            }
+                            // write target pixel
+                            bm.buffer[ofs + x] = (byte)colIdx;
                         }
                     }
-                }
-                p.put(color, colIdx);
+                };
             }
-            // write target pixel
-            bm.buffer[i] = (byte)colIdx;
-        }
+        });
         return bm;
     }
 
@@ -642,9 +945,12 @@ public class Bitmap {
         final int[] trg = new FilterOp(f, sizeX, sizeY).filter(this, pal);
 
         // quantize image
+        ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.QUANTIZE);
         QuantizeFilter qf = new QuantizeFilter();
+        qf.setMethod(configuration.getQuantizationMethod());
         final Bitmap bm = new Bitmap(sizeX, sizeY);
         int[] ct = qf.quantize(trg, bm.buffer, sizeX, sizeY, 255, dither, dither);
+        timer.end(sizeX, sizeY, 0);
         int size = ct.length;
         if (size > 255) {
             size = 255;
@@ -680,6 +986,23 @@ public class Bitmap {
         return bitmap;
     }
 
+    /**
+     * Crop to the pixels with an alpha value of at least alphaThreshold, but to at least 2x2 pixels,
+     * as the subtitle streams crop a decoded caption.
+     * @param alpha          Alpha values of the palette
+     * @param alphaThreshold Minimum alpha value of a visible pixel
+     * @return Cropped bitmap or this bitmap if there is nothing to crop
+     */
+    public Bitmap cropToVisiblePixels(byte[] alpha, int alphaThreshold) {
+        BitmapBounds bounds = getCroppingBounds(alpha, alphaThreshold);
+        if (bounds.yMin > 0 || bounds.xMin > 0 || bounds.xMax < width - 1 || bounds.yMax < height - 1) {
+            int w = Math.max(2, bounds.xMax - bounds.xMin + 1);
+            int h = Math.max(2, bounds.yMax - bounds.yMin + 1);
+            return crop(bounds.xMin, bounds.yMin, w, h);
+        }
+        return this;
+    }
+
     public BitmapBounds getCroppingBounds(byte[] alpha, int alphaThreshold) {
         int xMin, xMax, yMin, yMax;
 
@@ -21,6 +21,10 @@ import bdsup2sub.bitmap.Palette;
 import com.mortennobel.imagescaling.ResampleFilter;
 import com.mortennobel.imagescaling.ResampleFilters;
 
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * Subsampling scaling algorithm with various filters.
  *
@@ -31,6 +35,15 @@ import com.mortennobel.imagescaling.ResampleFilters;
  */
 
 class FilterOp {
+    /** Minimum number of target pixels per pass that is worth splitting into parallel tiles */
+    static final int PARALLEL_THRESHOLD = 256 * 256;
+    /** Minimum number of target pixels handled by one tile */
+    private static final int MIN_TILE_SIZE = 16 * 1024;
+    /** Minimum height of a band of a streaming pass in multiples of the vertical filter footprint */
+    private static final int MIN_BAND_FOOTPRINTS = 4;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+
     private int srcWidth;
     private int srcHeight;
     private final int dstWidth;
@@ -44,14 +57,110 @@ class FilterOp {
     private SubSamplingData horizontalSubsamplingData;
     private SubSamplingData verticalSubsamplingData;
     private final ResampleFilter filter;
+    private final boolean parallel;
 
     public FilterOp(ResampleFilter filter, int dstWidth, int dstHeight) {
+        this(filter, dstWidth, dstHeight, Runtime.getRuntime().availableProcessors() > 1);
+    }
+
+    /**
+     * @param filter    Filter for scaling
+     * @param dstWidth  Target width
+     * @param dstHeight Target height
+     * @param parallel  True: split passes above {@link #PARALLEL_THRESHOLD} into tiles processed on a ForkJoinPool
+     */
+    FilterOp(ResampleFilter filter, int dstWidth, int dstHeight, boolean parallel) {
         this.filter = filter;
         this.dstWidth = dstWidth;
         this.dstHeight = dstHeight;
+        this.parallel = parallel;
     }
 
     public int[] filter(Bitmap bitmap, Palette palette) {
+        prepare(bitmap, palette);
+
+        int[] workPixels = new int[srcHeight * dstWidth];
+        if (parallel && srcHeight * dstWidth >= PARALLEL_THRESHOLD) {
+            POOL.invoke(new HorizontalFilterTask(bitmap.getInternalBuffer(), workPixels, 0, srcHeight));
+        } else {
+            filterHorizontally(bitmap.getInternalBuffer(), workPixels, 0, srcHeight);
+        }
+
+        int[] outPixels = new int[dstHeight * dstWidth];
+        if (parallel && dstHeight * dstWidth >= PARALLEL_THRESHOLD) {
+            POOL.invoke(new VerticalFilterTask(workPixels, outPixels, 0, dstWidth));
+        } else {
+            filterVertically(workPixels, outPixels, 0, dstWidth);
+        }
+
+        return outPixels;
+    }
+
+    /**
+     * Filter the bitmap and pass the target image row by row to consumers created for horizontal bands.
+     * Above {@link #PARALLEL_THRESHOLD}, the bands are processed concurrently on the ForkJoinPool. Every band
+     * streams its rows from top to bottom through its own row ring and its own consumer, so a consumer is only
+     * ever called from one thread. The source rows around the band borders are filtered horizontally by both
+     * neighbouring bands.
+     * The result is identical to the one of {@link #filter(Bitmap, Palette)}.
+     * @param bitmap    Source bitmap
+     * @param palette   Palette of the source bitmap
+     * @param consumers Factory for the consumers of the target rows, called once per band
+     */
+    public void filter(Bitmap bitmap, Palette palette, RowConsumerFactory consumers) {
+        prepare(bitmap, palette);
+
+        byte[] src = bitmap.getInternalBuffer();
+        if (parallel && dstHeight * dstWidth >= PARALLEL_THRESHOLD) {
+            // keep bands high enough that the rows filtered twice at the borders remain a small fraction
+            int minBandHeight = Math.max(MIN_TILE_SIZE / dstWidth, MIN_BAND_FOOTPRINTS * verticalSubsamplingData.matrixWidth);
+            POOL.invoke(new StreamingFilterTask(src, consumers, 0, dstHeight, minBandHeight));
+        } else {
+            filterRows(src, 0, dstHeight, consumers.createRowConsumer());
+        }
+    }
+
+    /**
+     * Filter a band of target rows and pass them to a consumer from top to bottom.
+     * Horizontally filtered source rows are computed on demand and kept in a small ring of row buffers.
+     * @param src      Byte array holding source image data
+     * @param yFrom    First target row to process
+     * @param yTo      Target row to stop at (exclusive)
+     * @param consumer Consumer for the target rows
+     */
+    private void filterRows(byte[] src, int yFrom, int yTo, RowConsumer consumer) {
+        // the source rows contributing to one target row (including mirrored ones at the borders)
+        // span at most matrixWidth + 3 rows, so they never collide in the ring
+        int ringSize = Math.min(verticalSubsamplingData.matrixWidth + 3, srcHeight);
+        int[][] ring = new int[ringSize][dstWidth];
+        int[] ringRowNumbers = new int[ringSize];
+        Arrays.fill(ringRowNumbers, -1);
+        int[] emptyRow = new int[dstWidth];
+
+        int[][] rows = new int[verticalSubsamplingData.matrixWidth][];
+        int[] outRow = new int[dstWidth];
+        for (int y = yFrom; y < yTo; y++) {
+            int index = y * verticalSubsamplingData.matrixWidth;
+            int max = verticalSubsamplingData.sampleCount[y];
+            for (int j = 0; j < max; j++) {
+                int n = verticalSubsamplingData.pixelPositions[index + j];
+                if (n < 0 || n >= srcHeight) {
+                    rows[j] = emptyRow; // weight is zero anyway
+                } else {
+                    int slot = n % ringSize;
+                    if (ringRowNumbers[slot] != n) {
+                        filterRowHorizontally(src, n, ring[slot], 0);
+                        ringRowNumbers[slot] = n;
+                    }
+                    rows[j] = ring[slot];
+                }
+            }
+            filterRowVertically(rows, y, outRow);
+            consumer.consumeRow(y, outRow);
+        }
+    }
+
+    private void prepare(Bitmap bitmap, Palette palette) {
         this.srcWidth  = bitmap.getWidth();
         this.srcHeight = bitmap.getHeight();
 
@@ -62,14 +171,6 @@ class FilterOp {
 
         horizontalSubsamplingData = createSubSampling(srcWidth, dstWidth);
         verticalSubsamplingData = createSubSampling(srcHeight, dstHeight);
-
-        int[] workPixels = new int[srcHeight * dstWidth];
-        filterHorizontally(bitmap.getInternalBuffer(), workPixels);
-
-        int[] outPixels = new int[dstHeight * dstWidth];
-        filterVertically(workPixels, outPixels);
-
-        return outPixels;
     }
 
     private SubSamplingData createSubSampling(int srcSize, int dstSize) {
@@ -188,9 +289,11 @@ class FilterOp {
      * Apply filter to sample vertically from temporary buffer to target buffer
      * @param src Integer array holding result from filtering horizontally
      * @param trg Integer array for target bitmap
+     * @param xFrom First target column to process
+     * @param xTo   Target column to stop at (exclusive)
      */
-    private void filterVertically(int[] src, int[] trg) {
-        for (int x = 0; x < dstWidth; x++) {
+    private void filterVertically(int[] src, int[] trg, int xFrom, int xTo) {
+        for (int x = xFrom; x < xTo; x++) {
             for (int y = dstHeight-1; y >= 0 ; y--) {
                 int yTimesNumContributors = y * verticalSubsamplingData.matrixWidth;
                 int max = verticalSubsamplingData.sampleCount[y];
@@ -210,33 +313,37 @@ class FilterOp {
                     blue  +=  (color       &0xff) * w;
                     index++;
                 }
-                int ri = (int)(red);
-                if (ri < 0) {
-                    ri = 0;
-                } else if (ri > 255) {
-                    ri = 255;
-                }
-                int gi = (int)(green);
-                if (gi < 0) {
-                    gi = 0;
-                } else if (gi > 255) {
-                    gi = 255;
-                }
-                int bi = (int)(blue);
-                if (bi < 0) {
-                    bi = 0;
-                } else if (bi > 255) {
-                    bi = 255;
-                }
-                int ai = (int)(alpha);
-                if (ai < 0) {
-                    ai = 0;
-                } else if (ai > 255) {
-                    ai = 255;
-                }
+                trg[x + ofsY] = toARGB(alpha, red, green, blue);
+            }
+        }
+    }
+
+    /**
+     * Apply filter to sample one row vertically from horizontally filtered source rows
+     * @param rows Horizontally filtered source rows, one per sample of the target row
+     * @param y    Target row
+     * @param trg  Integer array to store the target row
+     */
+    private void filterRowVertically(int[][] rows, int y, int[] trg) {
+        int yTimesNumContributors = y * verticalSubsamplingData.matrixWidth;
+        int max = verticalSubsamplingData.sampleCount[y];
+        for (int x = 0; x < dstWidth; x++) {
+            float red   = 0;
+            float green = 0;
+            float blue  = 0;
+            float alpha = 0;
 
-                trg[x + ofsY] = ( (ai<<24) | (ri<<16) | (gi << 8) | bi);
+            int index = yTimesNumContributors;
+            for (int j = 0; j < max; j++) {
+                int color = rows[j][x];
+                float w = verticalSubsamplingData.weightFactors[index];
+                alpha += ((color >> 24)&0xff) * w;
+                red   += ((color >> 16)&0xff) * w;
+                green += ((color >>  8)&0xff) * w;
+                blue  +=  (color       &0xff) * w;
+                index++;
             }
+            trg[x] = toARGB(alpha, red, green, blue);
         }
     }
 
@@ -244,60 +351,191 @@ class FilterOp {
      * Apply filter to sample horizontally from src to Work
      * @param src Byte array holding source image data
      * @param trg Integer array to store temporary result from filtering horizontally
+     * @param yFrom First row to process
+     * @param yTo   Row to stop at (exclusive)
      */
-    private void filterHorizontally(byte[] src, int[] trg) {
-        for (int k = 0; k < srcHeight; k++) {
-            int destOfsY = dstWidth * k;
-            int srcOfsY = srcWidth * k;
-            for (int i = dstWidth-1; i >= 0 ; i--) {
-                float red   = 0;
-                float green = 0;
-                float blue  = 0;
-                float alpha = 0;
+    private void filterHorizontally(byte[] src, int[] trg, int yFrom, int yTo) {
+        for (int k = yFrom; k < yTo; k++) {
+            filterRowHorizontally(src, k, trg, dstWidth * k);
+        }
+    }
 
-                int max = horizontalSubsamplingData.sampleCount[i];
-                int index = i * horizontalSubsamplingData.matrixWidth;
-
-                for (int j = max-1; j >= 0; j--) {
-                    int ofsX = horizontalSubsamplingData.pixelPositions[index];
-                    int palIdx = src[srcOfsY+ofsX] & 0xff;
-                    float w = horizontalSubsamplingData.weightFactors[index];
-                    red   += (r[palIdx] & 0xff) * w;
-                    green += (g[palIdx] & 0xff) * w;
-                    blue  += (b[palIdx] & 0xff) * w;
-                    alpha += (a[palIdx] & 0xff) * w;
-                    index++;
-                }
-                int ri = (int)(red);
-                if (ri < 0) {
-                    ri = 0;
-                } else if (ri > 255) {
-                    ri = 255;
-                }
-                int gi = (int)(green);
-                if (gi < 0) {
-                    gi = 0;
-                } else if (gi > 255) {
-                    gi = 255;
-                }
-                int bi = (int)(blue);
-                if (bi < 0) {
-                    bi = 0;
-                } else if (bi > 255) {
-                    bi = 255;
-                }
-                int ai = (int)(alpha);
-                if (ai < 0) {
-                    ai = 0;
-                } else if (ai > 255) {
-                    ai = 255;
-                }
+    /**
+     * Apply filter to sample one row horizontally
+     * @param src     Byte array holding source image data
+     * @param k       Source row
+     * @param trg     Integer array to store the filtered row
+     * @param destOfs Offset of the row in trg
+     */
+    private void filterRowHorizontally(byte[] src, int k, int[] trg, int destOfs) {
+        int srcOfsY = srcWidth * k;
+        for (int i = dstWidth-1; i >= 0 ; i--) {
+            float red   = 0;
+            float green = 0;
+            float blue  = 0;
+            float alpha = 0;
+
+            int max = horizontalSubsamplingData.sampleCount[i];
+            int index = i * horizontalSubsamplingData.matrixWidth;
+
+            for (int j = max-1; j >= 0; j--) {
+                int ofsX = horizontalSubsamplingData.pixelPositions[index];
+                int palIdx = src[srcOfsY+ofsX] & 0xff;
+                float w = horizontalSubsamplingData.weightFactors[index];
+                red   += (r[palIdx] & 0xff) * w;
+                green += (g[palIdx] & 0xff) * w;
+                blue  += (b[palIdx] & 0xff) * w;
+                alpha += (a[palIdx] & 0xff) * w;
+                index++;
+            }
+            trg[i + destOfs] = toARGB(alpha, red, green, blue);
+        }
+    }
+
+    /**
+     * Clamp the filtered color components and pack them into an ARGB value
+     */
+    private static int toARGB(float alpha, float red, float green, float blue) {
+        int ri = (int)(red);
+        if (ri < 0) {
+            ri = 0;
+        } else if (ri > 255) {
+            ri = 255;
+        }
+        int gi = (int)(green);
+        if (gi < 0) {
+            gi = 0;
+        } else if (gi > 255) {
+            gi = 255;
+        }
+        int bi = (int)(blue);
+        if (bi < 0) {
+            bi = 0;
+        } else if (bi > 255) {
+            bi = 255;
+        }
+        int ai = (int)(alpha);
+        if (ai < 0) {
+            ai = 0;
+        } else if (ai > 255) {
+            ai = 255;
+        }
 
-                trg[i + destOfsY] = ( (ai<<24) | (ri<<16) | (gi << 8) | bi);
+        return (ai<<24) | (ri<<16) | (gi << 8) | bi;
+    }
+
+    /**
+     * Applies the horizontal pass to a range of rows, splitting it in halves until a tile is small enough.
+     */
+    private class HorizontalFilterTask extends RecursiveAction {
+        private static final long serialVersionUID = 0;
+
+        private final byte[] src;
+        private final int[] trg;
+        private final int yFrom;
+        private final int yTo;
+
+        private HorizontalFilterTask(byte[] src, int[] trg, int yFrom, int yTo) {
+            this.src = src;
+            this.trg = trg;
+            this.yFrom = yFrom;
+            this.yTo = yTo;
+        }
+
+        @Override
+        protected void compute() {
+            if ((yTo - yFrom) * dstWidth <= MIN_TILE_SIZE || yTo - yFrom < 2) {
+                filterHorizontally(src, trg, yFrom, yTo);
+            } else {
+                int yMid = (yFrom + yTo) >>> 1;
+                invokeAll(new HorizontalFilterTask(src, trg, yFrom, yMid), new HorizontalFilterTask(src, trg, yMid, yTo));
             }
         }
     }
 
+    /**
+     * Applies the vertical pass to a range of columns, splitting it in halves until a tile is small enough.
+     */
+    private class VerticalFilterTask extends RecursiveAction {
+        private static final long serialVersionUID = 0;
+
+        private final int[] src;
+        private final int[] trg;
+        private final int xFrom;
+        private final int xTo;
+
+        private VerticalFilterTask(int[] src, int[] trg, int xFrom, int xTo) {
+            this.src = src;
+            this.trg = trg;
+            this.xFrom = xFrom;
+            this.xTo = xTo;
+        }
+
+        @Override
+        protected void compute() {
+            if ((xTo - xFrom) * dstHeight <= MIN_TILE_SIZE || xTo - xFrom < 2) {
+                filterVertically(src, trg, xFrom, xTo);
+            } else {
+                int xMid = (xFrom + xTo) >>> 1;
+                invokeAll(new VerticalFilterTask(src, trg, xFrom, xMid), new VerticalFilterTask(src, trg, xMid, xTo));
+            }
+        }
+    }
+
+    /**
+     * Streams a band of target rows, splitting it in halves while both halves stay above the minimum band height.
+     */
+    private class StreamingFilterTask extends RecursiveAction {
+        private static final long serialVersionUID = 0;
+
+        private final byte[] src;
+        private final RowConsumerFactory consumers;
+        private final int yFrom;
+        private final int yTo;
+        private final int minBandHeight;
+
+        private StreamingFilterTask(byte[] src, RowConsumerFactory consumers, int yFrom, int yTo, int minBandHeight) {
+            this.src = src;
+            this.consumers = consumers;
+            this.yFrom = yFrom;
+            this.yTo = yTo;
+            this.minBandHeight = minBandHeight;
+        }
+
+        @Override
+        protected void compute() {
+            if (yTo - yFrom < 2 * minBandHeight) {
+                filterRows(src, yFrom, yTo, consumers.createRowConsumer());
+            } else {
+                int yMid = (yFrom + yTo) >>> 1;
+                invokeAll(new StreamingFilterTask(src, consumers, yFrom, yMid, minBandHeight),
+                        new StreamingFilterTask(src, consumers, yMid, yTo, minBandHeight));
+            }
+        }
+    }
+
+    /**
+     * Receives the target image of a streaming filter pass row by row.
+     */
+    interface RowConsumer {
+        /**
+         * @param y   Target row
+         * @param row ARGB values of the target row. The array is reused for the next row.
+         */
+        void consumeRow(int y, int[] row);
+    }
+
+    /**
+     * Creates the consumer for one band of a streaming filter pass.
+     */
+    interface RowConsumerFactory {
+        /**
+         * Called on the thread that filters the band. The returned consumer is only used by this thread.
+         * @return Consumer for the rows of one band
+         */
+        RowConsumer createRowConsumer();
+    }
+
     private class SubSamplingData {
         /** Number of samples */
         private final int[] sampleCount;
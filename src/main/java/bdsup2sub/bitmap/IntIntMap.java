@@ -0,0 +1,175 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.bitmap;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map from int to int without boxing, used to memoize color lookups per pixel.
+ */
+public final class IntIntMap {
+
+    private static final int DEFAULT_CAPACITY = 256;
+    /** Marks an empty slot; an entry with this key is stored outside of the tables */
+    private static final int FREE_KEY = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    private boolean hasFreeKey;
+    private int freeKeyValue;
+
+    public IntIntMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize Number of entries the map should hold without resizing
+     */
+    public IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, 2)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        threshold = capacity / 2;
+    }
+
+    /**
+     * Get the value stored for a key.
+     * @param key          Key
+     * @param defaultValue Value to return if the key is not contained
+     * @return Value stored for the key or defaultValue
+     */
+    public int get(int key, int defaultValue) {
+        if (key == FREE_KEY) {
+            return hasFreeKey ? freeKeyValue : defaultValue;
+        }
+        int i = hash(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == key) {
+                return values[i];
+            }
+            if (k == FREE_KEY) {
+                return defaultValue;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * @param key Key
+     * @return True if a value is stored for the key
+     */
+    public boolean containsKey(int key) {
+        if (key == FREE_KEY) {
+            return hasFreeKey;
+        }
+        int i = hash(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == key) {
+                return true;
+            }
+            if (k == FREE_KEY) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    /**
+     * Store a value for a key, replacing a previously stored value.
+     * @param key   Key
+     * @param value Value
+     */
+    public void put(int key, int value) {
+        if (key == FREE_KEY) {
+            if (!hasFreeKey) {
+                size++;
+            }
+            hasFreeKey = true;
+            freeKeyValue = value;
+            return;
+        }
+        int i = hash(key) & mask;
+        while (true) {
+            int k = keys[i];
+            if (k == key) {
+                values[i] = value;
+                return;
+            }
+            if (k == FREE_KEY) {
+                keys[i] = key;
+                values[i] = value;
+                if (++size >= threshold) {
+                    rehash(keys.length * 2);
+                }
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove all entries but keep the allocated tables.
+     */
+    public void clear() {
+        Arrays.fill(keys, FREE_KEY);
+        hasFreeKey = false;
+        size = 0;
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        size = hasFreeKey ? 1 : 0;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int key = oldKeys[j];
+            if (key != FREE_KEY) {
+                int i = hash(key) & mask;
+                while (keys[i] != FREE_KEY) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = key;
+                values[i] = oldValues[j];
+                size++;
+            }
+        }
+    }
+
+    /** Spread the bits of ARGB values, which often differ in the lower bits only */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
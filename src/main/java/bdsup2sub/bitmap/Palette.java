@@ -143,7 +143,8 @@ public class Palette {
     }
 
     public void setARGB(int index, int c) {
-        setColor(index, new Color(c, true));
+        setRGB(index, (c >> 16) & 0xff, (c >> 8) & 0xff, c & 0xff);
+        setAlpha(index, c >>> 24);
     }
 
     public Color getColor(int index) {
@@ -26,12 +26,15 @@ public class CommandLineOptions {
     static final String VERSION = "V";
     static final String OUTPUT_FILE = "o";
     static final String VERBOSE = "v";
+    static final String STATISTICS = "s";
     static final String LOAD_SETTINGS = "L";
 
     static final String RESOLUTION = "r";
     static final String TARGET_FRAMERATE = "T";
     static final String CONVERT_FRAMERATE = "C";
     static final String DELAY = "d";
+    static final String TIME_RANGE_START = "b";
+    static final String TIME_RANGE_END = "e";
     static final String SCALING_FILTER = "f";
     static final String PALETTE_MODE = "p";
     static final String MIN_DISPLAY_TIME = "m";
@@ -54,11 +57,17 @@ public class CommandLineOptions {
     static final String LANGUAGE_CODE = "l";
     static final String PALETTE_FILE = "t";
 
+    static final String PNG_COMPRESSION_LEVEL = "z";
+    static final String PNG_COMPRESSION_STRATEGY = "Z";
+    static final String PNG_COPY_MODE = "k";
+    static final String QUANTIZER = "q";
+
     static final List<String> OPTION_ORDER = Arrays.asList(HELP, LOAD_SETTINGS, RESOLUTION, TARGET_FRAMERATE,
-            CONVERT_FRAMERATE, DELAY, SCALING_FILTER, PALETTE_MODE, MIN_DISPLAY_TIME, MAX_TIME_DIFF, MOVE_IN, MOVE_OUT,
+            CONVERT_FRAMERATE, DELAY, TIME_RANGE_START, TIME_RANGE_END, SCALING_FILTER, PALETTE_MODE, MIN_DISPLAY_TIME, MAX_TIME_DIFF, MOVE_IN, MOVE_OUT,
             MOVE_X, CROP_LINES, ALPHA_CROP_THRESHOLD, SCALE, EXPORT_PALETTE, EXPORT_FORCED_SUBTITLES_ONLY, FORCED_FLAG,
             SWAP_CR_CB, FIX_INVISIBLE_FRAMES, ALPHA_THRESHOLD, LUM_LOW_MED_THRESHOLD, LUM_MED_HIGH_THRESHOLD,
-            LANGUAGE_CODE, PALETTE_FILE, OUTPUT_FILE, VERBOSE, VERSION);
+            LANGUAGE_CODE, PALETTE_FILE, PNG_COMPRESSION_LEVEL, PNG_COMPRESSION_STRATEGY,
+            PNG_COPY_MODE, QUANTIZER, OUTPUT_FILE, VERBOSE, STATISTICS, VERSION);
 
     private final Options options = new Options();
 
@@ -85,7 +94,7 @@ public class CommandLineOptions {
 
         Option output = OptionBuilder
                 .withLongOpt("output")
-                .withDescription("Specify output file.")
+                .withDescription("Specify output file.\nGive once per format to write several formats in one pass.")
                 .hasArg().create(OUTPUT_FILE);
         options.addOption(output);
 
@@ -95,6 +104,12 @@ public class CommandLineOptions {
                 .hasArg(false).create(VERBOSE);
         options.addOption(verbose);
 
+        Option statistics = OptionBuilder
+                .withLongOpt("stats")
+                .withDescription("Print time, frames and bytes per conversion stage as JSON to stderr when finished.")
+                .hasArg(false).create(STATISTICS);
+        options.addOption(statistics);
+
         Option loadSettings = OptionBuilder
                 .withLongOpt("load-settings")
                 .withDescription("Load settings stored in configuration file even if running in command-line mode.")
@@ -133,10 +148,24 @@ public class CommandLineOptions {
                 .hasArg().create(DELAY);
         options.addOption(delay);
 
+        Option timeRangeStart = OptionBuilder
+                .withArgName("time")
+                .withLongOpt("from")
+                .withDescription("Process only captions ending after this time of the source stream (hh:mm:ss.ms)\nDefault: start of stream")
+                .hasArg().create(TIME_RANGE_START);
+        options.addOption(timeRangeStart);
+
+        Option timeRangeEnd = OptionBuilder
+                .withArgName("time")
+                .withLongOpt("to")
+                .withDescription("Process only captions starting before this time of the source stream (hh:mm:ss.ms)\nDefault: end of stream")
+                .hasArg().create(TIME_RANGE_END);
+        options.addOption(timeRangeEnd);
+
         Option filter = OptionBuilder
                 .withArgName("filter")
                 .withLongOpt("filter")
-                .withDescription("Set the filter to use for scaling.\nSupported values: bilinear, triangle, bicubic, bell, b-spline, hermite, lanczos3, mitchell\nDefault: bilinear")
+                .withDescription("Set the filter to use for scaling.\nSupported values: bilinear, triangle, bicubic, bell, b-spline, hermite, lanczos3, mitchell, bilinear-fixed\nDefault: bilinear")
                 .hasArg().create(SCALING_FILTER);
         options.addOption(filter);
 
@@ -275,5 +304,33 @@ public class CommandLineOptions {
                 .withDescription("Load palette file for SUB/IDX conversion. Overrides default palette.")
                 .hasArg().create(PALETTE_FILE);
         options.addOption(paletteFile);
+
+        Option pngCompressionLevel = OptionBuilder
+                .withArgName("n")
+                .withLongOpt("png-level")
+                .withDescription("Set deflate level 0..9 for the PNG files of XML export.\nDefault: 1")
+                .hasArg().create(PNG_COMPRESSION_LEVEL);
+        options.addOption(pngCompressionLevel);
+
+        Option pngCompressionStrategy = OptionBuilder
+                .withArgName("strategy")
+                .withLongOpt("png-strategy")
+                .withDescription("Set deflate strategy for the PNG files of XML export.\nSupported values: default, filtered, huffman\nDefault: default")
+                .hasArg().create(PNG_COMPRESSION_STRATEGY);
+        options.addOption(pngCompressionStrategy);
+
+        Option pngCopyMode = OptionBuilder
+                .withArgName("mode")
+                .withLongOpt("png-copy")
+                .withDescription("Set how PNG files of unchanged captions are reused when converting XML to XML.\nCopied PNGs keep their uncropped size and offsets and skip the alpha crop.\nSupported values: encode, copy, link (hard link if possible, else copy)\nDefault: encode")
+                .hasArg().create(PNG_COPY_MODE);
+        options.addOption(pngCopyMode);
+
+        Option quantizer = OptionBuilder
+                .withArgName("method")
+                .withLongOpt("quantizer")
+                .withDescription("Set how true color captions are reduced to a palette. With mediancut, captions with few colors keep their exact colors.\nSupported values: octree, mediancut\nDefault: octree")
+                .hasArg().create(QUANTIZER);
+        options.addOption(quantizer);
     }
 }
@@ -16,6 +16,7 @@
 package bdsup2sub.cli;
 
 import bdsup2sub.core.*;
+import bdsup2sub.tools.QuantizeFilter;
 import bdsup2sub.utils.FilenameUtils;
 import bdsup2sub.utils.optional.Optional;
 import bdsup2sub.utils.SubtitleUtils;
@@ -25,10 +26,13 @@ import org.apache.commons.cli.*;
 import java.io.File;
 import java.util.Arrays;
 import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Map;
 
 import static bdsup2sub.cli.CommandLineOptions.*;
 import static bdsup2sub.core.Configuration.*;
 import static bdsup2sub.core.Constants.LANGUAGES;
+import static bdsup2sub.utils.TimeUtils.timeStrToPTS;
 
 public class CommandLineParser {
 
@@ -37,14 +41,18 @@ public class CommandLineParser {
     private boolean cliMode;
     private File inputFile;
     private File outputFile;
+    private final Map<OutputMode, File> outputFiles = new EnumMap<OutputMode, File>(OutputMode.class);
     private Optional<OutputMode> outputMode = Optional.absent();
     private boolean loadSettings;
+    private boolean printStatistics;
     private Optional<Resolution> resolution = Optional.absent();
     private Optional<Double> sourceFrameRate = Optional.absent();
     private Optional<Double> targetFrameRate = Optional.absent();
     private boolean convertFpsMode;
     private boolean synchronizeFpsMode;
     private Optional<Double> delay = Optional.absent();
+    private Optional<Long> timeRangeStart = Optional.absent();
+    private Optional<Long> timeRangeEnd = Optional.absent();
     private Optional<ScalingFilter> scalingFilter = Optional.absent();
     private Optional<PaletteMode> paletteMode = Optional.absent();
     private Optional<Double> minimumDisplayTime = Optional.absent();
@@ -68,6 +76,10 @@ public class CommandLineParser {
     private Optional<Integer> lumLowMedThreshold  = Optional.absent();
     private Optional<Integer> lumMedHighThreshold = Optional.absent();
     private Optional<Integer> languageIndex = Optional.absent();
+    private Optional<Integer> pngCompressionLevel = Optional.absent();
+    private Optional<PngCompressionStrategy> pngCompressionStrategy = Optional.absent();
+    private Optional<XmlPngCopyMode> xmlPngCopyMode = Optional.absent();
+    private Optional<QuantizeFilter.Method> quantizationMethod = Optional.absent();
 
     private File paletteFile;
     private Options options;
@@ -92,6 +104,7 @@ public class CommandLineParser {
             parseTargetFramerateOption(line);
             parseConvertFramerateOption(line);
             parseDelayOption(line);
+            parseTimeRangeOptions(line);
             parseScalingFilterOption(line);
             parsePaletteModeOption(line);
             parseMinimumDisplayTimeOption(line);
@@ -107,10 +120,15 @@ public class CommandLineParser {
             swapCrCb = line.hasOption(SWAP_CR_CB) ? Optional.of(Boolean.TRUE) : Optional.<Boolean>absent();
             fixInvisibleFrames = line.hasOption(FIX_INVISIBLE_FRAMES) ? Optional.of(Boolean.TRUE) : Optional.<Boolean>absent(); // TODO: accept only for SUB/IDX or SUP/IFO as target
             verbose = line.hasOption(VERBOSE) ? Optional.of(Boolean.TRUE) : Optional.<Boolean>absent();
+            printStatistics = line.hasOption(STATISTICS);
             parseAlphaThresholdOption(line);
             parseLuminanceThresholdOption(line);
             parseLanguageCodeOption(line);
             parsePaletteFileOption(line);
+            parsePngCompressionLevelOption(line);
+            parsePngCompressionStrategyOption(line);
+            parsePngCopyModeOption(line);
+            parseQuantizerOption(line);
         }
     }
 
@@ -129,24 +147,41 @@ public class CommandLineParser {
 
     private void parseOutputFileOption(CommandLine line) throws ParseException {
         if (line.hasOption(OUTPUT_FILE)) {
-            String value = line.getOptionValue(OUTPUT_FILE);
-            outputFile = new File(value);
-
-            String extension = FilenameUtils.getExtension(value);
-            if (extension.isEmpty()) {
-                throw new ParseException("No extension given for output " + outputFile);
-            }
-            if (extension.equalsIgnoreCase("sup")) {
-                outputMode = Optional.of(OutputMode.BDSUP);
-            } else if (extension.equalsIgnoreCase("sub") || extension.equals("idx")) {
-                outputMode = Optional.of(OutputMode.VOBSUB);
-            } else if (extension.equalsIgnoreCase("xml")) {
-                outputMode = Optional.of(OutputMode.XML);
-            } else if (extension.equalsIgnoreCase("ifo")) {
-                outputMode = Optional.of(OutputMode.SUPIFO);
-            } else {
-                throw new ParseException("Unknown extension of output " + outputFile);
+            for (String value : line.getOptionValues(OUTPUT_FILE)) {
+                File file = new File(value);
+                OutputMode mode = getOutputModeForFile(file);
+                if (outputFiles.containsKey(mode)) {
+                    throw new ParseException("Only one output per format allowed: " + file);
+                }
+                outputFiles.put(mode, file);
+                if (outputFile == null) {
+                    outputFile = file;
+                    outputMode = Optional.of(mode);
+                }
             }
+            File supIfo = outputFiles.get(OutputMode.SUPIFO);
+            File bdSup = outputFiles.get(OutputMode.BDSUP);
+            if (supIfo != null && bdSup != null && FilenameUtils.removeExtension(supIfo.getPath()).equals(FilenameUtils.removeExtension(bdSup.getPath()))) {
+                throw new ParseException("SUP/IFO and SUP(BD) output both write " + FilenameUtils.removeExtension(bdSup.getPath()) + ".sup");
+            }
+        }
+    }
+
+    private static OutputMode getOutputModeForFile(File file) throws ParseException {
+        String extension = FilenameUtils.getExtension(file.getPath());
+        if (extension.isEmpty()) {
+            throw new ParseException("No extension given for output " + file);
+        }
+        if (extension.equalsIgnoreCase("sup")) {
+            return OutputMode.BDSUP;
+        } else if (extension.equalsIgnoreCase("sub") || extension.equals("idx")) {
+            return OutputMode.VOBSUB;
+        } else if (extension.equalsIgnoreCase("xml")) {
+            return OutputMode.XML;
+        } else if (extension.equalsIgnoreCase("ifo")) {
+            return OutputMode.SUPIFO;
+        } else {
+            throw new ParseException("Unknown extension of output " + file);
         }
     }
 
@@ -220,6 +255,28 @@ public class CommandLineParser {
         }
     }
 
+    private void parseTimeRangeOptions(CommandLine line) throws ParseException {
+        if (line.hasOption(TIME_RANGE_START)) {
+            String value = line.getOptionValue(TIME_RANGE_START);
+            long pts = timeStrToPTS(value.trim());
+            if (pts < 0) {
+                throw new ParseException("Illegal start time: " + value);
+            }
+            timeRangeStart = Optional.of(pts);
+        }
+        if (line.hasOption(TIME_RANGE_END)) {
+            String value = line.getOptionValue(TIME_RANGE_END);
+            long pts = timeStrToPTS(value.trim());
+            if (pts < 0) {
+                throw new ParseException("Illegal end time: " + value);
+            }
+            if (timeRangeStart.isPresent() && pts <= timeRangeStart.get()) {
+                throw new ParseException("End time must be after start time: " + value);
+            }
+            timeRangeEnd = Optional.of(pts);
+        }
+    }
+
     private void parseScalingFilterOption(CommandLine line) throws ParseException {
         if (line.hasOption(SCALING_FILTER)) {
             String value = line.getOptionValue(SCALING_FILTER);
@@ -385,6 +442,83 @@ public class CommandLineParser {
         }
     }
 
+    private void parsePngCompressionLevelOption(CommandLine line) throws ParseException {
+        if (line.hasOption(PNG_COMPRESSION_LEVEL)) {
+            checkXmlOutput("PNG compression level");
+            String value = line.getOptionValue(PNG_COMPRESSION_LEVEL);
+            pngCompressionLevel = Optional.of(ToolBox.getInt(value.trim()));
+            if (pngCompressionLevel.get() < 0 || pngCompressionLevel.get() > 9) {
+                throw new ParseException("Illegal number range for PNG compression level: " + value);
+            }
+        }
+    }
+
+    private void parsePngCompressionStrategyOption(CommandLine line) throws ParseException {
+        if (line.hasOption(PNG_COMPRESSION_STRATEGY)) {
+            checkXmlOutput("PNG compression strategy");
+            String value = line.getOptionValue(PNG_COMPRESSION_STRATEGY);
+            boolean found = false;
+            for (PngCompressionStrategy strategy : PngCompressionStrategy.values()) {
+                if (strategy.toString().equalsIgnoreCase(value)) {
+                    pngCompressionStrategy = Optional.of(strategy);
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                throw new ParseException("Illegal PNG compression strategy: " + value);
+            }
+        }
+    }
+
+    private void parsePngCopyModeOption(CommandLine line) throws ParseException {
+        if (line.hasOption(PNG_COPY_MODE)) {
+            if (inputFile != null && !FilenameUtils.getExtension(inputFile.getPath()).equalsIgnoreCase("xml")) {
+                throw new ParseException("PNG copy mode is only supported for XML input.");
+            }
+            checkXmlOutput("PNG copy mode");
+            String value = line.getOptionValue(PNG_COPY_MODE);
+            boolean found = false;
+            for (XmlPngCopyMode mode : XmlPngCopyMode.values()) {
+                if (mode.toString().equalsIgnoreCase(value)) {
+                    xmlPngCopyMode = Optional.of(mode);
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                throw new ParseException("Illegal PNG copy mode: " + value);
+            }
+        }
+    }
+
+    /**
+     * Reject an option for PNG files if outputs are given, but none of them is XML.
+     * Without outputs the GUI is started, which can still export XML.
+     */
+    private void checkXmlOutput(String option) throws ParseException {
+        if (!outputFiles.isEmpty() && !outputFiles.containsKey(OutputMode.XML)) {
+            throw new ParseException(option + " is only supported for XML output.");
+        }
+    }
+
+    private void parseQuantizerOption(CommandLine line) throws ParseException {
+        if (line.hasOption(QUANTIZER)) {
+            String value = line.getOptionValue(QUANTIZER);
+            boolean found = false;
+            for (QuantizeFilter.Method method : QuantizeFilter.Method.values()) {
+                if (method.toString().equalsIgnoreCase(value)) {
+                    quantizationMethod = Optional.of(method);
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                throw new ParseException("Illegal quantizer: " + value);
+            }
+        }
+    }
+
     private void parseLuminanceThresholdOption(CommandLine line) throws ParseException {
         if (line.hasOption(LUM_LOW_MED_THRESHOLD)) { // TODO: accept only for SUB/IDX or SUP/IFO as target
             String value = line.getOptionValue(LUM_LOW_MED_THRESHOLD);
@@ -465,6 +599,10 @@ public class CommandLineParser {
         return outputFile;
     }
 
+    public Map<OutputMode, File> getOutputFiles() {
+        return outputFiles;
+    }
+
     public Optional<OutputMode> getOutputMode() {
         return outputMode;
     }
@@ -473,6 +611,10 @@ public class CommandLineParser {
         return loadSettings;
     }
 
+    public boolean isPrintStatistics() {
+        return printStatistics;
+    }
+
     public Optional<Resolution> getResolution() {
         return resolution;
     }
@@ -497,6 +639,14 @@ public class CommandLineParser {
         return delay;
     }
 
+    public Optional<Long> getTimeRangeStart() {
+        return timeRangeStart;
+    }
+
+    public Optional<Long> getTimeRangeEnd() {
+        return timeRangeEnd;
+    }
+
     public Optional<ScalingFilter> getScalingFilter() {
         return scalingFilter;
     }
@@ -593,6 +743,22 @@ public class CommandLineParser {
         return paletteFile;
     }
 
+    public Optional<Integer> getPngCompressionLevel() {
+        return pngCompressionLevel;
+    }
+
+    public Optional<PngCompressionStrategy> getPngCompressionStrategy() {
+        return pngCompressionStrategy;
+    }
+
+    public Optional<XmlPngCopyMode> getXmlPngCopyMode() {
+        return xmlPngCopyMode;
+    }
+
+    public Optional<QuantizeFilter.Method> getQuantizationMethod() {
+        return quantizationMethod;
+    }
+
     public void printHelp() {
         HelpFormatter formatter = new HelpFormatter();
         formatter.setOptionComparator(new Comparator() {
@@ -16,10 +16,10 @@
 package bdsup2sub.core;
 
 import bdsup2sub.tools.Props;
+import bdsup2sub.tools.QuantizeFilter;
 import bdsup2sub.utils.PlatformUtils;
 import bdsup2sub.utils.SubtitleUtils;
 
-import javax.swing.*;
 import java.awt.*;
 import java.io.File;
 import java.util.*;
@@ -28,10 +28,6 @@ import java.util.List;
 
 public final class Configuration {
 
-    public static final Color OK_BACKGROUND = UIManager.getColor("TextField.background");
-    public static final Color WARN_BACKGROUND = new Color(0xffffffc0);
-    public static final Color ERROR_BACKGROUND = new Color(0xffe1acac);
-
     public static final boolean CONVERT_RESOLUTION_BY_DEFAULT = false;
     public static final boolean CONVERT_FRAMERATE_BY_DEFAULT = false;
     public static final int DEFAULT_PTS_DELAY = 0;
@@ -56,6 +52,10 @@ public final class Configuration {
     //Two equal captions are merged of they are closer than 200ms (0.2*90000 = 18000)
     public static final int DEFAULT_MERGE_PTS_DIFF = 18000;
     public static final OutputMode DEFAULT_OUTPUT_MODE = OutputMode.VOBSUB;
+    public static final int DEFAULT_PNG_COMPRESSION_LEVEL = 1;
+    public static final PngCompressionStrategy DEFAULT_PNG_COMPRESSION_STRATEGY = PngCompressionStrategy.DEFAULT;
+    public static final XmlPngCopyMode DEFAULT_XML_PNG_COPY_MODE = XmlPngCopyMode.ENCODE;
+    public static final QuantizeFilter.Method DEFAULT_QUANTIZATION_METHOD = QuantizeFilter.Method.OCTREE;
 
     private boolean convertResolution = CONVERT_RESOLUTION_BY_DEFAULT;
     private boolean convertFPS = CONVERT_FRAMERATE_BY_DEFAULT;
@@ -72,6 +72,11 @@ public final class Configuration {
     private Resolution outputResolution = DEFAULT_TARGET_RESOLUTION;
     private int languageIdx;
     private boolean exportForced;
+    private int pngCompressionLevel = DEFAULT_PNG_COMPRESSION_LEVEL;
+    private PngCompressionStrategy pngCompressionStrategy = DEFAULT_PNG_COMPRESSION_STRATEGY;
+    private XmlPngCopyMode xmlPngCopyMode = DEFAULT_XML_PNG_COPY_MODE;
+    private long timeRangeStartPTS;
+    private long timeRangeEndPTS = Long.MAX_VALUE;
 
     private int cropOffsetY = DEFAULT_CROP_LINE_COUNT;
     private ForcedFlagState forceAll = DEFAULT_FORCED_FLAG_STATE;
@@ -263,6 +268,21 @@ public final class Configuration {
         props.set("paletteMode", paletteMode.name());
     }
 
+    /**
+     * Get the algorithm used to reduce true color captions to a palette.
+     */
+    public QuantizeFilter.Method getQuantizationMethod() {
+        try {
+            return QuantizeFilter.Method.valueOf(props.get("quantizer", DEFAULT_QUANTIZATION_METHOD.name()));
+        } catch (IllegalArgumentException ex) {
+            return DEFAULT_QUANTIZATION_METHOD;
+        }
+    }
+
+    public void setQuantizationMethod(QuantizeFilter.Method quantizationMethod) {
+        props.set("quantizer", quantizationMethod.name());
+    }
+
     public OutputMode getOutputMode() {
         try {
             return OutputMode.valueOf(props.get("outputMode", DEFAULT_OUTPUT_MODE.name()));
@@ -588,6 +608,68 @@ public final class Configuration {
         this.exportForced = exportForced;
     }
 
+    /**
+     * Deflate level 0..9 for the PNG files of XML export
+     */
+    public int getPngCompressionLevel() {
+        return pngCompressionLevel;
+    }
+
+    public void setPngCompressionLevel(int pngCompressionLevel) {
+        this.pngCompressionLevel = pngCompressionLevel;
+    }
+
+    /**
+     * Deflate strategy for the PNG files of XML export
+     */
+    public PngCompressionStrategy getPngCompressionStrategy() {
+        return pngCompressionStrategy;
+    }
+
+    public void setPngCompressionStrategy(PngCompressionStrategy pngCompressionStrategy) {
+        this.pngCompressionStrategy = pngCompressionStrategy;
+    }
+
+    /**
+     * Handling of unchanged PNG files when converting XML to XML
+     */
+    public XmlPngCopyMode getXmlPngCopyMode() {
+        return xmlPngCopyMode;
+    }
+
+    public void setXmlPngCopyMode(XmlPngCopyMode xmlPngCopyMode) {
+        this.xmlPngCopyMode = xmlPngCopyMode;
+    }
+
+    /**
+     * Start of the time range of the source stream to be processed (90kHz)
+     */
+    public long getTimeRangeStartPTS() {
+        return timeRangeStartPTS;
+    }
+
+    public void setTimeRangeStartPTS(long timeRangeStartPTS) {
+        this.timeRangeStartPTS = timeRangeStartPTS;
+    }
+
+    /**
+     * End of the time range of the source stream to be processed (90kHz, exclusive), Long.MAX_VALUE if open
+     */
+    public long getTimeRangeEndPTS() {
+        return timeRangeEndPTS;
+    }
+
+    public void setTimeRangeEndPTS(long timeRangeEndPTS) {
+        this.timeRangeEndPTS = timeRangeEndPTS;
+    }
+
+    /**
+     * Flag that defines whether only part of the source stream is processed
+     */
+    public boolean hasTimeRange() {
+        return timeRangeStartPTS > 0 || timeRangeEndPTS != Long.MAX_VALUE;
+    }
+
     public int getCropOffsetY() {
         return cropOffsetY;
     }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+/**
+ * Java Flight Recorder events of the conversion stages, stream segments and caches, to attribute latencies
+ * to single captions in a recording (e.g. java -XX:StartFlightRecording=filename=bdsup2sub.jfr ...).
+ * Stage events are begun and committed by {@link ConversionStatistics.StageTimer}, which times the stage for
+ * the statistics as well.
+ * Events carry the index of the caption processed by the current thread, see {@link #setCaptionIndex(int)}.
+ * On a JVM without Flight Recorder nothing is recorded and the event classes are never loaded.
+ */
+public final class ConversionEvents {
+
+    /** Conversion stage of one caption */
+    public interface StageEvent {
+        /**
+         * End the stage and commit the event if it is recorded.
+         * @param width  Width of the bitmap processed, 0 if none
+         * @param height Height of the bitmap processed, 0 if none
+         * @param bytes  Number of bytes read or written, 0 if none
+         */
+        void commit(int width, int height, long bytes);
+    }
+
+    /** Parsing of one segment/packet of a subtitle stream */
+    public interface SegmentEvent {
+        /**
+         * End parsing the segment and commit the event if it is recorded.
+         * @param offset       File offset of the segment
+         * @param type         Segment type, e.g. "PCS" or "ODS"
+         * @param size         Size of the segment in bytes
+         * @param captionIndex Index of the caption the segment belongs to, -1 if none
+         */
+        void commit(long offset, String type, int size, int captionIndex);
+    }
+
+    private static final StageEvent NO_STAGE_EVENT = new StageEvent() {
+        public void commit(int width, int height, long bytes) {
+        }
+    };
+
+    private static final SegmentEvent NO_SEGMENT_EVENT = new SegmentEvent() {
+        public void commit(long offset, String type, int size, int captionIndex) {
+        }
+    };
+
+    private static final boolean AVAILABLE = isFlightRecorderAvailable();
+
+    private static final ThreadLocal<Integer> captionIndex = new ThreadLocal<Integer>() {
+        @Override
+        protected Integer initialValue() {
+            return -1;
+        }
+    };
+
+    private ConversionEvents() {
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        } catch (ClassNotFoundException ex) {
+            return false;
+        } catch (LinkageError ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @param index Index of the caption processed by the current thread, -1 if none
+     */
+    public static void setCaptionIndex(int index) {
+        captionIndex.set(index);
+    }
+
+    /**
+     * @return Index of the caption processed by the current thread, -1 if none
+     */
+    public static int getCaptionIndex() {
+        return captionIndex.get();
+    }
+
+    /**
+     * Begin a stage of the caption processed by the current thread.
+     * @param stage Stage
+     * @return Event to commit at the end of the stage
+     */
+    public static StageEvent begin(ConversionStatistics.Stage stage) {
+        return AVAILABLE ? FlightRecorderEvents.begin(stage, getCaptionIndex()) : NO_STAGE_EVENT;
+    }
+
+    /**
+     * Begin parsing a segment of a subtitle stream.
+     * @return Event to commit when the segment was parsed
+     */
+    public static SegmentEvent beginSegment() {
+        return AVAILABLE ? FlightRecorderEvents.beginSegment() : NO_SEGMENT_EVENT;
+    }
+
+    /**
+     * Record a cache lookup.
+     * @param cache        Name of the cache
+     * @param captionIndex Index of the caption looked up
+     * @param hit          True if the caption was found
+     */
+    public static void cacheAccess(String cache, int captionIndex, boolean hit) {
+        if (AVAILABLE) {
+            FlightRecorderEvents.cacheAccess(cache, captionIndex, hit);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Cumulative time, frame counts and per frame latencies of the conversion stages plus the number of bytes
+ * read and written since the last reset. Stages are timed by the code running them, which also records them
+ * as Flight Recorder events (see {@link ConversionEvents}):
+ * <pre>
+ * ConversionStatistics.StageTimer timer = statistics.start(Stage.DECODE);
+ * ...
+ * timer.end(width, height, bytes);
+ * </pre>
+ * Stages may be nested (quantizing happens while decoding, scaling or encoding). A stage started while another one
+ * runs on the same thread pauses the enclosing stage, so each stage only counts its own time and the stage times
+ * add up to the time spent in all stages. Timers have to be ended in the reverse order of their start.
+ * Latency percentiles are taken from a sample of at most 65536 frames per stage.
+ * Thread safe, as PNG files are encoded on worker threads.
+ */
+public final class ConversionStatistics {
+
+    public enum Stage {
+        /** Reading and parsing the input stream */
+        PARSE,
+        /** Decoding a caption bitmap */
+        DECODE,
+        /** Scaling a caption bitmap and converting its palette */
+        SCALE,
+        /** Reducing the colors of a caption */
+        QUANTIZE,
+        /** Encoding a caption to its binary representation (RLE, PNG) */
+        ENCODE,
+        /** Writing an encoded caption */
+        WRITE
+    }
+
+    private static final ConversionStatistics INSTANCE = new ConversionStatistics();
+    /** Maximum number of latencies kept per stage, beyond that a uniform random sample is kept */
+    private static final int MAX_LATENCIES = 1 << 16;
+
+    /** Innermost running timer of the current thread */
+    private final ThreadLocal<StageTimer> currentTimer = new ThreadLocal<StageTimer>();
+
+    private final Map<Stage, StageStatistics> stages = new EnumMap<Stage, StageStatistics>(Stage.class);
+    private long bytesRead;
+    private long bytesWritten;
+    private long resetTime;
+
+    private ConversionStatistics() {
+        reset();
+    }
+
+    public static ConversionStatistics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Discard all values and restart the elapsed time.
+     */
+    public synchronized void reset() {
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, new StageStatistics());
+        }
+        bytesRead = 0;
+        bytesWritten = 0;
+        resetTime = System.nanoTime();
+    }
+
+    /**
+     * Start timing a stage of the caption processed by the current thread.
+     * @param stage Stage
+     * @return Timer to end at the end of the stage
+     */
+    public StageTimer start(Stage stage) {
+        return new StageTimer(stage);
+    }
+
+    /**
+     * Add the time spent on one frame.
+     * @param stage     Stage
+     * @param startTime Value of System.nanoTime() when the stage was started
+     */
+    public void addFrame(Stage stage, long startTime) {
+        addTime(stage, System.nanoTime() - startTime, 1, true);
+    }
+
+    /**
+     * Add the time spent on several frames at once, e.g. parsing a whole stream. No per frame latency is recorded.
+     * @param stage     Stage
+     * @param startTime Value of System.nanoTime() when the stage was started
+     * @param frames    Number of frames
+     */
+    public void addFrames(Stage stage, long startTime, int frames) {
+        addTime(stage, System.nanoTime() - startTime, frames, false);
+    }
+
+    private synchronized void addTime(Stage stage, long time, int frames, boolean latency) {
+        stages.get(stage).add(time, frames, latency);
+    }
+
+    /**
+     * Time of one stage, added to the statistics and committed as Flight Recorder event when the stage ends.
+     * The time of stages nested in this one is not counted, the Flight Recorder event covers it though.
+     */
+    public final class StageTimer {
+        private final Stage stage;
+        private final long startTime;
+        private final ConversionEvents.StageEvent event;
+        /** Enclosing timer running on the same thread, null if none */
+        private final StageTimer parent;
+        /** Time of the nested stages */
+        private long nestedTime;
+
+        private StageTimer(Stage stage) {
+            this.stage = stage;
+            parent = currentTimer.get();
+            currentTimer.set(this);
+            startTime = System.nanoTime();
+            event = ConversionEvents.begin(stage);
+        }
+
+        /**
+         * End the stage of one frame.
+         * @param width  Width of the bitmap processed, 0 if none
+         * @param height Height of the bitmap processed, 0 if none
+         * @param bytes  Number of bytes read or written, 0 if none
+         */
+        public void end(int width, int height, long bytes) {
+            addTime(stage, stop(), 1, true);
+            event.commit(width, height, bytes);
+        }
+
+        /**
+         * End the stage of several frames at once, e.g. parsing a whole stream. No per frame latency is recorded.
+         * @param frames Number of frames
+         * @param bytes  Number of bytes read or written, 0 if none
+         */
+        public void endFrames(int frames, long bytes) {
+            addTime(stage, stop(), frames, false);
+            event.commit(0, 0, bytes);
+        }
+
+        /**
+         * @return Time of this stage without the nested stages
+         */
+        private long stop() {
+            long time = System.nanoTime() - startTime;
+            if (parent != null) {
+                parent.nestedTime += time;
+            }
+            currentTimer.set(parent);
+            return time - nestedTime;
+        }
+    }
+
+    public synchronized void addBytesRead(long bytes) {
+        bytesRead += bytes;
+    }
+
+    public synchronized void addBytesWritten(long bytes) {
+        bytesWritten += bytes;
+    }
+
+    public synchronized long getTime(Stage stage) {
+        return stages.get(stage).time;
+    }
+
+    public synchronized int getFrames(Stage stage) {
+        return stages.get(stage).frames;
+    }
+
+    /**
+     * @param stage      Stage
+     * @param percentile Percentile 0..100
+     * @return Per frame latency in ns (nearest rank), 0 if no latency was recorded
+     */
+    public synchronized long getLatency(Stage stage, double percentile) {
+        return stages.get(stage).getLatency(percentile);
+    }
+
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return All values as JSON object, times in milliseconds
+     */
+    public synchronized String toJson() {
+        long elapsed = System.nanoTime() - resetTime;
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n");
+        sb.append("  \"elapsedMs\": ").append(formatMillis(elapsed)).append(",\n");
+        sb.append("  \"bytesRead\": ").append(bytesRead).append(",\n");
+        sb.append("  \"bytesWritten\": ").append(bytesWritten).append(",\n");
+        sb.append("  \"stages\": {");
+        boolean first = true;
+        for (Map.Entry<Stage, StageStatistics> entry : stages.entrySet()) {
+            StageStatistics s = entry.getValue();
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append("    \"").append(entry.getKey().name().toLowerCase(Locale.US)).append("\": {");
+            sb.append("\"frames\": ").append(s.frames);
+            sb.append(", \"timeMs\": ").append(formatMillis(s.time));
+            sb.append(", \"framesPerSecond\": ").append(s.time > 0 ? String.format(Locale.US, "%.1f", s.frames * 1e9 / s.time) : "0");
+            if (s.latencyCount > 0) {
+                sb.append(", \"p50Ms\": ").append(formatMillis(s.getLatency(50)));
+                sb.append(", \"p99Ms\": ").append(formatMillis(s.getLatency(99)));
+            }
+            sb.append("}");
+        }
+        sb.append("\n  }\n}");
+        return sb.toString();
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1e6);
+    }
+
+    private static final class StageStatistics {
+        long time;
+        int frames;
+        long[] latencies = new long[64];
+        int latencyCount;
+        /** number of latencies offered, latencyCount is limited to MAX_LATENCIES */
+        long latencySamples;
+        final Random random = new Random(0);
+
+        void add(long time, int frames, boolean latency) {
+            this.time += time;
+            this.frames += frames;
+            if (latency) {
+                latencySamples++;
+                if (latencyCount < MAX_LATENCIES) {
+                    if (latencyCount == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, latencyCount * 2);
+                    }
+                    latencies[latencyCount++] = time;
+                } else {
+                    // reservoir sampling: replace a random entry with probability MAX_LATENCIES / latencySamples
+                    long pos = (long) (random.nextDouble() * latencySamples);
+                    if (pos < MAX_LATENCIES) {
+                        latencies[(int) pos] = time;
+                    }
+                }
+            }
+        }
+
+        long getLatency(double percentile) {
+            if (latencyCount == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(latencies, latencyCount);
+            Arrays.sort(sorted);
+            int rank = (int) Math.ceil(percentile / 100 * latencyCount);
+            return sorted[Math.max(rank - 1, 0)];
+        }
+    }
+}
@@ -26,22 +26,30 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
-import javax.swing.*;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
 import bdsup2sub.bitmap.Bitmap;
 import bdsup2sub.bitmap.BitmapWithPalette;
 import bdsup2sub.bitmap.ErasePatch;
 import bdsup2sub.bitmap.Palette;
-import bdsup2sub.gui.support.Progress;
 import bdsup2sub.supstream.SubPicture;
 import bdsup2sub.supstream.SubtitleStream;
+import bdsup2sub.supstream.TimeRangeSubtitleStream;
+import bdsup2sub.supstream.TimelineIndex;
 import bdsup2sub.supstream.bd.SupBD;
 import bdsup2sub.supstream.bd.SupBDWriter;
+import bdsup2sub.supstream.bdnxml.SubPictureXml;
 import bdsup2sub.supstream.bdnxml.SupXml;
+import bdsup2sub.supstream.bdnxml.SupXmlWriter;
 import bdsup2sub.supstream.dvd.DvdSubtitleStream;
 import bdsup2sub.supstream.dvd.IfoWriter;
 import bdsup2sub.supstream.dvd.SubDvd;
@@ -51,7 +59,8 @@ import bdsup2sub.supstream.dvd.SupDvd;
 import bdsup2sub.supstream.dvd.SupDvdUtil;
 import bdsup2sub.supstream.dvd.SupDvdWriter;
 import bdsup2sub.supstream.hd.SupHD;
-import bdsup2sub.tools.EnhancedPngEncoder;
+import bdsup2sub.tools.PngWriterPool;
+import bdsup2sub.utils.FileUtils;
 import bdsup2sub.utils.FilenameUtils;
 import bdsup2sub.utils.SubtitleUtils;
 import bdsup2sub.utils.ToolBox;
@@ -61,10 +70,11 @@ import com.mortennobel.imagescaling.ResampleFilter;
  * This class contains the core functionality of BDSup2Sub.<br>
  * It's meant to be used from the command line as well as from the GUI.
  */
-public class Core extends Thread {
+public class Core {
 
     private static final Configuration configuration = Configuration.getInstance();
     private static final Logger logger = Logger.getInstance();
+    private static final ConversionStatistics statistics = ConversionStatistics.getInstance();
 
     /** Enumeration of functionalities executed in the started thread */
     private enum RunType {
@@ -129,6 +139,10 @@ public class Core extends Thread {
     private static SupDvd supDVD;
     /** Used for common handling of either SUPs */
     private static SubtitleStream subtitleStream;
+    /** Index over the caption times of the loaded stream */
+    private static TimelineIndex timelineIndex;
+    /** Captions of the loaded stream in the selected time range, null if the whole stream is processed */
+    private static TimeRangeSubtitleStream timeRange;
 
     /** Array of subpictures used for editing and export */
     private static SubPicture[] subPictures;
@@ -142,52 +156,64 @@ public class Core extends Thread {
     /** Full filename of current source SUP (needed for thread) */
     private static String fileName;
 
-    /** Progress dialog for loading/exporting */
-    private static Progress progress;
-    /** Maximum absolute value for progress bar */
-    private static int progressMax;
-    /** Last relative value for progress bar */
-    private static int progressLast;
+    /** Maximum absolute value of the progress of the current operation */
+    private static volatile long progressMax;
+    /** Progress of the current operation in percent */
+    private static final AtomicInteger progressPercent = new AtomicInteger();
+    /** Notified when the progress percentage grows */
+    private static final List<ProgressListener> progressListeners = new CopyOnWriteArrayList<ProgressListener>();
 
-    /** Functionality executed in the started thread */
-    private static RunType runType;
     /** Thread state */
-    private static CoreThreadState state = CoreThreadState.INACTIVE;
-    /** Used to store exception thrown in the thread */
-    private static Exception threadException;
+    private static volatile CoreThreadState state = CoreThreadState.INACTIVE;
     /** Semaphore to disable actions while changing component properties */
     private static volatile boolean ready;
     /** Semaphore for synchronization */
     private static final Object semaphore = new Object();
 
-    /** Thread used for threaded import/export. */
-    @Override
-    public void run() {
+    /**
+     * Run an operation in a new thread while the progress view is shown.
+     * @param runType Operation
+     * @param view    Progress view
+     * @throws Exception Exception thrown by the operation
+     */
+    private static void runThreaded(final RunType runType, ProgressView view) throws Exception {
+        FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                switch (runType) {
+                    case CREATESUB:
+                        writeSub(fileName);
+                        break;
+                    case READSUP:
+                        readSup(fileName);
+                        break;
+                    case READVOBSUB:
+                        readVobSub(fileName);
+                        break;
+                    case READSUPIFO:
+                        readSupIfo(fileName);
+                        break;
+                    case READXML:
+                        readXml(fileName);
+                        break;
+                    case MOVEALL:
+                        moveAllToBounds();
+                        break;
+                }
+                return null;
+            }
+        });
         state = CoreThreadState.ACTIVE;
-        threadException = null;
         try {
-            switch (runType) {
-                case CREATESUB:
-                    writeSub(fileName);
-                    break;
-                case READSUP:
-                    readSup(fileName);
-                    break;
-                case READVOBSUB:
-                    readVobSub(fileName);
-                    break;
-                case READSUPIFO:
-                    readSupIfo(fileName);
-                    break;
-                case READXML:
-                    readXml(fileName);
-                    break;
-                case MOVEALL:
-                    moveAllToBounds();
-                    break;
+            new Thread(task, "Core").start();
+            view.showProgress(task);
+            task.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
             }
-        } catch (Exception ex) {
-            threadException = ex;
+            throw new CoreException(cause.toString());
         } finally {
             state = CoreThreadState.INACTIVE;
         }
@@ -240,21 +266,19 @@ public class Core extends Thread {
     /**
      * Read a subtitle stream in a thread and display the progress dialog.
      * @param fname		File name of subtitle stream to read
-     * @param parent	Parent frame (needed for progress dialog)
+     * @param view	Progress view (e.g. progress dialog)
      * @param sid       stream identifier
      * @throws Exception
      */
-    public static void readStreamThreaded(String fname, JFrame parent, StreamID sid) throws Exception {
+    public static void readStreamThreaded(String fname, ProgressView view, StreamID sid) throws Exception {
         boolean xml = FilenameUtils.getExtension(fname).equalsIgnoreCase("xml");
         boolean idx = FilenameUtils.getExtension(fname).equalsIgnoreCase("idx");
         boolean ifo = FilenameUtils.getExtension(fname).equalsIgnoreCase("ifo");
 
         fileName = fname;
-        progressMax = (int)(new File(fname)).length();
-        progressLast = 0;
-        progress = new Progress(parent);
-        progress.setTitle("Loading");
-        progress.setText("Loading subtitle stream");
+        view.setTitle("Loading");
+        view.setText("Loading subtitle stream");
+        RunType runType;
         if (xml || sid == StreamID.XML) {
             runType = RunType.READXML;
         } else if (idx || sid == StreamID.DVDSUB || sid == StreamID.IDX) {
@@ -272,61 +296,29 @@ public class Core extends Thread {
 
         configuration.setCurrentStreamID(sid);
 
-        // start thread
-        Thread t = new Thread(new Core());
-        t.start();
-        progress.setVisible(true);
-        while (t.isAlive()) {
-            try  {
-                Thread.sleep(500);
-            } catch (InterruptedException ex) {
-            }
-        }
-        state = CoreThreadState.INACTIVE;
-        Exception ex = threadException;
-        if (ex != null) {
-            throw ex;
-        }
+        runThreaded(runType, view);
     }
 
     /**
      * Write a VobSub or BD-SUP in a thread and display the progress dialog.
      * @param fname		File name of subtitle stream to create
-     * @param parent	Parent frame (needed for progress dialog)
+     * @param view	Progress view (e.g. progress dialog)
      * @throws Exception
      */
-    public static void createSubThreaded(String fname, JFrame parent) throws Exception {
+    public static void createSubThreaded(String fname, ProgressView view) throws Exception {
         fileName = fname;
-        progressMax = subtitleStream.getFrameCount();
-        progressLast = 0;
-        progress = new Progress(parent);
-        progress.setTitle("Exporting");
+        view.setTitle("Exporting");
         OutputMode outputMode = configuration.getOutputMode();
         if (outputMode == OutputMode.VOBSUB) {
-            progress.setText("Exporting SUB/IDX");
+            view.setText("Exporting SUB/IDX");
         } else if (outputMode == OutputMode.BDSUP) {
-            progress.setText("Exporting SUP(BD)");
+            view.setText("Exporting SUP(BD)");
         } else if (outputMode == OutputMode.XML) {
-            progress.setText("Exporting XML/PNG");
+            view.setText("Exporting XML/PNG");
         } else {
-            progress.setText("Exporting SUP/IFO");
-        }
-        runType = RunType.CREATESUB;
-        // start thread
-        Thread t = new Thread(new Core());
-        t.start();
-        progress.setVisible(true);
-        while (t.isAlive()) {
-            try  {
-                Thread.sleep(500);
-            } catch (InterruptedException ex) {
-            }
-        }
-        state = CoreThreadState.INACTIVE;
-        Exception ex = threadException;
-        if (ex != null) {
-            throw ex;
+            view.setText("Exporting SUP/IFO");
         }
+        runThreaded(RunType.CREATESUB, view);
     }
 
     /**
@@ -393,8 +385,8 @@ public class Core extends Thread {
                 substreamDvd = supDVD;
             }
 
-            alpha = substreamDvd.getFrameAlpha(index);
-            palFrame = substreamDvd.getFramePalette(index);
+            alpha = substreamDvd.getFrameAlpha(getSourceIndex(index));
+            palFrame = substreamDvd.getFramePalette(getSourceIndex(index));
 
             for (int i=0; i < 4; i++) {
                 int a = (alpha[i]*0xff)/0xf;
@@ -418,6 +410,7 @@ public class Core extends Thread {
      */
     public static void readSup(String fname) throws CoreException {
         logger.info("Loading " + fname + "\n");
+        startProgress(new File(fname).length());
         logger.resetErrorCounter();
         logger.resetWarningCounter();
 
@@ -436,6 +429,8 @@ public class Core extends Thread {
             subtitleStream.close();
         }
 
+        statistics.reset();
+        ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.PARSE);
         // check first two byte to determine whether this is a BD-SUP or HD-DVD-SUP
         byte id[] = ToolBox.getFileID(fname, 2);
         if (id != null && id[0] == 0x50 && id[1] == 0x47) {
@@ -449,6 +444,11 @@ public class Core extends Thread {
             supBD = null;
             inMode = InputMode.HDDVDSUP;
         }
+        long bytes = new File(fname).length();
+        statistics.addBytesRead(bytes);
+        timer.endFrames(subtitleStream.getFrameCount(), bytes);
+        timelineIndex = TimelineIndex.create(subtitleStream);
+        timeRange = null;
 
         // decode first frame
         subtitleStream.decode(0);
@@ -488,6 +488,7 @@ public class Core extends Thread {
      */
     public static void readXml(String fname) throws CoreException {
         logger.info("Loading " + fname + "\n");
+        startProgress(new File(fname).length());
         logger.resetErrorCounter();
         logger.resetWarningCounter();
 
@@ -496,10 +497,17 @@ public class Core extends Thread {
             subtitleStream.close();
         }
 
+        statistics.reset();
+        ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.PARSE);
         supXml = new SupXml(fname);
         subtitleStream = supXml;
+        long bytes = new File(fname).length();
+        statistics.addBytesRead(bytes);
+        timer.endFrames(subtitleStream.getFrameCount(), bytes);
 
         inMode = InputMode.XML;
+        timelineIndex = TimelineIndex.create(subtitleStream);
+        timeRange = null;
 
         // decode first frame
         subtitleStream.decode(0);
@@ -559,6 +567,7 @@ public class Core extends Thread {
      */
     private static void readDVDSubstream(String fname, boolean isVobSub) throws CoreException {
         logger.info("Loading " + fname + "\n");
+        startProgress(new File(fname).length());
         logger.resetErrorCounter();
         logger.resetWarningCounter();
 
@@ -571,6 +580,9 @@ public class Core extends Thread {
         String fnI;
         String fnS;
 
+        statistics.reset();
+        ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.PARSE);
+
         if (isVobSub) {
             // SUB/IDX
             if (configuration.getCurrentStreamID() == StreamID.DVDSUB) {
@@ -598,6 +610,11 @@ public class Core extends Thread {
             inMode = InputMode.SUPIFO;
             substreamDvd = supDVD;
         }
+        long bytes = new File(fnS).length() + new File(fnI).length();
+        statistics.addBytesRead(bytes);
+        timer.endFrames(subtitleStream.getFrameCount(), bytes);
+        timelineIndex = TimelineIndex.create(subtitleStream);
+        timeRange = null;
 
         // decode first frame
         subtitleStream.decode(0);
@@ -788,9 +805,18 @@ public class Core extends Thread {
     /**
      * Create a copy of the loaded subpicture information frames.<br>
      * Apply scaling and speedup/delay to the copied frames.<br>
-     * Sync frames to target fps.
+     * Sync frames to target fps.<br>
+     * Restrict the loaded stream to the captions in the selected time range.
      */
     public static void scanSubtitles() {
+        if (configuration.hasTimeRange() && timeRange == null) {
+            long from = configuration.getTimeRangeStartPTS();
+            long to = configuration.getTimeRangeEndPTS();
+            timeRange = new TimeRangeSubtitleStream(subtitleStream, timelineIndex, from, to);
+            subtitleStream = timeRange;
+            logger.info("Time range " + ptsToTimeStr(from) + " - " + (to == Long.MAX_VALUE ? "end" : ptsToTimeStr(to))
+                    + ": " + timeRange.getFrameCount() + " of " + timelineIndex.size() + " captions\n");
+        }
         boolean convertFPS = configuration.getConvertFPS();
         subPictures = new SubPicture[subtitleStream.getFrameCount()];
         double factTS = convertFPS ? configuration.getFPSSrc() / configuration.getFpsTrg() : 1.0;
@@ -1110,18 +1136,72 @@ public class Core extends Thread {
      * @throws CoreException
      */
     private static void convertSup(int index, int displayNum, int displayMax, boolean skipScaling) throws CoreException{
-        int w,h;
+        boolean dvdPalette = isDvdOutputMode(configuration.getOutputMode());
+        // decode and scale in one go, the scaling works on the bitmap decoded last
+        synchronized (semaphore) {
+            decodeSup(index, displayNum, displayMax, skipScaling, dvdPalette);
+            if (!skipScaling) {
+                scaleSup(index, dvdPalette);
+            }
+        }
+    }
+
+    /**
+     * Convert a caption and take a snapshot of its source and target image for display.
+     * Other threads converting captions at the same time don't mix up the snapshot.
+     * @param index Index of subtitle to convert
+     * @return Snapshot of the converted caption
+     * @throws CoreException
+     */
+    public static RenderedCaption renderCaption(int index) throws CoreException {
+        synchronized (semaphore) {
+            convertSup(index, index + 1, getNumFrames());
+            RenderedCaption caption = new RenderedCaption(index);
+            caption.srcImage = subtitleStream.getImage();
+            caption.srcInfo = getSrcInfoStr(index);
+            caption.trgImage = trgBitmap.getImage(trgPal.getColorModel());
+            caption.trgInfo = getTrgInfoStr(index);
+            SubPicture picTrg = subPictures[index];
+            caption.trgWidth = picTrg.getWidth();
+            caption.trgHeight = picTrg.getHeight();
+            caption.trgImgWidth = picTrg.getImageWidth();
+            caption.trgImgHeight = picTrg.getImageHeight();
+            caption.trgOfsX = picTrg.getXOffset();
+            caption.trgOfsY = picTrg.getYOffset();
+            caption.trgExcluded = picTrg.isExcluded();
+            return caption;
+        }
+    }
+
+    /**
+     * Decode source subpicture and update size and position of target subpicture.
+     * @param index			Index of subtitle to decode
+     * @param displayNum	Subtitle number to display (needed for forced subs)
+     * @param displayMax	Maximum subtitle number to display (needed for forced subs)
+     * @param skipScaling   true: the bitmap is not scaled afterwards (used for moving captions)
+     * @param needsFramePal true: determine the 4 color frame palette for DVD export
+     * @throws CoreException
+     */
+    private static void decodeSup(int index, int displayNum, int displayMax, boolean skipScaling, boolean needsFramePal) throws CoreException{
         int startOfs = (int) subtitleStream.getStartOffset(index);
-        SubPicture subPic = subtitleStream.getSubPicture(index);
+        ConversionEvents.setCaptionIndex(index);
 
-        logger.info("Decoding frame " + displayNum + "/" + displayMax + ((subtitleStream == supXml) ? "\n" : (" at offset " + ToolBox.toHexLeftZeroPadded(startOfs, 8) + "\n")));
+        logger.info("Decoding frame " + displayNum + "/" + displayMax + ((inMode == InputMode.XML) ? "\n" : (" at offset " + ToolBox.toHexLeftZeroPadded(startOfs, 8) + "\n")));
 
         synchronized (semaphore) {
-            subtitleStream.decode(index);
-            w = subPic.getImageWidth();
-            h = subPic.getImageHeight();
-            OutputMode outputMode = configuration.getOutputMode();
-            if (outputMode == OutputMode.VOBSUB || outputMode == OutputMode.SUPIFO) {
+            // moving a caption only needs its size and offsets, the pixels are decoded again later
+            boolean boundsOnly = skipScaling && !needsFramePal && inMode == InputMode.XML;
+            if (!boundsOnly || !supXml.decodeBounds(getSourceIndex(index))) {
+                ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.DECODE);
+                subtitleStream.decode(index);
+                long bytes = 0;
+                if (inMode == InputMode.XML) {
+                    bytes = new File(((SubPictureXml) subtitleStream.getSubPicture(index)).getFileName()).length();
+                    statistics.addBytesRead(bytes);
+                }
+                timer.end(subtitleStream.getBitmap().getWidth(), subtitleStream.getBitmap().getHeight(), bytes);
+            }
+            if (needsFramePal) {
                 determineFramePal(index);
             }
             updateTrgPic(index);
@@ -1129,6 +1209,22 @@ public class Core extends Thread {
         SubPicture picTrg = subPictures[index];
         picTrg.setWasDecoded(true);
 
+        if (configuration.isCliMode()) {
+            moveToBounds(picTrg, displayNum, configuration.getCineBarFactor(), configuration.getMoveOffsetX(), configuration.getMoveOffsetY(), configuration.getMoveModeX(), configuration.getMoveModeY(), configuration.getCropOffsetY());
+        }
+    }
+
+    /**
+     * Scale the last decoded source bitmap to the size of the target subpicture and convert its palette.
+     * @param index         Index of decoded subtitle
+     * @param dvdPalette    true: create 4 color bitmap for DVD export, false: (up to) 256 color bitmap
+     */
+    private static void scaleSup(int index, boolean dvdPalette) {
+        ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.SCALE);
+        SubPicture subPic = subtitleStream.getSubPicture(index);
+        SubPicture picTrg = subPictures[index];
+        int w = subPic.getImageWidth();
+        int h = subPic.getImageHeight();
         int trgWidth = picTrg.getImageWidth();
         int trgHeight = picTrg.getImageHeight();
         if (trgWidth < MIN_IMAGE_DIMENSION || trgHeight < MIN_IMAGE_DIMENSION || w < MIN_IMAGE_DIMENSION || h < MIN_IMAGE_DIMENSION) {
@@ -1137,111 +1233,163 @@ public class Core extends Thread {
             trgHeight = h;
         }
 
-        if (!skipScaling) {
-            ResampleFilter f;
-            switch (configuration.getScalingFilter()) {
-                case BELL:
-                    f = getBellFilter();
-                    break;
-                case BICUBIC:
-                    f = getBiCubicFilter();
-                    break;
-                case BICUBIC_SPLINE:
-                    f = getBSplineFilter();
-                    break;
-                case HERMITE:
-                    f = getHermiteFilter();
-                    break;
-                case LANCZOS3:
-                    f = getLanczos3Filter();
-                    break;
-                case TRIANGLE:
-                    f = getTriangleFilter();
-                    break;
-                case MITCHELL:
-                    f = getMitchellFilter();
-                    break;
-                default:
-                    f = null;
-            }
-
-            Bitmap tBm;
-            Palette tPal = trgPal;
-            // create scaled bitmap
-            OutputMode outputMode = configuration.getOutputMode();
-            PaletteMode paletteMode = configuration.getPaletteMode();
-            if (outputMode == OutputMode.VOBSUB || outputMode == OutputMode.SUPIFO) {
-                // export 4 color palette
-                if (w==trgWidth && h==trgHeight) {
-                    // don't scale at all
-                    if ( (inMode == InputMode.VOBSUB || inMode == InputMode.SUPIFO) && paletteMode == PaletteMode.KEEP_EXISTING) {
-                        tBm = subtitleStream.getBitmap(); // no conversion
+        ResampleFilter f;
+        switch (configuration.getScalingFilter()) {
+            case BELL:
+                f = getBellFilter();
+                break;
+            case BICUBIC:
+                f = getBiCubicFilter();
+                break;
+            case BICUBIC_SPLINE:
+                f = getBSplineFilter();
+                break;
+            case HERMITE:
+                f = getHermiteFilter();
+                break;
+            case LANCZOS3:
+                f = getLanczos3Filter();
+                break;
+            case TRIANGLE:
+                f = getTriangleFilter();
+                break;
+            case MITCHELL:
+                f = getMitchellFilter();
+                break;
+            default:
+                f = null;
+        }
+        boolean fixedPoint = configuration.getScalingFilter() == ScalingFilter.BILINEAR_FIXED_POINT;
+
+        Bitmap tBm;
+        Palette tPal = trgPal;
+        // create scaled bitmap
+        PaletteMode paletteMode = configuration.getPaletteMode();
+        if (dvdPalette) {
+            // export 4 color palette
+            if (w==trgWidth && h==trgHeight) {
+                // don't scale at all
+                if ( (inMode == InputMode.VOBSUB || inMode == InputMode.SUPIFO) && paletteMode == PaletteMode.KEEP_EXISTING) {
+                    tBm = subtitleStream.getBitmap(); // no conversion
+                } else {
+                    tBm = subtitleStream.getBitmap().getBitmapWithNormalizedPalette(subtitleStream.getPalette().getAlpha(), configuration.getAlphaThreshold(), subtitleStream.getPalette().getY(), configuration.getLuminanceThreshold()); // reduce palette
+                }
+            } else {
+                // scale up/down
+                if ((inMode == InputMode.VOBSUB || inMode == InputMode.SUPIFO) && paletteMode == PaletteMode.KEEP_EXISTING) {
+                    // keep palette
+                    if (f != null) {
+                        tBm = subtitleStream.getBitmap().scaleFilter(trgWidth, trgHeight, subtitleStream.getPalette(), f);
+                    } else if (fixedPoint) {
+                        tBm = subtitleStream.getBitmap().scaleBilinearFixedPoint(trgWidth, trgHeight, subtitleStream.getPalette());
                     } else {
-                        tBm = subtitleStream.getBitmap().getBitmapWithNormalizedPalette(subtitleStream.getPalette().getAlpha(), configuration.getAlphaThreshold(), subtitleStream.getPalette().getY(), configuration.getLuminanceThreshold()); // reduce palette
+                        tBm = subtitleStream.getBitmap().scaleBilinear(trgWidth, trgHeight, subtitleStream.getPalette());
                     }
                 } else {
-                    // scale up/down
-                    if ((inMode == InputMode.VOBSUB || inMode == InputMode.SUPIFO) && paletteMode == PaletteMode.KEEP_EXISTING) {
-                        // keep palette
-                        if (f != null) {
-                            tBm = subtitleStream.getBitmap().scaleFilter(trgWidth, trgHeight, subtitleStream.getPalette(), f);
-                        } else {
-                            tBm = subtitleStream.getBitmap().scaleBilinear(trgWidth, trgHeight, subtitleStream.getPalette());
-                        }
+                    // reduce palette
+                    if (f != null) {
+                        tBm = subtitleStream.getBitmap().scaleFilterLm(trgWidth, trgHeight, subtitleStream.getPalette(), configuration.getAlphaThreshold(), configuration.getLuminanceThreshold(), f);
+                    } else if (fixedPoint) {
+                        tBm = subtitleStream.getBitmap().scaleBilinearFixedPointLm(trgWidth, trgHeight, subtitleStream.getPalette(), configuration.getAlphaThreshold(), configuration.getLuminanceThreshold());
                     } else {
-                        // reduce palette
-                        if (f != null) {
-                            tBm = subtitleStream.getBitmap().scaleFilterLm(trgWidth, trgHeight, subtitleStream.getPalette(), configuration.getAlphaThreshold(), configuration.getLuminanceThreshold(), f);
-                        } else {
-                            tBm = subtitleStream.getBitmap().scaleBilinearLm(trgWidth, trgHeight, subtitleStream.getPalette(), configuration.getAlphaThreshold(), configuration.getLuminanceThreshold());
-                        }
+                        tBm = subtitleStream.getBitmap().scaleBilinearLm(trgWidth, trgHeight, subtitleStream.getPalette(), configuration.getAlphaThreshold(), configuration.getLuminanceThreshold());
                     }
                 }
+            }
+        } else {
+            // export (up to) 256 color palette
+            tPal = subtitleStream.getPalette();
+            if (w==trgWidth && h==trgHeight) {
+                tBm = subtitleStream.getBitmap(); // no scaling, no conversion
             } else {
-                // export (up to) 256 color palette
-                tPal = subtitleStream.getPalette();
-                if (w==trgWidth && h==trgHeight) {
-                    tBm = subtitleStream.getBitmap(); // no scaling, no conversion
+                // scale up/down
+                if (paletteMode == PaletteMode.KEEP_EXISTING) {
+                    // keep palette
+                    if (f != null) {
+                        tBm = subtitleStream.getBitmap().scaleFilter(trgWidth, trgHeight, subtitleStream.getPalette(), f);
+                    } else if (fixedPoint) {
+                        tBm = subtitleStream.getBitmap().scaleBilinearFixedPoint(trgWidth, trgHeight, subtitleStream.getPalette());
+                    } else {
+                        tBm = subtitleStream.getBitmap().scaleBilinear(trgWidth, trgHeight, subtitleStream.getPalette());
+                    }
                 } else {
-                    // scale up/down
-                    if (paletteMode == PaletteMode.KEEP_EXISTING) {
-                        // keep palette
-                        if (f != null) {
-                            tBm = subtitleStream.getBitmap().scaleFilter(trgWidth, trgHeight, subtitleStream.getPalette(), f);
-                        } else {
-                            tBm = subtitleStream.getBitmap().scaleBilinear(trgWidth, trgHeight, subtitleStream.getPalette());
-                        }
+                    // create new palette
+                    boolean dither = paletteMode == PaletteMode.CREATE_DITHERED;
+                    BitmapWithPalette pb;
+                    if (f != null) {
+                        pb = subtitleStream.getBitmap().scaleFilter(trgWidth, trgHeight, subtitleStream.getPalette(), f, dither);
+                    } else if (fixedPoint) {
+                        pb = subtitleStream.getBitmap().scaleBilinearFixedPoint(trgWidth, trgHeight, subtitleStream.getPalette(), dither);
                     } else {
-                        // create new palette
-                        boolean dither = paletteMode == PaletteMode.CREATE_DITHERED;
-                        BitmapWithPalette pb;
-                        if (f != null) {
-                            pb = subtitleStream.getBitmap().scaleFilter(trgWidth, trgHeight, subtitleStream.getPalette(), f, dither);
-                        } else {
-                            pb = subtitleStream.getBitmap().scaleBilinear(trgWidth, trgHeight, subtitleStream.getPalette(), dither);
-                        }
-                        tBm = pb.bitmap;
-                        tPal = pb.palette;
+                        pb = subtitleStream.getBitmap().scaleBilinear(trgWidth, trgHeight, subtitleStream.getPalette(), dither);
                     }
+                    tBm = pb.bitmap;
+                    tPal = pb.palette;
                 }
             }
-            if (!picTrg.getErasePatch().isEmpty()) {
-                trgBitmapUnpatched = new Bitmap(tBm);
-                int col = tPal.getIndexOfMostTransparentPaletteEntry();
-                for (ErasePatch ep : picTrg.getErasePatch()) {
-                    tBm.fillRectangularWithColorIndex(ep.x, ep.y, ep.width, ep.height, (byte)col);
-                }
-            } else {
-                trgBitmapUnpatched = tBm;
+        }
+        if (!picTrg.getErasePatch().isEmpty()) {
+            trgBitmapUnpatched = new Bitmap(tBm);
+            int col = tPal.getIndexOfMostTransparentPaletteEntry();
+            for (ErasePatch ep : picTrg.getErasePatch()) {
+                tBm.fillRectangularWithColorIndex(ep.x, ep.y, ep.width, ep.height, (byte)col);
             }
-            trgBitmap = tBm;
-            trgPal = tPal;
-
+        } else {
+            trgBitmapUnpatched = tBm;
         }
+        trgBitmap = tBm;
+        trgPal = tPal;
+        timer.end(tBm.getWidth(), tBm.getHeight(), 0);
+    }
 
-        if (configuration.isCliMode()) {
-            moveToBounds(picTrg, displayNum, configuration.getCineBarFactor(), configuration.getMoveOffsetX(), configuration.getMoveOffsetY(), configuration.getMoveModeX(), configuration.getMoveModeY(), configuration.getCropOffsetY());
+    /**
+     * Get the source caption of an Xml to Xml conversion if its PNG file can be reused as it is,
+     * i.e. the caption is neither scaled nor patched nor moved on export.
+     * @param index Index of caption
+     * @return Source caption or null if the caption has to be converted
+     */
+    private static SubPictureXml getUnchangedXmlSubPicture(int index) {
+        if (inMode != InputMode.XML || configuration.getXmlPngCopyMode() == XmlPngCopyMode.ENCODE) {
+            return null;
         }
+        SubPictureXml picSrc = (SubPictureXml) subtitleStream.getSubPicture(index);
+        SubPicture picTrg = subPictures[index];
+        if (picTrg.getWidth() != picSrc.getWidth() || picTrg.getHeight() != picSrc.getHeight()) {
+            return null;
+        }
+        if (configuration.getApplyFreeScale() && (configuration.getFreeScaleFactorX() != 1.0 || configuration.getFreeScaleFactorY() != 1.0)) {
+            return null;
+        }
+        if (!picTrg.getErasePatch().isEmpty()) {
+            return null;
+        }
+        if (configuration.isCliMode() && (configuration.getMoveModeX() != CaptionMoveModeX.KEEP_POSITION || configuration.getMoveModeY() != CaptionMoveModeY.KEEP_POSITION)) {
+            return null;
+        }
+        return picSrc;
+    }
+
+    /**
+     * Copy or link the PNG file of an unchanged Xml caption.
+     * @param picSrc Source caption
+     * @param picTrg Target caption holding the (possibly retimed) caption to export
+     * @param fname  File name of PNG to create
+     * @return Caption to write to the Xml, describing the uncropped source image at the target position
+     * @throws IOException
+     */
+    private static SubPicture copyXmlPng(SubPictureXml picSrc, SubPicture picTrg, String fname) throws IOException {
+        if (configuration.getXmlPngCopyMode() == XmlPngCopyMode.LINK) {
+            FileUtils.linkOrCopyFile(new File(picSrc.getFileName()), new File(fname));
+        } else {
+            FileUtils.copyFile(new File(picSrc.getFileName()), new File(fname));
+        }
+        // decoding crops the source image, keep any offset applied on top of that
+        SubPicture pic = new SubPicture(picTrg);
+        pic.setImageWidth(picSrc.getOriginalImageWidth());
+        pic.setImageHeight(picSrc.getOriginalImageHeight());
+        pic.setOfsX(picSrc.getOriginalXOffset() + picTrg.getXOffset() - picSrc.getXOffset());
+        pic.setOfsY(picSrc.getOriginalYOffset() + picTrg.getYOffset() - picSrc.getYOffset());
+        return pic;
     }
 
     /**
@@ -1250,14 +1398,22 @@ public class Core extends Thread {
      * @throws CoreException
      */
     public static void writeSub(String fname) throws CoreException {
-        BufferedOutputStream out = null;
-        List<Integer> offsets = null;
-        List<Integer> timestamps = null;
-        SortedMap<Integer, SubPicture> exportedSubPictures = new TreeMap<Integer, SubPicture>();
-        int frameNum = 0;
-        String fn = "";
+        Map<OutputMode, String> outputs = new EnumMap<OutputMode, String>(OutputMode.class);
+        outputs.put(configuration.getOutputMode(), fname);
+        writeSub(outputs);
+    }
+
+    /**
+     * Create several of BD-SUP, VobSub, SUP/IFO and Xml in one pass.<br>
+     * Each caption is decoded once, then scaled once for all DVD outputs (4 color palette)
+     * and once for all BD outputs (up to 256 colors).
+     * @param outputs File name of SUP/SUB/XML to create for each output mode
+     * @throws CoreException
+     */
+    public static void writeSub(Map<OutputMode, String> outputs) throws CoreException {
         logger.resetErrorCounter();
         logger.resetWarningCounter();
+        startProgress(subtitleStream.getFrameCount());
 
         List<Integer> subPicturesToBeExported = getSubPicturesToBeExported();
 
@@ -1266,28 +1422,28 @@ public class Core extends Thread {
             return;
         }
 
-        OutputMode outputMode = configuration.getOutputMode();
+        // DVD outputs first: scaling for them relies on the frame palette determined while decoding
+        List<ExportTarget> dvdTargets = new ArrayList<ExportTarget>();
+        List<ExportTarget> bdTargets = new ArrayList<ExportTarget>();
+        ExportTarget xmlTarget = null;
         try {
-            // handle file name extensions depending on mode
-            if (outputMode == OutputMode.VOBSUB) {
-                fname = FilenameUtils.removeExtension(fname) + ".sub";
-                out = new BufferedOutputStream(new FileOutputStream(fname));
-                offsets = new ArrayList<Integer>();
-                timestamps = new ArrayList<Integer>();
-            } else if (outputMode == OutputMode.SUPIFO) {
-                fname = FilenameUtils.removeExtension(fname) + ".sup";
-                out = new BufferedOutputStream(new FileOutputStream(fname));
-            } else if (outputMode == OutputMode.BDSUP) {
-                fname = FilenameUtils.removeExtension(fname) + ".sup";
-                out = new BufferedOutputStream(new FileOutputStream(fname));
-            } else {
-                fn = FilenameUtils.removeExtension(fname);
-                fname = fn + ".xml";
+            for (Map.Entry<OutputMode, String> output : outputs.entrySet()) {
+                ExportTarget target = new ExportTarget(output.getKey(), output.getValue());
+                if (isDvdOutputMode(target.mode)) {
+                    dvdTargets.add(target);
+                } else {
+                    bdTargets.add(target);
+                }
+                if (target.mode == OutputMode.XML) {
+                    xmlTarget = target;
+                }
+                logger.info("\nWriting " + target.fname + "\n");
+                target.open(subPicturesToBeExported);
             }
-            logger.info("\nWriting " + fname + "\n");
 
             // main loop
-            int offset = 0;
+            int frameNum = 0;
+            int numFrames = subPicturesToBeExported.size();
             for (int i : subPicturesToBeExported) {
                 // for threaded version
                 if (isCanceled()) {
@@ -1295,128 +1451,259 @@ public class Core extends Thread {
                 }
                 // for threaded version (progress bar);
                 setProgress(i);
-
-                SubPicture subPicture = subPictures[i];
-                if (outputMode == OutputMode.VOBSUB) {
-                    offsets.add(offset);
-                    convertSup(i, frameNum/2+1, subPicturesToBeExported.size());
-                    subVobTrg.copyInfo(subPicture);
-                    byte buf[] = SubDvdWriter.createSubFrame(subVobTrg, trgBitmap);
-                    out.write(buf);
-                    offset += buf.length;
-                    timestamps.add((int) subPicture.getStartTime());
-                } else if (outputMode == OutputMode.SUPIFO) {
-                    convertSup(i, frameNum/2+1, subPicturesToBeExported.size());
-                    subVobTrg.copyInfo(subPicture);
-                    byte buf[] = SupDvdWriter.createSupFrame(subVobTrg, trgBitmap);
-                    out.write(buf);
-                } else if (outputMode == OutputMode.BDSUP) {
-                    subPicture.setCompositionNumber(frameNum);
-                    convertSup(i, frameNum/2+1, subPicturesToBeExported.size());
-                    byte buf[] = SupBDWriter.createSupFrame(subPicture, trgBitmap, trgPal);
-                    out.write(buf);
-                } else {
-                    // Xml
-                    convertSup(i, frameNum/2+1, subPicturesToBeExported.size());
-                    String fnp = SupXml.getPNGname(fn, i+1);
-                    //File file = new File(fnp);
-                    //ImageIO.write(trgBitmap.getImage(trgPal), "png", file);
-                    out = new BufferedOutputStream(new FileOutputStream(fnp));
-                    EnhancedPngEncoder pngEncoder= new EnhancedPngEncoder(trgBitmap.getImage(trgPal.getColorModel()));
-                    byte buf[] = pngEncoder.pngEncode();
-                    out.write(buf);
-                    out.close();
-                    exportedSubPictures.put(i, subPicture);
+                ConversionEvents.setCaptionIndex(i);
+
+                SubPictureXml picSrc = xmlTarget != null ? getUnchangedXmlSubPicture(i) : null;
+                boolean convertBD = bdTargets.size() > (picSrc != null ? 1 : 0);
+                // decode, scale and write in one go as in convertSup, the scaling works on the bitmap decoded last
+                synchronized (semaphore) {
+                    if (!dvdTargets.isEmpty() || convertBD) {
+                        decodeSup(i, frameNum/2+1, numFrames, false, !dvdTargets.isEmpty());
+                    }
+                    if (!dvdTargets.isEmpty()) {
+                        scaleSup(i, true);
+                        for (ExportTarget target : dvdTargets) {
+                            target.writeFrame(i, frameNum);
+                        }
+                    }
+                    if (convertBD) {
+                        scaleSup(i, false);
+                        for (ExportTarget target : bdTargets) {
+                            if (target != xmlTarget || picSrc == null) {
+                                target.writeFrame(i, frameNum);
+                            }
+                        }
+                    }
+                }
+                if (picSrc != null) {
+                    logger.info("Copying frame " + (frameNum/2+1) + "/" + numFrames + "\n");
+                    xmlTarget.copyFrame(i, picSrc);
                 }
                 frameNum+=2;
             }
+            for (ExportTarget target : dvdTargets) {
+                target.finish();
+            }
+            for (ExportTarget target : bdTargets) {
+                target.finish();
+            }
         } catch (IOException ex) {
             throw new CoreException(ex.getMessage());
         } finally {
-            try {
-                if (out != null) {
-                    out.close();
-                }
-            } catch (IOException ex) {
+            ConversionEvents.setCaptionIndex(-1);
+            for (ExportTarget target : dvdTargets) {
+                target.close();
             }
+            for (ExportTarget target : bdTargets) {
+                target.close();
+            }
+        }
+
+        for (ExportTarget target : dvdTargets) {
+            writeDvdPalette(target);
+        }
+        if (xmlTarget != null) {
+            statistics.addBytesWritten(new File(xmlTarget.fname).length());
         }
 
+        state = CoreThreadState.FINISHED;
+    }
+
+    /**
+     * Write the IDX or IFO file and the optional PGCEdit palette of a DVD output.
+     * @param target Finished DVD output
+     * @throws CoreException
+     */
+    private static void writeDvdPalette(ExportTarget target) throws CoreException {
         boolean importedDVDPalette = (inMode == InputMode.VOBSUB) || (inMode == InputMode.SUPIFO);
 
-        Palette trgPallete = null;
+        Palette trgPallete;
         PaletteMode paletteMode = configuration.getPaletteMode();
-        if (outputMode == OutputMode.VOBSUB) {
+        if (!importedDVDPalette || paletteMode != PaletteMode.KEEP_EXISTING) {
+            trgPallete = currentDVDPalette;
+        } else {
+            trgPallete = currentSourceDVDPalette;
+        }
+        String fname;
+        if (target.mode == OutputMode.VOBSUB) {
             // VobSub - write IDX
             /* return offsets as array of ints */
-            int[] ofs = new int[offsets.size()];
+            int[] ofs = new int[target.offsets.size()];
             for (int i=0; i < ofs.length; i++) {
-                ofs[i] = offsets.get(i);
+                ofs[i] = target.offsets.get(i);
             }
-            int[] ts = new int[timestamps.size()];
+            int[] ts = new int[target.timestamps.size()];
             for (int i=0; i < ts.length; i++) {
-                ts[i] = timestamps.get(i);
+                ts[i] = target.timestamps.get(i);
             }
-            fname = FilenameUtils.removeExtension(fname) + ".idx";
+            fname = target.fn + ".idx";
             logger.info("\nWriting " + fname + "\n");
-            if (!importedDVDPalette || paletteMode != PaletteMode.KEEP_EXISTING) {
-                trgPallete = currentDVDPalette;
-            } else {
-                trgPallete = currentSourceDVDPalette;
-            }
             SubDvdWriter.writeIdx(fname, subPictures[0], ofs, ts, trgPallete);
-        } else if (outputMode == OutputMode.XML) {
-            // XML - write XML
-            logger.info("\nWriting " + fname + "\n");
-            SupXml.writeXml(fname, exportedSubPictures);
-        } else if (outputMode == OutputMode.SUPIFO) {
+        } else {
             // SUP/IFO - write IFO
-            if (!importedDVDPalette || paletteMode != PaletteMode.KEEP_EXISTING) {
-                trgPallete = currentDVDPalette;
-            } else {
-                trgPallete = currentSourceDVDPalette;
-            }
-            fname = FilenameUtils.removeExtension(fname) + ".ifo";
+            fname = target.fn + ".ifo";
             logger.info("\nWriting " + fname + "\n");
             IfoWriter.writeIFO(fname, subPictures[0].getHeight(), trgPallete);
         }
+        statistics.addBytesWritten(new File(fname).length());
 
         // only possible for SUB/IDX and SUP/IFO (else there is no public palette)
-        if (trgPallete != null && configuration.getWritePGCEditPalette()) {
-            String fnp = FilenameUtils.removeExtension(fname) + ".txt";
+        if (configuration.getWritePGCEditPalette()) {
+            String fnp = target.fn + ".txt";
             logger.info("\nWriting " + fnp + "\n");
             writePGCEditPal(fnp, trgPallete);
         }
-
-        state = CoreThreadState.FINISHED;
     }
 
     /**
-     * Move all subpictures into or outside given bounds in a thread and display the progress dialog.
-     * @param parent	Parent frame (needed for progress dialog)
-     * @throws Exception
+     * Output of writeSub: the files and writer state of one output mode.
      */
-    public static void moveAllThreaded(JFrame parent) throws Exception {
-        progressMax = subtitleStream.getFrameCount();
-        progressLast = 0;
-        progress = new Progress(parent);
-        progress.setTitle("Moving");
-        progress.setText("Moving all captions");
-        runType = RunType.MOVEALL;
-        // start thread
-        Thread t = new Thread(new Core());
-        t.start();
-        progress.setVisible(true);
-        while (t.isAlive()) {
-            try  {
-                Thread.sleep(500);
-            } catch (InterruptedException ex) {
+    private static final class ExportTarget {
+        final OutputMode mode;
+        /** File name without extension */
+        final String fn;
+        /** File name of SUP/SUB/XML */
+        final String fname;
+
+        private BufferedOutputStream out;
+        private WritableByteChannel channel;
+        private SubDvdWriter subDvdWriter;
+        private SupDvdWriter supDvdWriter;
+        private SupBDWriter supBDWriter;
+        private SupXmlWriter xmlWriter;
+        private PngWriterPool pngWriterPool;
+        /** VobSub: offsets and time stamps of the frames for the IDX */
+        private List<Integer> offsets;
+        private List<Integer> timestamps;
+        private int offset;
+
+        ExportTarget(OutputMode mode, String fname) {
+            this.mode = mode;
+            fn = FilenameUtils.removeExtension(fname);
+            // handle file name extensions depending on mode
+            if (mode == OutputMode.VOBSUB) {
+                this.fname = fn + ".sub";
+            } else if (mode == OutputMode.SUPIFO || mode == OutputMode.BDSUP) {
+                this.fname = fn + ".sup";
+            } else {
+                this.fname = fn + ".xml";
+            }
+        }
+
+        void open(List<Integer> subPicturesToBeExported) throws IOException, CoreException {
+            if (mode == OutputMode.XML) {
+                // events are written as soon as the captions are converted
+                xmlWriter = SupXml.openXml(fname, subPictures[subPicturesToBeExported.get(0)],
+                        subPictures[subPicturesToBeExported.get(subPicturesToBeExported.size() - 1)], subPicturesToBeExported.size());
+                pngWriterPool = new PngWriterPool(Runtime.getRuntime().availableProcessors(),
+                        configuration.getPngCompressionLevel(), configuration.getPngCompressionStrategy().getDeflaterStrategy());
+                return;
+            }
+            out = new BufferedOutputStream(new FileOutputStream(fname));
+            channel = Channels.newChannel(out);
+            if (mode == OutputMode.VOBSUB) {
+                subDvdWriter = new SubDvdWriter();
+                offsets = new ArrayList<Integer>();
+                timestamps = new ArrayList<Integer>();
+            } else if (mode == OutputMode.SUPIFO) {
+                supDvdWriter = new SupDvdWriter();
+            } else {
+                supBDWriter = new SupBDWriter();
+            }
+        }
+
+        /**
+         * Write the converted caption held in trgBitmap/trgPal.
+         * @param index    Index of caption
+         * @param frameNum Composition number
+         * @throws IOException
+         */
+        void writeFrame(int index, int frameNum) throws IOException {
+            SubPicture subPicture = subPictures[index];
+            if (mode == OutputMode.VOBSUB) {
+                offsets.add(offset);
+                subVobTrg.copyInfo(subPicture);
+                offset += subDvdWriter.writeSubFrame(subVobTrg, trgBitmap, channel);
+                timestamps.add((int) subPicture.getStartTime());
+            } else if (mode == OutputMode.SUPIFO) {
+                subVobTrg.copyInfo(subPicture);
+                supDvdWriter.writeSupFrame(subVobTrg, trgBitmap, channel);
+            } else if (mode == OutputMode.BDSUP) {
+                subPicture.setCompositionNumber(frameNum);
+                supBDWriter.writeSupFrame(subPicture, trgBitmap, trgPal, channel);
+            } else {
+                // copies: the target bitmap may be shared with the subtitle stream and patched in place
+                pngWriterPool.submit(new Bitmap(trgBitmap), new Palette(trgPal), SupXml.getPNGname(fn, index+1));
+                xmlWriter.writeEvent(subPicture, SupXml.getPNGname(FilenameUtils.getName(fn), index+1));
+            }
+        }
+
+        /**
+         * Xml: copy the PNG of an unchanged caption instead of writing the converted caption.
+         * @param index  Index of caption
+         * @param picSrc Source caption
+         * @throws IOException
+         */
+        void copyFrame(int index, SubPictureXml picSrc) throws IOException {
+            ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.WRITE);
+            xmlWriter.writeEvent(copyXmlPng(picSrc, subPictures[index], SupXml.getPNGname(fn, index+1)),
+                    SupXml.getPNGname(FilenameUtils.getName(fn), index+1));
+            long bytes = 0;
+            if (configuration.getXmlPngCopyMode() != XmlPngCopyMode.LINK) {
+                bytes = new File(picSrc.getFileName()).length();
+                statistics.addBytesWritten(bytes);
             }
+            timer.end(picSrc.getImageWidth(), picSrc.getImageHeight(), bytes);
         }
-        state = CoreThreadState.INACTIVE;
-        Exception ex = threadException;
-        if (ex != null) {
-            throw ex;
+
+        void finish() throws IOException {
+            if (pngWriterPool != null) {
+                pngWriterPool.finish();
+            }
+            if (xmlWriter != null) {
+                xmlWriter.finish();
+            }
         }
+
+        /**
+         * Close all files, also after an error.
+         */
+        void close() {
+            try {
+                if (out != null) {
+                    out.close();
+                }
+            } catch (IOException ex) {
+            }
+            try {
+                if (xmlWriter != null) {
+                    xmlWriter.close();
+                }
+            } catch (IOException ex) {
+            }
+            if (pngWriterPool != null) {
+                pngWriterPool.shutdown();
+            }
+        }
+    }
+
+    /**
+     * @param outputMode Output mode
+     * @return True if the output mode is a DVD format using a 4 color palette
+     */
+    private static boolean isDvdOutputMode(OutputMode outputMode) {
+        return outputMode == OutputMode.VOBSUB || outputMode == OutputMode.SUPIFO;
+    }
+
+    /**
+     * Move all subpictures into or outside given bounds in a thread and display the progress dialog.
+     * @param view	Progress view (e.g. progress dialog)
+     * @throws Exception
+     */
+    public static void moveAllThreaded(ProgressView view) throws Exception {
+        view.setTitle("Moving");
+        view.setText("Moving all captions");
+        runThreaded(RunType.MOVEALL, view);
     }
 
     /**
@@ -1457,6 +1744,7 @@ public class Core extends Thread {
 
         if (!configuration.isCliMode()) {
             // in CLI mode, moving is done during export
+            startProgress(subPictures.length);
             for (int idx=0; idx<subPictures.length; idx++) {
                 setProgress(idx);
                 if (!subPictures[idx].isWasDecoded()) {
@@ -1596,6 +1884,15 @@ public class Core extends Thread {
         return n;
     }
 
+    /**
+     * Get index of caption in the loaded stream.
+     * @param index Index of caption
+     * @return Index of caption in the loaded stream
+     */
+    private static int getSourceIndex(int index) {
+        return timeRange != null ? timeRange.getSourceIndex(index) : index;
+    }
+
     /**
      * Return indexes of subpictures to be exported.
      * @return indexes of subpictures to be exported
@@ -1651,30 +1948,50 @@ public class Core extends Thread {
     }
 
     /**
-     * Set progress in progress bar.
-     * @param p Subtitle index processed
+     * Set the progress of the current operation and notify the listeners if the percentage grew.
+     * @param p Progress relative to the maximum (e.g. subtitle index processed)
      */
     public static void setProgress(long p) {
-        if (progress != null) {
-            final int val = (int)((p * 100) / progressMax);
-            if (val > progressLast) {
-                progressLast = val;
-                try {
-                    SwingUtilities.invokeAndWait(new Runnable() {
-                        @Override
-                        public void run() {
-                            progress.setProgress(val);
-                        }
-                    });
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                } catch (InvocationTargetException e) {
-                    e.printStackTrace();
+        long max = progressMax;
+        if (max > 0) {
+            int percent = (int) Math.min(100, p * 100 / max);
+            int last = progressPercent.get();
+            if (percent > last && progressPercent.compareAndSet(last, percent)) {
+                for (ProgressListener listener : progressListeners) {
+                    listener.progressChanged(percent);
                 }
             }
         }
     }
 
+    /**
+     * Get the progress of the current operation.
+     * @return Progress in percent
+     */
+    public static int getProgress() {
+        return progressPercent.get();
+    }
+
+    /**
+     * Start a new operation with no progress yet.
+     * @param max Maximum absolute value of the progress (e.g. file size or number of captions)
+     */
+    private static void startProgress(long max) {
+        progressMax = max;
+        progressPercent.set(0);
+    }
+
+    /**
+     * @param listener Listener notified about the progress of loading, exporting and moving captions
+     */
+    public static void addProgressListener(ProgressListener listener) {
+        progressListeners.add(listener);
+    }
+
+    public static void removeProgressListener(ProgressListener listener) {
+        progressListeners.remove(listener);
+    }
+
     /**
      * Get input mode.
      * @return Current input mode
@@ -1706,6 +2023,36 @@ public class Core extends Thread {
         }
     }
 
+    /**
+     * Get a downscaled source image, e.g. for a thumbnail. The caption is decoded with decodePreview, so the
+     * caption being converted or displayed is not affected. Only decoding holds the lock, so several threads
+     * can scale their images at the same time.
+     * @param idx       Index of subtitle
+     * @param maxWidth  Maximum width of the image
+     * @param maxHeight Maximum height of the image
+     * @return Source image scaled to fit into maxWidth x maxHeight, keeping the aspect ratio
+     * @throws CoreException
+     */
+    public static BufferedImage getSrcThumbnail(int idx, int maxWidth, int maxHeight) throws CoreException {
+        BitmapWithPalette image;
+        // the stream is not thread safe, but the current frame and the caption are left untouched
+        synchronized (semaphore) {
+            image = subtitleStream.decodePreview(idx);
+        }
+        Bitmap bitmap = image.bitmap;
+        Palette palette = image.palette;
+        int w = bitmap.getWidth();
+        int h = bitmap.getHeight();
+        double factor = Math.min(1.0, Math.min((double) maxWidth / w, (double) maxHeight / h));
+        // bilinear scaling needs at least 2 pixels in each direction
+        if (factor < 1.0 && w >= 2 && h >= 2) {
+            int trgWidth = Math.max(2, (int) (w * factor));
+            int trgHeight = Math.max(2, (int) (h * factor));
+            bitmap = bitmap.scaleBilinear(trgWidth, trgHeight, palette);
+        }
+        return bitmap.getImage(palette.getColorModel());
+    }
+
     /**
      * Get target image as BufferedImage.
      * @return Target image as BufferedImage
@@ -1910,11 +2257,11 @@ public class Core extends Thread {
     }
 
     /**
-     * Set internal maximum for progress bar.
-     * @param max Internal maximum for progress bar (e.g. number of subtitles)
+     * Set the maximum of the progress and restart it at 0.
+     * @param max Maximum absolute value of the progress (e.g. number of subtitles)
      */
     public static void setProgressMax(int max) {
-        progressMax = max;
+        startProgress(max);
     }
 
     /**
@@ -1965,7 +2312,7 @@ public class Core extends Thread {
         }
 
         if (substreamDvd != null) {
-            return substreamDvd.getFramePalette(index);
+            return substreamDvd.getFramePalette(getSourceIndex(index));
         } else {
             return null;
         }
@@ -1986,7 +2333,7 @@ public class Core extends Thread {
         }
 
         if (substreamDvd != null) {
-            return substreamDvd.getFrameAlpha(index);
+            return substreamDvd.getFrameAlpha(getSourceIndex(index));
         } else {
             return null;
         }
@@ -2007,7 +2354,7 @@ public class Core extends Thread {
         }
 
         if (substreamDvd != null) {
-            return substreamDvd.getOriginalFramePalette(index);
+            return substreamDvd.getOriginalFramePalette(getSourceIndex(index));
         } else {
             return null;
         }
@@ -2028,7 +2375,7 @@ public class Core extends Thread {
         }
 
         if (substreamDvd != null) {
-            return substreamDvd.getOriginalFrameAlpha(index);
+            return substreamDvd.getOriginalFrameAlpha(getSourceIndex(index));
         } else {
             return null;
         }
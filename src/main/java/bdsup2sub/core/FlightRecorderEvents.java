@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import jdk.jfr.*;
+
+import java.util.Locale;
+
+/**
+ * Flight Recorder event types. Only loaded by {@link ConversionEvents} if the JVM supports Flight Recorder.
+ */
+final class FlightRecorderEvents {
+
+    private FlightRecorderEvents() {
+    }
+
+    static ConversionEvents.StageEvent begin(ConversionStatistics.Stage stage, int captionIndex) {
+        FrameEvent event;
+        switch (stage) {
+            case PARSE:
+                event = new ParseEvent();
+                break;
+            case DECODE:
+                event = new DecodeEvent();
+                break;
+            case SCALE:
+                event = new ScaleEvent();
+                break;
+            case QUANTIZE:
+                event = new QuantizeEvent();
+                break;
+            case ENCODE:
+                event = new EncodeEvent();
+                break;
+            default:
+                event = new WriteEvent();
+                break;
+        }
+        event.stage = stage.name().toLowerCase(Locale.US);
+        event.captionIndex = captionIndex;
+        event.begin();
+        return event;
+    }
+
+    static ConversionEvents.SegmentEvent beginSegment() {
+        ParseSegmentEvent event = new ParseSegmentEvent();
+        event.begin();
+        return event;
+    }
+
+    static void cacheAccess(String cache, int captionIndex, boolean hit) {
+        CacheAccessEvent event = new CacheAccessEvent();
+        if (event.isEnabled()) {
+            event.cache = cache;
+            event.captionIndex = captionIndex;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    @Category({"BDSup2Sub", "Conversion"})
+    @StackTrace(false)
+    abstract static class FrameEvent extends Event implements ConversionEvents.StageEvent {
+        @Label("Caption Index")
+        int captionIndex;
+
+        @Label("Stage")
+        String stage;
+
+        @Label("Width")
+        int width;
+
+        @Label("Height")
+        int height;
+
+        @Label("Bytes")
+        @DataAmount
+        long bytes;
+
+        public void commit(int width, int height, long bytes) {
+            end();
+            if (shouldCommit()) {
+                this.width = width;
+                this.height = height;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+    @Name("bdsup2sub.Parse")
+    @Label("Parse Stream")
+    static final class ParseEvent extends FrameEvent {
+    }
+
+    @Name("bdsup2sub.Decode")
+    @Label("Decode Caption")
+    static final class DecodeEvent extends FrameEvent {
+    }
+
+    @Name("bdsup2sub.Scale")
+    @Label("Scale Caption")
+    static final class ScaleEvent extends FrameEvent {
+    }
+
+    @Name("bdsup2sub.Quantize")
+    @Label("Quantize Caption")
+    static final class QuantizeEvent extends FrameEvent {
+    }
+
+    @Name("bdsup2sub.Encode")
+    @Label("Encode Caption")
+    static final class EncodeEvent extends FrameEvent {
+    }
+
+    @Name("bdsup2sub.Write")
+    @Label("Write Caption")
+    static final class WriteEvent extends FrameEvent {
+    }
+
+    @Name("bdsup2sub.ParseSegment")
+    @Label("Parse Segment")
+    @Category({"BDSup2Sub", "Conversion"})
+    @StackTrace(false)
+    static final class ParseSegmentEvent extends Event implements ConversionEvents.SegmentEvent {
+        @Label("Offset")
+        long offset;
+
+        @Label("Type")
+        String type;
+
+        @Label("Size")
+        @DataAmount
+        int size;
+
+        @Label("Caption Index")
+        int captionIndex;
+
+        public void commit(long offset, String type, int size, int captionIndex) {
+            end();
+            if (shouldCommit()) {
+                this.offset = offset;
+                this.type = type;
+                this.size = size;
+                this.captionIndex = captionIndex;
+                commit();
+            }
+        }
+    }
+
+    @Name("bdsup2sub.CacheAccess")
+    @Label("Cache Access")
+    @Category({"BDSup2Sub", "Cache"})
+    @StackTrace(false)
+    static final class CacheAccessEvent extends Event {
+        @Label("Cache")
+        String cache;
+
+        @Label("Caption Index")
+        int captionIndex;
+
+        @Label("Hit")
+        boolean hit;
+    }
+}
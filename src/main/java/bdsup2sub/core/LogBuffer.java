@@ -0,0 +1,125 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded lock-free queue of log messages. Any thread may add messages without blocking, adding fails if
+ * the buffer is full. Messages are taken out in batches by {@link #drainTo}.
+ * <p>
+ * Each slot carries a sequence number telling whether it is free for the writer of a given position or
+ * filled for the reader of it (D. Vyukov's bounded queue), so writers and readers only contend on one CAS.
+ */
+public final class LogBuffer {
+
+    private final int mask;
+    private final AtomicReferenceArray<String> messages;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * @param capacity Maximum number of messages buffered, rounded up to a power of two
+     */
+    public LogBuffer(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mask = size - 1;
+        messages = new AtomicReferenceArray<String>(size);
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int getCapacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Add a message.
+     * @param message Message
+     * @return False if the buffer was full and the message was not added
+     */
+    public boolean offer(String message) {
+        long pos = tail.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    messages.lazySet(index, message);
+                    sequences.set(index, pos + 1);
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * Take the oldest message.
+     * @return Oldest message, null if the buffer is empty
+     */
+    public String poll() {
+        long pos = head.get();
+        while (true) {
+            int index = (int) (pos & mask);
+            long diff = sequences.get(index) - (pos + 1);
+            if (diff == 0) {
+                if (head.compareAndSet(pos, pos + 1)) {
+                    String message = messages.get(index);
+                    messages.lazySet(index, null);
+                    sequences.set(index, pos + mask + 1);
+                    return message;
+                }
+                pos = head.get();
+            } else if (diff < 0) {
+                return null;
+            } else {
+                pos = head.get();
+            }
+        }
+    }
+
+    /**
+     * Append the buffered messages in order, at most one buffer capacity so that a reader can't be kept
+     * busy by writers.
+     * @param buffer Buffer to append to
+     * @return Number of messages appended
+     */
+    public int drainTo(StringBuilder buffer) {
+        int count = 0;
+        String message;
+        while (count <= mask && (message = poll()) != null) {
+            buffer.append(message);
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,29 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+/**
+ * Destination of the messages of the {@link Logger}, e.g. the console of the main window. Messages arrive in
+ * batches, see {@link Logger#startFlushing(long, boolean)}.
+ */
+public interface LogSink {
+
+    /**
+     * Print a batch of messages. May be called from any thread.
+     * @param message One or more messages including line breaks
+     */
+    void print(String message);
+}
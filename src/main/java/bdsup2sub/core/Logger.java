@@ -15,19 +15,39 @@
  */
 package bdsup2sub.core;
 
-import bdsup2sub.gui.main.MainFrameView;
-
-import javax.swing.*;
-
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts and prints warnings and messages. Messages are queued in a bounded buffer and handed to the
+ * {@link LogSink} in batches, either right away or, after {@link #startFlushing(long, boolean)},
+ * periodically from a background thread so that verbose output can't flood the console. Messages that
+ * don't fit into the buffer are either dropped, with their number reported in the next batch, or printed
+ * by the logging thread.
+ */
 public final class Logger {
 
     private static final Configuration configuration = Configuration.getInstance();
+    private static final LogSink STDOUT_SINK = new LogSink() {
+        @Override
+        public void print(String message) {
+            System.out.print(message);
+            System.out.flush();
+        }
+    };
+    /** Maximum number of messages buffered between two batches */
+    private static final int BUFFER_SIZE = 8192;
     private static final Logger INSTANCE = new Logger();
 
     private int errorCount;
     private int warningCount;
 
-    private MainFrameView mainFrame;
+    private final LogBuffer buffer = new LogBuffer(BUFFER_SIZE);
+    private volatile LogSink sink = STDOUT_SINK;
+    private volatile Timer flushTimer;
+    private volatile boolean dropOnOverflow;
+    private final AtomicLong droppedCount = new AtomicLong();
 
     private Logger() {
     }
@@ -38,62 +58,84 @@ public final class Logger {
 
     public void warn(String message) {
         warningCount++;
-        final String msg = "WARNING: " + message;
-        if (mainFrame != null) {
-            SwingUtilities.invokeLater(new Runnable() {
-                @Override
-                public void run() {
-                    mainFrame.printToConsole(msg);
-                }
-            });
-        } else {
-            System.out.print(msg);
-        }
+        print("WARNING: " + message);
     }
 
     public void error(String message) {
         errorCount++;
-        final String msg = "ERROR: " + message;
-        if (mainFrame != null) {
-            SwingUtilities.invokeLater(new Runnable() {
-                @Override
-                public void run() {
-                    mainFrame.printToConsole(msg);
-                }
-            });
-        } else {
-            System.out.print(msg);
-        }
+        print("ERROR: " + message);
     }
 
     public void trace(String message) {
-        final String msg = message;
         if (configuration.isVerbose()) {
-            if (mainFrame != null) {
-                SwingUtilities.invokeLater(new Runnable() {
-                    @Override
-                    public void run() {
-                        mainFrame.printToConsole(msg);
-                    }
-                });
-            } else {
-                System.out.print(msg);
-            }
+            print(message);
         }
     }
 
     public void info(String message) {
-        final String msg = message;
-        if (mainFrame != null) {
-            SwingUtilities.invokeLater(new Runnable() {
+        print(message);
+    }
+
+    private void print(String message) {
+        while (!buffer.offer(message)) {
+            if (dropOnOverflow) {
+                droppedCount.incrementAndGet();
+                return;
+            }
+            flush();
+        }
+        if (flushTimer == null) {
+            flush();
+        }
+    }
+
+    /**
+     * Print the buffered messages as one batch.
+     */
+    public void flush() {
+        synchronized (buffer) {
+            StringBuilder batch = new StringBuilder();
+            buffer.drainTo(batch);
+            long dropped = droppedCount.getAndSet(0);
+            if (dropped > 0) {
+                batch.append("WARNING: ").append(dropped).append(" log messages dropped\n");
+            }
+            if (batch.length() > 0) {
+                sink.print(batch.toString());
+            }
+        }
+    }
+
+    /**
+     * Print the buffered messages periodically from a background thread instead of on every call.
+     * @param periodMillis   Time between two batches in milliseconds
+     * @param dropOnOverflow True to drop messages if the buffer is full (e.g. to keep the GUI responsive),
+     *                       false to print the buffered messages on the logging thread instead
+     */
+    public synchronized void startFlushing(long periodMillis, boolean dropOnOverflow) {
+        this.dropOnOverflow = dropOnOverflow;
+        if (flushTimer == null) {
+            Timer timer = new Timer("Logger", true);
+            timer.schedule(new TimerTask() {
                 @Override
                 public void run() {
-                    mainFrame.printToConsole(msg);
+                    flush();
                 }
-            });
-        } else {
-            System.out.print(msg);
+            }, periodMillis, periodMillis);
+            flushTimer = timer;
+        }
+    }
+
+    /**
+     * Stop printing in the background and print the remaining messages.
+     */
+    public synchronized void stopFlushing() {
+        if (flushTimer != null) {
+            flushTimer.cancel();
+            flushTimer = null;
         }
+        dropOnOverflow = false;
+        flush();
     }
 
     public int getErrorCount() {
@@ -113,6 +155,7 @@ public final class Logger {
     }
 
     public void printWarningsAndErrorsAndResetCounters() {
+        flush();
         if (warningCount + errorCount > 0) {
             String message = "";
             if (warningCount > 0) {
@@ -143,7 +186,11 @@ public final class Logger {
         resetErrorCounter();
     }
 
-    public void setMainFrame(MainFrameView mainFrame) {
-        this.mainFrame = mainFrame;
+    /**
+     * @param sink Destination of the message batches, null to print to stdout
+     */
+    public void setSink(LogSink sink) {
+        flush();
+        this.sink = sink != null ? sink : STDOUT_SINK;
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import java.util.zip.Deflater;
+
+/**
+ * Deflate strategy used for the PNG files of BDN XML exports.
+ */
+public enum PngCompressionStrategy {
+    DEFAULT(Deflater.DEFAULT_STRATEGY) {
+        @Override
+        public String toString() {
+            return "Default";
+        }
+    },
+    FILTERED(Deflater.FILTERED) {
+        @Override
+        public String toString() {
+            return "Filtered";
+        }
+    },
+    /** No string matching, fastest but largest */
+    HUFFMAN_ONLY(Deflater.HUFFMAN_ONLY) {
+        @Override
+        public String toString() {
+            return "Huffman";
+        }
+    };
+
+    private final int deflaterStrategy;
+
+    private PngCompressionStrategy(int deflaterStrategy) {
+        this.deflaterStrategy = deflaterStrategy;
+    }
+
+    public int getDeflaterStrategy() {
+        return deflaterStrategy;
+    }
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+/**
+ * Notified about the progress of loading, exporting or moving captions, see
+ * {@link Core#addProgressListener(ProgressListener)}.
+ */
+public interface ProgressListener {
+
+    /**
+     * Called from the thread doing the work each time the progress grows by at least one percent, so it
+     * must return quickly and must not wait for other threads (e.g. the EDT).
+     * @param percent Progress in percent
+     */
+    void progressChanged(int percent);
+}
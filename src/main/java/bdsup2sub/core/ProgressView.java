@@ -0,0 +1,35 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import java.util.concurrent.Future;
+
+/**
+ * Displays the progress of a threaded {@link Core} operation, e.g. a modal progress dialog. The view pulls
+ * the progress from {@link Core#getProgress()} at its own pace.
+ */
+public interface ProgressView {
+
+    void setTitle(String title);
+
+    void setText(String text);
+
+    /**
+     * Show the progress until the operation is done. Showing a modal view blocks until then.
+     * @param task Operation
+     */
+    void showProgress(Future<?> task);
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Snapshot of a converted caption for display, see {@link Core#renderCaption(int)}.
+ * Not changed by converting other captions, so it can be kept and shown later.
+ */
+public final class RenderedCaption {
+
+    private final int index;
+    BufferedImage srcImage;
+    String srcInfo;
+    BufferedImage trgImage;
+    String trgInfo;
+    int trgWidth;
+    int trgHeight;
+    int trgImgWidth;
+    int trgImgHeight;
+    int trgOfsX;
+    int trgOfsY;
+    boolean trgExcluded;
+
+    RenderedCaption(int index) {
+        this.index = index;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public BufferedImage getSrcImage() {
+        return srcImage;
+    }
+
+    public String getSrcInfoStr() {
+        return srcInfo;
+    }
+
+    public BufferedImage getTrgImage() {
+        return trgImage;
+    }
+
+    public String getTrgInfoStr() {
+        return trgInfo;
+    }
+
+    public int getTrgWidth() {
+        return trgWidth;
+    }
+
+    public int getTrgHeight() {
+        return trgHeight;
+    }
+
+    public int getTrgImgWidth() {
+        return trgImgWidth;
+    }
+
+    public int getTrgImgHeight() {
+        return trgImgHeight;
+    }
+
+    public int getTrgOfsX() {
+        return trgOfsX;
+    }
+
+    public int getTrgOfsY() {
+        return trgOfsY;
+    }
+
+    public boolean isTrgExcluded() {
+        return trgExcluded;
+    }
+}
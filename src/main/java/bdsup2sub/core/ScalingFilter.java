@@ -64,4 +64,11 @@ public enum ScalingFilter {
             return "Mitchell";
         }
     },
+    /** Bilinear filtering with fixed point integer arithmetic */
+    BILINEAR_FIXED_POINT {
+        @Override
+        public String toString() {
+            return "Bilinear-Fixed";
+        }
+    },
 }
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+/**
+ * Handling of PNG files whose captions are not changed when converting BDN XML to BDN XML.
+ * Copied or linked files are not cropped and keep palette entries below the alpha crop threshold.
+ */
+public enum XmlPngCopyMode {
+    /** Decode and encode every caption */
+    ENCODE {
+        @Override
+        public String toString() {
+            return "Encode";
+        }
+    },
+    /** Copy the source file */
+    COPY {
+        @Override
+        public String toString() {
+            return "Copy";
+        }
+    },
+    /** Hard link the source file if the file system allows, copy it otherwise */
+    LINK {
+        @Override
+        public String toString() {
+            return "Link";
+        }
+    },
+}
@@ -40,4 +40,8 @@ public class ConversionDialog {
     public void enableOptionMove(boolean enable) {
         view.enableOptionMove(enable);
     }
+
+    public void enableOptionRange(boolean enable) {
+        view.enableOptionRange(enable);
+    }
 }
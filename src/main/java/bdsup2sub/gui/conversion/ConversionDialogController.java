@@ -28,6 +28,8 @@ import java.awt.event.*;
 import static bdsup2sub.core.Configuration.*;
 import static bdsup2sub.core.Configuration.MAX_FREE_SCALE_FACTOR;
 import static bdsup2sub.core.Configuration.MIN_FREE_SCALE_FACTOR;
+import static bdsup2sub.gui.support.GuiUtils.*;
+import static bdsup2sub.utils.TimeUtils.timeStrToPTS;
 
 class ConversionDialogController {
 
@@ -69,6 +71,9 @@ class ConversionDialogController {
         view.addScaleYTextFieldDocumentListener(new ScaleYTextFieldDocumentListener());
 
         view.addForcedComboBoxItemListener(new ForcedComboBoxItemListener());
+
+        view.addRangeFromTextFieldDocumentListener(new RangeFromTextFieldDocumentListener());
+        view.addRangeToTextFieldDocumentListener(new RangeToTextFieldDocumentListener());
     }
 
     private class ConversionDialogListener extends WindowAdapter {
@@ -485,6 +490,11 @@ class ConversionDialogController {
         @Override
         public void actionPerformed(ActionEvent e) {
             if (model.isReady()) {
+                // time range, refuse an end at or before the start
+                if (!isTimeRangeValid()) {
+                    view.setRangeToTextFieldBackground(ERROR_BACKGROUND);
+                    return;
+                }
                 // fps source
                 model.setConvertFPSConf(model.getConvertFPS());
                 if (model.getConvertFPS()) {
@@ -547,6 +557,8 @@ class ConversionDialogController {
                 model.setCancel(false);
                 // forced state
                 model.setForcedStateConf(model.getForcedState());
+                // time range
+                model.setTimeRangeConf(model.getTimeRangeStartPTS(), model.getTimeRangeEndPTS());
                 // keep move settings
                 if (view.isMoveCheckBoxEnabled()) {
                     model.storeMoveCaptions();
@@ -663,4 +675,76 @@ class ConversionDialogController {
             }
         }
     }
+
+    private class RangeFromTextFieldDocumentListener implements DocumentListener {
+        private void check() {
+            if (model.isReady()) {
+                String s = view.getRangeFromTextFieldText().trim();
+                long t = s.isEmpty() ? 0 : timeStrToPTS(s);
+                if (t >= 0) {
+                    model.setTimeRangeStartPTS(t);
+                    view.setRangeFromTextFieldBackground(OK_BACKGROUND);
+                    checkRangeTo();
+                } else {
+                    view.setRangeFromTextFieldBackground(ERROR_BACKGROUND);
+                }
+            }
+        }
+
+        public void insertUpdate(DocumentEvent e) {
+            check();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            check();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            check();
+        }
+    }
+
+    /**
+     * Mark the "to" field as invalid if it can't be parsed or isn't after the "from" time.
+     */
+    private void checkRangeTo() {
+        String s = view.getRangeToTextFieldText().trim();
+        long t = s.isEmpty() ? Long.MAX_VALUE : timeStrToPTS(s);
+        if (t >= 0) {
+            model.setTimeRangeEndPTS(t);
+        }
+        if (t >= 0 && isTimeRangeValid()) {
+            view.setRangeToTextFieldBackground(OK_BACKGROUND);
+        } else {
+            view.setRangeToTextFieldBackground(ERROR_BACKGROUND);
+        }
+    }
+
+    private boolean isTimeRangeValid() {
+        return model.getTimeRangeEndPTS() > model.getTimeRangeStartPTS();
+    }
+
+    private class RangeToTextFieldDocumentListener implements DocumentListener {
+        private void check() {
+            if (model.isReady()) {
+                checkRangeTo();
+            }
+        }
+
+        public void insertUpdate(DocumentEvent e) {
+            check();
+        }
+
+        @Override
+        public void changedUpdate(DocumentEvent e) {
+            check();
+        }
+
+        @Override
+        public void removeUpdate(DocumentEvent e) {
+            check();
+        }
+    }
 }
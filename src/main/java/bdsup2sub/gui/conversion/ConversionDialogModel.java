@@ -39,6 +39,8 @@ class ConversionDialogModel {
     private boolean fpsSrcCertain;
     private ForcedFlagState forcedState;
     private boolean moveCaptions;
+    private long timeRangeStartPTS;
+    private long timeRangeEndPTS;
 
     private boolean cancel;
     private volatile boolean isReady;
@@ -67,6 +69,29 @@ class ConversionDialogModel {
         freeScaleFactorY = configuration.getFreeScaleFactorY();
         fpsSrcCertain = configuration.isFpsSrcCertain();
         forcedState = configuration.getForceAll();
+        timeRangeStartPTS = configuration.getTimeRangeStartPTS();
+        timeRangeEndPTS = configuration.getTimeRangeEndPTS();
+    }
+
+    public long getTimeRangeStartPTS() {
+        return timeRangeStartPTS;
+    }
+
+    public void setTimeRangeStartPTS(long timeRangeStartPTS) {
+        this.timeRangeStartPTS = timeRangeStartPTS;
+    }
+
+    public long getTimeRangeEndPTS() {
+        return timeRangeEndPTS;
+    }
+
+    public void setTimeRangeEndPTS(long timeRangeEndPTS) {
+        this.timeRangeEndPTS = timeRangeEndPTS;
+    }
+
+    public void setTimeRangeConf(long timeRangeStartPTS, long timeRangeEndPTS) {
+        configuration.setTimeRangeStartPTS(timeRangeStartPTS);
+        configuration.setTimeRangeEndPTS(timeRangeEndPTS);
     }
 
     public void storeConfig() {
@@ -34,6 +34,7 @@ import static bdsup2sub.core.Configuration.*;
 import static bdsup2sub.core.Configuration.MAX_FREE_SCALE_FACTOR;
 import static bdsup2sub.core.Configuration.MIN_FREE_SCALE_FACTOR;
 import static bdsup2sub.gui.support.GuiUtils.centerRelativeToOwner;
+import static bdsup2sub.utils.TimeUtils.ptsToTimeStr;
 
 class ConversionDialogView extends JDialog {
 
@@ -54,6 +55,9 @@ class ConversionDialogView extends JDialog {
     private JTextField jTextFieldDelay;
     private JCheckBox jCheckBoxFixMinTime;
     private JTextField jTextFieldMinTime;
+    private JPanel jPanelRange;
+    private JTextField jTextFieldRangeFrom;
+    private JTextField jTextFieldRangeTo;
     private JPanel jPanelDefaults;
     private JButton jButtonStore;
     private JButton jButtonRestore;
@@ -107,11 +111,14 @@ class ConversionDialogView extends JDialog {
         jTextFieldScaleY.setEnabled(model.getApplyFreeScale());
 
         jComboBoxForced.setSelectedIndex(model.getForcedState().ordinal());
+
+        jTextFieldRangeFrom.setText(model.getTimeRangeStartPTS() > 0 ? ptsToTimeStr(model.getTimeRangeStartPTS()) : "");
+        jTextFieldRangeTo.setText(model.getTimeRangeEndPTS() != Long.MAX_VALUE ? ptsToTimeStr(model.getTimeRangeEndPTS()) : "");
     }
 
     private void initialize() {
-        setSize(500, 350);
-        setPreferredSize(new Dimension(500, 350));
+        setSize(500, 400);
+        setPreferredSize(new Dimension(500, 400));
         setContentPane(getJContentPane());
         centerRelativeToOwner(this);
         setResizable(false);
@@ -408,6 +415,94 @@ class ConversionDialogView extends JDialog {
         return jPanelForced;
     }
 
+    private JPanel getJPanelRange() {
+        if (jPanelRange == null) {
+            GridBagConstraints gridBagLabelFrom = new GridBagConstraints();
+            gridBagLabelFrom.gridx = 0;
+            gridBagLabelFrom.gridy = 0;
+            gridBagLabelFrom.anchor = GridBagConstraints.WEST;
+            gridBagLabelFrom.insets = new Insets(2, 6, 2, 0);
+
+            GridBagConstraints gridBagTextFrom = new GridBagConstraints();
+            gridBagTextFrom.gridx = 1;
+            gridBagTextFrom.gridy = 0;
+            gridBagTextFrom.weightx = 1.0D;
+            gridBagTextFrom.anchor = GridBagConstraints.WEST;
+            gridBagTextFrom.insets = new Insets(2, 4, 2, 4);
+            gridBagTextFrom.ipadx = 100;
+
+            GridBagConstraints gridBagLabelTo = new GridBagConstraints();
+            gridBagLabelTo.gridx = 2;
+            gridBagLabelTo.gridy = 0;
+            gridBagLabelTo.anchor = GridBagConstraints.WEST;
+            gridBagLabelTo.insets = new Insets(2, 6, 2, 0);
+
+            GridBagConstraints gridBagTextTo = new GridBagConstraints();
+            gridBagTextTo.gridx = 3;
+            gridBagTextTo.gridy = 0;
+            gridBagTextTo.weightx = 1.0D;
+            gridBagTextTo.anchor = GridBagConstraints.WEST;
+            gridBagTextTo.insets = new Insets(2, 4, 2, 4);
+            gridBagTextTo.ipadx = 100;
+
+            jPanelRange = new JPanel();
+            jPanelRange.setLayout(new GridBagLayout());
+            jPanelRange.setBorder(BorderFactory.createTitledBorder(null, "Time Range", TitledBorder.DEFAULT_JUSTIFICATION, TitledBorder.DEFAULT_POSITION, new Font("Tahoma", Font.PLAIN, 11), new Color(0, 70, 213)));
+            jPanelRange.setMinimumSize(new Dimension(400, 50));
+            jPanelRange.setPreferredSize(new Dimension(400, 50));
+
+            JLabel label = new JLabel("From");
+            jPanelRange.add(label, gridBagLabelFrom);
+            jPanelRange.add(getJTextFieldRangeFrom(), gridBagTextFrom);
+            label = new JLabel("To");
+            jPanelRange.add(label, gridBagLabelTo);
+            jPanelRange.add(getJTextFieldRangeTo(), gridBagTextTo);
+        }
+        return jPanelRange;
+    }
+
+    private JTextField getJTextFieldRangeFrom() {
+        if (jTextFieldRangeFrom == null) {
+            jTextFieldRangeFrom = new JTextField();
+            jTextFieldRangeFrom.setPreferredSize(new Dimension(100, 20));
+            jTextFieldRangeFrom.setToolTipText("Process only captions ending after this time of the source stream (hh:mm:ss.ms), empty for start of stream");
+        }
+        return jTextFieldRangeFrom;
+    }
+
+    private JTextField getJTextFieldRangeTo() {
+        if (jTextFieldRangeTo == null) {
+            jTextFieldRangeTo = new JTextField();
+            jTextFieldRangeTo.setPreferredSize(new Dimension(100, 20));
+            jTextFieldRangeTo.setToolTipText("Process only captions starting before this time of the source stream (hh:mm:ss.ms), empty for end of stream");
+        }
+        return jTextFieldRangeTo;
+    }
+
+    void addRangeFromTextFieldDocumentListener(DocumentListener documentListener) {
+        jTextFieldRangeFrom.getDocument().addDocumentListener(documentListener);
+    }
+
+    void addRangeToTextFieldDocumentListener(DocumentListener documentListener) {
+        jTextFieldRangeTo.getDocument().addDocumentListener(documentListener);
+    }
+
+    String getRangeFromTextFieldText() {
+        return jTextFieldRangeFrom.getText();
+    }
+
+    String getRangeToTextFieldText() {
+        return jTextFieldRangeTo.getText();
+    }
+
+    void setRangeFromTextFieldBackground(Color color) {
+        jTextFieldRangeFrom.setBackground(color);
+    }
+
+    void setRangeToTextFieldBackground(Color color) {
+        jTextFieldRangeTo.setBackground(color);
+    }
+
     private JPanel getJPanelButtons() {
         if (jPanelButtons == null) {
             GridBagConstraints gridBagButtonCancel = new GridBagConstraints();
@@ -494,9 +589,18 @@ class ConversionDialogView extends JDialog {
             gridBagPanelDefaults.weighty = 1.0;
             gridBagPanelDefaults.fill = GridBagConstraints.BOTH;
 
+            GridBagConstraints gridBagPanelRange = new GridBagConstraints();
+            gridBagPanelRange.gridx = 0;
+            gridBagPanelRange.gridy = 4;
+            gridBagPanelRange.anchor = GridBagConstraints.NORTHWEST;
+            gridBagPanelRange.weightx = 1.0;
+            gridBagPanelRange.weighty = 1.0;
+            gridBagPanelRange.gridwidth = 2;
+            gridBagPanelRange.fill = GridBagConstraints.BOTH;
+
             GridBagConstraints gridBagPanelButtons = new GridBagConstraints();
             gridBagPanelButtons.gridx = 0;
-            gridBagPanelButtons.gridy = 4;
+            gridBagPanelButtons.gridy = 5;
             gridBagPanelButtons.anchor = GridBagConstraints.NORTHWEST;
             gridBagPanelButtons.weightx = 1.0;
             gridBagPanelButtons.weighty = 1.0;
@@ -513,6 +617,7 @@ class ConversionDialogView extends JDialog {
             jContentPane.add(getJPanelScale(), gridBagPanelScale);
             jContentPane.add(getJPanelForced(), gridBagPanelForced);
             jContentPane.add(getJPanelDefaults(), gridBagPanelDefaults);
+            jContentPane.add(getJPanelRange(), gridBagPanelRange);
             jContentPane.add(getJPanelButtons(), gridBagPanelButtons);
         }
         return jContentPane;
@@ -963,4 +1068,9 @@ class ConversionDialogView extends JDialog {
     public void enableOptionMove(boolean e) {
         jCheckBoxMove.setEnabled(e);
     }
+
+    public void enableOptionRange(boolean e) {
+        jTextFieldRangeFrom.setEnabled(e);
+        jTextFieldRangeTo.setEnabled(e);
+    }
 }
@@ -32,6 +32,7 @@ import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 
 import static bdsup2sub.core.Configuration.*;
+import static bdsup2sub.gui.support.GuiUtils.*;
 import static bdsup2sub.gui.support.EditPane.*;
 import static bdsup2sub.utils.TimeUtils.ptsToTimeStr;
 import static bdsup2sub.utils.TimeUtils.timeStrToPTS;
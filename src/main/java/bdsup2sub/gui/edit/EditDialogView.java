@@ -21,6 +21,7 @@ import bdsup2sub.core.Logger;
 import bdsup2sub.gui.support.EditPane;
 import bdsup2sub.gui.support.RequestFocusListener;
 import bdsup2sub.supstream.SubPicture;
+import bdsup2sub.gui.support.GuiUtils;
 import bdsup2sub.utils.ToolBox;
 
 import javax.swing.*;
@@ -1048,7 +1049,7 @@ class EditDialogView extends JDialog {
         } catch (CoreException ex) {
             error(ex.getMessage());
         } catch (Exception ex) {
-            ToolBox.showException(ex);
+            GuiUtils.showException(ex);
             Core.exit();
             System.exit(4);
         }
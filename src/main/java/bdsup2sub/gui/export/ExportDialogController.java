@@ -17,7 +17,7 @@ package bdsup2sub.gui.export;
 
 import bdsup2sub.core.OutputMode;
 import bdsup2sub.utils.FilenameUtils;
-import bdsup2sub.utils.ToolBox;
+import bdsup2sub.gui.support.GuiUtils;
 
 import java.awt.event.*;
 import java.util.Collections;
@@ -58,7 +58,7 @@ class ExportDialogController {
         public void actionPerformed(ActionEvent event) {
             String parent = FilenameUtils.getParent(model.getFilename());
             String defaultFilename = FilenameUtils.getName(model.getFilename());
-            String filename = ToolBox.getFilename(parent, defaultFilename, Collections.singletonList(model.getExtension()), false, view);
+            String filename = GuiUtils.getFilename(parent, defaultFilename, Collections.singletonList(model.getExtension()), false, view);
             if (filename != null) {
                 model.setFilename(FilenameUtils.removeExtension(filename) + "." + model.getExtension());
                 view.setFilenameTextFieldText(model.getFilename());
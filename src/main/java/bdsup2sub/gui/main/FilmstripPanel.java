@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.gui.main;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Strip of source caption thumbnails to find a caption without stepping through the stream.
+ * Thumbnails are created in the background for the captions scrolled into view (and a few around them),
+ * until then only the caption number is shown.
+ */
+class FilmstripPanel extends JPanel {
+
+    private static final long serialVersionUID = 0;
+
+    private static final int THUMBNAIL_WIDTH = 96;
+    private static final int THUMBNAIL_HEIGHT = 54;
+    private static final int GAP = 4;
+    private static final int CELL_WIDTH = THUMBNAIL_WIDTH + GAP;
+    /** Number of captions loaded ahead on both sides of the visible ones */
+    private static final int PREFETCH_CELLS = 8;
+    /** Memory used for thumbnails, enough for a few thousand captions */
+    private static final long CACHE_SIZE = 16 * 1024 * 1024;
+
+    private final Color color1 = Color.BLUE;
+    private final Color color2 = Color.BLACK;
+    private final ThumbnailLoader loader;
+    private int captionCount;
+    private int selectedIndex = -1;
+
+    public FilmstripPanel() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        loader = new ThumbnailLoader(new ThumbnailLoader.Listener() {
+            @Override
+            public void thumbnailLoaded(int index) {
+                repaint(getCellBounds(index));
+            }
+        }, new ThumbnailCache(CACHE_SIZE), THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT, threads);
+        setBackground(Color.DARK_GRAY);
+        setCaptionCount(0);
+    }
+
+    /**
+     * Show the thumbnails of another stream, the old thumbnails are dropped.
+     * @param count Number of captions
+     */
+    public void setCaptionCount(int count) {
+        loader.clear();
+        captionCount = count;
+        selectedIndex = -1;
+        setPreferredSize(new Dimension(count * CELL_WIDTH + GAP, THUMBNAIL_HEIGHT + 2 * GAP));
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Create the thumbnails again, e.g. after the source palette was changed.
+     * Also waits until the thumbnails being created are finished.
+     */
+    public void reload() {
+        loader.clear();
+        repaint();
+    }
+
+    /**
+     * Stop creating thumbnails, e.g. while a threaded Core operation is running.
+     * Waits until the thumbnails being created are finished.
+     */
+    public void pauseLoading() {
+        loader.pause();
+    }
+
+    /**
+     * Create the missing thumbnails again after pauseLoading.
+     */
+    public void resumeLoading() {
+        loader.resume();
+        repaint();
+    }
+
+    public void setSelectedIndex(int index) {
+        if (index == selectedIndex) {
+            return;
+        }
+        if (selectedIndex >= 0) {
+            repaint(getCellBounds(selectedIndex));
+        }
+        selectedIndex = index;
+        if (index >= 0) {
+            Rectangle bounds = getCellBounds(index);
+            repaint(bounds);
+            scrollRectToVisible(bounds);
+        }
+    }
+
+    /**
+     * @param p Point inside the panel
+     * @return Index of the caption at this point or -1 if none
+     */
+    public int getIndexAt(Point p) {
+        int index = p.x / CELL_WIDTH;
+        return (p.x >= 0 && index < captionCount) ? index : -1;
+    }
+
+    private Rectangle getCellBounds(int index) {
+        return new Rectangle(index * CELL_WIDTH, 0, CELL_WIDTH + GAP, THUMBNAIL_HEIGHT + 2 * GAP);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (captionCount == 0) {
+            return;
+        }
+        Rectangle visible = getVisibleRect();
+        int firstVisible = Math.max(0, visible.x / CELL_WIDTH);
+        int lastVisible = Math.min(captionCount - 1, (visible.x + visible.width) / CELL_WIDTH);
+        loader.request(Math.max(0, firstVisible - PREFETCH_CELLS), Math.min(captionCount - 1, lastVisible + PREFETCH_CELLS));
+
+        Rectangle clip = g.getClipBounds();
+        int first = Math.max(0, clip.x / CELL_WIDTH);
+        int last = Math.min(captionCount - 1, (clip.x + clip.width) / CELL_WIDTH);
+        Graphics2D g2 = (Graphics2D)g;
+        for (int i = first; i <= last; i++) {
+            drawCell(g2, i);
+        }
+    }
+
+    private void drawCell(Graphics2D g2, int index) {
+        int x = index * CELL_WIDTH + GAP;
+        int y = GAP;
+        g2.setPaint(new GradientPaint(x, y, color1, x + THUMBNAIL_WIDTH, y + THUMBNAIL_HEIGHT, color2));
+        g2.fillRect(x, y, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT);
+
+        BufferedImage thumbnail = loader.getThumbnail(index);
+        if (thumbnail != null) {
+            // thumbnails of tiny captions are not scaled, so make sure they fit
+            double factor = Math.min(1.0, Math.min((double) THUMBNAIL_WIDTH / thumbnail.getWidth(), (double) THUMBNAIL_HEIGHT / thumbnail.getHeight()));
+            int w = (int) (thumbnail.getWidth() * factor);
+            int h = (int) (thumbnail.getHeight() * factor);
+            g2.drawImage(thumbnail, x + (THUMBNAIL_WIDTH - w) / 2, y + (THUMBNAIL_HEIGHT - h) / 2, w, h, null);
+        }
+
+        g2.setColor(Color.LIGHT_GRAY);
+        g2.drawString(Integer.toString(index + 1), x + 2, y + g2.getFontMetrics().getAscent());
+        if (index == selectedIndex) {
+            g2.setColor(Color.WHITE);
+            g2.drawRect(x - 1, y - 1, THUMBNAIL_WIDTH + 1, THUMBNAIL_HEIGHT + 1);
+            g2.drawRect(x - 2, y - 2, THUMBNAIL_WIDTH + 3, THUMBNAIL_HEIGHT + 3);
+        }
+    }
+}
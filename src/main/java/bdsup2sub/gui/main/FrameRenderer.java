@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.gui.main;
+
+import bdsup2sub.core.ConversionEvents;
+import bdsup2sub.core.Core;
+import bdsup2sub.core.RenderedCaption;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts the captions shown in the main window on a background thread, so that the EDT doesn't wait
+ * for decoding and scaling. Each request cancels the requests not started yet and only the result of
+ * the latest one is delivered to the listener. The captions around the requested one are converted
+ * ahead and cached, so that stepping through the stream shows them at once.
+ * Methods have to be called on the EDT, the listener is called on the EDT as well.
+ */
+class FrameRenderer {
+
+    /** Number of captions converted ahead before and after the requested one */
+    private static final int PREFETCH_DISTANCE = 2;
+    /** Number of converted captions kept */
+    private static final int CACHE_SIZE = 4 * PREFETCH_DISTANCE;
+
+    interface Listener {
+        /**
+         * @param caption Converted caption requested last
+         */
+        void captionRendered(RenderedCaption caption);
+
+        /**
+         * @param ex Exception or error thrown when converting the caption requested last
+         */
+        void renderingFailed(Throwable ex);
+    }
+
+    private final Listener listener;
+    private final ExecutorService executor;
+    /** Incremented by each request, results of older requests are dropped */
+    private final AtomicInteger generation = new AtomicInteger();
+    /** Requests not finished yet, first the requested caption then the prefetched ones */
+    private final List<Future<?>> pending = new ArrayList<Future<?>>();
+    /** Converted captions by index, only accessed by the render thread */
+    private final Map<Integer, RenderedCaption> cache = new LinkedHashMap<Integer, RenderedCaption>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, RenderedCaption> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+    private int requestedIndex = -1;
+
+    FrameRenderer(Listener listener) {
+        this.listener = listener;
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Frame renderer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Convert a caption with the current settings (unless cached) and deliver it to the listener,
+     * then convert the captions around it. Stepping to a neighbouring caption only converts ahead in the
+     * direction of the step, the captions behind were converted before. After a jump, the following captions
+     * are converted before the preceding ones, so the stream is decoded forward as its read-ahead expects.
+     * @param index Caption index
+     */
+    void render(int index) {
+        if (index == requestedIndex) {
+            return; // e.g. selected in the combo box and typed in its editor
+        }
+        int previousIndex = requestedIndex;
+        cancel();
+        boolean steppedForward = previousIndex != -1 && index == previousIndex + 1;
+        boolean steppedBackward = previousIndex != -1 && index == previousIndex - 1;
+        requestedIndex = index;
+        int num = Core.getNumFrames();
+        pending.add(executor.submit(createTask(index, generation.get(), true)));
+        if (!steppedBackward) {
+            for (int i = index + 1; i <= index + PREFETCH_DISTANCE && i < num; i++) {
+                pending.add(executor.submit(createTask(i, generation.get(), false)));
+            }
+        }
+        if (!steppedForward) {
+            for (int i = index - 1; i >= index - PREFETCH_DISTANCE && i >= 0; i--) {
+                pending.add(executor.submit(createTask(i, generation.get(), false)));
+            }
+        }
+    }
+
+    /**
+     * Drop the cached captions after the conversion settings or captions were changed.
+     * Requests not started yet are cancelled.
+     */
+    void invalidate() {
+        cancel();
+        // not added to the pending requests, so it is never cancelled
+        executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                cache.clear();
+            }
+        });
+    }
+
+    /**
+     * Cancel all requests and wait until the caption being converted is finished, so that the EDT
+     * can use Core exclusively (e.g. for loading a stream or editing captions).
+     * Nothing is delivered to the listener until the next request.
+     */
+    void cancelAndWait() {
+        invalidate();
+        waitUntilIdle();
+    }
+
+    /**
+     * Wait until all requests submitted so far are finished or cancelled.
+     */
+    void waitUntilIdle() {
+        try {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }).get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // can't happen
+        }
+    }
+
+    private void cancel() {
+        generation.incrementAndGet();
+        for (Future<?> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        requestedIndex = -1;
+    }
+
+    private Runnable createTask(final int index, final int requestGeneration, final boolean deliver) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                RenderedCaption caption = cache.get(index);
+                if (deliver) {
+                    ConversionEvents.cacheAccess("frame renderer", index, caption != null);
+                }
+                try {
+                    if (caption == null) {
+                        if (generation.get() != requestGeneration) {
+                            return; // the selection moved on in the meantime
+                        }
+                        caption = Core.renderCaption(index);
+                        cache.put(index, caption);
+                    }
+                    if (deliver) {
+                        deliver(caption, null, requestGeneration);
+                    }
+                } catch (Throwable ex) {
+                    if (deliver) {
+                        deliver(null, ex, requestGeneration);
+                    }
+                }
+            }
+        };
+    }
+
+    private void deliver(final RenderedCaption caption, final Throwable ex, final int requestGeneration) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (generation.get() != requestGeneration) {
+                    return;
+                }
+                if (ex == null) {
+                    listener.captionRendered(caption);
+                } else {
+                    listener.renderingFailed(ex);
+                }
+            }
+        });
+    }
+}
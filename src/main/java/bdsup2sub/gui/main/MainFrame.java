@@ -15,10 +15,18 @@
  */
 package bdsup2sub.gui.main;
 
+import bdsup2sub.core.Configuration;
+import bdsup2sub.core.Constants;
+import bdsup2sub.utils.PlatformUtils;
+import org.simplericity.macify.eawt.Application;
 import org.simplericity.macify.eawt.ApplicationListener;
+import org.simplericity.macify.eawt.DefaultApplication;
 
+import javax.swing.*;
 import java.io.File;
 
+import static bdsup2sub.gui.support.GuiUtils.applyGtkThemeWorkarounds;
+
 public class MainFrame {
 
     private final MainFrameModel model;
@@ -35,6 +43,41 @@ public class MainFrame {
         controller = new MainFrameController(model, view);
     }
 
+    /**
+     * Set up the look and feel and show the main window. Kept out of the launcher so that command line
+     * conversions never load Swing.
+     * @param inputFile File to load on start, null if none
+     */
+    public static void start(final File inputFile) {
+        setupGUI();
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                Configuration.getInstance().setCliMode(false);
+                Application app = new DefaultApplication();
+                MainFrame mainFrame = new MainFrame(inputFile);
+                app.addApplicationListener(mainFrame.getApplicationListener());
+                mainFrame.setVisible(true);
+            }
+        });
+    }
+
+    private static void setupGUI() {
+        try {
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception e) {
+            // ignore
+        }
+
+        if (PlatformUtils.isLinux()) {
+            applyGtkThemeWorkarounds();
+        }
+
+        if (PlatformUtils.isMac()) {
+            System.setProperty("apple.laf.useScreenMenuBar", "true");
+            System.setProperty("com.apple.mrj.application.apple.menu.about.name", Constants.APP_NAME);
+        }
+    }
+
     public void setVisible(boolean visible) {
         view.setVisible(visible);
     }
@@ -23,8 +23,10 @@ import bdsup2sub.gui.palette.DvdPaletteDialog;
 import bdsup2sub.gui.edit.EditDialog;
 import bdsup2sub.gui.export.ExportDialog;
 import bdsup2sub.gui.palette.FramePaletteDialog;
+import bdsup2sub.gui.support.Progress;
 import bdsup2sub.utils.FilenameUtils;
 import bdsup2sub.utils.StreamUtils;
+import bdsup2sub.gui.support.GuiUtils;
 import bdsup2sub.utils.ToolBox;
 import org.simplericity.macify.eawt.ApplicationEvent;
 import org.simplericity.macify.eawt.ApplicationListener;
@@ -42,6 +44,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static bdsup2sub.core.Configuration.*;
+import static bdsup2sub.gui.support.GuiUtils.*;
 import static bdsup2sub.core.Constants.DEFAULT_DVD_PALETTE;
 
 class MainFrameController {
@@ -49,6 +52,7 @@ class MainFrameController {
     private final MainFrameView view;
     private final MainFrameModel model;
     private final ApplicationListener applicationListener = new MacOSXApplicationListener();
+    private final FrameRenderer renderer = new FrameRenderer(new FrameRendererListener());
 
     public MainFrameController(MainFrameModel model, MainFrameView view) {
         this.view = view;
@@ -67,6 +71,7 @@ class MainFrameController {
         addPopupMenuActionListeners();
 
         view.addLayoutPaneMouseListener(new LayoutPaneMouseListener());
+        view.addFilmstripMouseListener(new FilmstripMouseListener());
 
         view.addTransferHandler(new DragAndDropTransferHandler());
 
@@ -100,6 +105,7 @@ class MainFrameController {
         view.addConversionSettingsMenuItemActionListener(new ConversionSettingsMenuItemActionListener());
         view.addSwapCrCbMenuItemActionListener(new SwapCrCbMenuItemActionListener());
         view.addFixInvisibleFramesMenuItemActionListener(new FixInvisibleFramesMenuItemActionListener());
+        view.addMedianCutQuantizerMenuItemActionListener(new MedianCutQuantizerMenuItemActionListener());
         view.addVerboseOutputMenuItemActionListener(new VerboseOutputMenuItemActionListener());
     }
 
@@ -128,6 +134,7 @@ class MainFrameController {
     private void addPopupMenuActionListeners() {
         view.addCopyPopupMenuItemActionListener(new CopyPopupMenuItemActionListener());
         view.addClearPopupMenuItemActionListener(new ClearPopupMenuItemActionListener());
+        view.addStatisticsPopupMenuItemActionListener(new StatisticsPopupMenuItemActionListener());
         view.addConsoleMouseListener(new MouseListener());
     }
 
@@ -143,7 +150,7 @@ class MainFrameController {
         view.setConsoleText("");
         String parent = FilenameUtils.getParent(model.getLoadPath());
         String defaultFilename = FilenameUtils.getName(model.getLoadPath());
-        final String filename = ToolBox.getFilename(parent, defaultFilename, extensions, true, view);
+        final String filename = GuiUtils.getFilename(parent, defaultFilename, extensions, true, view);
         load(filename);
     }
 
@@ -204,7 +211,13 @@ class MainFrameController {
                         showException = true;
                     }
                     // start conversion
-                    Core.createSubThreaded(fn, view);
+                    renderer.cancelAndWait();
+                    view.pauseFilmstrip();
+                    try {
+                        Core.createSubThreaded(fn, new Progress(view));
+                    } finally {
+                        view.resumeFilmstrip();
+                    }
                     view.warningDialog();
                 }
             } catch (CoreException ex) {
@@ -212,7 +225,7 @@ class MainFrameController {
                     view.error(ex.getMessage());
                 }
             } catch (Exception ex) {
-                ToolBox.showException(ex);
+                GuiUtils.showException(ex);
                 view.exit(4);
             } finally {
                 view.flushConsole();
@@ -223,6 +236,8 @@ class MainFrameController {
     private class CloseMenuItemActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent event) {
+            renderer.cancelAndWait();
+            view.initFilmstrip(0);
             Core.close();
             view.closeSub();
         }
@@ -283,8 +298,10 @@ class MainFrameController {
                     model.setSavePath(FilenameUtils.getParent(loadPath));
                     view.enableCoreComponents(false);
                     view.enableVobsubBits(false);
+                    renderer.cancelAndWait();
+                    view.initFilmstrip(0);
                     try {
-                        Core.readStreamThreaded(loadPath, view, sid);
+                        Core.readStreamThreaded(loadPath, new Progress(view), sid);
                         view.warningDialog();
                         int num = Core.getNumFrames();
                         Core.setReady(false);
@@ -303,15 +320,22 @@ class MainFrameController {
                         conversionDialog.setVisible(true);
                         if (!conversionDialog.wasCanceled()) {
                             Core.scanSubtitles();
+                            if (Core.getNumFrames() == 0) {
+                                throw new CoreException("There are no captions in the selected time range.");
+                            }
+                            view.initSubNumComboBox(Core.getNumFrames());
+                            view.initFilmstrip(Core.getNumFrames());
                             if (model.getMoveCaptions()) {
-                                Core.moveAllThreaded(view);
+                                view.pauseFilmstrip();
+                                try {
+                                    Core.moveAllThreaded(new Progress(view));
+                                } finally {
+                                    view.resumeFilmstrip();
+                                }
                             }
-                            int subIndex = model.getSubIndex();
-                            Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
                             Core.setReady(true);
                             view.setQuitMenuItemEnabled(true);
-                            view.refreshSrcFrame(subIndex);
-                            view.refreshTrgFrame(subIndex);
+                            reconvertCaption();
                             view.enableCoreComponents(true);
                             if (model.getOutputMode() == OutputMode.VOBSUB || Core.getInputMode() == InputMode.SUPIFO) {
                                 view.enableVobsubBits(true);
@@ -329,7 +353,7 @@ class MainFrameController {
                         view.setComboBoxOutFormatEnabled(true);
                         view.error(ex.getMessage());
                     } catch (Exception ex) {
-                        ToolBox.showException(ex);
+                        GuiUtils.showException(ex);
                         view.exit(4);
                     } finally {
                         view.flushConsole();
@@ -341,26 +365,51 @@ class MainFrameController {
         }
     }
 
+    /**
+     * Show the selected caption as soon as it is converted in the background.
+     */
+    private void showCaption() {
+        renderer.render(model.getSubIndex());
+        view.setFilmstripSelectedIndex(model.getSubIndex());
+    }
+
+    /**
+     * Convert the selected caption again after the conversion settings or the captions were changed.
+     */
+    private void reconvertCaption() {
+        renderer.invalidate();
+        showCaption();
+    }
+
+    private class FrameRendererListener implements FrameRenderer.Listener {
+        @Override
+        public void captionRendered(RenderedCaption caption) {
+            view.refreshSrcFrame(caption);
+            view.refreshTrgFrame(caption);
+        }
+
+        @Override
+        public void renderingFailed(Throwable ex) {
+            if (ex instanceof CoreException) {
+                view.error(ex.getMessage());
+            } else {
+                GuiUtils.showException(ex);
+                view.exit(4);
+            }
+        }
+    }
+
     private class EditFrameMenuItemActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent event) {
             if (Core.isReady()) {
+                renderer.cancelAndWait();
                 EditDialog ed = new EditDialog(view);
                 ed.setIndex(model.getSubIndex());
                 ed.setVisible(true);
                 model.setSubIndex(ed.getIndex());
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshSrcFrame(subIndex);
-                    view.refreshTrgFrame(subIndex);
-                    view.setSubNumComboBoxSelectedIndex(subIndex);
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
-                }
+                reconvertCaption();
+                view.setSubNumComboBoxSelectedIndex(model.getSubIndex());
             }
         }
     }
@@ -383,6 +432,7 @@ class MainFrameController {
                 currentColors[i] = Core.getCurrentDVDPalette().getColor(i+1);
                 defaultColors[i] = DEFAULT_DVD_PALETTE.getColor(i+1);
             }
+            renderer.cancelAndWait();
             DvdPaletteDialog dvdPaletteDialog = new DvdPaletteDialog(view, colorNames, currentColors, defaultColors, model.getColorProfilePath());
             dvdPaletteDialog.setVisible(true);
             if (!dvdPaletteDialog.wasCanceled()) {
@@ -392,17 +442,8 @@ class MainFrameController {
                     Core.getCurrentDVDPalette().setColor(i+1, currentColors[i]);
                 }
 
-                try {
-                    if (Core.isReady()) {
-                        int subIndex = model.getSubIndex();
-                        Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                        view.refreshTrgFrame(subIndex);
-                    }
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
+                if (Core.isReady()) {
+                    reconvertCaption();
                 }
             }
         }
@@ -423,6 +464,7 @@ class MainFrameController {
                 currentColors[i] = Core.getCurSrcDVDPalette().getColor(i);
                 defaultColors[i] = Core.getDefSrcDVDPalette().getColor(i);
             }
+            renderer.cancelAndWait();
             DvdPaletteDialog dvdPaletteDialog = new DvdPaletteDialog(view, colorNames, currentColors, defaultColors, model.getColorProfilePath());
             dvdPaletteDialog.setVisible(true);
             if (!dvdPaletteDialog.wasCanceled()) {
@@ -434,18 +476,9 @@ class MainFrameController {
                 }
                 Core.setCurSrcDVDPalette(p);
 
-                try {
-                    if (Core.isReady()) {
-                        int subIndex = model.getSubIndex();
-                        Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                        view.refreshSrcFrame(subIndex);
-                        view.refreshTrgFrame(subIndex);
-                    }
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
+                if (Core.isReady()) {
+                    reconvertCaption();
+                    view.reloadFilmstrip();
                 }
             }
         }
@@ -454,21 +487,13 @@ class MainFrameController {
     private class EditDvdFramePaletteMenuItemActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent event) {
+            renderer.cancelAndWait();
             FramePaletteDialog framePaletteDialog = new FramePaletteDialog(view, model.getSubIndex());
             framePaletteDialog.setVisible(true);
 
-            try {
-                if (Core.isReady()) {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshSrcFrame(subIndex);
-                    view.refreshTrgFrame(subIndex);
-                }
-            } catch (CoreException ex) {
-                view.error(ex.getMessage());
-            } catch (Exception ex) {
-                ToolBox.showException(ex);
-                view.exit(4);
+            if (Core.isReady()) {
+                reconvertCaption();
+                view.reloadFilmstrip();
             }
         }
     }
@@ -477,33 +502,27 @@ class MainFrameController {
         @Override
         public void actionPerformed(ActionEvent event) {
             if (Core.isReady()) {
+                renderer.cancelAndWait();
                 MoveDialog moveDialog = new MoveDialog(view);
                 moveDialog.setCurrentSubtitleIndex(model.getSubIndex());
                 moveDialog.setVisible(true);
                 if (model.getMoveCaptions()) {
+                    view.pauseFilmstrip();
                     try {
-                        Core.moveAllThreaded(view);
+                        Core.moveAllThreaded(new Progress(view));
                     } catch (CoreException ex) {
                         view.error(ex.getMessage());
                     } catch (Exception ex) {
-                        ToolBox.showException(ex);
+                        GuiUtils.showException(ex);
                         view.exit(4);
+                    } finally {
+                        view.resumeFilmstrip();
                     }
                 }
                 model.setSubIndex(moveDialog.getCurrentSubtitleIndex());
                 view.setLayoutPaneAspectRatio(moveDialog.getTrgRatio());
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshSrcFrame(subIndex);
-                    view.refreshTrgFrame(subIndex);
-                    view.setSubNumComboBoxSelectedIndex(subIndex);
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
-                }
+                reconvertCaption();
+                view.setSubNumComboBoxSelectedIndex(model.getSubIndex());
             }
         }
     }
@@ -534,23 +553,21 @@ class MainFrameController {
                 fsYOld = 1.0;
             }
             // show dialog
+            renderer.cancelAndWait();
             ConversionDialog trans = new ConversionDialog(view);
             trans.enableOptionMove(false);
+            trans.enableOptionRange(false);
             trans.setVisible(true);
 
             if (!trans.wasCanceled()) {
                 // create and show image
                 try {
                     if (Core.isReady()) {
-                        int subIndex = model.getSubIndex();
                         Core.reScanSubtitles(rOld, fpsTrgOld, delayOld, changeFpsOld, fsXOld, fsYOld);
-                        Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                        view.refreshTrgFrame(subIndex);
+                        reconvertCaption();
                     }
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
                 } catch (Exception ex) {
-                    ToolBox.showException(ex);
+                    GuiUtils.showException(ex);
                     view.exit(4);
                 }
             }
@@ -563,18 +580,9 @@ class MainFrameController {
             boolean selected = view.isSwapCrCbSelected();
             model.setSwapCrCb(selected);
             // create and show image
-            try {
-                if (Core.isReady()) {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshSrcFrame(subIndex);
-                    view.refreshTrgFrame(subIndex);
-                }
-            } catch (CoreException ex) {
-                view.error(ex.getMessage());
-            } catch (Exception ex) {
-                ToolBox.showException(ex);
-                view.exit(4);
+            if (Core.isReady()) {
+                reconvertCaption();
+                view.reloadFilmstrip();
             }
         }
     }
@@ -587,6 +595,17 @@ class MainFrameController {
         }
     }
 
+    private class MedianCutQuantizerMenuItemActionListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent event) {
+            boolean selected = view.isMedianCutQuantizerSelected();
+            model.setMedianCutQuantizer(selected);
+            if (Core.isReady()) {
+                reconvertCaption();
+            }
+        }
+    }
+
     private class VerboseOutputMenuItemActionListener implements ActionListener {
         @Override
         public void actionPerformed(ActionEvent event) {
@@ -647,17 +666,7 @@ class MainFrameController {
                 model.setSubIndex(idx);
                 view.setSubNumComboBoxSelectedIndex(model.getSubIndex());
 
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex +1, Core.getNumFrames());
-                    view.refreshSrcFrame(subIndex);
-                    view.refreshTrgFrame(subIndex);
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
-                }
+                showCaption();
             }
         }
     }
@@ -685,17 +694,7 @@ class MainFrameController {
                     view.setSubNumComboBoxBackground(ERROR_BACKGROUND);
                 } else {
                     model.setSubIndex(idx);
-                    try {
-                        int subIndex = model.getSubIndex();
-                        Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                        view.refreshSrcFrame(subIndex);
-                        view.refreshTrgFrame(subIndex);
-                    } catch (CoreException ex) {
-                        view.error(ex.getMessage());
-                    } catch (Exception ex) {
-                        ToolBox.showException(ex);
-                        view.exit(4);
-                    }
+                    showCaption();
                     view.setSubNumComboBoxBackground(OK_BACKGROUND);
                 }
             }
@@ -723,16 +722,7 @@ class MainFrameController {
                 model.setAlphaThreshold(idx);
                 view.setAlphaThresholdComboBoxSelectedIndex(model.getAlphaThreshold());
 
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshTrgFrame(subIndex);
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
-                }
+                reconvertCaption();
             }
         }
     }
@@ -760,16 +750,7 @@ class MainFrameController {
                     view.setAlphaThresholdComboBoxBackground(ERROR_BACKGROUND);
                 } else {
                     model.setAlphaThreshold(idx);
-                    try {
-                        int subIndex = model.getSubIndex();
-                        Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                        view.refreshTrgFrame(subIndex);
-                    } catch (CoreException ex) {
-                        view.error(ex.getMessage());
-                    } catch (Exception ex) {
-                        ToolBox.showException(ex);
-                        view.exit(4);
-                    }
+                    reconvertCaption();
                     view.setAlphaThresholdComboBoxBackground(OK_BACKGROUND);
                 }
             }
@@ -805,16 +786,7 @@ class MainFrameController {
                 final int index = idx;
                 view.setMedLowThresholdComboBoxSelectedIndex(index);
 
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshTrgFrame(subIndex);
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
-                }
+                reconvertCaption();
             }
         }
     }
@@ -844,16 +816,7 @@ class MainFrameController {
                 else {
                     lumThr[1] = idx;
                     model.setLuminanceThreshold(lumThr);
-                    try {
-                        int subIndex = model.getSubIndex();
-                        Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                        view.refreshTrgFrame(subIndex);
-                    } catch (CoreException ex) {
-                        view.error(ex.getMessage());
-                    } catch (Exception ex) {
-                        ToolBox.showException(ex);
-                        view.exit(4);
-                    }
+                    reconvertCaption();
                     view.setMedLowThresholdComboBoxBackground(OK_BACKGROUND);
                 }
             }
@@ -887,16 +850,7 @@ class MainFrameController {
                 model.setLuminanceThreshold(lumThr);
                 view.setHiMedThresholdComboBoxSelectedIndex(model.getLuminanceThreshold()[0]);
 
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshTrgFrame(subIndex);
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
-                }
+                reconvertCaption();
             }
         }
     }
@@ -926,16 +880,7 @@ class MainFrameController {
                 } else {
                     lumThr[0] = idx;
                     model.setLuminanceThreshold(lumThr);
-                    try {
-                        int subIndex = model.getSubIndex();
-                        Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                        view.refreshTrgFrame(subIndex);
-                    } catch (CoreException ex) {
-                        view.error(ex.getMessage());
-                    } catch (Exception ex) {
-                        ToolBox.showException(ex);
-                        view.exit(4);
-                    }
+                    reconvertCaption();
                     view.setHiMedThresholdComboBoxBackground(OK_BACKGROUND);
                 }
             }
@@ -954,20 +899,11 @@ class MainFrameController {
                     }
                 }
 
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshTrgFrame(subIndex);
-                    if (model.getOutputMode() == OutputMode.VOBSUB || model.getOutputMode() == OutputMode.SUPIFO) {
-                        view.enableVobsubBits(true);
-                    } else {
-                        view.enableVobsubBits(false);
-                    }
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
+                reconvertCaption();
+                if (model.getOutputMode() == OutputMode.VOBSUB || model.getOutputMode() == OutputMode.SUPIFO) {
+                    view.enableVobsubBits(true);
+                } else {
+                    view.enableVobsubBits(false);
                 }
             }
         }
@@ -987,16 +923,7 @@ class MainFrameController {
 
                 view.enableVobSubMenuCombo();
 
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshTrgFrame(subIndex);
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
-                }
+                reconvertCaption();
             }
         }
     }
@@ -1013,16 +940,7 @@ class MainFrameController {
                     }
                 }
 
-                try {
-                    int subIndex = model.getSubIndex();
-                    Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                    view.refreshTrgFrame(subIndex);
-                } catch (CoreException ex) {
-                    view.error(ex.getMessage());
-                } catch (Exception ex) {
-                    ToolBox.showException(ex);
-                    view.exit(4);
-                }
+                reconvertCaption();
             }
         }
     }
@@ -1049,6 +967,13 @@ class MainFrameController {
         }
     }
 
+    private class StatisticsPopupMenuItemActionListener implements ActionListener {
+        @Override
+        public void actionPerformed(ActionEvent event) {
+            view.printToConsole(ConversionStatistics.getInstance().toJson() + "\n");
+        }
+    }
+
     private class MouseListener extends MouseAdapter {
         @Override
         public void mousePressed(MouseEvent event) {
@@ -1081,27 +1006,30 @@ class MainFrameController {
         public void mouseClicked(MouseEvent e) {
             if (e.getButton() == MouseEvent.BUTTON1) {
                 if (Core.isReady()) {
+                    renderer.cancelAndWait();
                     EditDialog ed = new EditDialog(view);
                     ed.setIndex(model.getSubIndex());
                     ed.setVisible(true);
                     model.setSubIndex(ed.getIndex());
-                    try {
-                        int subIndex = model.getSubIndex();
-                        Core.convertSup(subIndex, subIndex + 1, Core.getNumFrames());
-                        view.refreshSrcFrame(subIndex);
-                        view.refreshTrgFrame(subIndex);
-                        view.setSubNumComboBoxSelectedIndex(subIndex);
-                    } catch (CoreException ex) {
-                        view.error(ex.getMessage());
-                    } catch (Exception ex) {
-                        ToolBox.showException(ex);
-                        view.exit(4);
-                    }
+                    reconvertCaption();
+                    view.setSubNumComboBoxSelectedIndex(model.getSubIndex());
                 }
             }
         }
     }
 
+    private class FilmstripMouseListener extends MouseAdapter {
+        @Override
+        public void mouseClicked(MouseEvent e) {
+            int index = view.getFilmstripIndexAt(e.getPoint());
+            if (e.getButton() == MouseEvent.BUTTON1 && index >= 0 && Core.isReady()) {
+                model.setSubIndex(index);
+                view.setSubNumComboBoxSelectedIndex(index);
+                showCaption();
+            }
+        }
+    }
+
     public class MacOSXApplicationListener implements ApplicationListener {
 
         private void handle(ApplicationEvent event, String message) {
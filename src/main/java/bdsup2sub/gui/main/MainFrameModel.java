@@ -16,6 +16,7 @@
 package bdsup2sub.gui.main;
 
 import bdsup2sub.core.*;
+import bdsup2sub.tools.QuantizeFilter;
 
 import java.awt.*;
 import java.util.List;
@@ -125,6 +126,14 @@ class MainFrameModel {
         configuration.setFixZeroAlpha(fixZeroAlpha);
     }
 
+    public boolean isMedianCutQuantizer() {
+        return configuration.getQuantizationMethod() == QuantizeFilter.Method.MEDIAN_CUT;
+    }
+
+    public void setMedianCutQuantizer(boolean medianCut) {
+        configuration.setQuantizationMethod(medianCut ? QuantizeFilter.Method.MEDIAN_CUT : QuantizeFilter.Method.OCTREE);
+    }
+
     public PaletteMode getPaletteMode() {
         return configuration.getPaletteMode();
     }
@@ -31,13 +31,14 @@ import java.awt.datatransfer.Transferable;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseListener;
-import java.awt.image.BufferedImage;
 import java.util.List;
 
 public class MainFrameView extends JFrame implements ClipboardOwner {
 
     private static final Logger logger = Logger.getInstance();
 
+    /** Log messages are appended to the console in one batch per interval */
+    private static final int CONSOLE_REFRESH_MILLIS = 40;
     private static final int MENU_SHORTCUT_KEY_MASK = Toolkit.getDefaultToolkit().getMenuShortcutKeyMask();
 
     private JPanel jContentPane;
@@ -50,6 +51,8 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
     private JLabel jLabelInfoTarget;
     private JScrollPane jScrollPaneTarget;
     private ZoomableGraphicsPanel jPanelTarget;
+    private JScrollPane jScrollPaneFilmstrip;
+    private FilmstripPanel jPanelFilmstrip;
     private JPanel jPanelBottom;
     private EditPane jLayoutPane;
     private JScrollPane jScrollPaneConsole;
@@ -73,6 +76,7 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
     private JMenuItem jMenuItemConversionSettings;
     private JCheckBoxMenuItem jMenuItemSwapCrCb;
     private JCheckBoxMenuItem jMenuItemFixInvisibleFrames;
+    private JCheckBoxMenuItem jMenuItemMedianCutQuantizer;
     private JCheckBoxMenuItem jMenuItemVerboseOutput;
     private ActionMenu jMenuHelp;
     private JMenuItem jMenuItemHelp;
@@ -93,6 +97,7 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
     private JPopupMenu jPopupMenu;
     private JMenuItem jPopupMenuItemCopy;
     private JMenuItem jPopupMenuItemClear;
+    private JMenuItem jPopupMenuItemStatistics;
 
     private ActionListener recentFilesMenuActionListener;
     
@@ -102,7 +107,18 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
         super(Constants.APP_NAME + " " + Constants.APP_VERSION);
         this.model = model;
         initialize();
-        logger.setMainFrame(this);
+        logger.setSink(new LogSink() {
+            @Override
+            public void print(final String message) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        printToConsole(message);
+                    }
+                });
+            }
+        });
+        logger.startFlushing(CONSOLE_REFRESH_MILLIS, true);
     }
 
     private void initialize() {
@@ -401,6 +417,7 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
             jMenuSettings.add(getJMenuItemConversionSettings());
             jMenuSettings.add(getJMenuItemSwapCrCb());
             jMenuSettings.add(getJMenuItemFixInvisibleFrames());
+            jMenuSettings.add(getJMenuItemMedianCutQuantizer());
             jMenuSettings.add(getJMenuItemVerboseOutput());
         }
         return jMenuSettings;
@@ -461,6 +478,26 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
         return jMenuItemFixInvisibleFrames.isSelected();
     }
 
+    private JMenuItem getJMenuItemMedianCutQuantizer() {
+        if (jMenuItemMedianCutQuantizer == null) {
+            jMenuItemMedianCutQuantizer = new JCheckBoxMenuItem();
+            jMenuItemMedianCutQuantizer.setText("Median cut quantizer");
+            if (!PlatformUtils.isMac()) {
+                jMenuItemMedianCutQuantizer.setMnemonic('m');
+            }
+            jMenuItemMedianCutQuantizer.setSelected(model.isMedianCutQuantizer());
+        }
+        return jMenuItemMedianCutQuantizer;
+    }
+
+    void addMedianCutQuantizerMenuItemActionListener(ActionListener actionListener) {
+        jMenuItemMedianCutQuantizer.addActionListener(actionListener);
+    }
+
+    boolean isMedianCutQuantizerSelected() {
+        return jMenuItemMedianCutQuantizer.isSelected();
+    }
+
     private JMenuItem getJMenuItemVerboseOutput() {
         if (jMenuItemVerboseOutput == null) {
             jMenuItemVerboseOutput = new JCheckBoxMenuItem();
@@ -575,9 +612,17 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
             gridBagScrollPaneTarget.weightx = 1.0;
             gridBagScrollPaneTarget.weighty = 1.0;
 
+            GridBagConstraints gridBagScrollPaneFilmstrip = new GridBagConstraints();
+            gridBagScrollPaneFilmstrip.gridx = 0;
+            gridBagScrollPaneFilmstrip.gridy = 5;
+            gridBagScrollPaneFilmstrip.fill = GridBagConstraints.HORIZONTAL;
+            gridBagScrollPaneFilmstrip.anchor = GridBagConstraints.WEST;
+            gridBagScrollPaneFilmstrip.weightx = 1.0;
+            gridBagScrollPaneFilmstrip.weighty = 0.0;
+
             GridBagConstraints gridBagPanelBottom = new GridBagConstraints();
             gridBagPanelBottom.gridx = 0;
-            gridBagPanelBottom.gridy = 5;
+            gridBagPanelBottom.gridy = 6;
             gridBagPanelBottom.anchor = GridBagConstraints.SOUTHWEST;
             gridBagPanelBottom.fill = GridBagConstraints.BOTH;
 
@@ -589,6 +634,7 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
             jContentPane.add(getJScrollPaneSource(), gridBagScrollPaneSource);
             jContentPane.add(getJPanelInfoTarget(), gridBagPanelInfoTarget);
             jContentPane.add(getJScrollPaneTarget(), gridBagScrollPaneTarget);
+            jContentPane.add(getJScrollPaneFilmstrip(), gridBagScrollPaneFilmstrip);
             jContentPane.add(getJPanelBottom(), gridBagPanelBottom);
         }
         return jContentPane;
@@ -814,6 +860,66 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
         return jPanelTarget;
     }
 
+    private JScrollPane getJScrollPaneFilmstrip() {
+        if (jScrollPaneFilmstrip == null) {
+            jScrollPaneFilmstrip = new JScrollPane();
+            jScrollPaneFilmstrip.setHorizontalScrollBarPolicy(JScrollPane.HORIZONTAL_SCROLLBAR_ALWAYS);
+            jScrollPaneFilmstrip.setVerticalScrollBarPolicy(JScrollPane.VERTICAL_SCROLLBAR_NEVER);
+            jScrollPaneFilmstrip.setViewportView(getJPanelFilmstrip());
+            jScrollPaneFilmstrip.getHorizontalScrollBar().setUnitIncrement(16);
+            Dimension dim = getJPanelFilmstrip().getPreferredSize();
+            int height = dim.height + jScrollPaneFilmstrip.getHorizontalScrollBar().getPreferredSize().height + 4;
+            jScrollPaneFilmstrip.setPreferredSize(new Dimension(1, height));
+            jScrollPaneFilmstrip.setMinimumSize(new Dimension(1, height));
+        }
+        return jScrollPaneFilmstrip;
+    }
+
+    private FilmstripPanel getJPanelFilmstrip() {
+        if (jPanelFilmstrip == null) {
+            jPanelFilmstrip = new FilmstripPanel();
+        }
+        return jPanelFilmstrip;
+    }
+
+    void addFilmstripMouseListener(MouseListener mouseListener) {
+        jPanelFilmstrip.addMouseListener(mouseListener);
+    }
+
+    int getFilmstripIndexAt(Point p) {
+        return jPanelFilmstrip.getIndexAt(p);
+    }
+
+    /**
+     * Show the thumbnails of another stream
+     * @param numCaptions number of captions
+     */
+    void initFilmstrip(int numCaptions) {
+        jPanelFilmstrip.setCaptionCount(numCaptions);
+    }
+
+    /**
+     * Create the thumbnails again after the source images were changed
+     */
+    void reloadFilmstrip() {
+        jPanelFilmstrip.reload();
+    }
+
+    /**
+     * Stop creating thumbnails while a threaded Core operation decodes the captions
+     */
+    void pauseFilmstrip() {
+        jPanelFilmstrip.pauseLoading();
+    }
+
+    void resumeFilmstrip() {
+        jPanelFilmstrip.resumeLoading();
+    }
+
+    void setFilmstripSelectedIndex(int index) {
+        jPanelFilmstrip.setSelectedIndex(index);
+    }
+
     private JPanel getJPanelBottom() {
         if (jPanelBottom == null) {
             GridBagConstraints gridBagLayout = new GridBagConstraints();
@@ -1223,6 +1329,7 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
         jLayoutPane.repaint();
         jPanelTarget.setImage(null);
         jPanelSource.setImage(null);
+        jPanelFilmstrip.setCaptionCount(0);
 
         jLabelInfoTarget.setText("");
         jLabelInfoSource.setText("");
@@ -1233,6 +1340,8 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
             jPopupMenu = new JPopupMenu();
             jPopupMenu.add(getJPopupMenuItemCopy());
             jPopupMenu.add(getJPopupMenuItemClear());
+            jPopupMenu.addSeparator();
+            jPopupMenu.add(getJPopupMenuItemStatistics());
         }
         return jPopupMenu;
     }
@@ -1269,6 +1378,18 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
         jPopupMenuItemClear.addActionListener(actionListener);
     }
 
+    private JMenuItem getJPopupMenuItemStatistics() {
+        if (jPopupMenuItemStatistics == null) {
+            jPopupMenuItemStatistics = new JMenuItem();
+            jPopupMenuItemStatistics.setText("Show Statistics");
+        }
+        return jPopupMenuItemStatistics;
+    }
+
+    void addStatisticsPopupMenuItemActionListener(ActionListener actionListener) {
+        jPopupMenuItemStatistics.addActionListener(actionListener);
+    }
+
     void addTransferHandler(TransferHandler transferHandler) {
         setTransferHandler(transferHandler);
     }
@@ -1279,26 +1400,25 @@ public class MainFrameView extends JFrame implements ClipboardOwner {
 
     /**
      * Update all components belonging to the source window
-     * @param index caption index
+     * @param caption converted caption
      */
-    void refreshSrcFrame(final int index) {
-        BufferedImage img = Core.getSrcImage();
-        jPanelSource.setImage(img);
-        jLabelInfoSource.setText(Core.getSrcInfoStr(index));
+    void refreshSrcFrame(RenderedCaption caption) {
+        jPanelSource.setImage(caption.getSrcImage());
+        jLabelInfoSource.setText(caption.getSrcInfoStr());
     }
 
     /**
      * Update all components belonging to the target window
-     * @param index caption index
+     * @param caption converted caption
      */
-    void refreshTrgFrame(final int index) {
-        jLayoutPane.setScreenDimension(Core.getTrgWidth(index), Core.getTrgHeight(index));
-        jLayoutPane.setSubtitleOffsets(Core.getTrgOfsX(index), Core.getTrgOfsY(index));
+    void refreshTrgFrame(RenderedCaption caption) {
+        jLayoutPane.setScreenDimension(caption.getTrgWidth(), caption.getTrgHeight());
+        jLayoutPane.setSubtitleOffsets(caption.getTrgOfsX(), caption.getTrgOfsY());
         jLayoutPane.setCropOffsetY(model.getCropOffsetY());
-        jLayoutPane.setImage(Core.getTrgImage(), Core.getTrgImgWidth(index), Core.getTrgImgHeight(index));
-        jLayoutPane.setExcluded(Core.getTrgExcluded(index));
-        jPanelTarget.setImage(Core.getTrgImage());
-        jLabelInfoTarget.setText(Core.getTrgInfoStr(index));
+        jLayoutPane.setImage(caption.getTrgImage(), caption.getTrgImgWidth(), caption.getTrgImgHeight());
+        jLayoutPane.setExcluded(caption.isTrgExcluded());
+        jPanelTarget.setImage(caption.getTrgImage());
+        jLabelInfoTarget.setText(caption.getTrgInfoStr());
         jLayoutPane.repaint();
     }
 
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.gui.main;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Thumbnails by caption index, limited by the memory they take. The thumbnails used least recently
+ * are dropped first. Thread safe.
+ */
+class ThumbnailCache {
+
+    private final long maxBytes;
+    private final Map<Integer, BufferedImage> thumbnails = new LinkedHashMap<Integer, BufferedImage>(16, 0.75f, true);
+    private long bytes;
+
+    /**
+     * @param maxBytes Maximum size of all thumbnails in bytes
+     */
+    ThumbnailCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param index Caption index
+     * @return Thumbnail or null if not cached
+     */
+    synchronized BufferedImage get(int index) {
+        return thumbnails.get(index);
+    }
+
+    /**
+     * Add a thumbnail and drop the least recently used ones if the cache gets too big.
+     * @param index     Caption index
+     * @param thumbnail Thumbnail
+     */
+    synchronized void put(int index, BufferedImage thumbnail) {
+        BufferedImage old = thumbnails.put(index, thumbnail);
+        if (old != null) {
+            bytes -= getSize(old);
+        }
+        bytes += getSize(thumbnail);
+        Iterator<BufferedImage> it = thumbnails.values().iterator();
+        while (bytes > maxBytes && thumbnails.size() > 1) {
+            bytes -= getSize(it.next());
+            it.remove();
+        }
+    }
+
+    synchronized void clear() {
+        thumbnails.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return Size of all thumbnails in bytes
+     */
+    synchronized long getSize() {
+        return bytes;
+    }
+
+    synchronized int getCount() {
+        return thumbnails.size();
+    }
+
+    private static long getSize(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * image.getColorModel().getPixelSize() / 8;
+    }
+}
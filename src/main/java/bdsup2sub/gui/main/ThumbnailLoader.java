@@ -0,0 +1,218 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.gui.main;
+
+import bdsup2sub.core.Core;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates the thumbnails of the source captions on background threads. Only the captions requested
+ * last are loaded, requests for captions scrolled out of view are cancelled. Decoding is serialized
+ * by Core, but the scaling runs in parallel. Loading can be paused while Core is busy with another task.
+ * Methods have to be called on the EDT, the listener is called on the EDT as well.
+ */
+class ThumbnailLoader {
+
+    /** Threads are stopped when idle for this time (in seconds) */
+    private static final long KEEP_ALIVE_TIME = 30;
+
+    interface Listener {
+        /**
+         * @param index Index of the caption whose thumbnail is in the cache now
+         */
+        void thumbnailLoaded(int index);
+    }
+
+    private final Listener listener;
+    private final ThumbnailCache cache;
+    private final int width;
+    private final int height;
+    private final ThreadPoolExecutor executor;
+    /** Incremented when the thumbnails are dropped, results of older requests are ignored then */
+    private final AtomicInteger generation = new AtomicInteger();
+    private final Map<Integer, Future<?>> pending = new HashMap<Integer, Future<?>>();
+    /** Captions which failed to decode, not requested again */
+    private final Set<Integer> failed = new HashSet<Integer>();
+    private final Object lock = new Object();
+    /** Number of thumbnails being created, guarded by lock */
+    private int running;
+    /** Requests are ignored while paused */
+    private boolean paused;
+
+    /**
+     * @param listener Notified when a thumbnail was loaded
+     * @param cache    Cache for the thumbnails
+     * @param width    Maximum width of a thumbnail
+     * @param height   Maximum height of a thumbnail
+     * @param threads  Number of threads
+     */
+    ThumbnailLoader(Listener listener, ThumbnailCache cache, int width, int height, int threads) {
+        this.listener = listener;
+        this.cache = cache;
+        this.width = width;
+        this.height = height;
+        executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "Thumbnail loader");
+                        thread.setDaemon(true);
+                        thread.setPriority(Thread.MIN_PRIORITY);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @param index Caption index
+     * @return Thumbnail or null if not loaded yet
+     */
+    BufferedImage getThumbnail(int index) {
+        return cache.get(index);
+    }
+
+    /**
+     * Load the thumbnails of a range of captions which are not cached yet, in ascending order.
+     * Loading of thumbnails outside the range is cancelled.
+     * @param first Index of first caption
+     * @param last  Index of last caption
+     */
+    void request(int first, int last) {
+        if (paused) {
+            return;
+        }
+        Iterator<Map.Entry<Integer, Future<?>>> it = pending.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Integer, Future<?>> entry = it.next();
+            int i = entry.getKey();
+            if (entry.getValue().isDone()) {
+                it.remove();
+            } else if (i < first || i > last) {
+                entry.getValue().cancel(false);
+                it.remove();
+            }
+        }
+        for (int i = first; i <= last; i++) {
+            if (cache.get(i) == null && !pending.containsKey(i) && !failed.contains(i)) {
+                pending.put(i, executor.submit(createTask(i, generation.get())));
+            }
+        }
+    }
+
+    /**
+     * Drop all thumbnails, e.g. after another stream was loaded or the source palette was changed,
+     * and wait until the thumbnails being created are finished, so that the EDT can use Core exclusively.
+     */
+    void clear() {
+        generation.incrementAndGet();
+        cancelAndWait();
+        failed.clear();
+        cache.clear();
+    }
+
+    /**
+     * Stop loading thumbnails until resume is called, e.g. while a threaded Core operation is running.
+     * Waits until the thumbnails being created are finished. The thumbnails loaded so far are kept.
+     */
+    void pause() {
+        paused = true;
+        cancelAndWait();
+    }
+
+    /**
+     * Accept requests again after pause.
+     */
+    void resume() {
+        paused = false;
+    }
+
+    private void cancelAndWait() {
+        for (Future<?> future : pending.values()) {
+            future.cancel(false);
+        }
+        pending.clear();
+        synchronized (lock) {
+            while (running > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+    }
+
+    private Runnable createTask(final int index, final int requestGeneration) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized (lock) {
+                    running++;
+                }
+                try {
+                    // checked after counting this task, so clear() either waits for it or it returns here
+                    if (generation.get() != requestGeneration) {
+                        return;
+                    }
+                    BufferedImage thumbnail = null;
+                    try {
+                        thumbnail = Core.getSrcThumbnail(index, width, height);
+                    } catch (Exception ex) {
+                        // no thumbnail, the error is reported when the caption is shown
+                    }
+                    deliver(index, thumbnail, requestGeneration);
+                } finally {
+                    synchronized (lock) {
+                        running--;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        };
+    }
+
+    private void deliver(final int index, final BufferedImage thumbnail, final int requestGeneration) {
+        SwingUtilities.invokeLater(new Runnable() {
+            @Override
+            public void run() {
+                if (generation.get() != requestGeneration) {
+                    return;
+                }
+                if (thumbnail == null) {
+                    failed.add(index);
+                } else {
+                    cache.put(index, thumbnail);
+                    listener.thumbnailLoaded(index);
+                }
+            }
+        });
+    }
+}
@@ -21,40 +21,72 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.image.BufferedImage;
 
+/**
+ * Shows an image on a color gradient, zoomed by an integer factor (1-8) with mouse clicks.
+ * Only the region to repaint is drawn, so scrolling a zoomed image redraws just the uncovered part.
+ */
 class ZoomableGraphicsPanel extends JPanel {
 
     private int zoomScale = 1;
     private BufferedImage image;
     private final Color color1 = Color.BLUE;
     private final Color color2 = Color.BLACK;
+    /** Image converted for fast drawing, created when first drawn */
+    private BufferedImage compatibleImage;
+    private GraphicsConfiguration compatibleImageConfiguration;
+    private GradientPaint backgroundPaint;
 
     public ZoomableGraphicsPanel() {
         addMouseListener(new MouseListener());
     }
 
     @Override
-    public void paint(Graphics g) {
-        super.paint(g);
-        draw(g);
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D)g;
+        Rectangle clip = g2.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(0, 0, getWidth(), getHeight());
+        }
+        g2.setPaint(getBackgroundPaint());
+        g2.fillRect(clip.x, clip.y, clip.width, clip.height);
+        if (image != null) {
+            BufferedImage img = getCompatibleImage();
+            // source region covering the clip, aligned to whole zoomed pixels
+            int sx1 = Math.max(0, clip.x / zoomScale);
+            int sy1 = Math.max(0, clip.y / zoomScale);
+            int sx2 = Math.min(img.getWidth(), (clip.x + clip.width + zoomScale - 1) / zoomScale);
+            int sy2 = Math.min(img.getHeight(), (clip.y + clip.height + zoomScale - 1) / zoomScale);
+            if (sx1 < sx2 && sy1 < sy2) {
+                g2.drawImage(img, sx1 * zoomScale, sy1 * zoomScale, sx2 * zoomScale, sy2 * zoomScale, sx1, sy1, sx2, sy2, null);
+            }
+        }
     }
 
-    @Override
-    public void update(Graphics g) {
-        super.update(g);
-        draw(g);
+    private GradientPaint getBackgroundPaint() {
+        if (backgroundPaint == null || backgroundPaint.getPoint2().getX() != getWidth() || backgroundPaint.getPoint2().getY() != getHeight()) {
+            backgroundPaint = new GradientPaint(0, 0, color1, getWidth(), getHeight(), color2);
+        }
+        return backgroundPaint;
     }
 
-    private void draw(Graphics g) {
-        Graphics2D g2 = (Graphics2D)g;
-        g2.setPaint(new GradientPaint(0, 0, color1, getWidth(),getHeight(), color2));
-        g2.fillRect(0, 0, getWidth(), getHeight());
-        if (image != null) {
-            if (zoomScale == 1) {
-                g.drawImage(image, 0, 0, this);
-            } else {
-                g2.drawImage(image, 0, 0, image.getWidth() * zoomScale, image.getHeight() * zoomScale, this);
-            }
+    /**
+     * Get the image in the format of the screen. Unlike the indexed image, Java2D can keep a copy of it in
+     * video memory, so zooming and scrolling doesn't convert and upload the pixels again on each repaint.
+     */
+    private BufferedImage getCompatibleImage() {
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if (gc == null) {
+            return image; // not on screen
+        }
+        if (compatibleImage == null || gc != compatibleImageConfiguration) {
+            compatibleImage = gc.createCompatibleImage(image.getWidth(), image.getHeight(), Transparency.TRANSLUCENT);
+            Graphics2D g = compatibleImage.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(image, 0, 0, null);
+            g.dispose();
+            compatibleImageConfiguration = gc;
         }
+        return compatibleImage;
     }
 
     private void setZoomScale(int s) {
@@ -69,6 +101,7 @@ class ZoomableGraphicsPanel extends JPanel {
 
     public void setImage(BufferedImage image) {
         this.image = image;
+        compatibleImage = null;
         Dimension dim;
         if (image != null) {
             dim = new Dimension(zoomScale * image.getWidth(), zoomScale * image.getHeight());
@@ -78,6 +111,7 @@ class ZoomableGraphicsPanel extends JPanel {
         setPreferredSize(dim);
         getParent().setSize(dim);
         getParent().getParent().revalidate();
+        repaint();
     }
 
     private class MouseListener extends MouseAdapter {
@@ -20,6 +20,7 @@ import bdsup2sub.core.CaptionMoveModeY;
 import bdsup2sub.core.Core;
 import bdsup2sub.core.CoreException;
 import bdsup2sub.supstream.SubPicture;
+import bdsup2sub.gui.support.GuiUtils;
 import bdsup2sub.utils.ToolBox;
 
 import javax.swing.event.DocumentEvent;
@@ -29,8 +30,8 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 
-import static bdsup2sub.core.Configuration.ERROR_BACKGROUND;
-import static bdsup2sub.core.Configuration.OK_BACKGROUND;
+import static bdsup2sub.gui.support.GuiUtils.ERROR_BACKGROUND;
+import static bdsup2sub.gui.support.GuiUtils.OK_BACKGROUND;
 
 class MoveDialogController {
     private static final double SCREEN_ASPECT_RATIO = 16.0/9;
@@ -274,7 +275,7 @@ class MoveDialogController {
         } catch (CoreException ex) {
             view.error(ex.getMessage());
         } catch (Exception ex) {
-            ToolBox.showException(ex);
+            GuiUtils.showException(ex);
             Core.exit();
             System.exit(4);
         }
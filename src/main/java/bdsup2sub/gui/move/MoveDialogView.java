@@ -29,8 +29,8 @@ import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
 
-import static bdsup2sub.core.Configuration.ERROR_BACKGROUND;
-import static bdsup2sub.core.Configuration.OK_BACKGROUND;
+import static bdsup2sub.gui.support.GuiUtils.ERROR_BACKGROUND;
+import static bdsup2sub.gui.support.GuiUtils.OK_BACKGROUND;
 import static bdsup2sub.gui.support.GuiUtils.centerRelativeToOwner;
 
 class MoveDialogView extends JDialog {
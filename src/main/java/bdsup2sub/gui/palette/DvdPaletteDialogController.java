@@ -19,6 +19,7 @@ import bdsup2sub.core.Constants;
 import bdsup2sub.core.CoreException;
 import bdsup2sub.tools.Props;
 import bdsup2sub.utils.FilenameUtils;
+import bdsup2sub.gui.support.GuiUtils;
 import bdsup2sub.utils.ToolBox;
 
 import javax.swing.*;
@@ -94,7 +95,7 @@ class DvdPaletteDialogController {
         public void actionPerformed(ActionEvent e) {
             String parent = FilenameUtils.getParent(model.getColorProfilePath());
             String defaultFilename = FilenameUtils.getName(model.getColorProfilePath());
-            String filename = ToolBox.getFilename(parent, defaultFilename, Collections.singletonList("ini"), false, view);
+            String filename = GuiUtils.getFilename(parent, defaultFilename, Collections.singletonList("ini"), false, view);
             if (filename != null) {
                 filename = FilenameUtils.removeExtension(filename) + ".ini";
                 File file = new File(filename);
@@ -129,7 +130,7 @@ class DvdPaletteDialogController {
         public void actionPerformed(ActionEvent e) {
             String parent = FilenameUtils.getParent(model.getColorProfilePath());
             String defaultFilename = FilenameUtils.getName(model.getColorProfilePath());
-            String filename = ToolBox.getFilename(parent, defaultFilename, Collections.singletonList("ini"), true, view);
+            String filename = GuiUtils.getFilename(parent, defaultFilename, Collections.singletonList("ini"), true, view);
             if (filename != null) {
                 File file = new File(filename);
                 try {
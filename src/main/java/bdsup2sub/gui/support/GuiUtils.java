@@ -15,17 +15,26 @@
  */
 package bdsup2sub.gui.support;
 
+import bdsup2sub.tools.JFileFilter;
+import bdsup2sub.utils.FilenameUtils;
+
 import javax.swing.*;
 import javax.swing.plaf.synth.Region;
 import javax.swing.plaf.synth.SynthLookAndFeel;
 import javax.swing.plaf.synth.SynthStyle;
 import javax.swing.plaf.synth.SynthStyleFactory;
 import java.awt.*;
+import java.io.File;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.util.List;
 
 public final class GuiUtils {
 
+    public static final Color OK_BACKGROUND = UIManager.getColor("TextField.background");
+    public static final Color WARN_BACKGROUND = new Color(0xffffffc0);
+    public static final Color ERROR_BACKGROUND = new Color(0xffe1acac);
+
     public static final Color GTK_AMBIANCE_TEXT_COLOR = new Color(223, 219, 210);
     public static final Color GTK_AMBIANCE_BACKGROUND_COLOR = new Color(67, 66, 63);
 
@@ -144,6 +153,68 @@ public final class GuiUtils {
         }
     }
 
+    /**
+     * Show a dialog with details about an exception
+     * @param ex Throwable/Exception to display
+     */
+    public static void showException(Throwable ex) {
+        String m;
+        m = "<html>";
+        m += ex.getClass().getName() + "<p>";
+        if (ex.getMessage() != null) {
+            m += ex.getMessage() + "<p>";
+        }
+        StackTraceElement ste[] = ex.getStackTrace();
+        for (StackTraceElement e : ste) {
+            m += e.toString() + "<p>";
+        }
+        m += "</html>";
+        ex.printStackTrace();
+        JOptionPane.showMessageDialog(null, m, "Error", JOptionPane.ERROR_MESSAGE);
+    }
+
+    /**
+     * Get file name via "file chooser" dialog
+     * @param path   Default path (without file name).
+     * @param filename     Default file name (without path).
+     * @param extensions    Array of allowed extensions (without ".")
+     * @param loadDialog   If true, this is a load dialog, else it's a save dialog
+     * @param parent Parent component (Frame, Window)
+     * @return       Selected filename or null if canceled
+     */
+    public static String getFilename(String path, String filename, List<String> extensions, boolean loadDialog, Component parent) {
+        if (path == null || path.isEmpty()) {
+            path = ".";
+        }
+        JFileChooser fileChooser = new JFileChooser(path);
+        if (extensions != null) {
+            JFileFilter fileFilter = new JFileFilter();
+            for (String extension : extensions) {
+                fileFilter.addExtension(extension);
+            }
+            fileChooser.setFileFilter(fileFilter);
+        }
+        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
+        File file;
+        if (filename != null && !filename.isEmpty()) {
+            file = new File(FilenameUtils.addSeparator(path) + filename);
+            if (file.canRead()) {
+                fileChooser.setSelectedFile(file);
+            }
+        }
+        if (!loadDialog) {
+            fileChooser.setDialogType(JFileChooser.SAVE_DIALOG);
+        }
+        int returnVal = fileChooser.showDialog(parent, null);
+        if (returnVal == JFileChooser.APPROVE_OPTION) {
+            file = fileChooser.getSelectedFile();
+            if (file != null) {
+                return file.getAbsolutePath();
+            }
+        }
+        return null;
+    }
+
     public static void centerRelativeToOwner(Window window) {
         Window owner = window.getOwner();
         Point p = owner.getLocation();
@@ -16,7 +16,7 @@
 package bdsup2sub.gui.support;
 
 import bdsup2sub.core.Core;
-import bdsup2sub.core.CoreThreadState;
+import bdsup2sub.core.ProgressView;
 
 import javax.swing.*;
 import java.awt.*;
@@ -24,13 +24,14 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
-import java.lang.reflect.InvocationTargetException;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Future;
 
 import static bdsup2sub.gui.support.GuiUtils.centerRelativeToOwner;
 
-public class Progress extends JDialog {
+public class Progress extends JDialog implements ProgressView {
+
+    /** Interval between two updates of the progress bar */
+    private static final int REFRESH_MILLIS = 100;
 
     private JPanel jContentPane;
     private JButton jButtonCancel;
@@ -61,12 +62,23 @@ public class Progress extends JDialog {
     }
 
     @Override
-    public void setVisible(boolean b) {
-        timer = new Timer();
-        timer.schedule(new ProgressTimer(), 200, 200);
-        super.setVisible(b);
+    public void showProgress(final Future<?> task) {
+        timer = new Timer(REFRESH_MILLIS, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                if (task.isDone()) {
+                    timer.stop();
+                    dispose();
+                } else {
+                    jProgressBar.setValue(Core.getProgress());
+                }
+            }
+        });
+        timer.start();
+        setVisible(true);
     }
 
+    @Override
     public void setText(String s) {
         jLabelProgress.setText(s);
     }
@@ -121,19 +133,4 @@ public class Progress extends JDialog {
         }
         return jProgressBar;
     }
-
-    public void setProgress(final int val) {
-        jProgressBar.setValue(val);
-        jProgressBar.repaint();
-    }
-
-    private class ProgressTimer extends TimerTask {
-        @Override
-        public void run() {
-            if (Core.getStatus() != CoreThreadState.ACTIVE) {
-                timer.cancel();
-                dispose();
-            }
-        }
-    }
 }
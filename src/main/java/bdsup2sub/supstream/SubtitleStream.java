@@ -16,6 +16,7 @@
 package bdsup2sub.supstream;
 
 import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.BitmapWithPalette;
 import bdsup2sub.bitmap.Palette;
 import bdsup2sub.core.CoreException;
 
@@ -61,6 +62,16 @@ public interface SubtitleStream {
      */
     void decode(int index) throws CoreException;
 
+    /**
+     * Decode caption into a new bitmap and palette as decode does, e.g. for a thumbnail. Neither the
+     * current frame nor the size and offsets of the caption nor any read-ahead are changed, but the
+     * stream is read, so this must not be called concurrently with decode.
+     * @param index Index of caption
+     * @return Bitmap and palette of the caption
+     * @throws CoreException
+     */
+    BitmapWithPalette decodePreview(int index) throws CoreException;
+
     /**
      * Get number of frames in the currently loaded subtitle stream.
      * @return Number of frames
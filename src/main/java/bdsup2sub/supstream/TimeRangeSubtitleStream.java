@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.BitmapWithPalette;
+import bdsup2sub.bitmap.Palette;
+import bdsup2sub.core.CoreException;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * View of the captions of a subtitle stream overlapping a time range. Captions are numbered from 0 in
+ * stream order and all calls are passed to the underlying stream with the caption index mapped, so
+ * captions outside of the range are never decoded.
+ */
+public final class TimeRangeSubtitleStream implements SubtitleStream {
+
+    private final SubtitleStream stream;
+    /** indices of the captions in the underlying stream */
+    private final int[] indices;
+    private final int forcedFrameCount;
+
+    /**
+     * @param stream Underlying subtitle stream
+     * @param index  Timeline index of the underlying stream
+     * @param from   Start of range (90kHz)
+     * @param to     End of range (90kHz, exclusive)
+     */
+    public TimeRangeSubtitleStream(SubtitleStream stream, TimelineIndex index, long from, long to) {
+        this.stream = stream;
+        indices = index.getOverlapping(from, to);
+        int forced = 0;
+        for (int i : indices) {
+            if (stream.isForced(i)) {
+                forced++;
+            }
+        }
+        forcedFrameCount = forced;
+    }
+
+    /**
+     * Get index of caption in the underlying stream.
+     * @param index Index of caption in this view
+     * @return Index of caption in the underlying stream
+     */
+    public int getSourceIndex(int index) {
+        return indices[index];
+    }
+
+    @Override
+    public Palette getPalette() {
+        return stream.getPalette();
+    }
+
+    @Override
+    public Bitmap getBitmap() {
+        return stream.getBitmap();
+    }
+
+    @Override
+    public BufferedImage getImage() {
+        return stream.getImage();
+    }
+
+    @Override
+    public BufferedImage getImage(Bitmap bitmap) {
+        return stream.getImage(bitmap);
+    }
+
+    @Override
+    public int getPrimaryColorIndex() {
+        return stream.getPrimaryColorIndex();
+    }
+
+    @Override
+    public void decode(int index) throws CoreException {
+        stream.decode(indices[index]);
+    }
+
+    @Override
+    public BitmapWithPalette decodePreview(int index) throws CoreException {
+        return stream.decodePreview(indices[index]);
+    }
+
+    @Override
+    public int getFrameCount() {
+        return indices.length;
+    }
+
+    @Override
+    public int getForcedFrameCount() {
+        return forcedFrameCount;
+    }
+
+    @Override
+    public boolean isForced(int index) {
+        return stream.isForced(indices[index]);
+    }
+
+    @Override
+    public void close() {
+        stream.close();
+    }
+
+    @Override
+    public long getEndTime(int index) {
+        return stream.getEndTime(indices[index]);
+    }
+
+    @Override
+    public long getStartTime(int index) {
+        return stream.getStartTime(indices[index]);
+    }
+
+    @Override
+    public long getStartOffset(int index) {
+        return stream.getStartOffset(indices[index]);
+    }
+
+    @Override
+    public SubPicture getSubPicture(int index) {
+        return stream.getSubPicture(indices[index]);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Index over the start and end times of the captions of a stream to find the captions overlapping
+ * a time range without walking all captions. Captions are kept sorted by start time together with the
+ * running maximum of their end times, so both ends of the range are found by binary search.
+ */
+public final class TimelineIndex {
+
+    /** caption indices sorted by start time */
+    private final int[] indices;
+    /** start times in the order of indices */
+    private final long[] startTimes;
+    /** end times in the order of indices */
+    private final long[] endTimes;
+    /** maximum end time of all captions up to and including the position */
+    private final long[] maxEndTimes;
+
+    /**
+     * @param startTimes Start time of each caption (90kHz)
+     * @param endTimes   End time of each caption (90kHz)
+     */
+    public TimelineIndex(final long[] startTimes, long[] endTimes) {
+        int count = startTimes.length;
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // stable, so captions with the same start time stay in stream order
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long ta = startTimes[a];
+                long tb = startTimes[b];
+                return ta < tb ? -1 : (ta == tb ? 0 : 1);
+            }
+        });
+        indices = new int[count];
+        this.startTimes = new long[count];
+        this.endTimes = new long[count];
+        maxEndTimes = new long[count];
+        long maxEndTime = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int index = order[i];
+            indices[i] = index;
+            this.startTimes[i] = startTimes[index];
+            this.endTimes[i] = endTimes[index];
+            maxEndTime = Math.max(maxEndTime, endTimes[index]);
+            maxEndTimes[i] = maxEndTime;
+        }
+    }
+
+    /**
+     * Create the index of all captions of a stream.
+     * @param stream Subtitle stream
+     * @return Timeline index
+     */
+    public static TimelineIndex create(SubtitleStream stream) {
+        int count = stream.getFrameCount();
+        long[] startTimes = new long[count];
+        long[] endTimes = new long[count];
+        for (int i = 0; i < count; i++) {
+            startTimes[i] = stream.getStartTime(i);
+            endTimes[i] = stream.getEndTime(i);
+        }
+        return new TimelineIndex(startTimes, endTimes);
+    }
+
+    /**
+     * Get the captions overlapping a time range, i.e. ending after its start and starting before its end.
+     * @param from Start of range (90kHz)
+     * @param to   End of range (90kHz, exclusive)
+     * @return Indices of the overlapping captions in ascending order
+     */
+    public int[] getOverlapping(long from, long to) {
+        // captions before lo end at or before "from", captions from hi on start at or after "to"
+        int lo = firstPosition(maxEndTimes, from + 1);
+        int hi = firstPosition(startTimes, to);
+        int[] result = new int[Math.max(hi - lo, 0)];
+        int count = 0;
+        for (int i = lo; i < hi; i++) {
+            if (endTimes[i] > from) {
+                result[count++] = indices[i];
+            }
+        }
+        result = Arrays.copyOf(result, count);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * @return Number of captions in the index
+     */
+    public int size() {
+        return indices.length;
+    }
+
+    /**
+     * Find the first position holding a value greater or equal to the given value.
+     * @param values Sorted values
+     * @param value  Value to search
+     * @return First position, values.length if all values are smaller
+     */
+    private static int firstPosition(long[] values, long value) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < value) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
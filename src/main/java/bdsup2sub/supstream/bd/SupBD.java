@@ -16,6 +16,7 @@
 package bdsup2sub.supstream.bd;
 
 import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.BitmapWithPalette;
 import bdsup2sub.bitmap.Palette;
 import bdsup2sub.core.*;
 import bdsup2sub.supstream.*;
@@ -236,6 +237,18 @@ public class SupBD implements SubtitleStream {
         }
     }
 
+    /* (non-Javadoc)
+     * @see SubtitleStream#decodePreview(int)
+     */
+    public BitmapWithPalette decodePreview(int index) throws CoreException {
+        if (index >= subPictures.size()) {
+            throw new CoreException("Index "+index+" out of bounds\n");
+        }
+        SubPictureBD pic = subPictures.get(index);
+        Palette pal = decodePalette(pic);
+        return new BitmapWithPalette(decodeImage(pic, pal.getIndexOfMostTransparentPaletteEntry()), pal);
+    }
+
     /* (non-Javadoc)
      * @see SubtitleStream#getPalette()
      */
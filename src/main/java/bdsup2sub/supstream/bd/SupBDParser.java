@@ -1,6 +1,7 @@
 package bdsup2sub.supstream.bd;
 
 import bdsup2sub.core.Configuration;
+import bdsup2sub.core.ConversionEvents;
 import bdsup2sub.core.Core;
 import bdsup2sub.core.CoreException;
 import bdsup2sub.core.Logger;
@@ -73,6 +74,7 @@ public class SupBDParser {
                     throw new CoreException("Canceled by user!");
                 }
                 Core.setProgress(index);
+                ConversionEvents.SegmentEvent event = ConversionEvents.beginSegment();
                 segment = readPCSSegment(index);
                 switch (segment.type) {
                     case PGSSUP_PALETTE_SEGMENT:
@@ -270,6 +272,7 @@ public class SupBDParser {
                         logger.warn("<unknown> " + ToolBox.toHexLeftZeroPadded(segment.type, 2) + " ofs:" + ToolBox.toHexLeftZeroPadded(index, 8) + "\n");
                         break;
                 }
+                event.commit(index, getSegmentName(segment.type), 13 + segment.size, subPictures.size() - 1);
                 index += 13; // header size
                 index += segment.size;
             }
@@ -309,6 +312,23 @@ public class SupBDParser {
         logger.info("\nDetected " + forcedFrameCount + " forced captions.\n");
     }
 
+    private static String getSegmentName(int type) {
+        switch (type) {
+            case PGSSUP_PALETTE_SEGMENT:
+                return "PDS";
+            case PGSSUP_PICTURE_SEGMENT:
+                return "ODS";
+            case PGSSUP_PRESENTATION_SEGMENT:
+                return "PCS";
+            case PGSSUP_WINDOW_SEGMENT:
+                return "WDS";
+            case PGSSUP_DISPLAY_SEGMENT:
+                return "END";
+            default:
+                return "unknown";
+        }
+    }
+
     private PCSSegment readPCSSegment(int offset) throws FileBufferException, CoreException {
         PCSSegment pcsSegment = new PCSSegment();
         if (buffer.getWord(offset) != PGSSUP_FILE_MAGIC) {
@@ -3,22 +3,27 @@ package bdsup2sub.supstream.bd;
 import bdsup2sub.bitmap.Bitmap;
 import bdsup2sub.bitmap.Palette;
 import bdsup2sub.core.Configuration;
+import bdsup2sub.core.ConversionStatistics;
 import bdsup2sub.core.Framerate;
 import bdsup2sub.core.Logger;
 import bdsup2sub.supstream.SubPicture;
 import bdsup2sub.tools.QuantizeFilter;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import static bdsup2sub.utils.ByteUtils.setByte;
 import static bdsup2sub.utils.ByteUtils.setDWord;
 import static bdsup2sub.utils.ByteUtils.setWord;
+import static bdsup2sub.utils.StreamUtils.writeFully;
 
 public final class SupBDWriter {
 
     private static final Configuration configuration = Configuration.getInstance();
     private static final Logger logger = Logger.getInstance();
+    private static final ConversionStatistics statistics = ConversionStatistics.getInstance();
 
     private static final byte PACKET_HEADER[] = {
             0x50, 0x47,             // 0:  "PG"
@@ -74,23 +79,96 @@ public final class SupBDWriter {
             0x00, 0x00, 0x00, 0x00  // 6 : width, height
     };
 
-    private SupBDWriter() {
+    private final byte[] packetHeader = PACKET_HEADER.clone();
+    private final byte[] headerPcsStart = HEADER_PCS_START.clone();
+    private final byte[] headerPcsEnd = HEADER_PCS_END.clone();
+    private final byte[] headerOdsFirst = HEADER_ODS_FIRST.clone();
+    private final byte[] headerOdsNext = HEADER_ODS_NEXT.clone();
+    private final byte[] headerWds = HEADER_WDS.clone();
+
+    /** RLE buffer, reused for all captions */
+    private byte[] rleBuf = new byte[0x10000];
+    private int rleSize;
+    /** Frame buffer used when writing to a channel, reused for all captions */
+    private ByteBuffer frameBuf = ByteBuffer.allocate(0x10000);
+
+    /** Bitmap and palette of the caption being written (after quantization) */
+    private Bitmap frameBitmap;
+    private Palette framePalette;
+    private int numAddPackets;
+    private int palSize;
+
+    /**
+     * Create a writer for BD-SUP captions. Writers don't share any state, but a single writer must not be
+     * used by more than one thread at a time.
+     */
+    public SupBDWriter() {
+    }
+
+    /**
+     * Write the binary stream representation of one caption to a buffer
+     * @param pic SubPicture object containing caption info
+     * @param bm bitmap
+     * @param pal palette
+     * @param buf buffer to write the caption to, starting at its current position
+     * @return number of bytes written
+     * @throws java.nio.BufferOverflowException if the remaining space in the buffer is too small (nothing is written then)
+     */
+    public int writeSupFrame(SubPicture pic, Bitmap bm, Palette pal, ByteBuffer buf) {
+        int size = prepareFrame(bm, pal);
+        if (buf.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        writeFrame(pic, buf);
+        return size;
     }
 
     /**
-     * Create the binary stream representation of one caption
+     * Write the binary stream representation of one caption to a channel
      * @param pic SubPicture object containing caption info
      * @param bm bitmap
      * @param pal palette
-     * @return byte buffer containing the binary stream representation of one caption
+     * @param channel channel to write the caption to
+     * @return number of bytes written
+     * @throws IOException
      */
-    public static byte[] createSupFrame(SubPicture pic, Bitmap bm, Palette pal) {
+    public int writeSupFrame(SubPicture pic, Bitmap bm, Palette pal, WritableByteChannel channel) throws IOException {
+        ConversionStatistics.StageTimer encodeTimer = statistics.start(ConversionStatistics.Stage.ENCODE);
+        int size = prepareFrame(bm, pal);
+        if (frameBuf.capacity() < size) {
+            frameBuf = ByteBuffer.allocate(Math.max(size, frameBuf.capacity() * 2));
+        }
+        frameBuf.clear();
+        writeFrame(pic, frameBuf);
+        frameBuf.flip();
+        encodeTimer.end(bm.getWidth(), bm.getHeight(), size);
+        ConversionStatistics.StageTimer writeTimer = statistics.start(ConversionStatistics.Stage.WRITE);
+        writeFully(frameBuf, channel);
+        statistics.addBytesWritten(size);
+        writeTimer.end(bm.getWidth(), bm.getHeight(), size);
+        return size;
+    }
+
+    /**
+     * Quantize the caption if needed, create the RLE buffer and determine the size of the binary stream representation
+     * @param bm bitmap
+     * @param pal palette
+     * @return size of the binary stream representation in bytes
+     */
+    private int prepareFrame(Bitmap bm, Palette pal) {
         // the last palette entry must be transparent
         if (pal.getSize() > 255 && pal.getAlpha(255) > 0) {
             // quantize image
+            ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.QUANTIZE);
             QuantizeFilter qf = new QuantizeFilter();
+            qf.setMethod(configuration.getQuantizationMethod());
             Bitmap bmQ = new Bitmap(bm.getWidth(), bm.getHeight());
-            int[] ct = qf.quantize(bm.toARGB(pal), bmQ.getInternalBuffer(), bm.getWidth(), bm.getHeight(), 255, false, false);
+            int[] colors = new int[256];
+            for (int i=0; i < colors.length; i++) {
+                colors[i] = pal.getARGB(i);
+            }
+            int[] ct = qf.quantize(bm.getInternalBuffer(), colors, bmQ.getInternalBuffer(), bm.getWidth() * bm.getHeight(), 255);
+            timer.end(bm.getWidth(), bm.getHeight(), 0);
             int size = ct.length;
             if (size > 255) {
                 size = 255;
@@ -107,8 +185,10 @@ public final class SupBDWriter {
             // use new bitmap
             bm = bmQ;
         }
+        frameBitmap = bm;
+        framePalette = pal;
 
-        byte[] rleBuf = encodeImage(bm);
+        encodeImage(bm);
 
         // for some obscure reason, a packet can be a maximum 0xfffc bytes
         // since 13 bytes are needed for the header("PG", PTS, DTS, ID, SIZE)
@@ -117,22 +197,32 @@ public final class SupBDWriter {
         // and the following ODS packets need 4 additional bytes, the
         // first package can store only 0xffe4 RLE buffer bytes and the
         // following packets can store 0xffeb RLE buffer bytes
-        int numAddPackets;
-        if (rleBuf.length <= 0xffe4) {
+        if (rleSize <= 0xffe4) {
             numAddPackets = 0; // no additional packets needed;
         } else {
-            numAddPackets = 1 + (rleBuf.length - 0xffe4) / 0xffeb;
+            numAddPackets = 1 + (rleSize - 0xffe4) / 0xffeb;
         }
 
         // a typical frame consists of 8 packets. It can be enlonged by additional
         // object frames
-        int palSize = bm.getHighestVisibleColorIndex(pal.getAlpha()) + 1;
+        palSize = bm.getHighestVisibleColorIndex(pal.getAlpha()) + 1;
         int size = PACKET_HEADER.length * (8 + numAddPackets);
         size += HEADER_PCS_START.length + HEADER_PCS_END.length;
         size += 2* HEADER_WDS.length + HEADER_ODS_FIRST.length;
         size += numAddPackets * HEADER_ODS_NEXT.length;
         size += (2 + palSize * 5) /* PDS */;
-        size += rleBuf.length;
+        size += rleSize;
+        return size;
+    }
+
+    /**
+     * Write the caption prepared by {@link #prepareFrame(Bitmap, Palette)}
+     * @param pic SubPicture object containing caption info
+     * @param buf buffer with enough remaining space for the caption
+     */
+    private void writeFrame(SubPicture pic, ByteBuffer buf) {
+        Bitmap bm = frameBitmap;
+        Palette pal = framePalette;
 
         int yOfs = pic.getYOffset() - configuration.getCropOffsetY();
         if (yOfs < 0) {
@@ -146,9 +236,6 @@ public final class SupBDWriter {
 
         int h = pic.getHeight() -2 * configuration.getCropOffsetY();
 
-        byte[] buf = new byte[size];
-        int index = 0;
-
         int fpsId = Framerate.idForFramerate(configuration.getFpsTrg());
 
         /* time (in 90kHz resolution) needed to initialize (clear) the screen buffer
@@ -162,167 +249,143 @@ public final class SupBDWriter {
            based on the decoding pixel rate of 128e6 bit/s - always rounded up  */
         int imageDecodeTime = (bm.getWidth() * bm.getHeight() * 9 + 1599) / 1600;
         // write PCS start
-        PACKET_HEADER[10] = 0x16;                               // ID
-        setDWord(PACKET_HEADER, 2, (int) pic.getStartTime());   // PTS
-        setDWord(PACKET_HEADER, 6, 0);                          // DTS (0)
-        setWord(PACKET_HEADER, 11, HEADER_PCS_START.length);    // size
-        for (byte b : PACKET_HEADER) {
-            buf[index++] = b;
-        }
-        setWord(HEADER_PCS_START,0, pic.getWidth());
-        setWord(HEADER_PCS_START, 2, h);                        // cropped height
-        setByte(HEADER_PCS_START, 4, fpsId);
-        setWord(HEADER_PCS_START, 5, pic.getCompositionNumber());
-        HEADER_PCS_START[14] = (pic.isForced() ? (byte)0x40 : 0);
-        setWord(HEADER_PCS_START,15, pic.getXOffset());
-        setWord(HEADER_PCS_START,17, yOfs);
-        for (byte b : HEADER_PCS_START) {
-            buf[index++] = b;
-        }
+        packetHeader[10] = 0x16;                                // ID
+        setDWord(packetHeader, 2, (int) pic.getStartTime());    // PTS
+        setDWord(packetHeader, 6, 0);                           // DTS (0)
+        setWord(packetHeader, 11, headerPcsStart.length);       // size
+        buf.put(packetHeader);
+        setWord(headerPcsStart,0, pic.getWidth());
+        setWord(headerPcsStart, 2, h);                          // cropped height
+        setByte(headerPcsStart, 4, fpsId);
+        setWord(headerPcsStart, 5, pic.getCompositionNumber());
+        headerPcsStart[14] = (pic.isForced() ? (byte)0x40 : 0);
+        setWord(headerPcsStart,15, pic.getXOffset());
+        setWord(headerPcsStart,17, yOfs);
+        buf.put(headerPcsStart);
 
         // write WDS
-        PACKET_HEADER[10] = 0x17;                                   // ID
+        packetHeader[10] = 0x17;                                    // ID
         int timeStamp = (int) pic.getStartTime() - windowInitTime;
-        setDWord(PACKET_HEADER, 2, timeStamp);                      // PTS
-        setDWord(PACKET_HEADER, 6, 0);                              // DTS (0)
-        setWord(PACKET_HEADER, 11, HEADER_WDS.length);              // size
-        for (byte b : PACKET_HEADER) {
-            buf[index++] = b;
-        }
-        setWord(HEADER_WDS, 2, pic.getXOffset());
-        setWord(HEADER_WDS, 4, yOfs);
-        setWord(HEADER_WDS, 6, bm.getWidth());
-        setWord(HEADER_WDS, 8, bm.getHeight());
-        for (byte b : HEADER_WDS) {
-            buf[index++] = b;
-        }
+        setDWord(packetHeader, 2, timeStamp);                       // PTS
+        setDWord(packetHeader, 6, 0);                               // DTS (0)
+        setWord(packetHeader, 11, headerWds.length);                // size
+        buf.put(packetHeader);
+        setWord(headerWds, 2, pic.getXOffset());
+        setWord(headerWds, 4, yOfs);
+        setWord(headerWds, 6, bm.getWidth());
+        setWord(headerWds, 8, bm.getHeight());
+        buf.put(headerWds);
 
         // write PDS
-        PACKET_HEADER[10] = 0x14;                       // ID
+        packetHeader[10] = 0x14;                        // ID
         int dts = (int) pic.getStartTime() - (frameInitTime + windowInitTime);
-        setDWord(PACKET_HEADER, 2, dts);                // PTS
-        setDWord(PACKET_HEADER, 6, 0);                  // DTS (0)
-        setWord(PACKET_HEADER, 11, (2 + palSize * 5));  // size
-        for (byte b : PACKET_HEADER) {
-            buf[index++] = b;
-        }
-        buf[index++] = 0;
-        buf[index++] = 0;
+        setDWord(packetHeader, 2, dts);                 // PTS
+        setDWord(packetHeader, 6, 0);                   // DTS (0)
+        setWord(packetHeader, 11, (2 + palSize * 5));   // size
+        buf.put(packetHeader);
+        buf.put((byte)0);
+        buf.put((byte)0);
+        byte[] y = pal.getY();
+        byte[] cr = pal.getCr();
+        byte[] cb = pal.getCb();
+        byte[] alpha = pal.getAlpha();
         for (int i=0; i < palSize; i++) {
-            buf[index++] = (byte)i;             // index
-            buf[index++] = pal.getY()[i];       // Y
-            buf[index++] = pal.getCr()[i];      // Cr
-            buf[index++] = pal.getCb()[i];      // Cb
-            buf[index++] = pal.getAlpha()[i];   // Alpha
+            buf.put((byte)i);       // index
+            buf.put(y[i]);          // Y
+            buf.put(cr[i]);         // Cr
+            buf.put(cb[i]);         // Cb
+            buf.put(alpha[i]);      // Alpha
         }
 
         // write first OBJ
-        int bufSize = rleBuf.length;
+        int bufSize = rleSize;
         int rleIndex = 0;
         if (bufSize > 0xffe4) {
             bufSize = 0xffe4;
         }
-        PACKET_HEADER[10] = 0x15;                                       // ID
+        packetHeader[10] = 0x15;                                        // ID
         timeStamp = dts + imageDecodeTime;
-        setDWord(PACKET_HEADER, 2, timeStamp);                          // PTS
-        setDWord(PACKET_HEADER, 6, 0);                                  // DTS (0)
-        setWord(PACKET_HEADER, 11, HEADER_ODS_FIRST.length + bufSize);  // size
-        for (byte b : PACKET_HEADER) {
-            buf[index++] = b;
-        }
+        setDWord(packetHeader, 2, timeStamp);                           // PTS
+        setDWord(packetHeader, 6, 0);                                   // DTS (0)
+        setWord(packetHeader, 11, headerOdsFirst.length + bufSize);     // size
+        buf.put(packetHeader);
         int marker = ((numAddPackets == 0) ? 0xC0000000 : 0x80000000);
-        setDWord(HEADER_ODS_FIRST, 3, marker | (rleBuf.length + 4));
-        setWord(HEADER_ODS_FIRST, 7, bm.getWidth());
-        setWord(HEADER_ODS_FIRST, 9, bm.getHeight());
-        for (byte b : HEADER_ODS_FIRST) {
-            buf[index++] = b;
-        }
-        for (int i=0; i < bufSize; i++) {
-            buf[index++] = rleBuf[rleIndex++];
-        }
+        setDWord(headerOdsFirst, 3, marker | (rleSize + 4));
+        setWord(headerOdsFirst, 7, bm.getWidth());
+        setWord(headerOdsFirst, 9, bm.getHeight());
+        buf.put(headerOdsFirst);
+        buf.put(rleBuf, rleIndex, bufSize);
+        rleIndex += bufSize;
 
         // write additional OBJ packets
-        bufSize = rleBuf.length-bufSize; // remaining bytes to write
+        bufSize = rleSize-bufSize; // remaining bytes to write
         for (int p=0; p < numAddPackets; p++) {
             int psize = bufSize;
             if (psize > 0xffeb) {
                 psize = 0xffeb;
             }
-            PACKET_HEADER[10] = 0x15;                                   // ID (keep DTS & PTS)
-            setWord(PACKET_HEADER, 11, HEADER_ODS_NEXT.length + psize); // size
-            for (byte b : PACKET_HEADER) {
-                buf[index++] = b;
-            }
-            for (byte b : HEADER_ODS_NEXT) {
-                buf[index++] = b;
-            }
-            for (int i=0; i < psize; i++) {
-                buf[index++] = rleBuf[rleIndex++];
-            }
+            packetHeader[10] = 0x15;                                    // ID (keep DTS & PTS)
+            setWord(packetHeader, 11, headerOdsNext.length + psize);    // size
+            buf.put(packetHeader);
+            buf.put(headerOdsNext);
+            buf.put(rleBuf, rleIndex, psize);
+            rleIndex += psize;
             bufSize -= psize;
         }
 
         // write END
-        PACKET_HEADER[10] = (byte)0x80;                 // ID
-        setDWord(PACKET_HEADER, 2, timeStamp);          // PTS
-        setDWord(PACKET_HEADER, 6, 0);                  // DTS (0)
-        setWord(PACKET_HEADER, 11, 0);                  // size
-        for (byte b : PACKET_HEADER) {
-            buf[index++] = b;
-        }
+        packetHeader[10] = (byte)0x80;                  // ID
+        setDWord(packetHeader, 2, timeStamp);           // PTS
+        setDWord(packetHeader, 6, 0);                   // DTS (0)
+        setWord(packetHeader, 11, 0);                   // size
+        buf.put(packetHeader);
 
         // write PCS end
-        PACKET_HEADER[10] = 0x16;                               // ID
-        setDWord(PACKET_HEADER, 2, (int) pic.getEndTime());     // PTS
-        setDWord(PACKET_HEADER, 6, 0);                          // DTS (0)
-        setWord(PACKET_HEADER, 11, HEADER_PCS_END.length);      // size
-        for (byte b : PACKET_HEADER) {
-            buf[index++] = b;
-        }
-        setWord(HEADER_PCS_END,0, pic.getWidth());
-        setWord(HEADER_PCS_END, 2, h);                          // cropped height
-        setByte(HEADER_PCS_END, 4, fpsId);
-        setWord(HEADER_PCS_END, 5, pic.getCompositionNumber() + 1);
-        for (byte b : HEADER_PCS_END) {
-            buf[index++] = b;
-        }
+        packetHeader[10] = 0x16;                                // ID
+        setDWord(packetHeader, 2, (int) pic.getEndTime());      // PTS
+        setDWord(packetHeader, 6, 0);                           // DTS (0)
+        setWord(packetHeader, 11, headerPcsEnd.length);         // size
+        buf.put(packetHeader);
+        setWord(headerPcsEnd,0, pic.getWidth());
+        setWord(headerPcsEnd, 2, h);                            // cropped height
+        setByte(headerPcsEnd, 4, fpsId);
+        setWord(headerPcsEnd, 5, pic.getCompositionNumber() + 1);
+        buf.put(headerPcsEnd);
 
         // write WDS
-        PACKET_HEADER[10] = 0x17;                               // ID
+        packetHeader[10] = 0x17;                                // ID
         timeStamp = (int) pic.getEndTime() - windowInitTime;
-        setDWord(PACKET_HEADER, 2, timeStamp);                  // PTS
-        setDWord(PACKET_HEADER, 6, 0);
-        setWord(PACKET_HEADER, 11, HEADER_WDS.length);          // size
-        for (byte b : PACKET_HEADER) {
-            buf[index++] = b;
-        }
-        setWord(HEADER_WDS, 2, pic.getXOffset());
-        setWord(HEADER_WDS, 4, yOfs);
-        setWord(HEADER_WDS, 6, bm.getWidth());
-        setWord(HEADER_WDS, 8, bm.getHeight());
-        for (byte b : HEADER_WDS) {
-            buf[index++] = b;
-        }
+        setDWord(packetHeader, 2, timeStamp);                   // PTS
+        setDWord(packetHeader, 6, 0);
+        setWord(packetHeader, 11, headerWds.length);            // size
+        buf.put(packetHeader);
+        setWord(headerWds, 2, pic.getXOffset());
+        setWord(headerWds, 4, yOfs);
+        setWord(headerWds, 6, bm.getWidth());
+        setWord(headerWds, 8, bm.getHeight());
+        buf.put(headerWds);
 
         // write END
-        PACKET_HEADER[10] = (byte)0x80;             // ID
-        setDWord(PACKET_HEADER, 2, timeStamp);      // PTS (PTS of end PCS)
-        setDWord(PACKET_HEADER, 6, 0);              // DTS (0)
-        setWord(PACKET_HEADER, 11, 0);              // size
-        for (byte b : PACKET_HEADER) {
-            buf[index++] = b;
-        }
-
-        return buf;
+        packetHeader[10] = (byte)0x80;              // ID
+        setDWord(packetHeader, 2, timeStamp);       // PTS (PTS of end PCS)
+        setDWord(packetHeader, 6, 0);               // DTS (0)
+        setWord(packetHeader, 11, 0);               // size
+        buf.put(packetHeader);
     }
 
     /**
      * Create RLE buffer from bitmap
      * @param bm bitmap to compress
-     * @return RLE buffer
      */
-    private static byte[] encodeImage(Bitmap bm) {
-        ArrayList<Byte> bytes = new ArrayList<Byte>();
+    private void encodeImage(Bitmap bm) {
+        byte[] pixels = bm.getInternalBuffer();
+        // worst case: two bytes per pixel plus the end of line marker
+        int maxSize = 2 * (pixels.length + bm.getHeight());
+        if (rleBuf.length < maxSize) {
+            rleBuf = new byte[maxSize];
+        }
+        byte[] bytes = rleBuf;
+        int size = 0;
         byte color;
         int ofs;
         int len;
@@ -333,58 +396,52 @@ public final class SupBDWriter {
             //eol = false;
             int x;
             for (x=0; x < bm.getWidth(); x+=len, ofs+=len) {
-                color = bm.getInternalBuffer()[ofs];
+                color = pixels[ofs];
                 for (len=1; x+len < bm.getWidth(); len++) {
-                    if (bm.getInternalBuffer()[ofs+len] != color) {
+                    if (pixels[ofs+len] != color) {
                         break;
                     }
                 }
                 if (len<=2 && color != 0) {
                     // only a single occurrence -> add color
-                    bytes.add(color);
+                    bytes[size++] = color;
                     if (len==2) {
-                        bytes.add(color);
+                        bytes[size++] = color;
                     }
                 } else {
                     if (len > 0x3fff) {
                         len = 0x3fff;
                     }
-                    bytes.add((byte)0); // rle id
+                    bytes[size++] = 0; // rle id
                     // commented out due to bug in SupRip
                     /*if (color == 0 && x+len == bm.getWidth()) {
-                        bytes.add((byte)0);
+                        bytes[size++] = 0;
                         eol = true;
                     } else*/
                     if (color == 0 && len < 0x40){
                         // 00 xx -> xx times 0
-                        bytes.add((byte)len);
+                        bytes[size++] = (byte)len;
                     } else if (color == 0){
                         // 00 4x xx -> xxx zeroes
-                        bytes.add((byte)(0x40|(len>>8)) );
-                        bytes.add((byte)len);
+                        bytes[size++] = (byte)(0x40|(len>>8));
+                        bytes[size++] = (byte)len;
                     } else if(len < 0x40) {
                         // 00 8x cc -> x times value cc
-                        bytes.add((byte)(0x80|len) );
-                        bytes.add(color);
+                        bytes[size++] = (byte)(0x80|len);
+                        bytes[size++] = color;
                     } else {
                         // 00 cx yy cc -> xyy times value cc
-                        bytes.add((byte)(0xc0|(len>>8)) );
-                        bytes.add((byte)len);
-                        bytes.add(color);
+                        bytes[size++] = (byte)(0xc0|(len>>8));
+                        bytes[size++] = (byte)len;
+                        bytes[size++] = color;
                     }
                 }
             }
             if (/*!eol &&*/ x == bm.getWidth()) {
-                bytes.add((byte)0); // rle id
-                bytes.add((byte)0);
+                bytes[size++] = 0; // rle id
+                bytes[size++] = 0;
             }
         }
-        int size =  bytes.size();
-        byte[] retval = new byte[size];
-        Iterator<Byte> it = bytes.iterator();
-        for (int i=0; i < size; i++) {
-            retval[i] = it.next();
-        }
-        return retval;
+        rleSize = size;
     }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.bdnxml;
+
+import bdsup2sub.bitmap.BitmapWithPalette;
+import bdsup2sub.core.ConversionEvents;
+import bdsup2sub.tools.IndexedPngReader;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes the images of the captions following the one requested last on background threads, so that
+ * stepping through or exporting a BDN XML stream finds the next images already read from disk.
+ * Prefetching starts when the captions are requested one after the other and the prefetched images
+ * are dropped as soon as a caption outside of the prefetched range is requested. Each image is handed
+ * out once, so the caller may modify it. Calls have to be serialized by the caller.
+ */
+class PngPrefetcher {
+
+    /** Threads are stopped when idle for this time (in seconds) */
+    private static final long KEEP_ALIVE_TIME = 30;
+
+    private final List<SubPictureXml> subPictures;
+    private final int numCaptions;
+    private final ThreadPoolExecutor executor;
+    /** Prefetched images by caption index */
+    private final SortedMap<Integer, Future<BitmapWithPalette>> prefetched = new TreeMap<Integer, Future<BitmapWithPalette>>();
+    /**
+     * Readers not used by a running task. Readers belong to the pool rather than to a thread, so threads
+     * stopped when idle don't take an inflater with them. There are never more readers than threads.
+     */
+    private final List<IndexedPngReader> idleReaders = new ArrayList<IndexedPngReader>();
+    /** True once the readers have been released, readers returned after that are released at once */
+    private boolean readersReleased;
+    private int lastIndex = -1;
+
+    /**
+     * @param subPictures Captions, may still be filled after construction
+     * @param numCaptions Number of captions to decode ahead, also the number of threads
+     */
+    PngPrefetcher(List<SubPictureXml> subPictures, int numCaptions) {
+        this.subPictures = subPictures;
+        this.numCaptions = numCaptions;
+        executor = new ThreadPoolExecutor(numCaptions, numCaptions, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "PNG prefetch");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the prefetched image of a caption and prefetch the following captions if the access is sequential.
+     * @param index Caption index
+     * @return Image or null if it was not prefetched or could not be read; the caller has to read it then
+     */
+    BitmapWithPalette get(int index) {
+        if (executor.isShutdown()) {
+            return null;
+        }
+        Future<BitmapWithPalette> future = prefetched.remove(index);
+        ConversionEvents.cacheAccess("PNG prefetch", index, future != null);
+        // requesting the same caption again (e.g. to redraw it) keeps the prefetched captions
+        boolean sequential = future != null || index == lastIndex + 1 || index == lastIndex;
+        lastIndex = index;
+
+        Iterator<Map.Entry<Integer, Future<BitmapWithPalette>>> it = prefetched.entrySet().iterator();
+        while (it.hasNext()) {
+            int i = it.next().getKey();
+            if (!sequential || i < index || i > index + numCaptions) {
+                prefetched.get(i).cancel(false);
+                it.remove();
+            }
+        }
+        if (sequential) {
+            for (int i = index + 1; i <= index + numCaptions && i < subPictures.size(); i++) {
+                if (!prefetched.containsKey(i)) {
+                    prefetched.put(i, executor.submit(createTask(subPictures.get(i).getFileName())));
+                }
+            }
+        }
+
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException ex) {
+            // read again by the caller to report the error
+        } catch (CancellationException ex) {
+            // can't happen as only images not handed out are cancelled
+        }
+        return null;
+    }
+
+    /**
+     * Cancel all prefetches, stop the threads and release the readers.
+     * Does nothing if already shut down.
+     */
+    void shutdown() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        for (Future<BitmapWithPalette> future : prefetched.values()) {
+            future.cancel(false);
+        }
+        prefetched.clear();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (idleReaders) {
+            for (IndexedPngReader r : idleReaders) {
+                r.end();
+            }
+            idleReaders.clear();
+            readersReleased = true;
+        }
+    }
+
+    private IndexedPngReader borrowReader() {
+        synchronized (idleReaders) {
+            if (!idleReaders.isEmpty()) {
+                return idleReaders.remove(idleReaders.size() - 1);
+            }
+        }
+        return new IndexedPngReader();
+    }
+
+    private void returnReader(IndexedPngReader r) {
+        synchronized (idleReaders) {
+            if (!readersReleased && idleReaders.size() < numCaptions) {
+                idleReaders.add(r);
+                return;
+            }
+        }
+        r.end();
+    }
+
+    private Callable<BitmapWithPalette> createTask(final String fileName) {
+        return new Callable<BitmapWithPalette>() {
+            @Override
+            public BitmapWithPalette call() throws Exception {
+                IndexedPngReader r = borrowReader();
+                try {
+                    return SupXml.readImage(new File(fileName), r);
+                } finally {
+                    returnReader(r);
+                }
+            }
+        };
+    }
+}
@@ -22,7 +22,13 @@ public class SubPictureXml extends SubPicture {
     private int originalXOffset;
     /** original y offset of uncropped bitmap */
     private int originalYOffset;
-    /** file name of Xml file */
+    /** original width of uncropped bitmap */
+    private int originalImageWidth;
+    /** original height of uncropped bitmap */
+    private int originalImageHeight;
+    /** path of the PNG file, shared by all captions of a stream */
+    private String pathName = "";
+    /** name of the PNG file relative to the path */
     private String fileName;
 
     public SubPictureXml() {
@@ -32,6 +38,9 @@ public class SubPictureXml extends SubPicture {
         super(other);
         this.originalXOffset = other.originalXOffset;
         this.originalYOffset = other.originalYOffset;
+        this.originalImageWidth = other.originalImageWidth;
+        this.originalImageHeight = other.originalImageHeight;
+        this.pathName = other.pathName;
         this.fileName = other.fileName;
     }
 
@@ -40,6 +49,11 @@ public class SubPictureXml extends SubPicture {
         originalYOffset = getYOffset();
     }
 
+    public void storeOriginalImageSize() {
+        originalImageWidth = getImageWidth();
+        originalImageHeight = getImageHeight();
+    }
+
     public int getOriginalXOffset() {
         return originalXOffset;
     }
@@ -48,11 +62,30 @@ public class SubPictureXml extends SubPicture {
         return originalYOffset;
     }
 
+    public int getOriginalImageWidth() {
+        return originalImageWidth;
+    }
+
+    public int getOriginalImageHeight() {
+        return originalImageHeight;
+    }
+
     public String getFileName() {
-        return fileName;
+        return pathName + fileName;
     }
 
     public void setFileName(String fileName) {
+        this.pathName = "";
+        this.fileName = fileName;
+    }
+
+    /**
+     * Set the PNG file name without concatenating path and name, so the path can be shared by all captions.
+     * @param pathName Path including the trailing separator
+     * @param fileName Name relative to the path
+     */
+    public void setFileName(String pathName, String fileName) {
+        this.pathName = pathName;
         this.fileName = fileName;
     }
 }
\ No newline at end of file
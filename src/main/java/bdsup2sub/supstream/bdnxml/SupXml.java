@@ -17,37 +17,32 @@ package bdsup2sub.supstream.bdnxml;
 
 import bdsup2sub.bitmap.Bitmap;
 import bdsup2sub.bitmap.BitmapBounds;
+import bdsup2sub.bitmap.BitmapWithPalette;
 import bdsup2sub.bitmap.Palette;
 import bdsup2sub.core.*;
 import bdsup2sub.supstream.SubPicture;
 import bdsup2sub.supstream.SubtitleStream;
+import bdsup2sub.tools.IndexedPngReader;
 import bdsup2sub.tools.QuantizeFilter;
 import bdsup2sub.utils.FilenameUtils;
-import bdsup2sub.utils.SubtitleUtils;
 import bdsup2sub.utils.ToolBox;
-import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
-import org.xml.sax.helpers.DefaultHandler;
 
 import javax.imageio.ImageIO;
-import javax.swing.*;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 import java.awt.image.BufferedImage;
 import java.awt.image.IndexColorModel;
 import java.awt.image.WritableRaster;
-import java.io.BufferedWriter;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.SortedMap;
 
 import static bdsup2sub.core.Constants.LANGUAGES;
-import static bdsup2sub.utils.TimeUtils.ptsToTimeStrXml;
-import static bdsup2sub.utils.TimeUtils.timeStrXmlToPTS;
 
 /**
  * Reading and writing of Blu-Ray captions in Xml/Png format.
@@ -56,6 +51,10 @@ public class SupXml implements SubtitleStream {
 
     private static final Configuration configuration = Configuration.getInstance();
     private static final Logger logger = Logger.getInstance();
+    private static final ConversionStatistics statistics = ConversionStatistics.getInstance();
+
+    /** number of captions to decode ahead when stepping through the captions */
+    private static final int PREFETCH_CAPTIONS = 4;
 
     /** ArrayList of captions contained in the current file */
     private List<SubPictureXml> subPictures = new ArrayList<SubPictureXml>();
@@ -63,6 +62,12 @@ public class SupXml implements SubtitleStream {
     private Palette palette;
     /** bitmap of the last decoded caption  */
     private Bitmap bitmap;
+    /** reader for the PNG files of the captions */
+    private final IndexedPngReader pngReader = new IndexedPngReader();
+    /** reader for decodePreview, so previews don't interfere with decode */
+    private final IndexedPngReader previewPngReader = new IndexedPngReader();
+    /** decodes the captions following the current one in the background */
+    private final PngPrefetcher prefetcher = new PngPrefetcher(subPictures, PREFETCH_CAPTIONS);
     /** index of dominant color for the current caption  */
     private int primaryColorIndex;
     /** number of forced captions in the current file  */
@@ -90,18 +95,39 @@ public class SupXml implements SubtitleStream {
         this.pathName = FilenameUtils.addSeparator(FilenameUtils.getParent(filename));
         this.title = FilenameUtils.removeExtension(FilenameUtils.getName(filename));
 
-        SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser saxParser;
+        SupXmlReader reader = null;
         try {
-            saxParser = factory.newSAXParser();
-            DefaultHandler handler = new XmlHandler();
-            saxParser.parse(new File(filename), handler);
-        } catch (ParserConfigurationException e) {
-            throw new CoreException(e.getMessage());
-        } catch (SAXException e) {
-            throw new CoreException(e.getMessage());
+            reader = new SupXmlReader(new BufferedInputStream(new FileInputStream(filename)), pathName);
+            if (reader.getNumberOfEvents() > 0) {
+                /* number of subtitles read from the xml */
+                Core.setProgressMax(reader.getNumberOfEvents());
+            }
+            SubPictureXml pic;
+            while ((pic = reader.readEvent()) != null) {
+                subPictures.add(pic);
+                int num = subPictures.size();
+                logger.info("#" + num + "\n");
+                Core.setProgress(num);
+                if (pic.isForced()) {
+                    numForcedFrames++;
+                }
+            }
+            if (reader.getTitle() != null) {
+                title = reader.getTitle();
+            }
+            language = reader.getLanguage();
+            resolution = reader.getResolution();
+            fps = reader.getFps();
+            fpsXml = XmlFps(fps);
         } catch (IOException e) {
             throw new CoreException(e.getMessage());
+        } finally {
+            try {
+                if (reader != null) {
+                    reader.close();
+                }
+            } catch (IOException ex) {
+            }
         }
 
         logger.trace("\nDetected " + numForcedFrames + " forced captions.\n");
@@ -112,7 +138,7 @@ public class SupXml implements SubtitleStream {
      * @param fps source frame rate
      * @return next integer frame rate (yet returned as double)
      */
-    private static double XmlFps(double fps) {
+    static double XmlFps(double fps) {
         if (fps == Framerate.FPS_23_975.getValue()) {
             return Framerate.FPS_24.getValue();
         } else if (fps == Framerate.FPS_23_976.getValue()) {
@@ -131,6 +157,9 @@ public class SupXml implements SubtitleStream {
      */
     @Override
     public void close() {
+        prefetcher.shutdown();
+        pngReader.end();
+        previewPngReader.end();
     }
 
     /* (non-Javadoc)
@@ -139,15 +168,79 @@ public class SupXml implements SubtitleStream {
     @Override
     public void decode(int index) throws CoreException {
         try {
-            File f = new File(subPictures.get(index).getFileName());
-            if (!f.exists()) {
-                throw new CoreException("file " + subPictures.get(index).getFileName() + " not found.");
+            BitmapWithPalette image = prefetcher.get(index);
+            if (image == null) {
+                image = readImage(getImageFile(index), pngReader);
             }
-            BufferedImage img = ImageIO.read(f);
-            int w = img.getWidth();
-            int h = img.getHeight();
+            bitmap = image.bitmap;
+            palette = image.palette;
+            for (int i=0; i < palette.getSize(); i++) {
+                if (palette.getAlpha(i) < configuration.getAlphaCrop()) {
+                    palette.setARGB(i, 0);
+                }
+            }
+            primaryColorIndex = bitmap.getPrimaryColorIndex(palette.getAlpha(), configuration.getAlphaThreshold(), palette.getY());
+            // crop
+            BitmapBounds bounds = bitmap.getCroppingBounds(palette.getAlpha(), configuration.getAlphaCrop());
+            SubPictureXml pic = subPictures.get(index);
+            if (crop(pic, bounds, bitmap.getWidth(), bitmap.getHeight())) {
+                bitmap = bitmap.crop(bounds.xMin, bounds.yMin, pic.getImageWidth(), pic.getImageHeight());
+            }
+        } catch (IOException e) {
+            throw new CoreException(e.getMessage());
+        } catch (OutOfMemoryError e) {
+            throw new CoreException("Out of heap! Use -Xmx256m to increase heap!");
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see SubtitleStream#decodePreview(int)
+     */
+    @Override
+    public BitmapWithPalette decodePreview(int index) throws CoreException {
+        try {
+            BitmapWithPalette image = readImage(getImageFile(index), previewPngReader);
+            Palette pal = image.palette;
+            for (int i=0; i < pal.getSize(); i++) {
+                if (pal.getAlpha(i) < configuration.getAlphaCrop()) {
+                    pal.setARGB(i, 0);
+                }
+            }
+            return new BitmapWithPalette(image.bitmap.cropToVisiblePixels(pal.getAlpha(), configuration.getAlphaCrop()), pal);
+        } catch (IOException e) {
+            throw new CoreException(e.getMessage());
+        } catch (OutOfMemoryError e) {
+            throw new CoreException("Out of heap! Use -Xmx256m to increase heap!");
+        }
+    }
 
-            this.palette = null;
+    /**
+     * Read the image of a caption as bitmap with a palette of 256 entries. The alpha crop value is not
+     * applied yet. Also called from the prefetch threads, each with its own reader.
+     * @param f      PNG file
+     * @param reader PNG reader to use
+     * @return Bitmap and palette
+     * @throws IOException
+     */
+    static BitmapWithPalette readImage(File f, IndexedPngReader reader) throws IOException {
+        Bitmap bitmap = null;
+        Palette palette = null;
+        int[] pixels = null;
+        int w, h;
+
+        if (readPng(f, reader)) {
+            w = reader.getWidth();
+            h = reader.getHeight();
+            if (reader.isIndexed() && isPaletteKept(reader)) {
+                palette = reader.getPalette();
+                bitmap = reader.getBitmap();
+            } else {
+                pixels = reader.getArgbPixels();
+            }
+        } else {
+            BufferedImage img = ImageIO.read(f);
+            w = img.getWidth();
+            h = img.getHeight();
 
             // first try to read image and palette directly from imported image
             if (img.getType() == BufferedImage.TYPE_BYTE_INDEXED) {
@@ -156,152 +249,159 @@ public class SupXml implements SubtitleStream {
                     // create palette
                     palette = new Palette(256);
                     for (int i=0; i < icm.getMapSize(); i++) {
-                        int alpha = (icm.getRGB(i) >> 24) & 0xff;
-                        if (alpha >= configuration.getAlphaCrop()) {
-                            palette.setARGB(i, icm.getRGB(i));
-                        } else {
-                            palette.setARGB(i, 0);
-                        }
+                        palette.setARGB(i, icm.getRGB(i));
                     }
                     // copy pixels
                     WritableRaster raster = img.getRaster();
                     bitmap = new Bitmap(img.getWidth(), img.getHeight(), (byte[])raster.getDataElements( 0, 0, img.getWidth(), img.getHeight(), null ));
                 }
             }
-
-            // if this failed, assume RGB image and quantize palette
             if (palette == null) {
                 // grab int array (ARGB)
-                int[] pixels = new int[w * h];
+                pixels = new int[w * h];
                 img.getRGB(0, 0, w, h, pixels, 0, w);
-                // quantize image
-                QuantizeFilter qf = new QuantizeFilter();
-                bitmap = new Bitmap(img.getWidth(), img.getHeight());
-                int ct[] = qf.quantize(pixels, bitmap.getInternalBuffer(), w, h, 255, false, false);
-                int size = ct.length;
-                if (size > 255) {
-                    logger.warn("Quantizer failed.\n");
-                    size = 255;
-                }
-                // create palette
-                palette = new Palette(256);
-                for (int i=0; i < size; i++) {
-                    int alpha = (ct[i] >> 24) & 0xff;
-                    if (alpha >= configuration.getAlphaCrop()) {
-                        palette.setARGB(i, ct[i]);
-                    } else {
-                        palette.setARGB(i, 0);
-                    }
-                }
             }
-            primaryColorIndex = bitmap.getPrimaryColorIndex(palette.getAlpha(), configuration.getAlphaThreshold(), palette.getY());
-            // crop
-            BitmapBounds bounds = bitmap.getCroppingBounds(palette.getAlpha(), configuration.getAlphaCrop());
-            if (bounds.yMin>0 || bounds.xMin > 0 || bounds.xMax<bitmap.getWidth()-1 || bounds.yMax<bitmap.getHeight()-1) {
-                w = bounds.xMax - bounds.xMin + 1;
-                h = bounds.yMax - bounds.yMin + 1;
-                if (w < 2) {
-                    w = 2;
-                }
-                if (h < 2) {
-                    h = 2;
-                }
-                bitmap = bitmap.crop(bounds.xMin, bounds.yMin, w, h);
-                // update picture
-                SubPictureXml pic = subPictures.get(index);
-                pic.setImageWidth(w);
-                pic.setImageHeight(h);
-                pic.setOfsX(pic.getOriginalXOffset() + bounds.xMin);
-                pic.setOfsY(pic.getOriginalYOffset() + bounds.yMin);
+        }
+
+        // if this failed, assume RGB image and quantize palette
+        if (palette == null) {
+            // quantize image
+            ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.QUANTIZE);
+            QuantizeFilter qf = new QuantizeFilter();
+            qf.setMethod(configuration.getQuantizationMethod());
+            bitmap = new Bitmap(w, h);
+            int ct[] = qf.quantize(pixels, bitmap.getInternalBuffer(), w, h, 255, false, false);
+            timer.end(w, h, 0);
+            int size = ct.length;
+            if (size > 255) {
+                logger.warn("Quantizer failed.\n");
+                size = 255;
+            }
+            // create palette
+            palette = new Palette(256);
+            for (int i=0; i < size; i++) {
+                palette.setARGB(i, ct[i]);
+            }
+        }
+        return new BitmapWithPalette(bitmap, palette);
+    }
+
+    /**
+     * Decide whether the palette of an indexed PNG image is kept. This is the case at any bit depth if index 255
+     * is unused or transparent, as it has to be transparent in the target formats. Otherwise the image is quantized.
+     * @param reader PNG reader that has just read an indexed image
+     * @return True if the palette is kept, false if the image has to be quantized
+     */
+    private static boolean isPaletteKept(IndexedPngReader reader) {
+        return reader.getPaletteEntries() < 256 || reader.getPalette().getAlpha(255) == 0;
+    }
+
+    /**
+     * Update size and offsets of a caption as decode would do, but without creating bitmap and palette.
+     * Only the crop bounds are determined, which is enough to move a caption. This only works for indexed
+     * images whose palette is kept.
+     * @param index Index of caption
+     * @return True if the caption was updated, false if its image has to be decoded instead
+     * @throws CoreException
+     */
+    public boolean decodeBounds(int index) throws CoreException {
+        try {
+            File f = getImageFile(index);
+            BitmapBounds bounds;
+            InputStream in = new BufferedInputStream(new FileInputStream(f));
+            try {
+                bounds = pngReader.readCroppingBounds(in, configuration.getAlphaCrop());
+            } finally {
+                in.close();
             }
+            // quantized images are cropped by the alpha values of the quantized palette
+            if (bounds == null || !isPaletteKept(pngReader)) {
+                return false;
+            }
+            crop(subPictures.get(index), bounds, pngReader.getWidth(), pngReader.getHeight());
+            return true;
         } catch (IOException e) {
             throw new CoreException(e.getMessage());
-        } catch (OutOfMemoryError e) {
-            JOptionPane.showMessageDialog(null,"Out of heap! Use -Xmx256m to increase heap!","Error!", JOptionPane.WARNING_MESSAGE);
-            throw new CoreException("Out of heap! Use -Xmx256m to increase heap!");
         }
     }
 
+    private File getImageFile(int index) throws CoreException {
+        File f = new File(subPictures.get(index).getFileName());
+        if (!f.exists()) {
+            throw new CoreException("file " + subPictures.get(index).getFileName() + " not found.");
+        }
+        return f;
+    }
+
+    /**
+     * Decode a PNG file with the built-in reader.
+     * @param f      PNG file
+     * @param reader PNG reader to use
+     * @return True if the image was decoded, false if ImageIO has to be used for its format
+     * @throws IOException
+     */
+    private static boolean readPng(File f, IndexedPngReader reader) throws IOException {
+        InputStream in = new BufferedInputStream(new FileInputStream(f));
+        try {
+            return reader.read(in);
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Reduce image size of a caption to the crop bounds and move its offsets accordingly.
+     * @param pic    Caption
+     * @param bounds Crop bounds of the uncropped image
+     * @param width  Width of the uncropped image
+     * @param height Height of the uncropped image
+     * @return True if the image has to be cropped
+     */
+    private static boolean crop(SubPictureXml pic, BitmapBounds bounds, int width, int height) {
+        if (bounds.yMin>0 || bounds.xMin > 0 || bounds.xMax<width-1 || bounds.yMax<height-1) {
+            int w = bounds.xMax - bounds.xMin + 1;
+            int h = bounds.yMax - bounds.yMin + 1;
+            if (w < 2) {
+                w = 2;
+            }
+            if (h < 2) {
+                h = 2;
+            }
+            // update picture
+            pic.setImageWidth(w);
+            pic.setImageHeight(h);
+            pic.setOfsX(pic.getOriginalXOffset() + bounds.xMin);
+            pic.setOfsY(pic.getOriginalYOffset() + bounds.yMin);
+            return true;
+        }
+        return false;
+    }
+
     /**
-     * Create Xml file
+     * Create Xml file and write its description, so the events can be written one by one.
      *
      * @param fname file name
-     * @param pics Map of SubPictures and their original indexes which were used to generate the png file names
+     * @param first first SubPicture to be written
+     * @param last last SubPicture to be written
+     * @param numEvents number of SubPictures to be written
+     * @return writer for the events, the PNG names are built from the Xml file name with getPNGname
      * @throws CoreException
      */
-    public static void writeXml(String fname, SortedMap<Integer, SubPicture> pics) throws CoreException {
-        double fps = configuration.getFpsTrg();
-        double fpsXml = XmlFps(fps);
-        BufferedWriter out = null;
+    public static SupXmlWriter openXml(String fname, SubPicture first, SubPicture last, int numEvents) throws CoreException {
         String name = FilenameUtils.removeExtension(FilenameUtils.getName(fname));
+        OutputStream out = null;
         try {
-            out = new BufferedWriter(new FileWriter(fname));
-            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
-            out.newLine();
-            out.write("<BDN Version=\"0.93\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\" xsi:noNamespaceSchemaLocation=\"BD-03-006-0093b BDN File Format.xsd\">");
-            out.newLine();
-            out.write("  <Description>");
-            out.newLine();
-            out.write("    <Name Title=\"" + name + "\" Content=\"\"/>");
-            out.newLine();
-            out.write("    <Language Code=\"" + LANGUAGES[configuration.getLanguageIdx()][2] + "\"/>");
-            out.newLine();
-            String res = configuration.getOutputResolution().getResolutionNameForXml();
-            out.write("    <Format VideoFormat=\"" + res + "\" FrameRate=\"" + ToolBox.formatDouble(fps) + "\" DropFrame=\"False\"/>");
-            out.newLine();
-            long t = pics.get(pics.firstKey()).getStartTime();
-            if (fps != fpsXml) {
-                t = (t * 2000 + 1001) / 2002;
-            }
-            String ts = ptsToTimeStrXml(t,fpsXml);
-            t = pics.get(pics.lastKey()).getEndTime();
-            if (fps != fpsXml) {
-                t = (t * 2000 + 1001) / 2002;
-            }
-            String te = ptsToTimeStrXml(t,fpsXml);
-            out.write("    <Events Type=\"Graphic\" FirstEventInTC=\"" + ts + "\" LastEventOutTC=\"" + te + "\" NumberofEvents=\"" + pics.size() + "\"/>");
-            out.newLine();
-            out.write("  </Description>");
-            out.newLine();
-            out.write("  <Events>");
-            out.newLine();
-
-            for (int idx : pics.keySet()) {
-                SubPicture p = pics.get(idx);
-                t = p.getStartTime();
-                if (fps != fpsXml) {
-                    t = (t * 2000 + 1001) / 2002;
-                }
-                ts = ptsToTimeStrXml(t,fpsXml);
-                t = p.getEndTime();
-                if (fps != fpsXml) {
-                    t = (t * 2000 + 1001) / 2002;
-                }
-                te = ptsToTimeStrXml(t, fpsXml);
-                String forced = p.isForced() ? "True": "False";
-                out.write("    <Event InTC=\"" + ts + "\" OutTC=\"" + te + "\" Forced=\"" + forced + "\">");
-                out.newLine();
-
-                String pname = getPNGname(name, idx+1);
-                out.write("      <Graphic Width=\"" + p.getImageWidth() + "\" Height=\"" + p.getImageHeight()
-                        + "\" X=\"" + p.getXOffset() + "\" Y=\"" + p.getYOffset() + "\">" + pname + "</Graphic>");
-                out.newLine();
-                out.write("    </Event>");
-                out.newLine();
-            }
-            out.write("  </Events>");
-            out.newLine();
-            out.write("</BDN>");
-            out.newLine();
+            out = new BufferedOutputStream(new FileOutputStream(fname));
+            return new SupXmlWriter(out, name, LANGUAGES[configuration.getLanguageIdx()][2], configuration.getOutputResolution(),
+                    configuration.getFpsTrg(), first.getStartTime(), last.getEndTime(), numEvents);
         } catch (IOException ex) {
-            throw new CoreException(ex.getMessage());
-        } finally {
             try {
                 if (out != null) {
                     out.close();
                 }
-            } catch (IOException ex) {
+            } catch (IOException e) {
             }
+            throw new CoreException(ex.getMessage());
         }
     }
 
@@ -415,154 +515,4 @@ public class SupXml implements SubtitleStream {
     public double getFps() {
         return fps;
     }
-
-    enum XmlState { BDN, DESCRIPT, NAME, LANGUAGE, FORMAT, EVENTS, EVENT, GRAPHIC, UNKNOWN}
-
-    private static final String xmlStates[] = { "bdn", "description", "name", "language", "format", "events", "event", "graphic"};
-
-    class XmlHandler extends DefaultHandler {
-
-        XmlState state;
-        StringBuffer txt;
-        boolean valid;
-        SubPictureXml pic;
-
-        private XmlState findState(final String s) {
-            for (XmlState x : XmlState.values()) {
-                if (s.toLowerCase().equals(xmlStates[x.ordinal()])) {
-                    return x;
-                }
-            }
-            return XmlState.UNKNOWN;
-        }
-
-        @Override
-        public void startElement(String namespaceURI, String localName, String qName, Attributes atts ) {
-            state = findState(qName);
-            String at;
-
-            if (state != XmlState.BDN && !valid) {
-                logger.error("BDN tag missing");
-            }
-
-            txt = null;
-
-            switch (state) {
-                case UNKNOWN:
-                    logger.error("Unknown tag " + qName + "\n");
-                    break;
-                case BDN:
-                    if (valid) {
-                        logger.error("BDN must be used only once");
-                    } else {
-                        valid = true;
-                    }
-                    break;
-                case NAME:
-                    at = atts.getValue("Title");
-                    if (at != null) {
-                        title = at;
-                        logger.trace("Title: " + title + "\n");
-                    }
-                    break;
-                case LANGUAGE:
-                    at = atts.getValue("Code");
-                    if (at != null) {
-                        language = at;
-                        logger.trace("Language: " + language + "\n");
-                    }
-                    break;
-                case FORMAT:
-                    at = atts.getValue("FrameRate");
-                    if (at != null) {
-                        fps = SubtitleUtils.getFps(at);
-                        fpsXml = XmlFps(fps);
-                        logger.trace("fps: " + ToolBox.formatDouble(fps) + "\n");
-                    }
-                    at = atts.getValue("VideoFormat");
-                    if (at != null) {
-                        String res = at;
-                        for (Resolution r : Resolution.values())  {
-                            if (res.length() == 4 && res.charAt(0) != '7') { // hack to rename 480p/576p to 480i/576i
-                                res = res.replace('p', 'i');
-                            }
-                            if (r.getResolutionNameForXml().equalsIgnoreCase(res)) {
-                                resolution = r;
-                                logger.trace("Language: " + r.getResolutionNameForXml() + "\n");
-                                break;
-                            }
-                        }
-                    }
-                    break;
-                case EVENTS:
-                    at = atts.getValue("NumberofEvents");
-                    if (at != null) {
-                        int n = ToolBox.getInt(at);
-                        if (n > 0) {
-                            /* number of subtitles read from the xml */
-                            Core.setProgressMax(n);
-                        }
-                    }
-                    break;
-                case EVENT:
-                    pic = new SubPictureXml();
-                    subPictures.add(pic);
-                    int num  = subPictures.size();
-                    logger.info("#" + num + "\n");
-                    Core.setProgress(num);
-                    at = atts.getValue("InTC");
-                    if (at != null) {
-                        pic.setStartTime(timeStrXmlToPTS(at, fpsXml));
-                        if (pic.getStartTime() == -1) {
-                            pic.setStartTime(0);
-                            logger.warn("Invalid start time " + at + "\n");
-                        }
-                    }
-                    at = atts.getValue("OutTC");
-                    if (at != null) {
-                        pic.setEndTime(timeStrXmlToPTS(at, fpsXml));
-                        if (pic.getEndTime() == -1) {
-                            pic.setEndTime(0);
-                            logger.warn("Invalid end time " + at + "\n");
-                        }
-                    }
-                    if (fps != fpsXml) {
-                        pic.setStartTime((pic.getStartTime() * 1001 + 500) / 1000);
-                        pic.setEndTime((pic.getEndTime() * 1001 + 500) / 1000);
-                    }
-                    at = atts.getValue("Forced");
-                    pic.setForced(at != null && at.equalsIgnoreCase("true"));
-                    if (pic.isForced()) {
-                        numForcedFrames++;
-                    }
-                    int dim[] = resolution.getDimensions();
-                    pic.setWidth(dim[0]);
-                    pic.setHeight(dim[1]);
-                    break;
-                case GRAPHIC:
-                    pic.setImageWidth(ToolBox.getInt(atts.getValue("Width")));
-                    pic.setImageHeight(ToolBox.getInt(atts.getValue("Height")));
-                    pic.setOfsX(ToolBox.getInt(atts.getValue("X")));
-                    pic.setOfsY(ToolBox.getInt(atts.getValue("Y")));
-                    pic.storeOriginalOffsets();
-                    txt = new StringBuffer();
-                    break;
-            }
-        }
-
-        @Override
-        public void endElement(String namespaceURI, String localName, String qName ) {
-            XmlState endState = findState(qName);
-            if (state == XmlState.GRAPHIC && endState == XmlState.GRAPHIC) {
-                pic.setFileName(pathName + txt.toString().trim());
-            }
-        }
-
-        @Override
-        public void characters(char[] ch, int start, int length ) {
-            if (txt != null) {
-                txt.append(ch, start, length);
-            }
-        }
-    }
 }
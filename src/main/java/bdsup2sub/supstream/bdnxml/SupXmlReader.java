@@ -0,0 +1,287 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.bdnxml;
+
+import bdsup2sub.core.Framerate;
+import bdsup2sub.core.Logger;
+import bdsup2sub.core.Resolution;
+import bdsup2sub.utils.SubtitleUtils;
+import bdsup2sub.utils.ToolBox;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static bdsup2sub.utils.TimeUtils.timeStrXmlToPTS;
+
+/**
+ * Reads a BDN XML file event by event with a StAX stream reader. The description is read on construction,
+ * then the events are returned one at a time, so the caller decides how many captions are kept in memory.
+ */
+public final class SupXmlReader {
+
+    private static final Logger logger = Logger.getInstance();
+
+    private enum XmlState { BDN, DESCRIPTION, NAME, LANGUAGE, FORMAT, EVENTS, EVENT, GRAPHIC, UNKNOWN }
+
+    private final XMLStreamReader reader;
+    /** path of the PNG files, shared by all captions */
+    private final String pathName;
+
+    private String title;
+    private String language = "eng";
+    private Resolution resolution = Resolution.HD_1080;
+    private double fps = Framerate.FPS_23_976.getValue();
+    private double fpsXml = SupXml.XmlFps(fps);
+    private int numberOfEvents = -1;
+    private boolean valid;
+    /** true if the reader is positioned at the start of an event not yet returned */
+    private boolean atEvent;
+
+    /**
+     * Read the description up to the first event.
+     * @param in       Stream to read from, closed by close
+     * @param pathName Path of the PNG files, including the trailing separator
+     * @throws IOException if the stream can't be read or is not well formed
+     */
+    public SupXmlReader(InputStream in, String pathName) throws IOException {
+        this.pathName = pathName;
+        try {
+            reader = XMLInputFactory.newInstance().createXMLStreamReader(in);
+            atEvent = nextEvent();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Read the next event.
+     * @return Caption or null if there are no more events
+     * @throws IOException if the stream can't be read or is not well formed
+     */
+    public SubPictureXml readEvent() throws IOException {
+        try {
+            if (!atEvent && !nextEvent()) {
+                return null;
+            }
+            atEvent = false;
+            SubPictureXml pic = createSubPicture();
+            int depth = 1;
+            while (depth > 0) {
+                int type = reader.next();
+                if (type == XMLStreamReader.START_ELEMENT) {
+                    if (getState() == XmlState.GRAPHIC) {
+                        readGraphic(pic);
+                    } else {
+                        readElement();
+                        depth++;
+                    }
+                } else if (type == XMLStreamReader.END_ELEMENT) {
+                    depth--;
+                }
+            }
+            return pic;
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Close the reader and the stream.
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return Title read from the description or null if there was none
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    public double getFps() {
+        return fps;
+    }
+
+    /**
+     * @return Number of events given in the description or -1 if there was none
+     */
+    public int getNumberOfEvents() {
+        return numberOfEvents;
+    }
+
+    /**
+     * Advance to the start of the next event, reading all other elements on the way.
+     * @return True if positioned at an event, false at the end of the document
+     * @throws XMLStreamException
+     */
+    private boolean nextEvent() throws XMLStreamException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamReader.START_ELEMENT) {
+                if (getState() == XmlState.EVENT) {
+                    readElement();
+                    return true;
+                }
+                readElement();
+            }
+        }
+        return false;
+    }
+
+    private XmlState getState() {
+        String name = reader.getLocalName();
+        for (XmlState state : XmlState.values()) {
+            if (state != XmlState.UNKNOWN && state.name().equalsIgnoreCase(name)) {
+                return state;
+            }
+        }
+        return XmlState.UNKNOWN;
+    }
+
+    /**
+     * Check the element at the current position and read the attributes of the description elements.
+     */
+    private void readElement() {
+        XmlState state = getState();
+        String at;
+
+        if (state != XmlState.BDN && !valid) {
+            logger.error("BDN tag missing");
+        }
+
+        switch (state) {
+            case UNKNOWN:
+                logger.error("Unknown tag " + reader.getLocalName() + "\n");
+                break;
+            case BDN:
+                if (valid) {
+                    logger.error("BDN must be used only once");
+                } else {
+                    valid = true;
+                }
+                break;
+            case NAME:
+                at = reader.getAttributeValue(null, "Title");
+                if (at != null) {
+                    title = at;
+                    logger.trace("Title: " + title + "\n");
+                }
+                break;
+            case LANGUAGE:
+                at = reader.getAttributeValue(null, "Code");
+                if (at != null) {
+                    language = at;
+                    logger.trace("Language: " + language + "\n");
+                }
+                break;
+            case FORMAT:
+                at = reader.getAttributeValue(null, "FrameRate");
+                if (at != null) {
+                    fps = SubtitleUtils.getFps(at);
+                    fpsXml = SupXml.XmlFps(fps);
+                    logger.trace("fps: " + ToolBox.formatDouble(fps) + "\n");
+                }
+                at = reader.getAttributeValue(null, "VideoFormat");
+                if (at != null) {
+                    String res = at;
+                    for (Resolution r : Resolution.values())  {
+                        if (res.length() == 4 && res.charAt(0) != '7') { // hack to rename 480p/576p to 480i/576i
+                            res = res.replace('p', 'i');
+                        }
+                        if (r.getResolutionNameForXml().equalsIgnoreCase(res)) {
+                            resolution = r;
+                            logger.trace("Language: " + r.getResolutionNameForXml() + "\n");
+                            break;
+                        }
+                    }
+                }
+                break;
+            case EVENTS:
+                at = reader.getAttributeValue(null, "NumberofEvents");
+                if (at != null) {
+                    numberOfEvents = ToolBox.getInt(at);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Create a caption from the attributes of the event at the current position.
+     * @return Caption without graphic
+     */
+    private SubPictureXml createSubPicture() {
+        SubPictureXml pic = new SubPictureXml();
+        String at = reader.getAttributeValue(null, "InTC");
+        if (at != null) {
+            pic.setStartTime(timeStrXmlToPTS(at, fpsXml));
+            if (pic.getStartTime() == -1) {
+                pic.setStartTime(0);
+                logger.warn("Invalid start time " + at + "\n");
+            }
+        }
+        at = reader.getAttributeValue(null, "OutTC");
+        if (at != null) {
+            pic.setEndTime(timeStrXmlToPTS(at, fpsXml));
+            if (pic.getEndTime() == -1) {
+                pic.setEndTime(0);
+                logger.warn("Invalid end time " + at + "\n");
+            }
+        }
+        if (fps != fpsXml) {
+            pic.setStartTime((pic.getStartTime() * 1001 + 500) / 1000);
+            pic.setEndTime((pic.getEndTime() * 1001 + 500) / 1000);
+        }
+        at = reader.getAttributeValue(null, "Forced");
+        pic.setForced(at != null && at.equalsIgnoreCase("true"));
+        int dim[] = resolution.getDimensions();
+        pic.setWidth(dim[0]);
+        pic.setHeight(dim[1]);
+        return pic;
+    }
+
+    /**
+     * Read the graphic at the current position including its PNG file name.
+     * @param pic Caption to update
+     * @throws XMLStreamException
+     */
+    private void readGraphic(SubPictureXml pic) throws XMLStreamException {
+        pic.setImageWidth(ToolBox.getInt(reader.getAttributeValue(null, "Width")));
+        pic.setImageHeight(ToolBox.getInt(reader.getAttributeValue(null, "Height")));
+        pic.setOfsX(ToolBox.getInt(reader.getAttributeValue(null, "X")));
+        pic.setOfsY(ToolBox.getInt(reader.getAttributeValue(null, "Y")));
+        pic.storeOriginalOffsets();
+        pic.storeOriginalImageSize();
+        pic.setFileName(pathName, reader.getElementText().trim());
+    }
+}
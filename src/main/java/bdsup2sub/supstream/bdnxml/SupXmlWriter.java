@@ -0,0 +1,173 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.bdnxml;
+
+import bdsup2sub.core.Resolution;
+import bdsup2sub.supstream.SubPicture;
+import bdsup2sub.utils.ToolBox;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static bdsup2sub.utils.TimeUtils.ptsToTimeStrXml;
+
+/**
+ * Writes a BDN XML file event by event with a StAX stream writer, so captions can be written as soon as
+ * they are converted and no caption has to be kept for writing. The description is written on construction,
+ * so the times of the first and last event and the number of events have to be known in advance.
+ */
+public final class SupXmlWriter {
+
+    private static final String NEW_LINE = System.getProperty("line.separator");
+
+    private final OutputStream out;
+    private final XMLStreamWriter writer;
+    private final double fps;
+    private final double fpsXml;
+    private boolean closed;
+
+    /**
+     * Write the XML declaration and the description and open the list of events.
+     * @param out            Stream to write to, closed by finish or close
+     * @param title          Title of the stream
+     * @param languageCode   Three letter language code
+     * @param resolution     Video resolution
+     * @param fps            Frame rate
+     * @param firstStartTime Start time of the first event (90kHz)
+     * @param lastEndTime    End time of the last event (90kHz)
+     * @param numEvents      Number of events
+     * @throws IOException
+     */
+    public SupXmlWriter(OutputStream out, String title, String languageCode, Resolution resolution, double fps,
+                        long firstStartTime, long lastEndTime, int numEvents) throws IOException {
+        this.out = out;
+        this.fps = fps;
+        fpsXml = SupXml.XmlFps(fps);
+        try {
+            writer = XMLOutputFactory.newInstance().createXMLStreamWriter(out, "UTF-8");
+            writer.writeStartDocument("UTF-8", "1.0");
+            writer.writeCharacters(NEW_LINE);
+            writer.writeStartElement("BDN");
+            writer.writeAttribute("Version", "0.93");
+            writer.writeAttribute("xmlns:xsi", "http://www.w3.org/2001/XMLSchema-instance");
+            writer.writeAttribute("xsi:noNamespaceSchemaLocation", "BD-03-006-0093b BDN File Format.xsd");
+            writer.writeCharacters(NEW_LINE + "  ");
+            writer.writeStartElement("Description");
+            writer.writeCharacters(NEW_LINE + "    ");
+            writer.writeEmptyElement("Name");
+            writer.writeAttribute("Title", title);
+            writer.writeAttribute("Content", "");
+            writer.writeCharacters(NEW_LINE + "    ");
+            writer.writeEmptyElement("Language");
+            writer.writeAttribute("Code", languageCode);
+            writer.writeCharacters(NEW_LINE + "    ");
+            writer.writeEmptyElement("Format");
+            writer.writeAttribute("VideoFormat", resolution.getResolutionNameForXml());
+            writer.writeAttribute("FrameRate", ToolBox.formatDouble(fps));
+            writer.writeAttribute("DropFrame", "False");
+            writer.writeCharacters(NEW_LINE + "    ");
+            writer.writeEmptyElement("Events");
+            writer.writeAttribute("Type", "Graphic");
+            writer.writeAttribute("FirstEventInTC", getTimeStr(firstStartTime));
+            writer.writeAttribute("LastEventOutTC", getTimeStr(lastEndTime));
+            writer.writeAttribute("NumberofEvents", String.valueOf(numEvents));
+            writer.writeCharacters(NEW_LINE + "  ");
+            writer.writeEndElement();
+            writer.writeCharacters(NEW_LINE + "  ");
+            writer.writeStartElement("Events");
+            writer.writeCharacters(NEW_LINE);
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Write an event with one graphic.
+     * @param pic     Caption providing times, forced flag, image size and offsets
+     * @param pngName Name of the PNG file relative to the XML file
+     * @throws IOException
+     */
+    public void writeEvent(SubPicture pic, String pngName) throws IOException {
+        try {
+            writer.writeCharacters("    ");
+            writer.writeStartElement("Event");
+            writer.writeAttribute("InTC", getTimeStr(pic.getStartTime()));
+            writer.writeAttribute("OutTC", getTimeStr(pic.getEndTime()));
+            writer.writeAttribute("Forced", pic.isForced() ? "True" : "False");
+            writer.writeCharacters(NEW_LINE + "      ");
+            writer.writeStartElement("Graphic");
+            writer.writeAttribute("Width", String.valueOf(pic.getImageWidth()));
+            writer.writeAttribute("Height", String.valueOf(pic.getImageHeight()));
+            writer.writeAttribute("X", String.valueOf(pic.getXOffset()));
+            writer.writeAttribute("Y", String.valueOf(pic.getYOffset()));
+            writer.writeCharacters(pngName);
+            writer.writeEndElement();
+            writer.writeCharacters(NEW_LINE + "    ");
+            writer.writeEndElement();
+            writer.writeCharacters(NEW_LINE);
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Close the list of events and the document and close the stream.
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        try {
+            writer.writeCharacters("  ");
+            writer.writeEndElement();
+            writer.writeCharacters(NEW_LINE);
+            writer.writeEndElement();
+            writer.writeCharacters(NEW_LINE);
+            writer.writeEndDocument();
+            writer.flush();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Close the stream without completing the document. Does nothing if already closed.
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writer.close();
+        } catch (XMLStreamException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        } finally {
+            out.close();
+        }
+    }
+
+    private String getTimeStr(long t) {
+        if (fps != fpsXml) {
+            t = (t * 2000 + 1001) / 2002;
+        }
+        return ptsToTimeStrXml(t, fpsXml);
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.dvd;
+
+import java.util.Arrays;
+
+/**
+ * Growable buffer which packs 4bit values (high nibble first) into bytes as they are added.
+ */
+final class NibbleBuffer {
+
+    private byte[] buffer;
+    private int nibbles;
+
+    NibbleBuffer() {
+        this(0x1000);
+    }
+
+    /**
+     * @param capacity Initial capacity in bytes
+     */
+    NibbleBuffer(int capacity) {
+        buffer = new byte[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Add a nibble.
+     * @param value Value, only the lower 4 bits are used
+     */
+    void add(int value) {
+        int index = nibbles >> 1;
+        if ((nibbles & 1) == 0) {
+            if (index == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            buffer[index] = (byte)(value << 4);
+        } else {
+            buffer[index] |= (byte)(value & 0xf);
+        }
+        nibbles++;
+    }
+
+    /**
+     * Add a zero nibble if the number of nibbles is odd.
+     */
+    void alignToByte() {
+        if ((nibbles & 1) == 1) {
+            add(0);
+        }
+    }
+
+    /**
+     * @return Number of complete bytes
+     */
+    int size() {
+        return nibbles >> 1;
+    }
+
+    /**
+     * @return Internal buffer holding {@link #size()} bytes. Only valid until the next nibble is added.
+     */
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(buffer, size());
+    }
+
+    /**
+     * Remove all nibbles but keep the allocated buffer.
+     */
+    void clear() {
+        nibbles = 0;
+    }
+}
@@ -17,6 +17,7 @@ package bdsup2sub.supstream.dvd;
 
 import bdsup2sub.bitmap.Bitmap;
 import bdsup2sub.bitmap.BitmapBounds;
+import bdsup2sub.bitmap.BitmapWithPalette;
 import bdsup2sub.bitmap.Palette;
 import bdsup2sub.core.*;
 import bdsup2sub.supstream.ImageObjectFragment;
@@ -93,7 +94,9 @@ public class SubDvd implements DvdSubtitleStream {
             } else {
                 nextOfs = buffer.getSize();
             }
+            ConversionEvents.SegmentEvent event = ConversionEvents.beginSegment();
             readSubFrame(subPictures.get(i), nextOfs, buffer);
+            event.commit(subPictures.get(i).getOffset(), "PES", (int) (nextOfs - subPictures.get(i).getOffset()), i);
         }
         logger.info("\nDetected " + forcedFrameCount + " forced captions.\n");
     }
@@ -624,6 +627,16 @@ public class SubDvd implements DvdSubtitleStream {
         }
     }
 
+    public BitmapWithPalette decodePreview(int index) throws CoreException {
+        if (index >= subPictures.size()) {
+            throw new CoreException("Index " + index + " out of bounds\n");
+        }
+        SubPictureDVD pic = subPictures.get(index);
+        Palette pal = SupDvdUtil.decodePalette(pic, srcPalette);
+        Bitmap bm = SupDvdUtil.decodeImage(pic, buffer, pal.getIndexOfMostTransparentPaletteEntry());
+        return new BitmapWithPalette(bm.cropToVisiblePixels(pal.getAlpha(), configuration.getAlphaCrop()), pal);
+    }
+
     private void decode(SubPictureDVD pic)  throws CoreException {
         palette = SupDvdUtil.decodePalette(pic, srcPalette);
         bitmap  = SupDvdUtil.decodeImage(pic, buffer, palette.getIndexOfMostTransparentPaletteEntry());
@@ -18,6 +18,7 @@ package bdsup2sub.supstream.dvd;
 import bdsup2sub.bitmap.Bitmap;
 import bdsup2sub.bitmap.Palette;
 import bdsup2sub.core.Configuration;
+import bdsup2sub.core.ConversionStatistics;
 import bdsup2sub.core.Constants;
 import bdsup2sub.core.CoreException;
 import bdsup2sub.supstream.SubPicture;
@@ -26,13 +27,18 @@ import bdsup2sub.utils.ToolBox;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import static bdsup2sub.core.Constants.LANGUAGES;
+import static bdsup2sub.utils.StreamUtils.writeFully;
 import static bdsup2sub.utils.TimeUtils.ptsToTimeStrIdx;
 
 public final class SubDvdWriter {
 
     private static final Configuration configuration = Configuration.getInstance();
+    private static final ConversionStatistics statistics = ConversionStatistics.getInstance();
 
     private static final byte[] PACK_HEADER = {
             0x00, 0x00, 0x01, (byte)0xba,							// 0:  0x000001ba - packet ID
@@ -74,59 +80,143 @@ public final class SubDvdWriter {
             0x02, (byte)0xff,										// 26: CMD 2: stop displaying
     };
 
-    private SubDvdWriter() {
+    private final byte[] packHeader = PACK_HEADER.clone();
+    private final byte[] headerFirst = HEADER_FIRST.clone();
+    private final byte[] headerNext = HEADER_NEXT.clone();
+    private final byte[] controlHeader = CONTROL_HEADER.clone();
+
+    /** RLE buffers for even and odd lines, reused for all captions */
+    private final NibbleBuffer evenLines = new NibbleBuffer();
+    private final NibbleBuffer oddLines = new NibbleBuffer();
+    /** Frame buffer used when writing to a channel, reused for all captions */
+    private ByteBuffer frameBuf = ByteBuffer.allocate(0x4000);
+
+    /**
+     * Create a writer for VobSub captions. Writers don't share any state, but a single writer must not be
+     * used by more than one thread at a time.
+     */
+    public SubDvdWriter() {
+    }
+
+    /**
+     * Write the binary stream representation of one caption to a buffer
+     *
+     * @param pic SubPicture object containing caption info
+     * @param bm  bitmap
+     * @param buf buffer to write the caption to, starting at its current position
+     * @return number of bytes written
+     * @throws java.nio.BufferOverflowException if the remaining space in the buffer is too small (nothing is written then)
+     */
+    public int writeSubFrame(SubPictureDVD pic, Bitmap bm, ByteBuffer buf) {
+        /* create RLE buffers */
+        SupDvdUtil.encodeLines(bm, true, evenLines);
+        SupDvdUtil.encodeLines(bm, false, oddLines);
+        int size = getFrameSize(pic);
+        if (buf.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        writeFrame(pic, bm, buf, size);
+        return size;
     }
 
     /**
-     * Create the binary stream representation of one caption
+     * Write the binary stream representation of one caption to a channel
      *
      * @param pic SubPicture object containing caption info
      * @param bm  bitmap
-     * @return byte buffer containing the binary stream representation of one caption
+     * @param channel channel to write the caption to
+     * @return number of bytes written
+     * @throws IOException
      */
-    public static byte[] createSubFrame(SubPictureDVD pic, Bitmap bm) {
+    public int writeSubFrame(SubPictureDVD pic, Bitmap bm, WritableByteChannel channel) throws IOException {
+        ConversionStatistics.StageTimer encodeTimer = statistics.start(ConversionStatistics.Stage.ENCODE);
         /* create RLE buffers */
-        byte even[] = SupDvdUtil.encodeLines(bm, true);
-        byte odd[] = SupDvdUtil.encodeLines(bm, false);
+        SupDvdUtil.encodeLines(bm, true, evenLines);
+        SupDvdUtil.encodeLines(bm, false, oddLines);
+        int size = getFrameSize(pic);
+        if (frameBuf.capacity() < size) {
+            frameBuf = ByteBuffer.allocate(Math.max(size, frameBuf.capacity() * 2));
+        }
+        frameBuf.clear();
+        writeFrame(pic, bm, frameBuf, size);
+        frameBuf.flip();
+        encodeTimer.end(bm.getWidth(), bm.getHeight(), size);
+        ConversionStatistics.StageTimer writeTimer = statistics.start(ConversionStatistics.Stage.WRITE);
+        writeFully(frameBuf, channel);
+        statistics.addBytesWritten(size);
+        writeTimer.end(bm.getWidth(), bm.getHeight(), size);
+        return size;
+    }
+
+    /**
+     * Get the number of additional packets needed for a caption. In the SUB format only 0x800 bytes can be written
+     * per packet. If a packet is larger, it has to be split into fragments <= 0x800 bytes which follow one after the other.
+     * @param sizeRLE size of the RLE buffers
+     * @param controlHeaderLen length of the control header
+     * @return number of additional packets
+     */
+    private static int getNumAdditionalPackets(int sizeRLE, int controlHeaderLen) {
+        int bufSize = PACK_HEADER.length + HEADER_FIRST.length + controlHeaderLen + sizeRLE;
+        int numAdditionalPackets = 0;
+        if (bufSize > 0x800) {
+            // determine how many additional headers we will need
+            // considering that each additional header also adds to the size
+            // due to its own headers
+            numAdditionalPackets = 1;
+            int remainingRLEsize = sizeRLE - (0x800 - PACK_HEADER.length - HEADER_FIRST.length); // size - 0x7df
+            while (remainingRLEsize > (0x800 - PACK_HEADER.length - HEADER_NEXT.length - controlHeaderLen)) {
+                remainingRLEsize -= (0x800 - PACK_HEADER.length - HEADER_NEXT.length);
+                numAdditionalPackets++;
+            }
+        }
+        return numAdditionalPackets;
+    }
+
+    private int getFrameSize(SubPictureDVD pic) {
+        int controlHeaderLen = pic.isForced() ? CONTROL_HEADER.length : CONTROL_HEADER.length - 1;
+        return (1 + getNumAdditionalPackets(evenLines.size() + oddLines.size(), controlHeaderLen)) * 0x800;
+    }
+
+    private void writeFrame(SubPictureDVD pic, Bitmap bm, ByteBuffer buf, int frameSize) {
         int tmp;
 
         int forcedOfs;
         int controlHeaderLen;
         if (pic.isForced()) {
             forcedOfs = 0;
-            CONTROL_HEADER[2] = 0x01; // display
-            CONTROL_HEADER[3] = 0x00; // forced
-            controlHeaderLen = CONTROL_HEADER.length;
+            controlHeader[2] = 0x01; // display
+            controlHeader[3] = 0x00; // forced
+            controlHeaderLen = controlHeader.length;
         } else {
             forcedOfs = 1;
-            CONTROL_HEADER[2] = 0x00; // part of offset
-            CONTROL_HEADER[3] = 0x01; // display
-            controlHeaderLen = CONTROL_HEADER.length - 1;
+            controlHeader[2] = 0x00; // part of offset
+            controlHeader[3] = 0x01; // display
+            controlHeaderLen = controlHeader.length - 1;
         }
 
         // fill out all info but the offets (determined later)
 
         /* header - contains PTM */
         int ptm = (int) pic.getStartTime(); // should be end time, but STC writes start time?
-        HEADER_FIRST[9] = (byte) (((ptm >> 29) & 0x0E) | 0x21);
-        HEADER_FIRST[10] = (byte) (ptm >> 22);
-        HEADER_FIRST[11] = (byte) ((ptm >> 14) | 1);
-        HEADER_FIRST[12] = (byte) (ptm >> 7);
-        HEADER_FIRST[13] = (byte) (ptm * 2 + 1);
+        headerFirst[9] = (byte) (((ptm >> 29) & 0x0E) | 0x21);
+        headerFirst[10] = (byte) (ptm >> 22);
+        headerFirst[11] = (byte) ((ptm >> 14) | 1);
+        headerFirst[12] = (byte) (ptm >> 7);
+        headerFirst[13] = (byte) (ptm * 2 + 1);
 
         /* control header */
         /* palette (store reversed) */
-        CONTROL_HEADER[1 + 4] = (byte) (((pic.getPal()[3] & 0xf) << 4) | (pic.getPal()[2] & 0x0f));
-        CONTROL_HEADER[1 + 5] = (byte) (((pic.getPal()[1] & 0xf) << 4) | (pic.getPal()[0] & 0x0f));
+        controlHeader[1 + 4] = (byte) (((pic.getPal()[3] & 0xf) << 4) | (pic.getPal()[2] & 0x0f));
+        controlHeader[1 + 5] = (byte) (((pic.getPal()[1] & 0xf) << 4) | (pic.getPal()[0] & 0x0f));
         /* alpha (store reversed) */
-        CONTROL_HEADER[1 + 7] = (byte) (((pic.getAlpha()[3] & 0xf) << 4) | (pic.getAlpha()[2] & 0x0f));
-        CONTROL_HEADER[1 + 8] = (byte) (((pic.getAlpha()[1] & 0xf) << 4) | (pic.getAlpha()[0] & 0x0f));
+        controlHeader[1 + 7] = (byte) (((pic.getAlpha()[3] & 0xf) << 4) | (pic.getAlpha()[2] & 0x0f));
+        controlHeader[1 + 8] = (byte) (((pic.getAlpha()[1] & 0xf) << 4) | (pic.getAlpha()[0] & 0x0f));
 
         /* coordinates of subtitle */
-        CONTROL_HEADER[1 + 10] = (byte) ((pic.getXOffset() >> 4) & 0xff);
+        controlHeader[1 + 10] = (byte) ((pic.getXOffset() >> 4) & 0xff);
         tmp = pic.getXOffset() + bm.getWidth() - 1;
-        CONTROL_HEADER[1 + 11] = (byte) (((pic.getXOffset() & 0xf) << 4) | ((tmp >> 8) & 0xf));
-        CONTROL_HEADER[1 + 12] = (byte) (tmp & 0xff);
+        controlHeader[1 + 11] = (byte) (((pic.getXOffset() & 0xf) << 4) | ((tmp >> 8) & 0xf));
+        controlHeader[1 + 12] = (byte) (tmp & 0xff);
 
         int yOfs = pic.getYOffset() - configuration.getCropOffsetY();
         if (yOfs < 0) {
@@ -138,125 +228,101 @@ public final class SubDvdWriter {
             }
         }
 
-        CONTROL_HEADER[1 + 13] = (byte) ((yOfs >> 4) & 0xff);
+        controlHeader[1 + 13] = (byte) ((yOfs >> 4) & 0xff);
         tmp = yOfs + bm.getHeight() - 1;
-        CONTROL_HEADER[1 + 14] = (byte) (((yOfs & 0xf) << 4) | ((tmp >> 8) & 0xf));
-        CONTROL_HEADER[1 + 15] = (byte) (tmp & 0xff);
+        controlHeader[1 + 14] = (byte) (((yOfs & 0xf) << 4) | ((tmp >> 8) & 0xf));
+        controlHeader[1 + 15] = (byte) (tmp & 0xff);
 
         /* offset to even lines in rle buffer */
-        CONTROL_HEADER[1 + 17] = 0x00; /* 2 bytes subpicture size and 2 bytes control header ofs */
-        CONTROL_HEADER[1 + 18] = 0x04; /* note: SubtitleCreator uses 6 and adds 0x0000 in between */
+        controlHeader[1 + 17] = 0x00; /* 2 bytes subpicture size and 2 bytes control header ofs */
+        controlHeader[1 + 18] = 0x04; /* note: SubtitleCreator uses 6 and adds 0x0000 in between */
 
         /* offset to odd lines in rle buffer */
-        tmp = even.length + CONTROL_HEADER[1 + 18];
-        CONTROL_HEADER[1 + 19] = (byte) ((tmp >> 8) & 0xff);
-        CONTROL_HEADER[1 + 20] = (byte) (tmp & 0xff);
+        tmp = evenLines.size() + controlHeader[1 + 18];
+        controlHeader[1 + 19] = (byte) ((tmp >> 8) & 0xff);
+        controlHeader[1 + 20] = (byte) (tmp & 0xff);
 
         /* display duration in frames */
         tmp = (int) ((pic.getEndTime() - pic.getStartTime()) / 1024); // 11.378ms resolution????
-        CONTROL_HEADER[1 + 22] = (byte) ((tmp >> 8) & 0xff);
-        CONTROL_HEADER[1 + 23] = (byte) (tmp & 0xff);
+        controlHeader[1 + 22] = (byte) ((tmp >> 8) & 0xff);
+        controlHeader[1 + 23] = (byte) (tmp & 0xff);
 
         /* offset to end sequence - 22 is the offset of the end sequence */
-        tmp = even.length + odd.length + 22 + (pic.isForced() ? 1 : 0) + 4;
-        CONTROL_HEADER[forcedOfs + 0] = (byte) ((tmp >> 8) & 0xff);
-        CONTROL_HEADER[forcedOfs + 1] = (byte) (tmp & 0xff);
-        CONTROL_HEADER[1 + 24] = (byte) ((tmp >> 8) & 0xff);
-        CONTROL_HEADER[1 + 25] = (byte) (tmp & 0xff);
+        tmp = evenLines.size() + oddLines.size() + 22 + (pic.isForced() ? 1 : 0) + 4;
+        controlHeader[forcedOfs + 0] = (byte) ((tmp >> 8) & 0xff);
+        controlHeader[forcedOfs + 1] = (byte) (tmp & 0xff);
+        controlHeader[1 + 24] = (byte) ((tmp >> 8) & 0xff);
+        controlHeader[1 + 25] = (byte) (tmp & 0xff);
 
         // subpicture size
-        tmp = even.length + odd.length + 4 + controlHeaderLen;
-        HEADER_FIRST[15] = (byte) (tmp >> 8);
-        HEADER_FIRST[16] = (byte) tmp;
+        tmp = evenLines.size() + oddLines.size() + 4 + controlHeaderLen;
+        headerFirst[15] = (byte) (tmp >> 8);
+        headerFirst[16] = (byte) tmp;
 
         /* offset to control buffer - 2 is the size of the offset */
-        tmp = even.length + odd.length + 2;
-        HEADER_FIRST[17] = (byte) (tmp >> 8);
-        HEADER_FIRST[18] = (byte) tmp;
+        tmp = evenLines.size() + oddLines.size() + 2;
+        headerFirst[17] = (byte) (tmp >> 8);
+        headerFirst[18] = (byte) tmp;
 
         // in the SUB format only 0x800 bytes can be written per packet. If a packet
         // is larger, it has to be split into fragments <= 0x800 bytes
         // which follow one after the other.
 
-        int sizeRLE = even.length + odd.length;
-        int bufSize = PACK_HEADER.length + HEADER_FIRST.length + controlHeaderLen + sizeRLE;
-        int numAdditionalPackets = 0;
-        if (bufSize > 0x800) {
-            // determine how many additional headers we will need
-            // considering that each additional header also adds to the size
-            // due to its own headers
-            numAdditionalPackets = 1;
-            int remainingRLEsize = sizeRLE - (0x800 - PACK_HEADER.length - HEADER_FIRST.length); // size - 0x7df
-            while (remainingRLEsize > (0x800 - PACK_HEADER.length - HEADER_NEXT.length - controlHeaderLen)) {
-                remainingRLEsize -= (0x800 - PACK_HEADER.length - HEADER_NEXT.length);
-                bufSize += PACK_HEADER.length + HEADER_NEXT.length;
-                numAdditionalPackets++;
-            }
+        int sizeRLE = evenLines.size() + oddLines.size();
+        int numAdditionalPackets = getNumAdditionalPackets(sizeRLE, controlHeaderLen);
+        int bufSize = packHeader.length + headerFirst.length + controlHeaderLen + sizeRLE
+                + (numAdditionalPackets > 1 ? (numAdditionalPackets - 1) * (packHeader.length + headerNext.length) : 0);
+        if (numAdditionalPackets > 0) {
             // packet length of the 1st packet should be the maximum size
-            tmp = 0x800 - PACK_HEADER.length - 6;
+            tmp = 0x800 - packHeader.length - 6;
         } else {
-            tmp = (bufSize - PACK_HEADER.length - 6);
+            tmp = (bufSize - packHeader.length - 6);
         }
 
-        // allocate and fill buffer
-        byte buf[] = new byte[(1 + numAdditionalPackets) * 0x800];
-
         int stuffingBytes;
-        int diff = buf.length - bufSize;
+        int diff = frameSize - bufSize;
         if (diff > 0 && diff < 6) {
             stuffingBytes = diff;
         } else {
             stuffingBytes = 0;
         }
 
-        int ofs = 0;
-        for (byte packHeader : PACK_HEADER) {
-            buf[ofs++] = packHeader;
-        }
+        int start = buf.position();
+        buf.put(packHeader);
 
         // set packet length
         tmp += stuffingBytes;
-        HEADER_FIRST[4] = (byte) (tmp >> 8);
-        HEADER_FIRST[5] = (byte) tmp;
+        headerFirst[4] = (byte) (tmp >> 8);
+        headerFirst[5] = (byte) tmp;
 
         // set pts length
-        HEADER_FIRST[8] = (byte) (5 + stuffingBytes);
+        headerFirst[8] = (byte) (5 + stuffingBytes);
 
         // write header and use pts for stuffing bytes (if needed)
-        for (int i = 0; i < 14; i++) {
-            buf[ofs++] = HEADER_FIRST[i];
-        }
+        buf.put(headerFirst, 0, 14);
         for (int i = 0; i < stuffingBytes; i++) {
-            buf[ofs++] = (byte) 0xff;
-        }
-        for (int i = 14; i < HEADER_FIRST.length; i++) {
-            buf[ofs++] = HEADER_FIRST[i];
+            buf.put((byte) 0xff);
         }
+        buf.put(headerFirst, 14, headerFirst.length - 14);
 
         // write (first part of) RLE buffer
         tmp = sizeRLE;
         if (numAdditionalPackets > 0) {
-            tmp = (0x800 - PACK_HEADER.length - stuffingBytes - HEADER_FIRST.length);
+            tmp = (0x800 - packHeader.length - stuffingBytes - headerFirst.length);
             if (tmp > sizeRLE) { // can only happen in 1st buffer
                 tmp = sizeRLE;
             }
         }
-        for (int i = 0; i < tmp; i++) {
-            if (i < even.length) {
-                buf[ofs++] = even[i];
-            } else {
-                buf[ofs++] = odd[i - even.length];
-            }
-        }
+        putRLE(buf, 0, tmp);
         int ofsRLE = tmp;
 
         // fill gap in first packet with (parts of) control header
         // only if the control header is split over two packets
         int controlHeaderWritten = 0;
+        int ofs = buf.position() - start;
         if (numAdditionalPackets == 1 && ofs < 0x800) {
-            for (; ofs < 0x800; ofs++) {
-                buf[ofs] = CONTROL_HEADER[forcedOfs + (controlHeaderWritten++)];
-            }
+            controlHeaderWritten = 0x800 - ofs;
+            buf.put(controlHeader, forcedOfs, controlHeaderWritten);
         }
 
         // write additional packets
@@ -265,68 +331,78 @@ public final class SubDvdWriter {
             if (p == numAdditionalPackets - 1) {
                 // last loop
                 rleSizeLeft = sizeRLE - ofsRLE;
-                tmp = HEADER_NEXT.length + (controlHeaderLen - controlHeaderWritten) + (sizeRLE - ofsRLE) - 6;
+                tmp = headerNext.length + (controlHeaderLen - controlHeaderWritten) + (sizeRLE - ofsRLE) - 6;
             } else {
-                tmp = 0x800 - PACK_HEADER.length - 6;
-                rleSizeLeft = (0x800 - PACK_HEADER.length - HEADER_NEXT.length);
+                tmp = 0x800 - packHeader.length - 6;
+                rleSizeLeft = (0x800 - packHeader.length - headerNext.length);
                 // now, again, it could happen that the RLE buffer runs out before the last package
                 if (rleSizeLeft > (sizeRLE - ofsRLE)) {
                     rleSizeLeft = sizeRLE - ofsRLE;
                 }
             }
             // copy packet headers
-            PACK_HEADER[13] = (byte) (0xf8);
-            for (byte packHeader : PACK_HEADER) {
-                buf[ofs++] = packHeader;
-            }
+            packHeader[13] = (byte) (0xf8);
+            buf.put(packHeader);
 
             // set packet length
-            HEADER_NEXT[4] = (byte) (tmp >> 8);
-            HEADER_NEXT[5] = (byte) tmp;
-            for (byte b : HEADER_NEXT) {
-                buf[ofs++] = b;
-            }
+            headerNext[4] = (byte) (tmp >> 8);
+            headerNext[5] = (byte) tmp;
+            buf.put(headerNext);
 
             // copy RLE buffer
-            for (int i = ofsRLE; i < ofsRLE + rleSizeLeft; i++) {
-                if (i < even.length) {
-                    buf[ofs++] = even[i];
-                } else {
-                    buf[ofs++] = odd[i - even.length];
-                }
-            }
+            putRLE(buf, ofsRLE, rleSizeLeft);
             ofsRLE += rleSizeLeft;
             // fill possible gap in all but last package with (parts of) control header
             // only if the control header is split over two packets
             // this can only happen in the package before the last one though
             if (p != numAdditionalPackets - 1) {
-                for (; ofs < (p + 2) * 0x800; ofs++) {
-                    buf[ofs] = CONTROL_HEADER[forcedOfs + (controlHeaderWritten++)];
+                int gap = (p + 2) * 0x800 - (buf.position() - start);
+                if (gap > 0) {
+                    buf.put(controlHeader, forcedOfs + controlHeaderWritten, gap);
+                    controlHeaderWritten += gap;
                 }
             }
         }
 
         // write (rest of) control header
-        for (int i = controlHeaderWritten; i < controlHeaderLen; i++) {
-            buf[ofs++] = CONTROL_HEADER[forcedOfs + i];
-        }
+        buf.put(controlHeader, forcedOfs + controlHeaderWritten, controlHeaderLen - controlHeaderWritten);
 
         // fill rest of last packet with padding bytes
-        diff = buf.length - ofs;
+        ofs = buf.position() - start;
+        diff = frameSize - ofs;
         if (diff >= 6) {
             diff -= 6;
-            buf[ofs++] = 0x00;
-            buf[ofs++] = 0x00;
-            buf[ofs++] = 0x01;
-            buf[ofs++] = (byte) 0xbe;
-            buf[ofs++] = (byte) (diff >> 8);
-            buf[ofs++] = (byte) diff;
-            for (; ofs < buf.length; ofs++) {
-                buf[ofs] = (byte) 0xff;
+            buf.put((byte) 0x00);
+            buf.put((byte) 0x00);
+            buf.put((byte) 0x01);
+            buf.put((byte) 0xbe);
+            buf.put((byte) (diff >> 8));
+            buf.put((byte) diff);
+            for (int i = 0; i < diff; i++) {
+                buf.put((byte) 0xff);
             }
-        } // else should never happen due to stuffing bytes
+        } else {
+            // should never happen due to stuffing bytes
+            for (int i = 0; i < diff; i++) {
+                buf.put((byte) 0x00);
+            }
+        }
+    }
 
-        return buf;
+    /**
+     * Copy a part of the RLE buffers (odd lines following even lines) to the target buffer
+     */
+    private void putRLE(ByteBuffer buf, int from, int length) {
+        int evenSize = evenLines.size();
+        if (from < evenSize) {
+            int evenLength = Math.min(length, evenSize - from);
+            buf.put(evenLines.getBuffer(), from, evenLength);
+            from += evenLength;
+            length -= evenLength;
+        }
+        if (length > 0) {
+            buf.put(oddLines.getBuffer(), from - evenSize, length);
+        }
     }
 
     /**
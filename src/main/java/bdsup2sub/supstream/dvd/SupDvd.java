@@ -17,8 +17,10 @@ package bdsup2sub.supstream.dvd;
 
 import bdsup2sub.bitmap.Bitmap;
 import bdsup2sub.bitmap.BitmapBounds;
+import bdsup2sub.bitmap.BitmapWithPalette;
 import bdsup2sub.bitmap.Palette;
 import bdsup2sub.core.Configuration;
+import bdsup2sub.core.ConversionEvents;
 import bdsup2sub.core.Core;
 import bdsup2sub.core.CoreException;
 import bdsup2sub.core.Logger;
@@ -85,7 +87,10 @@ public class SupDvd implements DvdSubtitleStream {
                 logger.info("# " + (++i) + "\n");
                 Core.setProgress(offset);
                 logger.trace("Offset: " + ToolBox.toHexLeftZeroPadded(offset, 8) + "\n");
-                offset = readSupFrame(offset, fileBuffer);
+                ConversionEvents.SegmentEvent event = ConversionEvents.beginSegment();
+                long nextOffset = readSupFrame(offset, fileBuffer);
+                event.commit(offset, "SPU", (int) (nextOffset - offset), subPictures.size() - 1);
+                offset = nextOffset;
             } while (offset < size);
         } catch (FileBufferException e) {
             throw new CoreException(e.getMessage());
@@ -303,6 +308,16 @@ public class SupDvd implements DvdSubtitleStream {
         }
     }
 
+    public BitmapWithPalette decodePreview(int index) throws CoreException {
+        if (index >= subPictures.size()) {
+            throw new CoreException("Index " + index + " out of bounds\n");
+        }
+        SubPictureDVD pic = subPictures.get(index);
+        Palette pal = SupDvdUtil.decodePalette(pic, srcPalette);
+        Bitmap bm = SupDvdUtil.decodeImage(pic, fileBuffer, pal.getIndexOfMostTransparentPaletteEntry());
+        return new BitmapWithPalette(bm.cropToVisiblePixels(pal.getAlpha(), configuration.getAlphaCrop()), pal);
+    }
+
     private void decode(SubPictureDVD pic) throws CoreException {
         palette = SupDvdUtil.decodePalette(pic, srcPalette);
         bitmap  = SupDvdUtil.decodeImage(pic, fileBuffer, palette.getIndexOfMostTransparentPaletteEntry());
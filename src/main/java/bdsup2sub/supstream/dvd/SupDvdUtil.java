@@ -25,9 +25,6 @@ import bdsup2sub.tools.FileBuffer;
 import bdsup2sub.tools.FileBufferException;
 import bdsup2sub.utils.ToolBox;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-
 public final class SupDvdUtil {
 
     private static final Configuration configuration = Configuration.getInstance();
@@ -45,11 +42,26 @@ public final class SupDvdUtil {
      * @return RLE buffer
      */
     public static byte[] encodeLines(Bitmap bm, boolean even) {
+        NibbleBuffer nibbles = new NibbleBuffer(bm.getWidth() * bm.getHeight() / 4 + 4);
+        encodeLines(bm, even, nibbles);
+        return nibbles.toByteArray();
+    }
+
+    /**
+     * Compress bitmap to RLE buffer
+     *
+     * @param bm      bitmap to compress
+     * @param even    true: encode even lines, false: encode odd lines
+     * @param nibbles buffer to store the RLE data, cleared before encoding
+     */
+    static void encodeLines(Bitmap bm, boolean even, NibbleBuffer nibbles) {
+        byte[] pixels = bm.getInternalBuffer();
+        int width = bm.getWidth();
         int ofs;
-        byte color;
+        int color;
         int len;
         int y;
-        ArrayList<Byte> nibbles = new ArrayList<Byte>();
+        nibbles.clear();
 
         if (even) {
             y = 0;
@@ -58,57 +70,44 @@ public final class SupDvdUtil {
         }
 
         for (; y < bm.getHeight(); y += 2) {
-            ofs = y * bm.getWidth();
-            for (int x = 0; x < bm.getWidth(); x += len, ofs += len) {
-                color = bm.getInternalBuffer()[ofs];
-                for (len = 1; x + len < bm.getWidth(); len++)
-                    if (bm.getInternalBuffer()[ofs + len] != color) {
+            ofs = y * width;
+            for (int x = 0; x < width; x += len, ofs += len) {
+                color = pixels[ofs];
+                for (len = 1; x + len < width; len++)
+                    if (pixels[ofs + len] != color) {
                         break;
                     }
                 if (len < 4) {
-                    nibbles.add((byte) ((len << 2) | (color & 3)));
+                    nibbles.add((len << 2) | (color & 3));
                 } else if (len < 0x10) {
-                    nibbles.add((byte) (len >> 2));
-                    nibbles.add((byte) ((len << 2) | (color & 3)));
+                    nibbles.add(len >> 2);
+                    nibbles.add((len << 2) | (color & 3));
                 } else if (len < 0x40) {
-                    nibbles.add((byte) 0);
-                    nibbles.add((byte) (len >> 2));
-                    nibbles.add((byte) ((len << 2) | (color & 3)));
-                } else if (x + len == bm.getWidth()) {
-                    nibbles.add((byte) (0));
-                    nibbles.add((byte) (0));
-                    nibbles.add((byte) (0));
+                    nibbles.add(0);
+                    nibbles.add(len >> 2);
+                    nibbles.add((len << 2) | (color & 3));
+                } else if (x + len == width) {
+                    nibbles.add(0);
+                    nibbles.add(0);
+                    nibbles.add(0);
                     nibbles.add(color);
                 } else {
                     if (len > 0xff) {
                         len = 0xff;
                     }
-                    nibbles.add((byte) (0));
-                    nibbles.add((byte) (len >> 6));
-                    nibbles.add((byte) (len >> 2));
-                    nibbles.add((byte) ((len << 2) | (color & 3)));
+                    nibbles.add(0);
+                    nibbles.add(len >> 6);
+                    nibbles.add(len >> 2);
+                    nibbles.add((len << 2) | (color & 3));
                 }
             }
-            if ((nibbles.size() & 1) == 1) {
-                nibbles.add((byte) (0));
-            }
+            nibbles.alignToByte();
         }
         // end buffer with line feed
-        nibbles.add((byte) (0));
-        nibbles.add((byte) (0));
-        nibbles.add((byte) (0));
-        nibbles.add((byte) (0));
-
-        int size = nibbles.size() / 2; // number of bytes
-        byte[] retval = new byte[size];
-        Iterator<Byte> it = nibbles.iterator();
-
-        for (int i = 0; i < size; i++) {
-            int hi = (it.next() & 0xf);
-            int lo = (it.next() & 0xf);
-            retval[i] = (byte) ((hi << 4) | lo);
-        }
-        return retval;
+        nibbles.add(0);
+        nibbles.add(0);
+        nibbles.add(0);
+        nibbles.add(0);
     }
 
     /**
@@ -17,10 +17,19 @@ package bdsup2sub.supstream.dvd;
 
 import bdsup2sub.bitmap.Bitmap;
 import bdsup2sub.core.Configuration;
+import bdsup2sub.core.ConversionStatistics;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+import static bdsup2sub.utils.StreamUtils.writeFully;
 
 public final class SupDvdWriter {
 
     private static final Configuration configuration = Configuration.getInstance();
+    private static final ConversionStatistics statistics = ConversionStatistics.getInstance();
 
     private static final byte[] CONTROL_HEADER = {
             0x00,													//  dummy byte (for shifting when forced)
@@ -36,83 +45,134 @@ public final class SupDvdWriter {
             0x02, (byte)0xff,										// 26: CMD 2: stop displaying
     };
 
-    private SupDvdWriter() {
+    private final byte[] controlHeader = CONTROL_HEADER.clone();
+
+    /** RLE buffers for even and odd lines, reused for all captions */
+    private final NibbleBuffer evenLines = new NibbleBuffer();
+    private final NibbleBuffer oddLines = new NibbleBuffer();
+    /** Frame buffer used when writing to a channel, reused for all captions */
+    private ByteBuffer frameBuf = ByteBuffer.allocate(0x4000);
+
+    /**
+     * Create a writer for SUP/IFO captions. Writers don't share any state, but a single writer must not be
+     * used by more than one thread at a time.
+     */
+    public SupDvdWriter() {
+    }
+
+    /**
+     * Write the binary stream representation of one caption to a buffer
+     *
+     * @param pic SubPicture object containing caption info
+     * @param bm  bitmap
+     * @param buf buffer to write the caption to, starting at its current position
+     * @return number of bytes written
+     * @throws java.nio.BufferOverflowException if the remaining space in the buffer is too small (nothing is written then)
+     */
+    public int writeSupFrame(SubPictureDVD pic, Bitmap bm, ByteBuffer buf) {
+        /* create RLE buffers */
+        SupDvdUtil.encodeLines(bm, true, evenLines);
+        SupDvdUtil.encodeLines(bm, false, oddLines);
+        int size = getFrameSize(pic);
+        if (buf.remaining() < size) {
+            throw new BufferOverflowException();
+        }
+        writeFrame(pic, bm, buf);
+        return size;
     }
 
     /**
-     * Create the binary stream representation of one caption
+     * Write the binary stream representation of one caption to a channel
      *
      * @param pic SubPicture object containing caption info
      * @param bm  bitmap
-     * @return byte buffer containing the binary stream representation of one caption
+     * @param channel channel to write the caption to
+     * @return number of bytes written
+     * @throws IOException
      */
-    public static byte[] createSupFrame(SubPictureDVD pic, Bitmap bm) {
+    public int writeSupFrame(SubPictureDVD pic, Bitmap bm, WritableByteChannel channel) throws IOException {
+        ConversionStatistics.StageTimer encodeTimer = statistics.start(ConversionStatistics.Stage.ENCODE);
         /* create RLE buffers */
-        byte[] even = SupDvdUtil.encodeLines(bm, true);
-        byte[] odd = SupDvdUtil.encodeLines(bm, false);
+        SupDvdUtil.encodeLines(bm, true, evenLines);
+        SupDvdUtil.encodeLines(bm, false, oddLines);
+        int size = getFrameSize(pic);
+        if (frameBuf.capacity() < size) {
+            frameBuf = ByteBuffer.allocate(Math.max(size, frameBuf.capacity() * 2));
+        }
+        frameBuf.clear();
+        writeFrame(pic, bm, frameBuf);
+        frameBuf.flip();
+        encodeTimer.end(bm.getWidth(), bm.getHeight(), size);
+        ConversionStatistics.StageTimer writeTimer = statistics.start(ConversionStatistics.Stage.WRITE);
+        writeFully(frameBuf, channel);
+        statistics.addBytesWritten(size);
+        writeTimer.end(bm.getWidth(), bm.getHeight(), size);
+        return size;
+    }
+
+    private int getFrameSize(SubPictureDVD pic) {
+        int controlHeaderLen = pic.isForced() ? CONTROL_HEADER.length : CONTROL_HEADER.length - 1;
+        return 10 + 4 + controlHeaderLen + evenLines.size() + oddLines.size();
+    }
+
+    private void writeFrame(SubPictureDVD pic, Bitmap bm, ByteBuffer buf) {
         int tmp;
 
         int forcedOfs;
         int controlHeaderLen;
         if (pic.isForced()) {
             forcedOfs = 0;
-            CONTROL_HEADER[2] = 0x01; // display
-            CONTROL_HEADER[3] = 0x00; // forced
-            controlHeaderLen = CONTROL_HEADER.length;
+            controlHeader[2] = 0x01; // display
+            controlHeader[3] = 0x00; // forced
+            controlHeaderLen = controlHeader.length;
         } else {
             forcedOfs = 1;
-            CONTROL_HEADER[2] = 0x00; // part of offset
-            CONTROL_HEADER[3] = 0x01; // display
-            controlHeaderLen = CONTROL_HEADER.length - 1;
+            controlHeader[2] = 0x00; // part of offset
+            controlHeader[3] = 0x01; // display
+            controlHeaderLen = controlHeader.length - 1;
         }
 
         // fill out all info but the offets (determined later)
-        int sizeRLE = even.length + odd.length;
-        int bufSize = 10 + 4 + controlHeaderLen + sizeRLE;
-        byte[] buf = new byte[bufSize];
+        int sizeRLE = evenLines.size() + oddLines.size();
 
         // write header
-        buf[0] = 0x53;
-        buf[1] = 0x50;
+        buf.put((byte) 0x53);
+        buf.put((byte) 0x50);
         // write PTS (4 bytes of 8 bytes used) - little endian!
         int pts = (int) pic.getStartTime();
-        buf[5] = (byte) (pts >> 24);
-        buf[4] = (byte) (pts >> 16);
-        buf[3] = (byte) (pts >> 8);
-        buf[2] = (byte) pts;
+        buf.put((byte) pts);
+        buf.put((byte) (pts >> 8));
+        buf.put((byte) (pts >> 16));
+        buf.put((byte) (pts >> 24));
+        buf.putInt(0);
 
         // write packet size
         tmp = controlHeaderLen + sizeRLE + 4; // 4 for the size and the offset
-        buf[10] = (byte) (tmp >> 8);
-        buf[11] = (byte) (tmp);
+        buf.put((byte) (tmp >> 8));
+        buf.put((byte) (tmp));
 
         // write offset to control header +
         tmp = sizeRLE + 2; // 2 for the offset
-        buf[12] = (byte) (tmp >> 8);
-        buf[13] = (byte) (tmp);
+        buf.put((byte) (tmp >> 8));
+        buf.put((byte) (tmp));
 
         // copy rle buffers
-        int ofs = 14;
-        for (byte b : even) {
-            buf[ofs++] = b;
-        }
-        for (byte b : odd) {
-            buf[ofs++] = b;
-        }
+        buf.put(evenLines.getBuffer(), 0, evenLines.size());
+        buf.put(oddLines.getBuffer(), 0, oddLines.size());
 
         /* create control header */
         /* palette (store reversed) */
-        CONTROL_HEADER[1 + 4] = (byte) (((pic.getPal()[3] & 0xf) << 4) | (pic.getPal()[2] & 0x0f));
-        CONTROL_HEADER[1 + 5] = (byte) (((pic.getPal()[1] & 0xf) << 4) | (pic.getPal()[0] & 0x0f));
+        controlHeader[1 + 4] = (byte) (((pic.getPal()[3] & 0xf) << 4) | (pic.getPal()[2] & 0x0f));
+        controlHeader[1 + 5] = (byte) (((pic.getPal()[1] & 0xf) << 4) | (pic.getPal()[0] & 0x0f));
         /* alpha (store reversed) */
-        CONTROL_HEADER[1 + 7] = (byte) (((pic.getAlpha()[3] & 0xf) << 4) | (pic.getAlpha()[2] & 0x0f));
-        CONTROL_HEADER[1 + 8] = (byte) (((pic.getAlpha()[1] & 0xf) << 4) | (pic.getAlpha()[0] & 0x0f));
+        controlHeader[1 + 7] = (byte) (((pic.getAlpha()[3] & 0xf) << 4) | (pic.getAlpha()[2] & 0x0f));
+        controlHeader[1 + 8] = (byte) (((pic.getAlpha()[1] & 0xf) << 4) | (pic.getAlpha()[0] & 0x0f));
 
         /* coordinates of subtitle */
-        CONTROL_HEADER[1 + 10] = (byte) ((pic.getXOffset() >> 4) & 0xff);
+        controlHeader[1 + 10] = (byte) ((pic.getXOffset() >> 4) & 0xff);
         tmp = pic.getXOffset() + bm.getWidth() - 1;
-        CONTROL_HEADER[1 + 11] = (byte) (((pic.getXOffset() & 0xf) << 4) | ((tmp >> 8) & 0xf));
-        CONTROL_HEADER[1 + 12] = (byte) (tmp & 0xff);
+        controlHeader[1 + 11] = (byte) (((pic.getXOffset() & 0xf) << 4) | ((tmp >> 8) & 0xf));
+        controlHeader[1 + 12] = (byte) (tmp & 0xff);
 
         int yOfs = pic.getYOffset() - configuration.getCropOffsetY();
         if (yOfs < 0) {
@@ -124,37 +184,33 @@ public final class SupDvdWriter {
             }
         }
 
-        CONTROL_HEADER[1 + 13] = (byte) ((yOfs >> 4) & 0xff);
+        controlHeader[1 + 13] = (byte) ((yOfs >> 4) & 0xff);
         tmp = yOfs + bm.getHeight() - 1;
-        CONTROL_HEADER[1 + 14] = (byte) (((yOfs & 0xf) << 4) | ((tmp >> 8) & 0xf));
-        CONTROL_HEADER[1 + 15] = (byte) (tmp & 0xff);
+        controlHeader[1 + 14] = (byte) (((yOfs & 0xf) << 4) | ((tmp >> 8) & 0xf));
+        controlHeader[1 + 15] = (byte) (tmp & 0xff);
 
         /* offset to even lines in rle buffer */
-        CONTROL_HEADER[1 + 17] = 0x00; /* 2 bytes subpicture size and 2 bytes control header ofs */
-        CONTROL_HEADER[1 + 18] = 0x04; /* note: SubtitleCreator uses 6 and adds 0x0000 in between */
+        controlHeader[1 + 17] = 0x00; /* 2 bytes subpicture size and 2 bytes control header ofs */
+        controlHeader[1 + 18] = 0x04; /* note: SubtitleCreator uses 6 and adds 0x0000 in between */
 
         /* offset to odd lines in rle buffer */
-        tmp = even.length + CONTROL_HEADER[1 + 18];
-        CONTROL_HEADER[1 + 19] = (byte) ((tmp >> 8) & 0xff);
-        CONTROL_HEADER[1 + 20] = (byte) (tmp & 0xff);
+        tmp = evenLines.size() + controlHeader[1 + 18];
+        controlHeader[1 + 19] = (byte) ((tmp >> 8) & 0xff);
+        controlHeader[1 + 20] = (byte) (tmp & 0xff);
 
         /* display duration in frames */
         tmp = (int) ((pic.getEndTime() - pic.getStartTime()) / 1024); // 11.378ms resolution????
-        CONTROL_HEADER[1 + 22] = (byte) ((tmp >> 8) & 0xff);
-        CONTROL_HEADER[1 + 23] = (byte) (tmp & 0xff);
+        controlHeader[1 + 22] = (byte) ((tmp >> 8) & 0xff);
+        controlHeader[1 + 23] = (byte) (tmp & 0xff);
 
         /* offset to end sequence - 22 is the offset of the end sequence */
         tmp = sizeRLE + 22 + (pic.isForced() ? 1 : 0) + 4;
-        CONTROL_HEADER[forcedOfs + 0] = (byte) ((tmp >> 8) & 0xff);
-        CONTROL_HEADER[forcedOfs + 1] = (byte) (tmp & 0xff);
-        CONTROL_HEADER[1 + 24] = (byte) ((tmp >> 8) & 0xff);
-        CONTROL_HEADER[1 + 25] = (byte) (tmp & 0xff);
+        controlHeader[forcedOfs + 0] = (byte) ((tmp >> 8) & 0xff);
+        controlHeader[forcedOfs + 1] = (byte) (tmp & 0xff);
+        controlHeader[1 + 24] = (byte) ((tmp >> 8) & 0xff);
+        controlHeader[1 + 25] = (byte) (tmp & 0xff);
 
         // write control header
-        for (int i = 0; i < controlHeaderLen; i++) {
-            buf[ofs++] = CONTROL_HEADER[forcedOfs + i];
-        }
-
-        return buf;
+        buf.put(controlHeader, forcedOfs, controlHeaderLen);
     }
-}
\ No newline at end of file
+}
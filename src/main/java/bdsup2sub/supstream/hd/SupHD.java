@@ -16,8 +16,10 @@
 package bdsup2sub.supstream.hd;
 
 import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.BitmapWithPalette;
 import bdsup2sub.bitmap.Palette;
 import bdsup2sub.core.Configuration;
+import bdsup2sub.core.ConversionEvents;
 import bdsup2sub.core.Core;
 import bdsup2sub.core.CoreException;
 import bdsup2sub.core.Logger;
@@ -69,6 +71,8 @@ public class SupHD implements SubtitleStream {
                     throw new CoreException("Canceled by user!");
                 }
                 Core.setProgress(index);
+                ConversionEvents.SegmentEvent event = ConversionEvents.beginSegment();
+                int startIndex = index;
 
                 if (buffer.getWord(index) != 0x5350) {
                     throw new CoreException("ID 'SP' missing at index " + ToolBox.toHexLeftZeroPadded(index, 8) + "\n");
@@ -173,6 +177,7 @@ public class SupHD implements SubtitleStream {
                 }
                 index = masterIndex + packetSize;
                 subPictures.add(pic);
+                event.commit(startIndex, "SP", index - startIndex, subPictures.size() - 1);
             }
         } catch (CoreException ex) {
             if (subPictures.size() == 0) {
@@ -394,6 +399,15 @@ public class SupHD implements SubtitleStream {
         }
     }
 
+    public BitmapWithPalette decodePreview(int index) throws CoreException {
+        if (index >= subPictures.size()) {
+            throw new CoreException("Index " + index + " out of bounds\n");
+        }
+        SubPictureHD pic = subPictures.get(index);
+        Palette pal = decodePalette(pic);
+        return new BitmapWithPalette(decodeImage(pic, pal.getIndexOfMostTransparentPaletteEntry()), pal);
+    }
+
     public Palette getPalette() {
         return palette;
     }
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+/**
+ * Reduces the colors added to it to a color table of limited size.
+ */
+interface ColorQuantizer {
+
+    /**
+     * Initialize the quantizer. This should be called before adding any pixels.
+     * @param numColors Number of colors we're quantizing to.
+     */
+    void setup(int numColors);
+
+    /**
+     * Add pixels to the quantizer.
+     * @param pixels Array of ARGB pixels
+     * @param offset Offset into the array
+     * @param count Count of pixels
+     */
+    void addPixels(int[] pixels, int offset, int count);
+
+    /**
+     * Add a color occurring several times to the quantizer.
+     * @param argb Color in ARGB format
+     * @param count Number of occurrences
+     */
+    void addColor(int argb, int count);
+
+    /**
+     * Build the color table.
+     * @return Color table
+     */
+    int[] buildColorTable();
+
+    /**
+     * Get the color table index for a color.
+     * @param argb Color in ARGB format
+     * @return Index of color in table
+     */
+    int getIndexForColor(int argb);
+}
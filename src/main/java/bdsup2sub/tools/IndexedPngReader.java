@@ -0,0 +1,381 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.BitmapBounds;
+import bdsup2sub.bitmap.Palette;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the PNG flavors found in BDN XML exports without going through ImageIO: non-interlaced indexed
+ * color images (1, 2, 4 or 8 bits per pixel, optionally with tRNS) and non-interlaced 8 bit RGBA images.
+ * The image data is inflated row by row straight into the pixel buffer of a Bitmap (indexed) or an ARGB
+ * array (RGBA). Other formats are reported as unsupported so the caller can fall back to ImageIO.
+ * An instance reuses its buffers and inflater and is meant to read many images from one thread.
+ */
+public class IndexedPngReader {
+
+    private static final byte[] SIGNATURE = { -119, 80, 78, 71, 13, 10, 26, 10 };
+    private static final int IHDR = 0x49484452;
+    private static final int PLTE = 0x504c5445;
+    private static final int TRNS = 0x74524e53;
+    private static final int IDAT = 0x49444154;
+    private static final int IEND = 0x49454e44;
+
+    private static final int COLOR_TYPE_INDEXED = 3;
+    private static final int COLOR_TYPE_RGBA = 6;
+
+    private final Inflater inflater = new Inflater();
+    /** Data of the current chunk */
+    private byte[] data = new byte[0x8000];
+    /** Filter type byte followed by the pixels, for the current and the previous row */
+    private byte[] row = new byte[1];
+    private byte[] priorRow = new byte[1];
+    /** Pixel buffer reused when only the crop bounds are needed */
+    private byte[] boundsBuffer = new byte[0];
+
+    private int width;
+    private int height;
+    private int bitDepth;
+    private int colorType;
+    /** ARGB palette of the last indexed image, transparent black beyond the PLTE entries */
+    private final int[] colors = new int[256];
+    /** Number of entries in the PLTE chunk of the last indexed image */
+    private int paletteEntries;
+    /** Pixels of the last image: palette indices or ARGB values */
+    private byte[] indexedPixels;
+    private int[] argbPixels;
+
+    /**
+     * Decode a PNG image.
+     * @param in Stream to read from, not closed by this method
+     * @return True if the image was decoded, false if its format is not supported by this reader
+     * @throws IOException if the stream can't be read or is not a valid PNG image
+     */
+    public boolean read(InputStream in) throws IOException {
+        return decode(in, false);
+    }
+
+    /**
+     * Determine the bounds of the pixels with an alpha value of at least alphaThreshold in an indexed PNG image.
+     * The pixels are decoded into an internal buffer that is reused for the next call, so neither a Bitmap
+     * nor a Palette is created.
+     * @param in             Stream to read from, not closed by this method
+     * @param alphaThreshold Minimum alpha value of a visible pixel
+     * @return Bounds as calculated by Bitmap.getCroppingBounds or null if the image is not an indexed image
+     *         supported by this reader
+     * @throws IOException if the stream can't be read or is not a valid PNG image
+     */
+    public BitmapBounds readCroppingBounds(InputStream in, int alphaThreshold) throws IOException {
+        if (!decode(in, true)) {
+            return null;
+        }
+        byte[] alpha = new byte[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            alpha[i] = (byte)(colors[i] >>> 24);
+        }
+        return new Bitmap(width, height, boundsBuffer).getCroppingBounds(alpha, alphaThreshold);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getBitDepth() {
+        return bitDepth;
+    }
+
+    /**
+     * @return Number of palette entries stored in the last indexed image, at most 256
+     */
+    public int getPaletteEntries() {
+        return paletteEntries;
+    }
+
+    /**
+     * @return True if the last image read was an indexed color image
+     */
+    public boolean isIndexed() {
+        return colorType == COLOR_TYPE_INDEXED;
+    }
+
+    /**
+     * @return Bitmap of the last indexed image read; the reader doesn't keep a reference to it
+     */
+    public Bitmap getBitmap() {
+        if (!isIndexed()) {
+            throw new IllegalStateException("Not an indexed image");
+        }
+        return new Bitmap(width, height, indexedPixels);
+    }
+
+    /**
+     * @return Palette with 256 entries of the last indexed image read
+     */
+    public Palette getPalette() {
+        if (!isIndexed()) {
+            throw new IllegalStateException("Not an indexed image");
+        }
+        Palette palette = new Palette(colors.length);
+        for (int i = 0; i < colors.length; i++) {
+            if (colors[i] != 0) {
+                palette.setARGB(i, colors[i]);
+            }
+        }
+        return palette;
+    }
+
+    /**
+     * @return Non-premultiplied ARGB values of the last image read, row by row
+     */
+    public int[] getArgbPixels() {
+        if (isIndexed()) {
+            int[] pixels = new int[width * height];
+            for (int i = 0; i < pixels.length; i++) {
+                pixels[i] = colors[indexedPixels[i] & 0xff];
+            }
+            return pixels;
+        }
+        return argbPixels;
+    }
+
+    /**
+     * Release the native resources of the inflater. The reader must not be used afterwards.
+     */
+    public void end() {
+        inflater.end();
+    }
+
+    private boolean decode(InputStream is, boolean boundsOnly) throws IOException {
+        DataInputStream in = new DataInputStream(is);
+        byte[] signature = new byte[SIGNATURE.length];
+        in.readFully(signature);
+        if (!Arrays.equals(signature, SIGNATURE)) {
+            throw new IOException("Not a PNG file");
+        }
+        indexedPixels = null;
+        argbPixels = null;
+        colorType = 0;
+        paletteEntries = 0;
+        Arrays.fill(colors, 0);
+
+        boolean headerRead = false;
+        int bytesPerPixel = 0;
+        int rowBytes = 0;
+        int rowPos = 0;
+        int y = 0;
+        while (true) {
+            int length = in.readInt();
+            int type = in.readInt();
+            if (length < 0) {
+                throw new IOException("Invalid PNG chunk length");
+            }
+            if (data.length < length) {
+                data = new byte[length];
+            }
+            in.readFully(data, 0, length);
+            in.readInt(); // CRC, not checked
+
+            if (!headerRead && type != IHDR) {
+                throw new IOException("PNG header missing");
+            }
+            if (type == IHDR) {
+                if (!readHeader(length) || (boundsOnly && colorType != COLOR_TYPE_INDEXED)) {
+                    return false;
+                }
+                headerRead = true;
+                bytesPerPixel = colorType == COLOR_TYPE_RGBA ? 4 : 1;
+                rowBytes = colorType == COLOR_TYPE_RGBA ? width * 4 : (width * bitDepth + 7) / 8;
+                allocate(rowBytes, boundsOnly);
+            } else if (type == PLTE) {
+                if (length % 3 != 0 || length > colors.length * 3) {
+                    throw new IOException("Invalid PNG palette");
+                }
+                paletteEntries = length / 3;
+                for (int i = 0; i < paletteEntries; i++) {
+                    colors[i] = 0xff000000 | (data[i * 3] & 0xff) << 16 | (data[i * 3 + 1] & 0xff) << 8 | (data[i * 3 + 2] & 0xff);
+                }
+            } else if (type == TRNS) {
+                if (colorType == COLOR_TYPE_INDEXED) {
+                    for (int i = 0; i < Math.min(length, colors.length); i++) {
+                        colors[i] = (colors[i] & 0xffffff) | (data[i] & 0xff) << 24;
+                    }
+                }
+            } else if (type == IDAT) {
+                inflater.setInput(data, 0, length);
+                while (y < height) {
+                    int n;
+                    try {
+                        n = inflater.inflate(row, rowPos, rowBytes + 1 - rowPos);
+                    } catch (DataFormatException ex) {
+                        throw new IOException("Invalid PNG image data: " + ex.getMessage());
+                    }
+                    if (n == 0) {
+                        if (inflater.needsDictionary()) {
+                            throw new IOException("Invalid PNG image data");
+                        }
+                        break;
+                    }
+                    rowPos += n;
+                    if (rowPos == rowBytes + 1) {
+                        unfilterRow(rowBytes, bytesPerPixel);
+                        storeRow(y, boundsOnly ? boundsBuffer : indexedPixels);
+                        byte[] swap = priorRow;
+                        priorRow = row;
+                        row = swap;
+                        rowPos = 0;
+                        y++;
+                    }
+                }
+            } else if (type == IEND) {
+                break;
+            }
+        }
+        if (y < height) {
+            throw new IOException("PNG image data is truncated");
+        }
+        return true;
+    }
+
+    /**
+     * Parse the IHDR chunk.
+     * @param length Length of the chunk data
+     * @return True if the image format is supported
+     * @throws IOException if the header is invalid
+     */
+    private boolean readHeader(int length) throws IOException {
+        if (length != 13) {
+            throw new IOException("Invalid PNG header");
+        }
+        width = getInt(0);
+        height = getInt(4);
+        bitDepth = data[8];
+        colorType = data[9];
+        int interlace = data[12];
+        if (width <= 0 || height <= 0 || (long)width * height > Integer.MAX_VALUE / 4) {
+            throw new IOException("Invalid PNG image size " + width + "x" + height);
+        }
+        if (interlace != 0) {
+            return false;
+        }
+        if (colorType == COLOR_TYPE_INDEXED) {
+            return bitDepth == 1 || bitDepth == 2 || bitDepth == 4 || bitDepth == 8;
+        }
+        return colorType == COLOR_TYPE_RGBA && bitDepth == 8;
+    }
+
+    private void allocate(int rowBytes, boolean boundsOnly) {
+        if (row.length < rowBytes + 1) {
+            row = new byte[rowBytes + 1];
+            priorRow = new byte[rowBytes + 1];
+        } else {
+            Arrays.fill(priorRow, (byte)0);
+        }
+        Arrays.fill(colors, 0);
+        inflater.reset();
+        if (colorType == COLOR_TYPE_RGBA) {
+            argbPixels = new int[width * height];
+        } else if (boundsOnly) {
+            if (boundsBuffer.length < width * height) {
+                boundsBuffer = new byte[width * height];
+            }
+        } else {
+            indexedPixels = new byte[width * height];
+        }
+    }
+
+    /**
+     * Reverse the filter of the current row in place, using the previous row.
+     * @param rowBytes      Number of bytes in a row without the filter type byte
+     * @param bytesPerPixel Distance to the corresponding byte of the pixel on the left
+     * @throws IOException if the filter type is invalid
+     */
+    private void unfilterRow(int rowBytes, int bytesPerPixel) throws IOException {
+        switch (row[0]) {
+            case 0: // None
+                break;
+            case 1: // Sub
+                for (int i = 1 + bytesPerPixel; i <= rowBytes; i++) {
+                    row[i] += row[i - bytesPerPixel];
+                }
+                break;
+            case 2: // Up
+                for (int i = 1; i <= rowBytes; i++) {
+                    row[i] += priorRow[i];
+                }
+                break;
+            case 3: // Average
+                for (int i = 1; i <= rowBytes; i++) {
+                    int left = i > bytesPerPixel ? row[i - bytesPerPixel] & 0xff : 0;
+                    row[i] += (left + (priorRow[i] & 0xff)) >>> 1;
+                }
+                break;
+            case 4: // Paeth
+                for (int i = 1; i <= rowBytes; i++) {
+                    int a = i > bytesPerPixel ? row[i - bytesPerPixel] & 0xff : 0;
+                    int b = priorRow[i] & 0xff;
+                    int c = i > bytesPerPixel ? priorRow[i - bytesPerPixel] & 0xff : 0;
+                    int p = a + b - c;
+                    int pa = Math.abs(p - a);
+                    int pb = Math.abs(p - b);
+                    int pc = Math.abs(p - c);
+                    if (pa <= pb && pa <= pc) {
+                        row[i] += a;
+                    } else if (pb <= pc) {
+                        row[i] += b;
+                    } else {
+                        row[i] += c;
+                    }
+                }
+                break;
+            default:
+                throw new IOException("Invalid PNG filter type " + row[0]);
+        }
+    }
+
+    private void storeRow(int y, byte[] pixels) {
+        int ofs = y * width;
+        if (colorType == COLOR_TYPE_RGBA) {
+            for (int x = 0, i = 1; x < width; x++, i += 4) {
+                argbPixels[ofs + x] = (row[i + 3] & 0xff) << 24 | (row[i] & 0xff) << 16 | (row[i + 1] & 0xff) << 8 | (row[i + 2] & 0xff);
+            }
+        } else if (bitDepth == 8) {
+            System.arraycopy(row, 1, pixels, ofs, width);
+        } else {
+            int pixelsPerByte = 8 / bitDepth;
+            int mask = (1 << bitDepth) - 1;
+            for (int x = 0; x < width; x++) {
+                int shift = 8 - bitDepth * (x % pixelsPerByte + 1);
+                pixels[ofs + x] = (byte)((row[1 + x / pixelsPerByte] >> shift) & mask);
+            }
+        }
+    }
+
+    private int getInt(int ofs) {
+        return (data[ofs] & 0xff) << 24 | (data[ofs + 1] & 0xff) << 16 | (data[ofs + 2] & 0xff) << 8 | (data[ofs + 3] & 0xff);
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a palettized bitmap as an indexed color PNG (PLTE and tRNS chunks, 1, 2, 4 or 8 bits per pixel).
+ * The pixels are read directly from the bitmap buffer and the deflated image data is streamed to the
+ * output in IDAT chunks, so neither a BufferedImage nor the complete PNG is held in memory.
+ * An instance reuses its buffers and deflater and is meant to write many images from one thread.
+ */
+public class IndexedPngWriter {
+
+    private static final byte[] SIGNATURE = { -119, 80, 78, 71, 13, 10, 26, 10 };
+    private static final byte[] IHDR = { 73, 72, 68, 82 };
+    private static final byte[] PLTE = { 80, 76, 84, 69 };
+    private static final byte[] TRNS = { 116, 82, 78, 83 };
+    private static final byte[] IDAT = { 73, 68, 65, 84 };
+    private static final byte[] IEND = { 73, 69, 78, 68 };
+
+    private static final int FILTER_NONE = 0;
+    private static final int FILTER_UP = 2;
+
+    /** Maximum number of deflated bytes per IDAT chunk */
+    private static final int IDAT_SIZE = 0x8000;
+
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    /** Chunk under construction: 4 bytes length, 4 bytes type, data, 4 bytes CRC */
+    private final byte[] chunk = new byte[IDAT_SIZE + 12];
+
+    /** Filter type byte followed by the packed pixels, for the current and the previous row */
+    private byte[] row = new byte[1];
+    private byte[] priorRow = new byte[1];
+    /** Row filtered with Up when it repeats the previous one: filter type followed by zeros */
+    private byte[] repeatedRow = new byte[1];
+
+    /**
+     * Create a writer using the fastest deflate level, which already shrinks typical captions
+     * to a few percent of their unpacked size.
+     */
+    public IndexedPngWriter() {
+        this(Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @param compressionLevel Deflate level 0..9 or Deflater.DEFAULT_COMPRESSION
+     */
+    public IndexedPngWriter(int compressionLevel) {
+        this(compressionLevel, Deflater.DEFAULT_STRATEGY);
+    }
+
+    /**
+     * @param compressionLevel Deflate level 0..9 or Deflater.DEFAULT_COMPRESSION
+     * @param strategy         Deflater.DEFAULT_STRATEGY, Deflater.FILTERED or Deflater.HUFFMAN_ONLY
+     */
+    public IndexedPngWriter(int compressionLevel, int strategy) {
+        deflater = new Deflater(compressionLevel);
+        deflater.setStrategy(strategy);
+    }
+
+    /**
+     * Write bitmap as indexed PNG.
+     * @param bitmap  Bitmap holding palette indices
+     * @param palette Palette; only the entries up to the highest index used are written
+     * @param out     Stream to write to, not closed by this method
+     * @throws IOException
+     */
+    public void write(Bitmap bitmap, Palette palette, OutputStream out) throws IOException {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        byte[] pixels = bitmap.getInternalBuffer();
+
+        int maxIndex = 0;
+        for (int i = 0; i < width * height; i++) {
+            int index = pixels[i] & 0xff;
+            if (index > maxIndex) {
+                maxIndex = index;
+            }
+        }
+        int bitDepth = getBitDepth(maxIndex + 1);
+        int rowBytes = (width * bitDepth + 7) / 8;
+
+        out.write(SIGNATURE);
+        writeHeader(out, width, height, bitDepth);
+        writePalette(out, palette, maxIndex + 1);
+
+        allocateRows(rowBytes);
+        deflater.reset();
+        int chunkPos = 8;
+        for (int y = 0; y < height; y++) {
+            packRow(pixels, y * width, width, bitDepth);
+            deflater.setInput(selectFilter(rowBytes, y > 0), 0, rowBytes + 1);
+            while (!deflater.needsInput()) {
+                chunkPos = deflate(out, chunkPos);
+            }
+            byte[] swap = priorRow;
+            priorRow = row;
+            row = swap;
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            chunkPos = deflate(out, chunkPos);
+        }
+        if (chunkPos > 8) {
+            writeChunk(out, IDAT, chunkPos - 8);
+        }
+        writeChunk(out, IEND, 0);
+    }
+
+    /**
+     * Release the native resources of the deflater. The writer must not be used afterwards.
+     */
+    public void end() {
+        deflater.end();
+    }
+
+    private static int getBitDepth(int numColors) {
+        if (numColors <= 2) {
+            return 1;
+        } else if (numColors <= 4) {
+            return 2;
+        } else if (numColors <= 16) {
+            return 4;
+        }
+        return 8;
+    }
+
+    private void writeHeader(OutputStream out, int width, int height, int bitDepth) throws IOException {
+        putInt(width, 8);
+        putInt(height, 12);
+        chunk[16] = (byte)bitDepth;
+        chunk[17] = 3; // indexed color
+        chunk[18] = 0; // deflate
+        chunk[19] = 0; // adaptive filtering
+        chunk[20] = 0; // no interlace
+        writeChunk(out, IHDR, 13);
+    }
+
+    private void writePalette(OutputStream out, Palette palette, int numEntries) throws IOException {
+        int lastTransparent = -1;
+        for (int i = 0; i < numEntries; i++) {
+            int argb = i < palette.getSize() ? palette.getARGB(i) : 0;
+            chunk[8 + i * 3]     = (byte)(argb >> 16);
+            chunk[8 + i * 3 + 1] = (byte)(argb >> 8);
+            chunk[8 + i * 3 + 2] = (byte)argb;
+            if ((argb >>> 24) != 0xff) {
+                lastTransparent = i;
+            }
+        }
+        writeChunk(out, PLTE, numEntries * 3);
+
+        // alpha values after the last non-opaque entry are implicitly 255
+        if (lastTransparent >= 0) {
+            for (int i = 0; i <= lastTransparent; i++) {
+                chunk[8 + i] = (byte)(i < palette.getSize() ? palette.getAlpha(i) : 0);
+            }
+            writeChunk(out, TRNS, lastTransparent + 1);
+        }
+    }
+
+    private void allocateRows(int rowBytes) {
+        if (row.length < rowBytes + 1) {
+            row = new byte[rowBytes + 1];
+            priorRow = new byte[rowBytes + 1];
+            repeatedRow = new byte[rowBytes + 1];
+            repeatedRow[0] = FILTER_UP;
+        }
+    }
+
+    private void packRow(byte[] pixels, int ofs, int width, int bitDepth) {
+        if (bitDepth == 8) {
+            System.arraycopy(pixels, ofs, row, 1, width);
+            return;
+        }
+        int pixelsPerByte = 8 / bitDepth;
+        int pos = 1;
+        int i = 0;
+        while (i < width) {
+            int b = 0;
+            int n = Math.min(pixelsPerByte, width - i);
+            for (int j = 0; j < n; j++) {
+                b = (b << bitDepth) | (pixels[ofs + i + j] & 0xff);
+            }
+            row[pos++] = (byte)(b << (bitDepth * (pixelsPerByte - n)));
+            i += n;
+        }
+    }
+
+    /**
+     * Select the filter for the current row. Palette indices carry no numeric meaning, so predicting
+     * them from their neighbors (Sub, Average, Paeth) or picking per row by the usual minimum sum of
+     * absolute differences mostly disturbs the runs deflate would have found anyway. Only a row that
+     * repeats the previous one and is not all zeros is filtered with Up, which turns it into zeros;
+     * all other rows stay unfiltered.
+     * @param rowBytes Number of bytes in a packed row
+     * @param hasPrior True if there is a previous row
+     * @return Filter type byte followed by the filtered row
+     */
+    private byte[] selectFilter(int rowBytes, boolean hasPrior) {
+        if (hasPrior) {
+            int i = 1;
+            int bits = 0;
+            while (i <= rowBytes && row[i] == priorRow[i]) {
+                bits |= row[i];
+                i++;
+            }
+            if (i > rowBytes && bits != 0) {
+                return repeatedRow;
+            }
+        }
+        row[0] = FILTER_NONE;
+        return row;
+    }
+
+    private int deflate(OutputStream out, int chunkPos) throws IOException {
+        chunkPos += deflater.deflate(chunk, chunkPos, IDAT_SIZE + 8 - chunkPos);
+        if (chunkPos == IDAT_SIZE + 8) {
+            writeChunk(out, IDAT, IDAT_SIZE);
+            chunkPos = 8;
+        }
+        return chunkPos;
+    }
+
+    /**
+     * Complete the chunk with the given type and the data already stored at offset 8 and write it.
+     * @param out    Stream to write to
+     * @param type   Four character chunk type
+     * @param length Number of data bytes
+     * @throws IOException
+     */
+    private void writeChunk(OutputStream out, byte[] type, int length) throws IOException {
+        putInt(length, 0);
+        System.arraycopy(type, 0, chunk, 4, 4);
+        crc.reset();
+        crc.update(chunk, 4, length + 4);
+        putInt((int)crc.getValue(), length + 8);
+        out.write(chunk, 0, length + 12);
+    }
+
+    private void putInt(int value, int ofs) {
+        chunk[ofs]     = (byte)(value >> 24);
+        chunk[ofs + 1] = (byte)(value >> 16);
+        chunk[ofs + 2] = (byte)(value >> 8);
+        chunk[ofs + 3] = (byte)value;
+    }
+}
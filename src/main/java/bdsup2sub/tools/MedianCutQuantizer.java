@@ -0,0 +1,302 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import java.util.Arrays;
+
+/**
+ * Median cut quantizer working on a histogram of coarse ARGB cells (5 bits per channel).
+ *
+ * <p>The cell table is also used to look up the color table index of a color, so mapping a pixel
+ * does not need to search the color table. Colors in cells that were never added are matched to the
+ * nearest table entry once and cached in the cell table.</p>
+ *
+ * <p>All storage is kept between frames: {@link #reset()} only clears the cells which were used.</p>
+ */
+class MedianCutQuantizer implements ColorQuantizer {
+
+    private static final int BITS = 5;
+    private static final int LEVELS = 1 << BITS;
+    private static final int MASK = LEVELS - 1;
+    private static final int SHIFT = 8 - BITS;
+
+    /** Slot + 1 for each ARGB cell, 0 if the cell is not used */
+    private final int[] cellSlots = new int[1 << (4 * BITS)];
+
+    /** Cell of each slot */
+    private int[] slotCells = new int[1024];
+    /** Number of pixels in each slot */
+    private int[] slotCounts = new int[1024];
+    /** Sum of alpha, red, green and blue of all pixels in each slot */
+    private long[] slotSums = new long[4 * 1024];
+    /** Color table index for each slot */
+    private int[] slotIndices = new int[1024];
+    private int slotCount;
+
+    private int maximumColors = 256;
+    private int[] table = new int[0];
+
+    public void setup(int numColors) {
+        maximumColors = numColors;
+    }
+
+    /**
+     * Remove all colors added before so the quantizer can be used for the next frame.
+     */
+    void reset() {
+        for (int i = 0; i < slotCount; i++) {
+            cellSlots[slotCells[i]] = 0;
+        }
+        slotCount = 0;
+        table = new int[0];
+    }
+
+    public void addPixels(int[] pixels, int offset, int count) {
+        for (int i = 0; i < count; i++) {
+            addColor(pixels[i + offset], 1);
+        }
+    }
+
+    public void addColor(int argb, int count) {
+        argb = normalize(argb);
+        int cell = getCell(argb);
+        int slot = cellSlots[cell] - 1;
+        if (slot < 0) {
+            slot = addSlot(cell);
+        }
+        slotCounts[slot] += count;
+        int ofs = slot * 4;
+        slotSums[ofs]     += (long)((argb >> 24) & 0xff) * count;
+        slotSums[ofs + 1] += (long)((argb >> 16) & 0xff) * count;
+        slotSums[ofs + 2] += (long)((argb >>  8) & 0xff) * count;
+        slotSums[ofs + 3] += (long)( argb        & 0xff) * count;
+    }
+
+    public int[] buildColorTable() {
+        int[] order = new int[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            order[i] = i;
+        }
+        int maxBoxes = Math.max(1, Math.min(maximumColors, slotCount));
+        int[] boxFrom = new int[maxBoxes];
+        int[] boxTo = new int[maxBoxes];
+        long[] boxScores = new long[maxBoxes];
+        int[] boxChannels = new int[maxBoxes];
+
+        int boxes = 0;
+        if (slotCount > 0) {
+            boxTo[0] = slotCount;
+            measureBox(order, boxFrom, boxTo, boxScores, boxChannels, 0);
+            boxes = 1;
+        }
+
+        int[] sorted = new int[slotCount];
+        while (boxes < maxBoxes) {
+            // split the box with the most pixels times its largest extent
+            int box = -1;
+            long maxScore = 0;
+            for (int b = 0; b < boxes; b++) {
+                if (boxScores[b] > maxScore) {
+                    maxScore = boxScores[b];
+                    box = b;
+                }
+            }
+            if (box == -1) {
+                break;
+            }
+            int split = splitBox(order, sorted, boxFrom[box], boxTo[box], boxChannels[box]);
+            boxFrom[boxes] = split;
+            boxTo[boxes] = boxTo[box];
+            boxTo[box] = split;
+            measureBox(order, boxFrom, boxTo, boxScores, boxChannels, box);
+            measureBox(order, boxFrom, boxTo, boxScores, boxChannels, boxes);
+            boxes++;
+        }
+
+        table = new int[boxes];
+        for (int b = 0; b < boxes; b++) {
+            long count = 0;
+            long alpha = 0;
+            long red = 0;
+            long green = 0;
+            long blue = 0;
+            for (int i = boxFrom[b]; i < boxTo[b]; i++) {
+                int slot = order[i];
+                int ofs = slot * 4;
+                count += slotCounts[slot];
+                alpha += slotSums[ofs];
+                red   += slotSums[ofs + 1];
+                green += slotSums[ofs + 2];
+                blue  += slotSums[ofs + 3];
+                slotIndices[slot] = b;
+            }
+            if (count > 0) {
+                long half = count / 2;
+                table[b] = (int)((alpha + half) / count) << 24 | (int)((red + half) / count) << 16
+                        | (int)((green + half) / count) << 8 | (int)((blue + half) / count);
+            }
+        }
+        return table;
+    }
+
+    public int getIndexForColor(int argb) {
+        argb = normalize(argb);
+        int cell = getCell(argb);
+        int slot = cellSlots[cell] - 1;
+        if (slot < 0) {
+            // color was not part of the histogram (e.g. because of dithering): cache nearest color for the cell
+            slot = addSlot(cell);
+            slotIndices[slot] = findNearestIndex(argb);
+        }
+        return slotIndices[slot];
+    }
+
+    /**
+     * Get the number of pixels times the largest extent of a box and the channel of the largest extent.
+     */
+    private void measureBox(int[] order, int[] boxFrom, int[] boxTo, long[] boxScores, int[] boxChannels, int box) {
+        int[] min = {MASK, MASK, MASK, MASK};
+        int[] max = {0, 0, 0, 0};
+        long count = 0;
+        for (int i = boxFrom[box]; i < boxTo[box]; i++) {
+            int slot = order[i];
+            int cell = slotCells[slot];
+            for (int c = 0; c < 4; c++) {
+                int v = getCoordinate(cell, c);
+                if (v < min[c]) {
+                    min[c] = v;
+                }
+                if (v > max[c]) {
+                    max[c] = v;
+                }
+            }
+            count += slotCounts[slot];
+        }
+        int channel = 0;
+        for (int c = 1; c < 4; c++) {
+            if (max[c] - min[c] > max[channel] - min[channel]) {
+                channel = c;
+            }
+        }
+        boxChannels[box] = channel;
+        boxScores[box] = Math.max(count, 1) * (max[channel] - min[channel]);
+    }
+
+    /**
+     * Sort the slots of a box along a channel and find the weighted median.
+     * The box must have an extent greater than zero in this channel.
+     * @return Position of the first slot of the upper half
+     */
+    private int splitBox(int[] order, int[] sorted, int from, int to, int channel) {
+        // counting sort by the coordinate of the channel
+        long[] weights = new long[LEVELS];
+        int[] starts = new int[LEVELS + 1];
+        long total = 0;
+        for (int i = from; i < to; i++) {
+            int slot = order[i];
+            int v = getCoordinate(slotCells[slot], channel);
+            weights[v] += slotCounts[slot];
+            starts[v + 1]++;
+            total += slotCounts[slot];
+        }
+        for (int v = 0; v < LEVELS; v++) {
+            starts[v + 1] += starts[v];
+        }
+        int[] positions = Arrays.copyOf(starts, LEVELS);
+        for (int i = from; i < to; i++) {
+            int slot = order[i];
+            sorted[positions[getCoordinate(slotCells[slot], channel)]++] = slot;
+        }
+        System.arraycopy(sorted, 0, order, from, to - from);
+
+        int maxValue = LEVELS - 1;
+        while (starts[maxValue] == starts[maxValue + 1]) {
+            maxValue--;
+        }
+        long sum = 0;
+        int v = 0;
+        while (v < maxValue - 1) {
+            sum += weights[v];
+            if (sum * 2 >= total && starts[v + 1] > 0) {
+                break;
+            }
+            v++;
+        }
+        return from + starts[v + 1];
+    }
+
+    private int findNearestIndex(int argb) {
+        int alpha = (argb >> 24) & 0xff;
+        int red   = (argb >> 16) & 0xff;
+        int green = (argb >>  8) & 0xff;
+        int blue  =  argb        & 0xff;
+        int index = 0;
+        int minDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < table.length; i++) {
+            int color = table[i];
+            int ad = alpha - ((color >> 24) & 0xff);
+            int rd = red   - ((color >> 16) & 0xff);
+            int gd = green - ((color >>  8) & 0xff);
+            int bd = blue  - ( color        & 0xff);
+            int distance = ad * ad + rd * rd + gd * gd + bd * bd;
+            if (distance < minDistance) {
+                minDistance = distance;
+                index = i;
+                if (distance == 0) {
+                    break;
+                }
+            }
+        }
+        return index;
+    }
+
+    private int addSlot(int cell) {
+        if (slotCount == slotCells.length) {
+            int capacity = slotCount * 2;
+            slotCells = Arrays.copyOf(slotCells, capacity);
+            slotCounts = Arrays.copyOf(slotCounts, capacity);
+            slotSums = Arrays.copyOf(slotSums, capacity * 4);
+            slotIndices = Arrays.copyOf(slotIndices, capacity);
+        }
+        int slot = slotCount++;
+        slotCells[slot] = cell;
+        slotCounts[slot] = 0;
+        Arrays.fill(slotSums, slot * 4, slot * 4 + 4, 0);
+        slotIndices[slot] = 0;
+        cellSlots[cell] = slot + 1;
+        return slot;
+    }
+
+    /** All colors in the most transparent alpha cell are invisible, so they share one fully transparent color */
+    private static int normalize(int argb) {
+        return (argb >>> (24 + SHIFT)) == 0 ? 0 : argb;
+    }
+
+    private static int getCell(int argb) {
+        return ((argb >>> (24 + SHIFT)) << (3 * BITS))
+                | (((argb >>> (16 + SHIFT)) & MASK) << (2 * BITS))
+                | (((argb >>> (8 + SHIFT)) & MASK) << BITS)
+                | ((argb >>> SHIFT) & MASK);
+    }
+
+    /**
+     * @param cell    ARGB cell
+     * @param channel 0: alpha, 1: red, 2: green, 3: blue
+     */
+    private static int getCoordinate(int cell, int channel) {
+        return (cell >>> ((3 - channel) * BITS)) & MASK;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import bdsup2sub.core.ConversionEvents;
+import bdsup2sub.core.ConversionStatistics;
+import bdsup2sub.utils.FileUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encodes and writes indexed PNG files on a fixed number of worker threads while the caller prepares
+ * the next bitmaps. At most two images per thread are queued; beyond that the caller writes the image
+ * itself, which keeps the memory bound and the caller busy. Each thread uses its own IndexedPngWriter.
+ * Not thread safe: images have to be submitted and the pool finished from one thread.
+ */
+public class PngWriterPool {
+
+    private static final ConversionStatistics statistics = ConversionStatistics.getInstance();
+
+    private final ThreadPoolExecutor executor;
+    private final int compressionLevel;
+    private final int strategy;
+    /** Writes not yet checked for errors in submission order */
+    private final Deque<Future<Void>> pending = new ArrayDeque<Future<Void>>();
+    /** All writers created so far, to release their deflaters at the end */
+    private final List<IndexedPngWriter> writers = new ArrayList<IndexedPngWriter>();
+
+    private final ThreadLocal<IndexedPngWriter> writer = new ThreadLocal<IndexedPngWriter>() {
+        @Override
+        protected IndexedPngWriter initialValue() {
+            IndexedPngWriter w = new IndexedPngWriter(compressionLevel, strategy);
+            synchronized (writers) {
+                writers.add(w);
+            }
+            return w;
+        }
+    };
+
+    /**
+     * @param threads          Number of worker threads
+     * @param compressionLevel Deflate level 0..9
+     * @param strategy         Deflater strategy
+     */
+    public PngWriterPool(int threads, int compressionLevel, int strategy) {
+        this.compressionLevel = compressionLevel;
+        this.strategy = strategy;
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(threads * 2), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "PNG writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Queue an image for writing. The bitmap and palette must not be modified afterwards.
+     * @param bitmap   Bitmap holding palette indices
+     * @param palette  Palette
+     * @param filename Name of the PNG file to create
+     * @throws IOException if one of the previously submitted images could not be written
+     */
+    public void submit(final Bitmap bitmap, final Palette palette, final String filename) throws IOException {
+        final int captionIndex = ConversionEvents.getCaptionIndex();
+        pending.add(executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                ConversionEvents.setCaptionIndex(captionIndex);
+                ConversionStatistics.StageTimer timer = statistics.start(ConversionStatistics.Stage.ENCODE);
+                FileUtils.deleteIfExists(new File(filename));
+                OutputStream out = new BufferedOutputStream(new FileOutputStream(filename));
+                try {
+                    writer.get().write(bitmap, palette, out);
+                } finally {
+                    out.close();
+                }
+                // PNGs are deflated while written, so this is encoding and writing
+                long size = new File(filename).length();
+                statistics.addBytesWritten(size);
+                timer.end(bitmap.getWidth(), bitmap.getHeight(), size);
+                return null;
+            }
+        }));
+        while (!pending.isEmpty() && pending.peekFirst().isDone()) {
+            waitFor(pending.removeFirst());
+        }
+    }
+
+    /**
+     * Wait until all submitted images are written and shut the pool down.
+     * @throws IOException if an image could not be written
+     */
+    public void finish() throws IOException {
+        try {
+            while (!pending.isEmpty()) {
+                waitFor(pending.removeFirst());
+            }
+        } finally {
+            shutdown();
+        }
+    }
+
+    /**
+     * Stop the worker threads without waiting for queued images and release the writers.
+     * Does nothing if the pool was already shut down.
+     */
+    public void shutdown() {
+        if (executor.isShutdown()) {
+            return;
+        }
+        for (Future<Void> future : pending) {
+            future.cancel(false);
+        }
+        pending.clear();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        synchronized (writers) {
+            for (IndexedPngWriter w : writers) {
+                w.end();
+            }
+            writers.clear();
+        }
+    }
+
+    private static void waitFor(Future<Void> future) throws IOException {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing PNG files");
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException)cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            } else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+}
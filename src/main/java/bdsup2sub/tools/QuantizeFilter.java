@@ -15,6 +15,9 @@
  */
 package bdsup2sub.tools;
 
+import bdsup2sub.bitmap.IntIntMap;
+
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Set;
 import java.util.Vector;
@@ -22,14 +25,42 @@ import java.util.Vector;
 /**
  * A filter which quantizes an image to a set number of colors - useful for producing
  * images which are to be encoded using an index color model. The filter can perform
- * Floyd-Steinberg error-diffusion dithering if required. At present, the quantization
- * is done using an octtree algorithm but I eventually hope to add more quantization
- * methods such as median cut. Note: at present, the filter produces an image which
+ * Floyd-Steinberg error-diffusion dithering if required. The quantization is done
+ * using an octtree (default) or a median cut algorithm. With median cut, images that already use no more
+ * colors than requested keep their exact colors. Note: at present, the filter produces an image which
  * uses the RGB color model (because the application it was written for required it).
  * I hope to extend it to produce an IndexColorModel by request.
  */
 public class QuantizeFilter  {
 
+    /**
+     * Quantization algorithm.
+     */
+    public enum Method {
+        OCTREE {
+            @Override
+            public String toString() {
+                return "Octree";
+            }
+        },
+        MEDIAN_CUT {
+            @Override
+            public String toString() {
+                return "MedianCut";
+            }
+        },
+    }
+
+    /**
+     * Median cut quantizers keep their tables between frames, so one instance is kept per thread.
+     */
+    private static final ThreadLocal<MedianCutQuantizer> MEDIAN_CUT_QUANTIZER = new ThreadLocal<MedianCutQuantizer>() {
+        @Override
+        protected MedianCutQuantizer initialValue() {
+            return new MedianCutQuantizer();
+        }
+    };
+
     /**
      * Floyd-Steinberg dithering matrix.
      */
@@ -43,6 +74,7 @@ public class QuantizeFilter  {
     private boolean dither;
     private int numColors = 255;
     private boolean serpentine = true;
+    private Method method = Method.OCTREE;
 
     /**
      * Set the number of colors to quantize to.
@@ -107,6 +139,35 @@ public class QuantizeFilter  {
         return serpentine;
     }
 
+    /**
+     * Set the quantization algorithm.
+     * @param method Quantization algorithm. The default is octree.
+     */
+    public void setMethod(Method method) {
+        this.method = method;
+    }
+
+    /**
+     * Return the quantization algorithm
+     * @return Current quantization algorithm
+     */
+    public Method getMethod() {
+        return method;
+    }
+
+    private ColorQuantizer createQuantizer(int numColors) {
+        ColorQuantizer quantizer;
+        if (method == Method.MEDIAN_CUT) {
+            MedianCutQuantizer medianCutQuantizer = MEDIAN_CUT_QUANTIZER.get();
+            medianCutQuantizer.reset();
+            quantizer = medianCutQuantizer;
+        } else {
+            quantizer = new OctTreeQuantizer();
+        }
+        quantizer.setup(numColors);
+        return quantizer;
+    }
+
     /**
      * Quantize picture
      * @param inPixels Array of RGBA pixels to quantize
@@ -120,8 +181,14 @@ public class QuantizeFilter  {
      */
     public int[] quantize(int[] inPixels, byte[] outPixels, int width, int height, int numColors, boolean dither, boolean serpentine) {
         int count = width * height;
-        OctTreeQuantizer quantizer = new OctTreeQuantizer();
-        quantizer.setup(numColors);
+        if (method == Method.MEDIAN_CUT) {
+            int[] exactPalette = mapExactColors(inPixels, outPixels, count, numColors);
+            if (exactPalette != null) {
+                return exactPalette;
+            }
+        }
+
+        ColorQuantizer quantizer = createQuantizer(numColors);
         quantizer.addPixels(inPixels, 0, count);
         int[] table =  quantizer.buildColorTable();
 
@@ -195,20 +262,94 @@ public class QuantizeFilter  {
 
         // create palette
         HashMap<Integer,Integer> p = new HashMap<Integer,Integer>();
+        int[] lut = new int[table.length];
+        Arrays.fill(lut, -1);
 
         for (int i = 0; i < count; i++) {
-            int color;
+            int tableIdx;
             if (dither) {
-                color = table[outPixels[i]&0xff];
+                tableIdx = outPixels[i]&0xff;
             } else {
-                color = table[quantizer.getIndexForColor(inPixels[i])];
+                tableIdx = quantizer.getIndexForColor(inPixels[i]);
             }
-            int idx = p.size();
-            Integer idxEx = p.get(color);
-            if (idxEx == null) {
-                p.put(color, idx);
-            } else {
-                idx = idxEx;
+            int idx = lut[tableIdx];
+            if (idx == -1) {
+                int color = table[tableIdx];
+                idx = p.size();
+                Integer idxEx = p.get(color);
+                if (idxEx == null) {
+                    p.put(color, idx);
+                } else {
+                    idx = idxEx;
+                }
+                lut[tableIdx] = idx;
+            }
+            outPixels[i] = (byte)(idx);
+        }
+
+        Set <Integer>keys = p.keySet();
+        int pal[] = new int[p.size()];
+        for (int k : keys) {
+            pal[p.get(k)] = k;
+        }
+
+        return pal;
+    }
+
+    /**
+     * Quantize palettized picture without dithering.
+     * The quantizer is fed with each palette entry weighted by its number of occurrences instead of the
+     * expanded ARGB picture, which gives the same result as quantizing the ARGB pixels.
+     * @param inPixels Array of palette indices to quantize
+     * @param colors ARGB values of the palette entries
+     * @param outPixels Array with quantized palette entries
+     * @param count Number of pixels
+     * @param numColors Number of colors used
+     * @return Integer array containing palette information
+     */
+    public int[] quantize(byte[] inPixels, int[] colors, byte[] outPixels, int count, int numColors) {
+        if (method == Method.MEDIAN_CUT) {
+            int[] exactPalette = mapExactColors(inPixels, colors, outPixels, count, numColors);
+            if (exactPalette != null) {
+                return exactPalette;
+            }
+        }
+
+        // count palette entries in order of their first occurrence, the tree depends on the insertion order
+        int[] histogram = new int[256];
+        int[] order = new int[256];
+        int entries = 0;
+        for (int i = 0; i < count; i++) {
+            int idx = inPixels[i] & 0xff;
+            if (histogram[idx]++ == 0) {
+                order[entries++] = idx;
+            }
+        }
+
+        ColorQuantizer quantizer = createQuantizer(numColors);
+        for (int i = 0; i < entries; i++) {
+            quantizer.addColor(colors[order[i]], histogram[order[i]]);
+        }
+        int[] table =  quantizer.buildColorTable();
+
+        // create palette
+        HashMap<Integer,Integer> p = new HashMap<Integer,Integer>();
+        int[] lut = new int[256];
+        Arrays.fill(lut, -1);
+
+        for (int i = 0; i < count; i++) {
+            int srcIdx = inPixels[i] & 0xff;
+            int idx = lut[srcIdx];
+            if (idx == -1) {
+                int color = table[quantizer.getIndexForColor(colors[srcIdx])];
+                idx = p.size();
+                Integer idxEx = p.get(color);
+                if (idxEx == null) {
+                    p.put(color, idx);
+                } else {
+                    idx = idxEx;
+                }
+                lut[srcIdx] = idx;
             }
             outPixels[i] = (byte)(idx);
         }
@@ -221,6 +362,80 @@ public class QuantizeFilter  {
 
         return pal;
     }
+
+    /**
+     * Map ARGB pixels to a palette of their exact colors if there are not more than numColors of them.
+     * Fully transparent colors are merged into one entry. The palette is ordered by first occurrence.
+     * @param inPixels Array of RGBA pixels
+     * @param outPixels Array with palette entries
+     * @param count Number of pixels
+     * @param numColors Number of colors used
+     * @return Integer array containing palette information or null if there are too many colors
+     */
+    private static int[] mapExactColors(int[] inPixels, byte[] outPixels, int count, int numColors) {
+        IntIntMap p = new IntIntMap(numColors);
+        int[] pal = new int[numColors];
+        int lastColor = 0;
+        int lastIdx = -1;
+        for (int i = 0; i < count; i++) {
+            int color = visibleColor(inPixels[i]);
+            if (lastIdx == -1 || color != lastColor) {
+                int idx = p.get(color, -1);
+                if (idx == -1) {
+                    if (p.size() == numColors) {
+                        return null;
+                    }
+                    idx = p.size();
+                    p.put(color, idx);
+                    pal[idx] = color;
+                }
+                lastColor = color;
+                lastIdx = idx;
+            }
+            outPixels[i] = (byte)lastIdx;
+        }
+        return Arrays.copyOf(pal, p.size());
+    }
+
+    /**
+     * Map palettized pixels to a palette of their exact colors if there are not more than numColors of them.
+     * Fully transparent colors are merged into one entry. The palette is ordered by first occurrence.
+     * @param inPixels Array of palette indices
+     * @param colors ARGB values of the palette entries
+     * @param outPixels Array with palette entries
+     * @param count Number of pixels
+     * @param numColors Number of colors used
+     * @return Integer array containing palette information or null if there are too many colors
+     */
+    private static int[] mapExactColors(byte[] inPixels, int[] colors, byte[] outPixels, int count, int numColors) {
+        IntIntMap p = new IntIntMap(numColors);
+        int[] pal = new int[numColors];
+        int[] lut = new int[256];
+        Arrays.fill(lut, -1);
+        for (int i = 0; i < count; i++) {
+            int srcIdx = inPixels[i] & 0xff;
+            int idx = lut[srcIdx];
+            if (idx == -1) {
+                int color = visibleColor(colors[srcIdx]);
+                idx = p.get(color, -1);
+                if (idx == -1) {
+                    if (p.size() == numColors) {
+                        return null;
+                    }
+                    idx = p.size();
+                    p.put(color, idx);
+                    pal[idx] = color;
+                }
+                lut[srcIdx] = idx;
+            }
+            outPixels[i] = (byte)idx;
+        }
+        return Arrays.copyOf(pal, p.size());
+    }
+
+    private static int visibleColor(int argb) {
+        return (argb & 0xff000000) == 0 ? 0 : argb;
+    }
 }
 
 
@@ -229,7 +444,7 @@ public class QuantizeFilter  {
  * at present and could be much improved by picking the nodes to reduce more carefully
  * (i.e. not completely at random).
  */
-class OctTreeQuantizer {
+class OctTreeQuantizer implements ColorQuantizer {
 
     /** The greatest depth the tree is allowed to reach */
     private static final int MAX_LEVEL = 5;
@@ -284,13 +499,25 @@ class OctTreeQuantizer {
      */
     public void addPixels(int[] pixels, int offset, int count) {
         for (int i = 0; i < count; i++) {
-            insertColor(pixels[i+offset]);
+            insertColor(pixels[i+offset], 1);
             if (colors > reduceColors) {
                 reduceTree(reduceColors);
             }
         }
     }
 
+    /**
+     * Add a color occurring several times to the quantizer.
+     * @param argb Color in ARGB format
+     * @param count Number of occurrences
+     */
+    public void addColor(int argb, int count) {
+        insertColor(argb, count);
+        if (colors > reduceColors) {
+            reduceTree(reduceColors);
+        }
+    }
+
     /**
      * Get the color table index for a color.
      * @param argb Color in ARGB format
@@ -336,7 +563,7 @@ class OctTreeQuantizer {
     }
 
     @SuppressWarnings("unchecked")
-    private void insertColor(int rgb) {
+    private void insertColor(int rgb, int count) {
         int alpha = (rgb >> 24) & 0xff;
         int red = (rgb >> 16) & 0xff;
         int green = (rgb >> 8) & 0xff;
@@ -376,11 +603,11 @@ class OctTreeQuantizer {
 
                 if (level == MAX_LEVEL) {
                     child.isLeaf = true;
-                    child.count = 1;
-                    child.totalAlpha = alpha;
-                    child.totalRed = red;
-                    child.totalGreen = green;
-                    child.totalBlue = blue;
+                    child.count = count;
+                    child.totalAlpha = alpha * count;
+                    child.totalRed = red * count;
+                    child.totalGreen = green * count;
+                    child.totalBlue = blue * count;
                     child.level = level;
                     colors++;
                     return;
@@ -388,11 +615,11 @@ class OctTreeQuantizer {
 
                 node = child;
             } else if (child.isLeaf) {
-                child.count++;
-                child.totalAlpha += alpha;
-                child.totalRed += red;
-                child.totalGreen += green;
-                child.totalBlue += blue;
+                child.count += count;
+                child.totalAlpha += alpha * count;
+                child.totalRed += red * count;
+                child.totalGreen += green * count;
+                child.totalBlue += blue * count;
                 return;
             } else
                 node = child;
@@ -450,7 +677,7 @@ class OctTreeQuantizer {
         int count = pixels.length;
         maximumColors = table.length;
         for (int pixel : pixels) {
-            insertColor(pixel);
+            insertColor(pixel, 1);
             if (colors > reduceColors) {
                 reduceTree(reduceColors);
             }
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+
+public final class FileUtils {
+
+    private FileUtils() {
+    }
+
+    /**
+     * Copy a file, letting the operating system transfer the bytes where possible.
+     * Does nothing if source and target are the same file.
+     * @param src Source file
+     * @param trg Target file, replaced if it exists
+     * @throws IOException
+     */
+    public static void copyFile(File src, File trg) throws IOException {
+        if (isSameFile(src, trg)) {
+            return;
+        }
+        deleteIfExists(trg);
+        FileInputStream in = new FileInputStream(src);
+        try {
+            FileOutputStream out = new FileOutputStream(trg);
+            try {
+                FileChannel inChannel = in.getChannel();
+                FileChannel outChannel = out.getChannel();
+                long size = inChannel.size();
+                long pos = 0;
+                while (pos < size) {
+                    pos += inChannel.transferTo(pos, size - pos, outChannel);
+                }
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Create a hard link to a file or copy it if the file system doesn't support hard links
+     * or source and target are on different file systems.
+     * Does nothing if source and target are the same file.
+     * @param src Source file
+     * @param trg Target file, replaced if it exists
+     * @throws IOException
+     */
+    public static void linkOrCopyFile(File src, File trg) throws IOException {
+        if (isSameFile(src, trg)) {
+            return;
+        }
+        deleteIfExists(trg);
+        try {
+            Files.createLink(trg.toPath(), src.toPath());
+        } catch (IOException ex) {
+            copyFile(src, trg);
+        } catch (UnsupportedOperationException ex) {
+            copyFile(src, trg);
+        }
+    }
+
+    /**
+     * Delete a file that is about to be written. If the file is a hard link, e.g. to a source PNG
+     * linked by an earlier export, writing it in place would also change the linked file.
+     * @param file File to delete
+     * @throws IOException
+     */
+    public static void deleteIfExists(File file) throws IOException {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    private static boolean isSameFile(File src, File trg) throws IOException {
+        return trg.exists() && Files.isSameFile(src.toPath(), trg.toPath());
+    }
+}
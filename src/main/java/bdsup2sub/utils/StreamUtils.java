@@ -17,6 +17,10 @@ package bdsup2sub.utils;
 
 import bdsup2sub.core.StreamID;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
 public class StreamUtils {
 
     /**
@@ -44,4 +48,16 @@ public class StreamUtils {
         }
         return sid;
     }
+
+    /**
+     * Writes all remaining bytes of a buffer to a channel.
+     * @param buf Buffer to write from its position to its limit
+     * @param channel Channel to write to
+     * @throws IOException
+     */
+    public static void writeFully(ByteBuffer buf, WritableByteChannel channel) throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
 }
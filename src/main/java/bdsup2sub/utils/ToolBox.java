@@ -15,10 +15,6 @@
  */
 package bdsup2sub.utils;
 
-import bdsup2sub.tools.JFileFilter;
-
-import javax.swing.*;
-import java.awt.*;
 import java.io.File;
 import java.io.FileInputStream;
 import java.text.DecimalFormat;
@@ -55,68 +51,6 @@ public final class ToolBox {
         }
     }
 
-    /**
-     * Show a dialog with details about an exception
-     * @param ex Throwable/Exception to display
-     */
-    public static void showException(Throwable ex) {
-        String m;
-        m = "<html>";
-        m += ex.getClass().getName() + "<p>";
-        if (ex.getMessage() != null) {
-            m += ex.getMessage() + "<p>";
-        }
-        StackTraceElement ste[] = ex.getStackTrace();
-        for (StackTraceElement e : ste) {
-            m += e.toString() + "<p>";
-        }
-        m += "</html>";
-        ex.printStackTrace();
-        JOptionPane.showMessageDialog(null, m, "Error", JOptionPane.ERROR_MESSAGE);
-    }
-
-    /**
-     * Get file name via "file chooser" dialog
-     * @param path   Default path (without file name).
-     * @param filename     Default file name (without path).
-     * @param extensions    Array of allowed extensions (without ".")
-     * @param loadDialog   If true, this is a load dialog, else it's a save dialog
-     * @param parent Parent component (Frame, Window)
-     * @return       Selected filename or null if canceled
-     */
-    public static String getFilename(String path, String filename, List<String> extensions, boolean loadDialog, Component parent) {
-        if (path == null || path.isEmpty()) {
-            path = ".";
-        }
-        JFileChooser fileChooser = new JFileChooser(path);
-        if (extensions != null) {
-            JFileFilter fileFilter = new JFileFilter();
-            for (String extension : extensions) {
-                fileFilter.addExtension(extension);
-            }
-            fileChooser.setFileFilter(fileFilter);
-        }
-        fileChooser.setFileSelectionMode(JFileChooser.FILES_ONLY);
-        File file;
-        if (filename != null && !filename.isEmpty()) {
-            file = new File(FilenameUtils.addSeparator(path) + filename);
-            if (file.canRead()) {
-                fileChooser.setSelectedFile(file);
-            }
-        }
-        if (!loadDialog) {
-            fileChooser.setDialogType(JFileChooser.SAVE_DIALOG);
-        }
-        int returnVal = fileChooser.showDialog(parent, null);
-        if (returnVal == JFileChooser.APPROVE_OPTION) {
-            file = fileChooser.getSelectedFile();
-            if (file != null) {
-                return file.getAbsolutePath();
-            }
-        }
-        return null;
-    }
-
     /**
      * Returns the first few bytes of a file to check it's type
      * @param fname Filename of the file
@@ -22,6 +22,7 @@ import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
 import java.awt.image.IndexColorModel;
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -169,6 +170,45 @@ public class BitmapTest {
         }
     }
 
+    @Test
+    public void shouldCropToVisiblePixels() {
+        subject.fillRectangularWithColorIndex(2, 3, 7, 16, (byte)1);
+        subject.fillRectangularWithColorIndex(0, 0, 1, 1, (byte)2);
+        byte[] alpha = new byte[] { 0, (byte)255, 10 };
+
+        Bitmap croppedBitmap = subject.cropToVisiblePixels(alpha, 14);
+
+        assertEquals(7, croppedBitmap.getWidth());
+        assertEquals(16, croppedBitmap.getHeight());
+        for (byte b : croppedBitmap.getInternalBuffer()) {
+            assertEquals(1, b);
+        }
+    }
+
+    @Test
+    public void shouldCropToAtLeastTwoPixelsWide() {
+        subject.fillRectangularWithColorIndex(4, 5, 1, 3, (byte)1);
+        byte[] alpha = new byte[] { 0, (byte)255 };
+
+        Bitmap croppedBitmap = subject.cropToVisiblePixels(alpha, 14);
+
+        assertEquals(2, croppedBitmap.getWidth());
+        assertEquals(3, croppedBitmap.getHeight());
+        int visible = 0;
+        for (byte b : croppedBitmap.getInternalBuffer()) {
+            visible += b;
+        }
+        assertEquals(3, visible);
+    }
+
+    @Test
+    public void shouldNotCropIfAllBordersAreVisible() {
+        subject.fillRectangularWithColorIndex(0, 0, WIDTH, HEIGHT, (byte)1);
+        byte[] alpha = new byte[] { 0, (byte)255 };
+
+        assertSame(subject, subject.cropToVisiblePixels(alpha, 14));
+    }
+
     @Test
     public void shouldReturnHighestVisibleColorIndex() {
         subject.fillRectangularWithColorIndex(4, 4, 2, 2, (byte)2);
@@ -202,4 +242,76 @@ public class BitmapTest {
         assertEquals(2, buffer[4 * WIDTH + 4]); // e1 color index remapped 1 from 2
         assertEquals(3, buffer[7 * WIDTH + 7]); // e2 color index remapped 2 from 3
     }
+
+    @Test
+    public void shouldKeepImageWhenScalingBilinearFixedPointToSameSize() {
+        Bitmap bitmap = createRandomBitmap(64, 32);
+
+        Bitmap scaled = bitmap.scaleBilinearFixedPoint(64, 32, createGrayPalette());
+
+        assertArrayEquals(bitmap.getInternalBuffer(), scaled.getInternalBuffer());
+    }
+
+    @Test
+    public void shouldScaleBilinearFixedPointWithinOneStepOfDoublePrecision() {
+        Bitmap bitmap = createRandomBitmap(173, 61);
+        Palette palette = createGrayPalette();
+        int[][] sizes = { {720, 120}, {97, 33}, {173, 61}, {300, 47} };
+
+        for (int[] size : sizes) {
+            byte[] expected = bitmap.scaleBilinear(size[0], size[1], palette).getInternalBuffer();
+            byte[] actual = bitmap.scaleBilinearFixedPoint(size[0], size[1], palette).getInternalBuffer();
+            assertMaxDifference(expected, actual, 1);
+        }
+    }
+
+    @Test
+    public void shouldScaleBilinearFixedPointLmWithinOneStepOfDoublePrecision() {
+        Bitmap bitmap = createRandomBitmap(173, 61);
+        Palette palette = createGrayPalette();
+        int[] lumThr = new int[254]; // one target color per luminance step
+        for (int i = 0; i < lumThr.length; i++) {
+            lumThr[i] = 254 - i;
+        }
+        int[][] sizes = { {720, 120}, {97, 33}, {300, 47} };
+
+        for (int[] size : sizes) {
+            byte[] expected = bitmap.scaleBilinearLm(size[0], size[1], palette, 0, lumThr).getInternalBuffer();
+            byte[] actual = bitmap.scaleBilinearFixedPointLm(size[0], size[1], palette, 0, lumThr).getInternalBuffer();
+            assertMaxDifference(expected, actual, 1);
+        }
+    }
+
+    @Test
+    public void shouldScaleBilinearFixedPointWithNewPalette() {
+        Bitmap bitmap = createRandomBitmap(173, 61);
+
+        BitmapWithPalette scaled = bitmap.scaleBilinearFixedPoint(300, 47, createGrayPalette(), true);
+
+        assertEquals(300, scaled.bitmap.getWidth());
+        assertEquals(47, scaled.bitmap.getHeight());
+        assertEquals(256, scaled.palette.getSize());
+    }
+
+    private static Bitmap createRandomBitmap(int width, int height) {
+        Bitmap bitmap = new Bitmap(width, height);
+        new Random(42).nextBytes(bitmap.getInternalBuffer());
+        return bitmap;
+    }
+
+    private static Palette createGrayPalette() {
+        Palette palette = new Palette(256);
+        for (int i = 0; i < palette.getSize(); i++) {
+            palette.setARGB(i, 0xff000000 | (i << 16) | (i << 8) | i);
+        }
+        return palette;
+    }
+
+    private static void assertMaxDifference(byte[] expected, byte[] actual, int maxDifference) {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            int difference = Math.abs((expected[i] & 0xff) - (actual[i] & 0xff));
+            assertTrue("difference " + difference + " at " + i, difference <= maxDifference);
+        }
+    }
 }
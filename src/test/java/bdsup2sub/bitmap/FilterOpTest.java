@@ -0,0 +1,126 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.bitmap;
+
+import com.mortennobel.imagescaling.ResampleFilters;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FilterOpTest {
+
+    private Bitmap bitmap;
+    private Palette palette;
+
+    @Before
+    public void setUp() {
+        Random random = new Random(42);
+        bitmap = new Bitmap(1200, 300);
+        random.nextBytes(bitmap.getInternalBuffer());
+        palette = new Palette(256);
+        for (int i = 0; i < palette.getSize(); i++) {
+            palette.setARGB(i, random.nextInt());
+        }
+    }
+
+    @Test
+    public void shouldProduceSameResultInParallelWhenScalingDown() {
+        assertSameResult(700, 200);
+    }
+
+    @Test
+    public void shouldProduceSameResultInParallelWhenScalingUp() {
+        assertSameResult(1900, 500);
+    }
+
+    @Test
+    public void shouldProduceSameResultInParallelBelowThreshold() {
+        assertSameResult(200, 100);
+    }
+
+    @Test
+    public void shouldProduceSameResultRowByRowWhenScalingDown() {
+        assertSameResultRowByRow(700, 200);
+    }
+
+    @Test
+    public void shouldProduceSameResultRowByRowWhenScalingUp() {
+        assertSameResultRowByRow(1900, 500);
+    }
+
+    @Test
+    public void shouldProduceSameResultInParallelBandsWhenScalingDown() {
+        assertSameResultInBands(700, 200);
+    }
+
+    @Test
+    public void shouldProduceSameResultInParallelBandsWhenScalingUp() {
+        assertSameResultInBands(1900, 500);
+    }
+
+    private void assertSameResult(int dstWidth, int dstHeight) {
+        int[] sequential = new FilterOp(ResampleFilters.getLanczos3Filter(), dstWidth, dstHeight, false).filter(bitmap, palette);
+        int[] parallel = new FilterOp(ResampleFilters.getLanczos3Filter(), dstWidth, dstHeight, true).filter(bitmap, palette);
+        assertArrayEquals(sequential, parallel);
+    }
+
+    private void assertSameResultRowByRow(final int dstWidth, int dstHeight) {
+        int[] expected = new FilterOp(ResampleFilters.getLanczos3Filter(), dstWidth, dstHeight, false).filter(bitmap, palette);
+        final int[] actual = new int[dstWidth * dstHeight];
+        // not parallel: all rows are passed to one consumer from top to bottom
+        new FilterOp(ResampleFilters.getLanczos3Filter(), dstWidth, dstHeight, false).filter(bitmap, palette, new FilterOp.RowConsumerFactory() {
+            @Override
+            public FilterOp.RowConsumer createRowConsumer() {
+                return new FilterOp.RowConsumer() {
+                    @Override
+                    public void consumeRow(int y, int[] row) {
+                        System.arraycopy(row, 0, actual, y * dstWidth, dstWidth);
+                    }
+                };
+            }
+        });
+        assertArrayEquals(expected, actual);
+    }
+
+    private void assertSameResultInBands(final int dstWidth, int dstHeight) {
+        int[] expected = new FilterOp(ResampleFilters.getLanczos3Filter(), dstWidth, dstHeight, false).filter(bitmap, palette);
+        final int[] actual = new int[dstWidth * dstHeight];
+        final AtomicInteger bands = new AtomicInteger();
+        new FilterOp(ResampleFilters.getLanczos3Filter(), dstWidth, dstHeight, true).filter(bitmap, palette, new FilterOp.RowConsumerFactory() {
+            @Override
+            public FilterOp.RowConsumer createRowConsumer() {
+                bands.incrementAndGet();
+                return new FilterOp.RowConsumer() {
+                    private int lastRow = -1;
+
+                    @Override
+                    public void consumeRow(int y, int[] row) {
+                        assertTrue(lastRow == -1 || y == lastRow + 1);
+                        lastRow = y;
+                        System.arraycopy(row, 0, actual, y * dstWidth, dstWidth);
+                    }
+                };
+            }
+        });
+        assertArrayEquals(expected, actual);
+        assertTrue(bands.get() > 1);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IntIntMapTest {
+
+    private IntIntMap subject;
+
+    @Before
+    public void setUp() {
+        subject = new IntIntMap(4);
+    }
+
+    @Test
+    public void shouldReturnDefaultValueForMissingKey() {
+        assertEquals(-1, subject.get(0xff00ff00, -1));
+        assertFalse(subject.containsKey(0xff00ff00));
+        assertTrue(subject.isEmpty());
+    }
+
+    @Test
+    public void shouldStoreAndReplaceValues() {
+        subject.put(0xff00ff00, 3);
+        subject.put(0xff00ff00, 4);
+
+        assertEquals(4, subject.get(0xff00ff00, -1));
+        assertEquals(1, subject.size());
+    }
+
+    @Test
+    public void shouldStoreZeroKey() {
+        subject.put(0, 7);
+
+        assertTrue(subject.containsKey(0));
+        assertEquals(7, subject.get(0, -1));
+        assertEquals(1, subject.size());
+    }
+
+    @Test
+    public void shouldGrowBeyondInitialCapacity() {
+        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            int key = random.nextInt();
+            expected.put(key, i);
+            subject.put(key, i);
+        }
+
+        assertEquals(expected.size(), subject.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue().intValue(), subject.get(entry.getKey(), -1));
+        }
+    }
+
+    @Test
+    public void shouldRemoveAllEntriesOnClear() {
+        subject.put(0, 1);
+        subject.put(1, 2);
+
+        subject.clear();
+
+        assertTrue(subject.isEmpty());
+        assertFalse(subject.containsKey(0));
+        assertFalse(subject.containsKey(1));
+    }
+}
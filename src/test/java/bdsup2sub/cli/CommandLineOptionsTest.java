@@ -69,6 +69,15 @@ public class CommandLineOptionsTest {
         assertFalse(options.getOption(option).hasArg());
     }
 
+    @Test
+    public void shouldHaveStatisticsOption() {
+        String option = "s";
+        assertTrue(options.hasOption(option));
+        assertEquals("stats", options.getOption(option).getLongOpt());
+        assertFalse(options.getOption(option).isRequired());
+        assertFalse(options.getOption(option).hasArg());
+    }
+
     @Test
     public void shouldHaveLoadSettingsOption() {
         String option = "L";
@@ -131,6 +140,28 @@ public class CommandLineOptionsTest {
         assertEquals("delay", options.getOption(option).getArgName());
     }
 
+    @Test
+    public void shouldHaveTimeRangeStartOption() {
+        String option = "b";
+        assertTrue(options.hasOption(option));
+        assertEquals("from", options.getOption(option).getLongOpt());
+        assertFalse(options.getOption(option).isRequired());
+        assertTrue(options.getOption(option).hasArg());
+        assertFalse(options.getOption(option).hasOptionalArg());
+        assertEquals("time", options.getOption(option).getArgName());
+    }
+
+    @Test
+    public void shouldHaveTimeRangeEndOption() {
+        String option = "e";
+        assertTrue(options.hasOption(option));
+        assertEquals("to", options.getOption(option).getLongOpt());
+        assertFalse(options.getOption(option).isRequired());
+        assertTrue(options.getOption(option).hasArg());
+        assertFalse(options.getOption(option).hasOptionalArg());
+        assertEquals("time", options.getOption(option).getArgName());
+    }
+
     @Test
     public void shouldHaveFilterOption() {
         String option = "f";
@@ -354,4 +385,37 @@ public class CommandLineOptionsTest {
         assertFalse(options.getOption(option).hasOptionalArg());
         assertEquals("file", options.getOption(option).getArgName());
     }
+
+    @Test
+    public void shouldHavePngCompressionLevelOption() {
+        String option = "z";
+        assertTrue(options.hasOption(option));
+        assertEquals("png-level", options.getOption(option).getLongOpt());
+        assertFalse(options.getOption(option).isRequired());
+        assertTrue(options.getOption(option).hasArg());
+        assertFalse(options.getOption(option).hasOptionalArg());
+        assertEquals("n", options.getOption(option).getArgName());
+    }
+
+    @Test
+    public void shouldHavePngCompressionStrategyOption() {
+        String option = "Z";
+        assertTrue(options.hasOption(option));
+        assertEquals("png-strategy", options.getOption(option).getLongOpt());
+        assertFalse(options.getOption(option).isRequired());
+        assertTrue(options.getOption(option).hasArg());
+        assertFalse(options.getOption(option).hasOptionalArg());
+        assertEquals("strategy", options.getOption(option).getArgName());
+    }
+
+    @Test
+    public void shouldHavePngCopyModeOption() {
+        String option = "k";
+        assertTrue(options.hasOption(option));
+        assertEquals("png-copy", options.getOption(option).getLongOpt());
+        assertFalse(options.getOption(option).isRequired());
+        assertTrue(options.getOption(option).hasArg());
+        assertFalse(options.getOption(option).hasOptionalArg());
+        assertEquals("mode", options.getOption(option).getArgName());
+    }
 }
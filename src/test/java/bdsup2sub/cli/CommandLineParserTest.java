@@ -16,6 +16,7 @@
 package bdsup2sub.cli;
 
 import bdsup2sub.core.*;
+import bdsup2sub.tools.QuantizeFilter;
 import org.apache.commons.cli.ParseException;
 import org.junit.Before;
 import org.junit.Test;
@@ -109,6 +110,32 @@ public class CommandLineParserTest {
         subject.parse("--output", "out.foobar", infile.getAbsolutePath());
     }
 
+    @Test
+    public void shouldParseMultipleOutputFileArgs() throws Exception {
+        File infile = File.createTempFile("input", null);
+        infile.deleteOnExit();
+        subject.parse("--output", "out.ifo", "--output", "out_bd.sup", "-o", "out.xml", infile.getAbsolutePath());
+        assertEquals(new File("out.ifo"), subject.getOutputFile());
+        assertEquals(OutputMode.SUPIFO, subject.getOutputMode().orNull());
+        assertEquals(3, subject.getOutputFiles().size());
+        assertEquals(new File("out_bd.sup"), subject.getOutputFiles().get(OutputMode.BDSUP));
+        assertEquals(new File("out.xml"), subject.getOutputFiles().get(OutputMode.XML));
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectMultipleOutputFilesOfSameMode() throws Exception {
+        File infile = File.createTempFile("input", null);
+        infile.deleteOnExit();
+        subject.parse("--output", "out.sub", "--output", "out2.idx", infile.getAbsolutePath());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectSupIfoAndBdSupOutputWritingSameFile() throws Exception {
+        File infile = File.createTempFile("input", null);
+        infile.deleteOnExit();
+        subject.parse("--output", "out.ifo", "--output", "out.sup", infile.getAbsolutePath());
+    }
+
     @Test
     public void shouldOutputFileModeDefaultToVobSub() throws Exception {
         File infile = File.createTempFile("input", null);
@@ -310,6 +337,35 @@ public class CommandLineParserTest {
         subject.parse("--delay");
     }
 
+    @Test(expected = ParseException.class)
+    public void shouldRejectInvalidTimeRangeStartArg() throws Exception {
+        subject.parse("--from", "foo");
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectInvalidTimeRangeEndArg() throws Exception {
+        subject.parse("--to", "-1");
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectTimeRangeEndBeforeStart() throws Exception {
+        subject.parse("--from", "00:10:00.000", "--to", "00:05:00.000");
+    }
+
+    @Test
+    public void shouldTimeRangeDefaultToAbsent() throws Exception {
+        subject.parse("--version");
+        assertFalse(subject.getTimeRangeStart().isPresent());
+        assertFalse(subject.getTimeRangeEnd().isPresent());
+    }
+
+    @Test
+    public void shouldParseTimeRangeArgs() throws Exception {
+        subject.parse("--from", "00:01:00.000", "--to", "01:00:00.500");
+        assertEquals(60 * 90000L, subject.getTimeRangeStart().get().longValue());
+        assertEquals(3600 * 90000L + 500 * 90, subject.getTimeRangeEnd().get().longValue());
+    }
+
     @Test(expected = ParseException.class)
     public void shouldRejectInvalidFilterArg() throws Exception {
         subject.parse("--filter", "foo");
@@ -332,6 +388,12 @@ public class CommandLineParserTest {
         assertEquals(ScalingFilter.BICUBIC_SPLINE, subject.getScalingFilter().get());
     }
 
+    @Test
+    public void shouldParseFixedPointBilinearFilter() throws Exception {
+        subject.parse("--filter", "bilinear-fixed");
+        assertEquals(ScalingFilter.BILINEAR_FIXED_POINT, subject.getScalingFilter().get());
+    }
+
     @Test(expected = ParseException.class)
     public void shouldRejectIfMissingPaletteModeArg() throws Exception {
         subject.parse("--palette-mode");
@@ -681,6 +743,18 @@ public class CommandLineParserTest {
         assertFalse(subject.isVerbose().isPresent());
     }
 
+    @Test
+    public void shouldParseStatisticsArg() throws Exception {
+        subject.parse("--stats");
+        assertTrue(subject.isPrintStatistics());
+    }
+
+    @Test
+    public void shouldStatisticsDefaultToFalse() throws Exception {
+        subject.parse("--verbose");
+        assertFalse(subject.isPrintStatistics());
+    }
+
     @Test(expected = ParseException.class)
     public void shouldRejectIfMissingAlphaThresholdArg() throws Exception {
         subject.parse("--alpha-thr");
@@ -797,4 +871,121 @@ public class CommandLineParserTest {
 
         assertEquals(paletteFile, subject.getPaletteFile());
     }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectOutOfRangePngCompressionLevelArg() throws Exception {
+        subject.parse("--png-level", "10");
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectInvalidPngCompressionLevelArg() throws Exception {
+        subject.parse("--png-level", "best");
+    }
+
+    @Test
+    public void shouldPngCompressionLevelDefaultToAbsent() throws Exception {
+        subject.parse("--version");
+        assertFalse(subject.getPngCompressionLevel().isPresent());
+    }
+
+    @Test
+    public void shouldAcceptValidPngCompressionLevelArg() throws Exception {
+        subject.parse("--png-level", "9");
+        assertEquals(9, subject.getPngCompressionLevel().get().intValue());
+    }
+
+    @Test
+    public void shouldAcceptPngCompressionLevelArgForXmlOutput() throws Exception {
+        File infile = File.createTempFile("input", null);
+        infile.deleteOnExit();
+        subject.parse("--png-level", "9", "-o", "out.sup", "-o", "out.xml", infile.getAbsolutePath());
+        assertEquals(9, subject.getPngCompressionLevel().get().intValue());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectPngCompressionLevelArgWithoutXmlOutput() throws Exception {
+        File infile = File.createTempFile("input", null);
+        infile.deleteOnExit();
+        subject.parse("--png-level", "9", "-o", "out.sup", infile.getAbsolutePath());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectPngCompressionStrategyArgWithoutXmlOutput() throws Exception {
+        File infile = File.createTempFile("input", null);
+        infile.deleteOnExit();
+        subject.parse("--png-strategy", "huffman", "-o", "out.sub", infile.getAbsolutePath());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectInvalidPngCompressionStrategyArg() throws Exception {
+        subject.parse("--png-strategy", "foo");
+    }
+
+    @Test
+    public void shouldPngCompressionStrategyDefaultToAbsent() throws Exception {
+        subject.parse("--version");
+        assertFalse(subject.getPngCompressionStrategy().isPresent());
+    }
+
+    @Test
+    public void shouldParsePngCompressionStrategyArg() throws Exception {
+        subject.parse("--png-strategy", "huffman");
+        assertEquals(PngCompressionStrategy.HUFFMAN_ONLY, subject.getPngCompressionStrategy().get());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectInvalidPngCopyModeArg() throws Exception {
+        subject.parse("--png-copy", "foo");
+    }
+
+    @Test
+    public void shouldPngCopyModeDefaultToAbsent() throws Exception {
+        subject.parse("--version");
+        assertFalse(subject.getXmlPngCopyMode().isPresent());
+    }
+
+    @Test
+    public void shouldParsePngCopyModeArg() throws Exception {
+        subject.parse("--png-copy", "link");
+        assertEquals(XmlPngCopyMode.LINK, subject.getXmlPngCopyMode().get());
+    }
+
+    @Test
+    public void shouldAcceptPngCopyModeArgForXmlInputAndOutput() throws Exception {
+        File infile = File.createTempFile("input", ".xml");
+        infile.deleteOnExit();
+        subject.parse("--png-copy", "copy", "-o", "out.xml", infile.getAbsolutePath());
+        assertEquals(XmlPngCopyMode.COPY, subject.getXmlPngCopyMode().get());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectPngCopyModeArgWithoutXmlInput() throws Exception {
+        File infile = File.createTempFile("input", ".sup");
+        infile.deleteOnExit();
+        subject.parse("--png-copy", "copy", "-o", "out.xml", infile.getAbsolutePath());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectPngCopyModeArgWithoutXmlOutput() throws Exception {
+        File infile = File.createTempFile("input", ".xml");
+        infile.deleteOnExit();
+        subject.parse("--png-copy", "copy", "-o", "out.sup", infile.getAbsolutePath());
+    }
+
+    @Test(expected = ParseException.class)
+    public void shouldRejectInvalidQuantizerArg() throws Exception {
+        subject.parse("--quantizer", "foo");
+    }
+
+    @Test
+    public void shouldQuantizerDefaultToAbsent() throws Exception {
+        subject.parse("--version");
+        assertFalse(subject.getQuantizationMethod().isPresent());
+    }
+
+    @Test
+    public void shouldParseQuantizerArg() throws Exception {
+        subject.parse("--quantizer", "mediancut");
+        assertEquals(QuantizeFilter.Method.MEDIAN_CUT, subject.getQuantizationMethod().get());
+    }
 }
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import bdsup2sub.core.ConversionStatistics.Stage;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ConversionEventsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Recording recording;
+
+    @Before
+    public void setUp() {
+        recording = new Recording();
+        recording.start();
+    }
+
+    @After
+    public void tearDown() {
+        recording.close();
+        ConversionEvents.setCaptionIndex(-1);
+    }
+
+    @Test
+    public void shouldRecordStageWithCaptionIndex() throws IOException {
+        ConversionEvents.setCaptionIndex(7);
+        ConversionEvents.begin(Stage.DECODE).commit(720, 120, 4096);
+
+        List<RecordedEvent> events = stopRecording("bdsup2sub.Decode");
+        assertEquals(1, events.size());
+        RecordedEvent event = events.get(0);
+        assertEquals(7, event.getInt("captionIndex"));
+        assertEquals("decode", event.getString("stage"));
+        assertEquals(720, event.getInt("width"));
+        assertEquals(120, event.getInt("height"));
+        assertEquals(4096, event.getLong("bytes"));
+    }
+
+    @Test
+    public void shouldRecordSegment() throws IOException {
+        ConversionEvents.beginSegment().commit(0x1234, "ODS", 0xffef, 3);
+
+        List<RecordedEvent> events = stopRecording("bdsup2sub.ParseSegment");
+        assertEquals(1, events.size());
+        assertEquals(0x1234, events.get(0).getLong("offset"));
+        assertEquals("ODS", events.get(0).getString("type"));
+        assertEquals(0xffef, events.get(0).getInt("size"));
+        assertEquals(3, events.get(0).getInt("captionIndex"));
+    }
+
+    @Test
+    public void shouldRecordCacheAccess() throws IOException {
+        ConversionEvents.cacheAccess("test", 5, true);
+        ConversionEvents.cacheAccess("test", 9, false);
+
+        List<RecordedEvent> events = stopRecording("bdsup2sub.CacheAccess");
+        assertEquals(2, events.size());
+        assertEquals(5, events.get(0).getInt("captionIndex"));
+        assertTrue(events.get(0).getBoolean("hit"));
+        assertFalse(events.get(1).getBoolean("hit"));
+    }
+
+    @Test
+    public void shouldKeepCaptionIndexPerThread() throws InterruptedException {
+        ConversionEvents.setCaptionIndex(3);
+        final int[] otherIndex = new int[1];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                otherIndex[0] = ConversionEvents.getCaptionIndex();
+            }
+        };
+        thread.start();
+        thread.join();
+        assertEquals(3, ConversionEvents.getCaptionIndex());
+        assertEquals(-1, otherIndex[0]);
+    }
+
+    private List<RecordedEvent> stopRecording(String eventName) throws IOException {
+        recording.stop();
+        File file = new File(folder.getRoot(), "test.jfr");
+        recording.dump(file.toPath());
+        List<RecordedEvent> events = new ArrayList<RecordedEvent>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if (event.getEventType().getName().equals(eventName)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+}
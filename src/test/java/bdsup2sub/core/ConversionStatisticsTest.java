@@ -0,0 +1,156 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import bdsup2sub.core.ConversionStatistics.Stage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ConversionStatisticsTest {
+
+    private ConversionStatistics subject;
+
+    @Before
+    public void setUp() {
+        subject = ConversionStatistics.getInstance();
+        subject.reset();
+    }
+
+    @After
+    public void tearDown() {
+        subject.reset();
+    }
+
+    @Test
+    public void shouldAccumulateFramesAndTime() {
+        long now = System.nanoTime();
+        subject.addFrame(Stage.DECODE, now - 1000000);
+        subject.addFrame(Stage.DECODE, now - 3000000);
+        assertEquals(2, subject.getFrames(Stage.DECODE));
+        assertTrue(subject.getTime(Stage.DECODE) >= 4000000);
+        assertEquals(0, subject.getFrames(Stage.SCALE));
+    }
+
+    @Test
+    public void shouldDetermineLatencyPercentiles() {
+        long now = System.nanoTime();
+        for (int i = 1; i <= 100; i++) {
+            subject.addFrame(Stage.SCALE, now - i * 1000000L);
+        }
+        long p50 = subject.getLatency(Stage.SCALE, 50);
+        long p99 = subject.getLatency(Stage.SCALE, 99);
+        assertTrue(p50 >= 50000000L && p50 < 99000000L);
+        assertTrue(p99 >= 99000000L && p99 > p50);
+    }
+
+    @Test
+    public void shouldKeepPercentilesWhenSamplingLatencies() {
+        long now = System.nanoTime();
+        for (int i = 0; i < 200000; i++) {
+            // 1% slow frames
+            subject.addFrame(Stage.QUANTIZE, i % 100 == 0 ? now - 1000000000L : now);
+        }
+        assertEquals(200000, subject.getFrames(Stage.QUANTIZE));
+        assertTrue(subject.getLatency(Stage.QUANTIZE, 50) < 1000000000L);
+        assertTrue(subject.getLatency(Stage.QUANTIZE, 99.9) >= 1000000000L);
+    }
+
+    @Test
+    public void shouldNotRecordLatencyForBulkFrames() {
+        subject.addFrames(Stage.PARSE, System.nanoTime(), 300);
+        assertEquals(300, subject.getFrames(Stage.PARSE));
+        assertEquals(0, subject.getLatency(Stage.PARSE, 50));
+    }
+
+    @Test
+    public void shouldAddFrameWhenStageTimerEnds() {
+        ConversionStatistics.StageTimer timer = subject.start(Stage.WRITE);
+        assertEquals(0, subject.getFrames(Stage.WRITE));
+        timer.end(720, 576, 100);
+        assertEquals(1, subject.getFrames(Stage.WRITE));
+    }
+
+    @Test
+    public void shouldAddFramesWithoutLatencyWhenStageTimerEndsForSeveralFrames() {
+        subject.start(Stage.PARSE).endFrames(300, 1000);
+        assertEquals(300, subject.getFrames(Stage.PARSE));
+        assertEquals(0, subject.getLatency(Stage.PARSE, 50));
+    }
+
+    @Test
+    public void shouldNotCountNestedStageInEnclosingStage() throws InterruptedException {
+        long startTime = System.nanoTime();
+        ConversionStatistics.StageTimer scaleTimer = subject.start(Stage.SCALE);
+        ConversionStatistics.StageTimer quantizeTimer = subject.start(Stage.QUANTIZE);
+        Thread.sleep(50);
+        quantizeTimer.end(720, 576, 0);
+        scaleTimer.end(720, 576, 0);
+        long elapsed = System.nanoTime() - startTime;
+
+        assertTrue(subject.getTime(Stage.QUANTIZE) >= 50000000L);
+        assertTrue(subject.getTime(Stage.SCALE) < subject.getTime(Stage.QUANTIZE));
+        assertTrue(subject.getTime(Stage.SCALE) + subject.getTime(Stage.QUANTIZE) <= elapsed);
+        assertEquals(1, subject.getFrames(Stage.SCALE));
+    }
+
+    @Test
+    public void shouldCountStageAfterNestedStageInEnclosingStage() throws InterruptedException {
+        ConversionStatistics.StageTimer encodeTimer = subject.start(Stage.ENCODE);
+        subject.start(Stage.QUANTIZE).end(720, 576, 0);
+        Thread.sleep(50);
+        encodeTimer.end(720, 576, 0);
+        subject.start(Stage.WRITE).end(720, 576, 0);
+
+        assertTrue(subject.getTime(Stage.ENCODE) >= 50000000L);
+        assertTrue(subject.getTime(Stage.WRITE) < 50000000L);
+    }
+
+    @Test
+    public void shouldCountBytes() {
+        subject.addBytesRead(100);
+        subject.addBytesRead(23);
+        subject.addBytesWritten(7);
+        assertEquals(123, subject.getBytesRead());
+        assertEquals(7, subject.getBytesWritten());
+    }
+
+    @Test
+    public void shouldDiscardValuesOnReset() {
+        subject.addFrame(Stage.ENCODE, System.nanoTime());
+        subject.addBytesWritten(1);
+        subject.reset();
+        assertEquals(0, subject.getFrames(Stage.ENCODE));
+        assertEquals(0, subject.getBytesWritten());
+    }
+
+    @Test
+    public void shouldWriteAllStagesAsJson() {
+        subject.addFrame(Stage.QUANTIZE, System.nanoTime());
+        subject.addBytesRead(42);
+        String json = subject.toJson();
+        assertTrue(json.startsWith("{") && json.endsWith("}"));
+        assertTrue(json.contains("\"bytesRead\": 42,"));
+        for (Stage stage : Stage.values()) {
+            assertTrue(json.contains("\"" + stage.name().toLowerCase() + "\": {"));
+        }
+        assertTrue(json.contains("\"quantize\": {\"frames\": 1, \"timeMs\": "));
+        assertTrue(json.contains("\"p99Ms\": "));
+        assertFalse(json.contains("\"parse\": {\"frames\": 0, \"timeMs\": 0.000, \"framesPerSecond\": 0, \"p50Ms\""));
+    }
+}
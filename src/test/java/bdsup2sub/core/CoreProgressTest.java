@@ -0,0 +1,118 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import bdsup2sub.supstream.StreamGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CoreProgressTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Integer> percentages = new ArrayList<Integer>();
+    private final List<Future<?>> tasks = new ArrayList<Future<?>>();
+    private ProgressListener listener;
+    private ProgressView view;
+
+    @Before
+    public void setUp() {
+        listener = new ProgressListener() {
+            @Override
+            public void progressChanged(int percent) {
+                percentages.add(percent);
+            }
+        };
+        Core.addProgressListener(listener);
+        view = new ProgressView() {
+            @Override
+            public void setTitle(String title) {
+            }
+
+            @Override
+            public void setText(String text) {
+            }
+
+            @Override
+            public void showProgress(Future<?> task) {
+                tasks.add(task);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        Core.removeProgressListener(listener);
+        Core.close();
+    }
+
+    @Test
+    public void shouldReadStreamInThreadAndReportProgress() throws Exception {
+        String fname = new File(folder.getRoot(), "test.sup").getPath();
+        StreamGenerator generator = new StreamGenerator();
+        generator.setFrames(50);
+        generator.write(fname);
+
+        Core.readStreamThreaded(fname, view, StreamID.BDSUP);
+
+        assertEquals(50, Core.getNumFrames());
+        assertEquals(1, tasks.size());
+        assertTrue(tasks.get(0).isDone());
+        assertEquals(CoreThreadState.INACTIVE, Core.getStatus());
+        assertEquals(100, Core.getProgress());
+        assertFalse(percentages.isEmpty());
+        assertEquals(100, (int) percentages.get(percentages.size() - 1));
+        for (int i = 1; i < percentages.size(); i++) {
+            assertTrue(percentages.get(i) > percentages.get(i - 1));
+        }
+    }
+
+    @Test(expected = CoreException.class)
+    public void shouldRethrowExceptionOfThread() throws Exception {
+        File file = folder.newFile("invalid.sup");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(new byte[] {'P', 'G', 0, 0});
+        } finally {
+            out.close();
+        }
+
+        Core.readStreamThreaded(file.getPath(), view, StreamID.BDSUP);
+    }
+
+    @Test
+    public void shouldNotifyEachPercentOnce() {
+        Core.setProgressMax(1000);
+        for (int i = 0; i <= 1000; i++) {
+            Core.setProgress(i);
+        }
+        assertEquals(100, percentages.size());
+        assertEquals(1, (int) percentages.get(0));
+        assertEquals(100, Core.getProgress());
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import bdsup2sub.supstream.StreamGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class CoreXmlExportTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Configuration configuration = Configuration.getInstance();
+
+    private File sourcePng;
+    private byte[] sourceContent;
+
+    @Before
+    public void setUp() throws Exception {
+        File sourceXml = new File(folder.newFolder("xin"), "s.xml");
+        StreamGenerator generator = new StreamGenerator();
+        generator.setFrames(5);
+        generator.setCaptionSize(100, 200, 20, 40);
+        generator.write(sourceXml.getPath());
+        sourcePng = new File(sourceXml.getParentFile(), "s_0001.png");
+        sourceContent = Files.readAllBytes(sourcePng.toPath());
+
+        configuration.setOutputMode(OutputMode.XML);
+        Core.readXml(sourceXml.getPath());
+        Core.scanSubtitles();
+    }
+
+    @After
+    public void tearDown() {
+        configuration.setXmlPngCopyMode(Configuration.DEFAULT_XML_PNG_COPY_MODE);
+        Core.close();
+    }
+
+    @Test
+    public void shouldKeepSourceWhenReencodingOverLinkedOutput() throws Exception {
+        String target = new File(folder.newFolder("xout"), "s.xml").getPath();
+        configuration.setXmlPngCopyMode(XmlPngCopyMode.LINK);
+        Core.writeSub(target);
+        configuration.setXmlPngCopyMode(XmlPngCopyMode.ENCODE);
+        Core.writeSub(target);
+
+        assertArrayEquals(sourceContent, Files.readAllBytes(sourcePng.toPath()));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LogBufferTest {
+
+    private LogBuffer subject;
+
+    @Before
+    public void setUp() {
+        subject = new LogBuffer(4);
+    }
+
+    @Test
+    public void shouldRoundCapacityUpToPowerOfTwo() {
+        assertEquals(4, subject.getCapacity());
+        assertEquals(8, new LogBuffer(5).getCapacity());
+        assertEquals(1, new LogBuffer(1).getCapacity());
+    }
+
+    @Test
+    public void shouldKeepOrder() {
+        for (int round = 0; round < 3; round++) {
+            assertTrue(subject.offer("a"));
+            assertTrue(subject.offer("b"));
+            assertTrue(subject.offer("c"));
+            assertEquals("a", subject.poll());
+            StringBuilder batch = new StringBuilder();
+            assertEquals(2, subject.drainTo(batch));
+            assertEquals("bc", batch.toString());
+            assertNull(subject.poll());
+        }
+    }
+
+    @Test
+    public void shouldRejectMessagesWhenFull() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(subject.offer(Integer.toString(i)));
+        }
+        assertFalse(subject.offer("4"));
+
+        StringBuilder batch = new StringBuilder();
+        assertEquals(4, subject.drainTo(batch));
+        assertEquals("0123", batch.toString());
+        assertTrue(subject.offer("6"));
+    }
+
+    @Test
+    public void shouldNotLoseMessagesOfConcurrentWriters() throws InterruptedException {
+        subject = new LogBuffer(64);
+        final int threads = 4;
+        final int messages = 20000;
+        final AtomicInteger rejected = new AtomicInteger();
+        Thread[] writers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int id = t;
+            writers[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < messages; i++) {
+                        if (!subject.offer(id + ":" + i + "\n")) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            writers[t].start();
+        }
+        Set<String> received = new HashSet<String>();
+        int[] last = new int[threads];
+        Arrays.fill(last, -1);
+        boolean running = true;
+        while (running) {
+            running = false;
+            for (Thread writer : writers) {
+                running |= writer.isAlive();
+            }
+            String message;
+            while ((message = subject.poll()) != null) {
+                assertTrue(received.add(message));
+                String[] parts = message.trim().split(":");
+                int id = Integer.parseInt(parts[0]);
+                int index = Integer.parseInt(parts[1]);
+                assertTrue(index > last[id]);
+                last[id] = index;
+            }
+        }
+        assertEquals(threads * messages, received.size() + rejected.get());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.core;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LoggerTest {
+
+    private final Logger subject = Logger.getInstance();
+    private final List<String> batches = new ArrayList<String>();
+
+    @Before
+    public void setUp() {
+        subject.setSink(new LogSink() {
+            @Override
+            public void print(String message) {
+                synchronized (batches) {
+                    batches.add(message);
+                }
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        subject.stopFlushing();
+        subject.setSink(null);
+        subject.resetWarningCounter();
+        subject.resetErrorCounter();
+    }
+
+    @Test
+    public void shouldPrintRightAwayIfNotFlushing() {
+        subject.info("a\n");
+        subject.warn("b\n");
+
+        assertEquals(2, batches.size());
+        assertEquals("a\n", batches.get(0));
+        assertEquals("WARNING: b\n", batches.get(1));
+    }
+
+    @Test
+    public void shouldPrintInBatches() {
+        subject.startFlushing(60000, true);
+        subject.info("a\n");
+        subject.error("b\n");
+        assertTrue(batches.isEmpty());
+
+        subject.stopFlushing();
+        assertEquals(1, batches.size());
+        assertEquals("a\nERROR: b\n", batches.get(0));
+        assertEquals(1, subject.getErrorCount());
+    }
+
+    @Test
+    public void shouldReportDroppedMessages() {
+        subject.startFlushing(60000, true);
+        for (int i = 0; i < 10000; i++) {
+            subject.info("x");
+        }
+        subject.stopFlushing();
+
+        assertEquals(1, batches.size());
+        assertTrue(batches.get(0).endsWith("WARNING: 1808 log messages dropped\n"));
+    }
+
+    @Test
+    public void shouldPrintOnLoggingThreadInsteadOfDropping() {
+        subject.startFlushing(60000, false);
+        for (int i = 0; i < 10000; i++) {
+            subject.info("x");
+        }
+        subject.stopFlushing();
+
+        assertEquals(2, batches.size());
+        assertEquals(10000, batches.get(0).length() + batches.get(1).length());
+    }
+}
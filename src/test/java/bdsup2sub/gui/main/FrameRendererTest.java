@@ -0,0 +1,237 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.gui.main;
+
+import bdsup2sub.core.Core;
+import bdsup2sub.core.ProgressView;
+import bdsup2sub.core.RenderedCaption;
+import bdsup2sub.core.StreamID;
+import bdsup2sub.supstream.StreamGenerator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.swing.*;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class FrameRendererTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<RenderedCaption> captions = new ArrayList<RenderedCaption>();
+    private final List<Throwable> errors = new ArrayList<Throwable>();
+    private FrameRenderer subject;
+
+    @Before
+    public void setUp() throws Exception {
+        String fname = new File(folder.getRoot(), "test.sup").getPath();
+        StreamGenerator generator = new StreamGenerator();
+        generator.setFrames(20);
+        generator.write(fname);
+        Core.readStreamThreaded(fname, new ProgressView() {
+            @Override
+            public void setTitle(String title) {
+            }
+
+            @Override
+            public void setText(String text) {
+            }
+
+            @Override
+            public void showProgress(Future<?> task) {
+            }
+        }, StreamID.BDSUP);
+        Core.scanSubtitles();
+
+        subject = new FrameRenderer(new FrameRenderer.Listener() {
+            @Override
+            public void captionRendered(RenderedCaption caption) {
+                captions.add(caption);
+            }
+
+            @Override
+            public void renderingFailed(Throwable ex) {
+                errors.add(ex);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.cancelAndWait();
+            }
+        });
+        Core.close();
+    }
+
+    @Test
+    public void shouldDeliverRequestedCaption() throws Exception {
+        render(3);
+        waitForCaption();
+
+        RenderedCaption caption = captions.get(0);
+        assertEquals(3, caption.getIndex());
+        assertEquals(Core.getTrgImgWidth(3), caption.getTrgImgWidth());
+        assertEquals(Core.getTrgImgHeight(3), caption.getTrgImgHeight());
+        assertEquals(caption.getTrgImgWidth(), caption.getTrgImage().getWidth());
+        assertEquals(Core.getSubPictureSrc(3).getImageWidth(), caption.getSrcImage().getWidth());
+        assertEquals(Core.getTrgInfoStr(3), caption.getTrgInfoStr());
+        assertTrue(errors.isEmpty());
+    }
+
+    @Test
+    public void shouldDeliverOnlyLatestRequest() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 20; i++) {
+                    subject.render(i);
+                }
+            }
+        });
+        waitForCaption();
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.cancelAndWait();
+            }
+        });
+
+        assertEquals(1, captions.size());
+        assertEquals(19, captions.get(0).getIndex());
+    }
+
+    @Test
+    public void shouldPrefetchCaptionsAroundRequestedOne() throws Exception {
+        render(10);
+        waitForCaption();
+
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!isDecoded(8) || !isDecoded(9) || !isDecoded(11) || !isDecoded(12)) {
+            assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+        assertFalse(isDecoded(7));
+        assertFalse(isDecoded(13));
+    }
+
+    @Test
+    public void shouldPrefetchOnlyAheadWhenSteppingForward() throws Exception {
+        // the second request cancels the prefetching of the first one before captions behind it are converted
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.render(10);
+                subject.render(11);
+            }
+        });
+        waitForCaption();
+        subject.waitUntilIdle();
+
+        assertTrue(isDecoded(12));
+        assertTrue(isDecoded(13));
+        assertFalse(isDecoded(9));
+        assertFalse(isDecoded(14));
+    }
+
+    @Test
+    public void shouldPrefetchOnlyBehindWhenSteppingBackward() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.render(10);
+                subject.render(9);
+            }
+        });
+        waitForCaption();
+        subject.waitUntilIdle();
+
+        assertTrue(isDecoded(8));
+        assertTrue(isDecoded(7));
+        assertFalse(isDecoded(11));
+        assertFalse(isDecoded(6));
+    }
+
+    @Test
+    public void shouldRenderAgainAfterInvalidate() throws Exception {
+        render(5);
+        waitForCaption();
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.invalidate();
+                subject.render(5);
+            }
+        });
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (captionCount() < 2) {
+            assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+
+        assertNotSame(captions.get(0), captions.get(1));
+        assertEquals(5, captions.get(1).getIndex());
+    }
+
+    private void render(final int index) throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.render(index);
+            }
+        });
+    }
+
+    private void waitForCaption() throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (captionCount() == 0) {
+            assertTrue("no caption delivered", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    private int captionCount() throws Exception {
+        final int[] count = new int[1];
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                count[0] = captions.size();
+            }
+        });
+        return count[0];
+    }
+
+    private static boolean isDecoded(int index) {
+        return Core.getSubPictureTrg(index).isWasDecoded();
+    }
+
+    private static void onEdt(Runnable runnable) throws Exception {
+        SwingUtilities.invokeAndWait(runnable);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.gui.main;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailCacheTest {
+
+    private ThumbnailCache subject;
+
+    @Before
+    public void setUp() {
+        subject = new ThumbnailCache(1000);
+    }
+
+    @Test
+    public void shouldCountBytesOfIndexedImages() {
+        subject.put(0, createImage(10, 20));
+        subject.put(1, createImage(10, 30));
+
+        assertEquals(500, subject.getSize());
+        assertEquals(2, subject.getCount());
+    }
+
+    @Test
+    public void shouldDropLeastRecentlyUsedThumbnails() {
+        subject.put(0, createImage(10, 40));
+        subject.put(1, createImage(10, 40));
+        subject.get(0);
+        subject.put(2, createImage(10, 40));
+
+        assertNotNull(subject.get(0));
+        assertNull(subject.get(1));
+        assertNotNull(subject.get(2));
+        assertEquals(800, subject.getSize());
+    }
+
+    @Test
+    public void shouldReplaceThumbnail() {
+        subject.put(0, createImage(10, 40));
+        BufferedImage image = createImage(10, 10);
+        subject.put(0, image);
+
+        assertSame(image, subject.get(0));
+        assertEquals(100, subject.getSize());
+    }
+
+    @Test
+    public void shouldKeepThumbnailBiggerThanCache() {
+        subject.put(0, createImage(10, 10));
+        subject.put(1, createImage(100, 20));
+
+        assertNull(subject.get(0));
+        assertNotNull(subject.get(1));
+        assertEquals(1, subject.getCount());
+    }
+
+    @Test
+    public void shouldClear() {
+        subject.put(0, createImage(10, 10));
+        subject.clear();
+
+        assertNull(subject.get(0));
+        assertEquals(0, subject.getSize());
+    }
+
+    private static BufferedImage createImage(int width, int height) {
+        return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED);
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.gui.main;
+
+import bdsup2sub.core.Core;
+import bdsup2sub.core.ProgressView;
+import bdsup2sub.core.StreamID;
+import bdsup2sub.supstream.StreamGenerator;
+import bdsup2sub.supstream.SubPicture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.swing.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ThumbnailLoaderTest {
+
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<Integer> loaded = new ArrayList<Integer>();
+    private ThumbnailLoader subject;
+
+    @Before
+    public void setUp() throws Exception {
+        String fname = new File(folder.getRoot(), "test.sup").getPath();
+        StreamGenerator generator = new StreamGenerator();
+        generator.setFrames(20);
+        generator.write(fname);
+        Core.readStreamThreaded(fname, new ProgressView() {
+            @Override
+            public void setTitle(String title) {
+            }
+
+            @Override
+            public void setText(String text) {
+            }
+
+            @Override
+            public void showProgress(Future<?> task) {
+            }
+        }, StreamID.BDSUP);
+
+        subject = new ThumbnailLoader(new ThumbnailLoader.Listener() {
+            @Override
+            public void thumbnailLoaded(int index) {
+                loaded.add(index);
+            }
+        }, new ThumbnailCache(1024 * 1024), 64, 32, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.clear();
+            }
+        });
+        Core.close();
+    }
+
+    @Test
+    public void shouldLoadRequestedThumbnails() throws Exception {
+        request(2, 5);
+        waitForThumbnails(4);
+
+        for (int i = 2; i <= 5; i++) {
+            assertTrue(loaded.contains(i));
+            BufferedImage thumbnail = subject.getThumbnail(i);
+            SubPicture pic = Core.getSubPictureSrc(i);
+            assertTrue(thumbnail.getWidth() <= 64);
+            assertTrue(thumbnail.getHeight() <= 32);
+            // scaled down to fit in one direction
+            assertTrue(thumbnail.getWidth() >= 63 || thumbnail.getHeight() >= 31);
+            assertEquals(pic.getImageWidth() > 2 * pic.getImageHeight(), thumbnail.getWidth() >= 63);
+        }
+        assertNull(subject.getThumbnail(1));
+        assertNull(subject.getThumbnail(6));
+    }
+
+    @Test
+    public void shouldNotLoadCachedThumbnailsAgain() throws Exception {
+        request(0, 3);
+        waitForThumbnails(4);
+        request(2, 7);
+        waitForThumbnails(8);
+        Thread.sleep(100);
+
+        assertEquals(8, loadedCount());
+    }
+
+    @Test
+    public void shouldDropThumbnailsOnClear() throws Exception {
+        request(0, 19);
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.clear();
+            }
+        });
+        int count = loadedCount();
+        Thread.sleep(100);
+
+        assertEquals(count, loadedCount());
+        for (int i = 0; i < 20; i++) {
+            assertNull(subject.getThumbnail(i));
+        }
+    }
+
+    @Test
+    public void shouldNotLoadThumbnailsWhilePaused() throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.pause();
+            }
+        });
+        request(0, 3);
+        Thread.sleep(100);
+
+        assertEquals(0, loadedCount());
+
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.resume();
+            }
+        });
+        request(0, 3);
+        waitForThumbnails(4);
+    }
+
+    @Test
+    public void shouldNotChangeCurrentSourceFrame() throws Exception {
+        BufferedImage current = Core.getSrcImage(10);
+        request(0, 5);
+        waitForThumbnails(6);
+
+        BufferedImage image = Core.getSrcImage();
+        assertEquals(current.getWidth(), image.getWidth());
+        assertEquals(current.getHeight(), image.getHeight());
+        assertArrayEquals(getRGB(current), getRGB(image));
+    }
+
+    private static int[] getRGB(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private void request(final int first, final int last) throws Exception {
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                subject.request(first, last);
+            }
+        });
+    }
+
+    private void waitForThumbnails(int count) throws Exception {
+        long end = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (loadedCount() < count) {
+            assertTrue("thumbnails not loaded", System.currentTimeMillis() < end);
+            Thread.sleep(10);
+        }
+    }
+
+    private int loadedCount() throws Exception {
+        final int[] count = new int[1];
+        onEdt(new Runnable() {
+            @Override
+            public void run() {
+                count[0] = loaded.size();
+            }
+        });
+        return count[0];
+    }
+
+    private static void onEdt(Runnable runnable) throws Exception {
+        SwingUtilities.invokeAndWait(runnable);
+    }
+}
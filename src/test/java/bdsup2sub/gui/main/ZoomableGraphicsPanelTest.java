@@ -0,0 +1,110 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.gui.main;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+
+import static org.junit.Assert.*;
+
+public class ZoomableGraphicsPanelTest {
+
+    private ZoomableGraphicsPanel subject;
+    private BufferedImage image;
+
+    @Before
+    public void setUp() {
+        subject = new ZoomableGraphicsPanel();
+        new JScrollPane(subject);
+        image = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, (x + y) % 3 == 0 ? 0 : 0xff000000 | (x * 6 << 16) | (y * 8 << 8));
+            }
+        }
+        subject.setImage(image);
+    }
+
+    @Test
+    public void shouldResizeWhenZoomed() {
+        zoomIn(3);
+
+        assertEquals(new Dimension(120, 90), subject.getPreferredSize());
+    }
+
+    @Test
+    public void shouldDrawZoomedPixels() {
+        zoomIn(3);
+        subject.setSize(subject.getPreferredSize());
+        BufferedImage full = paint(new Rectangle(0, 0, 120, 90));
+
+        for (int y = 0; y < 90; y++) {
+            for (int x = 0; x < 120; x++) {
+                int argb = image.getRGB(x / 3, y / 3);
+                if ((argb >>> 24) == 0xff) {
+                    assertEquals(argb, full.getRGB(x, y));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldDrawClipRegionLikeFullPanel() {
+        zoomIn(3);
+        subject.setSize(subject.getPreferredSize());
+        BufferedImage full = paint(new Rectangle(0, 0, 120, 90));
+        Rectangle clip = new Rectangle(7, 5, 41, 34);
+        BufferedImage part = paint(clip);
+
+        for (int y = clip.y; y < clip.y + clip.height; y++) {
+            for (int x = clip.x; x < clip.x + clip.width; x++) {
+                assertEquals(full.getRGB(x, y), part.getRGB(x, y));
+            }
+        }
+        assertEquals(0, part.getRGB(6, 5));
+    }
+
+    @Test
+    public void shouldDrawNewImage() {
+        subject.setSize(subject.getPreferredSize());
+        paint(new Rectangle(0, 0, 40, 30));
+        BufferedImage other = new BufferedImage(40, 30, BufferedImage.TYPE_INT_ARGB);
+        other.setRGB(1, 1, 0xff123456);
+        subject.setImage(other);
+
+        assertEquals(0xff123456, paint(new Rectangle(0, 0, 40, 30)).getRGB(1, 1));
+    }
+
+    private void zoomIn(int scale) {
+        for (int i = 1; i < scale; i++) {
+            subject.dispatchEvent(new MouseEvent(subject, MouseEvent.MOUSE_CLICKED, 0, 0, 1, 1, 1, false, MouseEvent.BUTTON1));
+        }
+    }
+
+    private BufferedImage paint(Rectangle clip) {
+        BufferedImage canvas = new BufferedImage(subject.getWidth(), subject.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = canvas.createGraphics();
+        g.setClip(clip);
+        subject.paint(g);
+        g.dispose();
+        return canvas;
+    }
+}
@@ -0,0 +1,566 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import bdsup2sub.core.Configuration;
+import bdsup2sub.core.CoreException;
+import bdsup2sub.core.Resolution;
+import bdsup2sub.supstream.bd.SupBDWriter;
+import bdsup2sub.supstream.bdnxml.SupXml;
+import bdsup2sub.supstream.bdnxml.SupXmlWriter;
+import bdsup2sub.supstream.dvd.IfoWriter;
+import bdsup2sub.supstream.dvd.SubDvdWriter;
+import bdsup2sub.supstream.dvd.SubPictureDVD;
+import bdsup2sub.supstream.dvd.SupDvdWriter;
+import bdsup2sub.tools.IndexedPngWriter;
+import bdsup2sub.utils.FilenameUtils;
+import org.apache.commons.cli.*;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+
+import static bdsup2sub.core.Constants.DEFAULT_DVD_PALETTE;
+
+/**
+ * Writes deterministic synthetic subtitle streams for load tests and benchmarks.
+ * The format is chosen by the extension as for the command line: sup (BD), sub/idx (VobSub), ifo (SUP/IFO), xml (BDN XML/PNG).
+ * <p>
+ * Every caption is created from the seed and its index, so any frame of a stream can be recreated with
+ * {@link #createFrameBitmap(int)} and {@link #createFramePicture(int)} without generating the stream again.
+ * Captions are written one by one, so streams with any number of captions can be created with little memory.
+ * Noise makes the RLE data large: BD captions then need several object packets, DVD captions several PES packets.
+ * Time stamps must stay below 2^31 ticks of 90kHz (about 6.6 hours), for long streams use short durations and gaps.
+ * <pre>
+ * java -cp target/classes:target/test-classes:... bdsup2sub.supstream.StreamGenerator -n 100000 -d 150 -g 50 long.sup
+ * </pre>
+ */
+public final class StreamGenerator {
+
+    /** Maximum time stamp (90kHz) that can be written to all formats */
+    private static final long MAX_TIME = 0x7fffffffL;
+    /** Distance of the captions to the bottom of the screen */
+    private static final int BOTTOM_MARGIN = 40;
+
+    private final Configuration configuration = Configuration.getInstance();
+
+    private int frames = 1000;
+    private Resolution resolution;
+    private int minWidth = 600;
+    private int maxWidth = 1440;
+    private int minHeight = 70;
+    private int maxHeight = 140;
+    private int colors = 16;
+    private double forcedRatio;
+    private double noise;
+    private int duration = 2000;
+    private int gap = 500;
+    private double overlapRatio;
+    private double zeroDurationRatio;
+    private double sameStartRatio;
+    private long seed = 1;
+
+    /** time stamps of the stream currently written, created once per stream from the seed */
+    private long[] startTimes;
+    private long[] endTimes;
+
+    /** @param frames Number of captions */
+    public void setFrames(int frames) {
+        if (frames < 1) {
+            throw new IllegalArgumentException("Number of captions must be positive: " + frames);
+        }
+        this.frames = frames;
+        startTimes = null;
+    }
+
+    /** @param resolution Screen resolution, default is 1080p for BD and XML, PAL for DVD formats (which need NTSC or PAL) */
+    public void setResolution(Resolution resolution) {
+        this.resolution = resolution;
+    }
+
+    /**
+     * Set the range of caption sizes, limited to the screen size. Sizes are evenly distributed in the range.
+     * @param minWidth  Minimum width
+     * @param maxWidth  Maximum width
+     * @param minHeight Minimum height
+     * @param maxHeight Maximum height
+     */
+    public void setCaptionSize(int minWidth, int maxWidth, int minHeight, int maxHeight) {
+        if (minWidth < 2 || minHeight < 2 || minWidth > maxWidth || minHeight > maxHeight) {
+            throw new IllegalArgumentException("Invalid caption size range: " + minWidth + "-" + maxWidth + "x" + minHeight + "-" + maxHeight);
+        }
+        this.minWidth = minWidth;
+        this.maxWidth = maxWidth;
+        this.minHeight = minHeight;
+        this.maxHeight = maxHeight;
+    }
+
+    /** @param colors Number of colors of BD and XML captions (2..256), DVD captions always use 4 */
+    public void setColors(int colors) {
+        if (colors < 2 || colors > 256) {
+            throw new IllegalArgumentException("Number of colors must be 2..256: " + colors);
+        }
+        this.colors = colors;
+    }
+
+    /** @param forcedRatio Share of forced captions (0..1) */
+    public void setForcedRatio(double forcedRatio) {
+        this.forcedRatio = checkRatio(forcedRatio);
+    }
+
+    /** @param noise Share of random pixels in a caption (0..1), 1 forces several object packets for most BD captions */
+    public void setNoise(double noise) {
+        this.noise = checkRatio(noise);
+    }
+
+    /**
+     * @param duration Display duration of a caption in milliseconds
+     * @param gap      Time between the end of a caption and the start of the next in milliseconds
+     */
+    public void setTiming(int duration, int gap) {
+        if (duration < 1 || gap < 0) {
+            throw new IllegalArgumentException("Invalid duration or gap: " + duration + "/" + gap);
+        }
+        this.duration = duration;
+        this.gap = gap;
+        startTimes = null;
+    }
+
+    /** @param overlapRatio Share of captions (0..1) still displayed when the next caption starts */
+    public void setOverlapRatio(double overlapRatio) {
+        this.overlapRatio = checkRatio(overlapRatio);
+        startTimes = null;
+    }
+
+    /** @param zeroDurationRatio Share of captions (0..1) ending at their start time */
+    public void setZeroDurationRatio(double zeroDurationRatio) {
+        this.zeroDurationRatio = checkRatio(zeroDurationRatio);
+        startTimes = null;
+    }
+
+    /** @param sameStartRatio Share of captions (0..1) starting together with the previous caption */
+    public void setSameStartRatio(double sameStartRatio) {
+        this.sameStartRatio = checkRatio(sameStartRatio);
+        startTimes = null;
+    }
+
+    /** @param seed Random seed, streams with the same settings and seed are identical */
+    public void setSeed(long seed) {
+        this.seed = seed;
+        startTimes = null;
+    }
+
+    private static double checkRatio(double ratio) {
+        if (ratio < 0 || ratio > 1) {
+            throw new IllegalArgumentException("Ratio must be 0..1: " + ratio);
+        }
+        return ratio;
+    }
+
+    /**
+     * Write a stream.
+     * @param fname File name, the extension selects the format
+     * @throws CoreException
+     */
+    public void write(String fname) throws CoreException {
+        String extension = FilenameUtils.getExtension(fname);
+        String fn = FilenameUtils.removeExtension(fname);
+        boolean dvdFormat = extension.equalsIgnoreCase("sub") || extension.equalsIgnoreCase("idx") || extension.equalsIgnoreCase("ifo");
+        if (dvdFormat && resolution == null) {
+            resolution = Resolution.PAL;
+        } else if (dvdFormat && !isDvd()) {
+            throw new CoreException("DVD formats need NTSC or PAL resolution");
+        }
+        File parent = new File(fname).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new CoreException("Can't create directory " + parent);
+        }
+        try {
+            if (extension.equalsIgnoreCase("sup")) {
+                writeSupBD(fname);
+            } else if (extension.equalsIgnoreCase("sub") || extension.equalsIgnoreCase("idx")) {
+                writeVobSub(fn);
+            } else if (extension.equalsIgnoreCase("ifo")) {
+                writeSupIfo(fn);
+            } else if (extension.equalsIgnoreCase("xml")) {
+                writeXml(fname);
+            } else {
+                throw new CoreException("Unknown extension of output " + fname);
+            }
+        } catch (IOException ex) {
+            throw new CoreException(ex.getMessage());
+        }
+    }
+
+    private void writeSupBD(String fname) throws IOException {
+        Palette palette = createPalette(colors, seed);
+        SupBDWriter writer = new SupBDWriter();
+        FileOutputStream out = new FileOutputStream(fname);
+        try {
+            FileChannel channel = out.getChannel();
+            for (int i = 0; i < frames; i++) {
+                writer.writeSupFrame(createFramePicture(i), createFrameBitmap(i), palette, channel);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeVobSub(String fn) throws IOException, CoreException {
+        SubDvdWriter writer = new SubDvdWriter();
+        int[] offsets = new int[frames];
+        int[] timestamps = new int[frames];
+        FileOutputStream out = new FileOutputStream(fn + ".sub");
+        try {
+            FileChannel channel = out.getChannel();
+            long offset = 0;
+            for (int i = 0; i < frames; i++) {
+                if (offset > Integer.MAX_VALUE) {
+                    throw new CoreException("VobSub stream exceeds 2GB after " + i + " captions");
+                }
+                SubPictureDVD pic = createDvdPicture(i);
+                offsets[i] = (int) offset;
+                timestamps[i] = (int) pic.getStartTime();
+                offset += writer.writeSubFrame(pic, createFrameBitmap(i), channel);
+            }
+        } finally {
+            out.close();
+        }
+        SubDvdWriter.writeIdx(fn + ".idx", createFramePicture(0), offsets, timestamps, DEFAULT_DVD_PALETTE);
+    }
+
+    private void writeSupIfo(String fn) throws IOException, CoreException {
+        SupDvdWriter writer = new SupDvdWriter();
+        FileOutputStream out = new FileOutputStream(fn + ".sup");
+        try {
+            FileChannel channel = out.getChannel();
+            for (int i = 0; i < frames; i++) {
+                writer.writeSupFrame(createDvdPicture(i), createFrameBitmap(i), channel);
+            }
+        } finally {
+            out.close();
+        }
+        IfoWriter.writeIFO(fn + ".ifo", getResolution().getDimensions()[1], DEFAULT_DVD_PALETTE);
+    }
+
+    /**
+     * Events are streamed with SupXmlWriter, so no caption has to be kept in memory.
+     */
+    private void writeXml(String fname) throws IOException {
+        createTimeline();
+        Palette palette = createPalette(colors, seed);
+        IndexedPngWriter pngWriter = new IndexedPngWriter();
+        String fn = FilenameUtils.removeExtension(fname);
+        SupXmlWriter writer = new SupXmlWriter(new BufferedOutputStream(new FileOutputStream(fname)),
+                FilenameUtils.getName(fn), "eng", getResolution(), configuration.getFpsTrg(),
+                startTimes[0], endTimes[frames - 1], frames);
+        try {
+            for (int i = 0; i < frames; i++) {
+                String pngName = SupXml.getPNGname(fn, i + 1);
+                OutputStream png = new BufferedOutputStream(new FileOutputStream(pngName));
+                try {
+                    pngWriter.write(createFrameBitmap(i), palette, png);
+                } finally {
+                    png.close();
+                }
+                writer.writeEvent(createFramePicture(i), FilenameUtils.getName(pngName));
+            }
+            writer.finish();
+        } finally {
+            writer.close();
+            pngWriter.end();
+        }
+    }
+
+    /**
+     * Create the caption info of a frame as written to the stream.
+     * @param index Caption index
+     * @return Caption info
+     */
+    public SubPicture createFramePicture(int index) {
+        createTimeline();
+        Random random = createFrameRandom(index, 0);
+        int[] dimensions = getResolution().getDimensions();
+        int width = getFrameSize(random, minWidth, maxWidth, dimensions[0]);
+        int height = getFrameSize(random, minHeight, maxHeight, dimensions[1] - BOTTOM_MARGIN);
+        SubPicture pic = new SubPicture();
+        pic.setWidth(dimensions[0]);
+        pic.setHeight(dimensions[1]);
+        pic.setImageWidth(width);
+        pic.setImageHeight(height);
+        pic.setOfsX((dimensions[0] - width) / 2);
+        pic.setOfsY(dimensions[1] - height - BOTTOM_MARGIN);
+        pic.setStartTime(startTimes[index]);
+        pic.setEndTime(endTimes[index]);
+        pic.setForced(random.nextDouble() < forcedRatio);
+        pic.setCompositionNumber(2 * index);
+        return pic;
+    }
+
+    /**
+     * Create the bitmap of a frame as written to the stream.
+     * @param index Caption index
+     * @return Caption bitmap
+     */
+    public Bitmap createFrameBitmap(int index) {
+        SubPicture pic = createFramePicture(index);
+        return createCaption(pic.getImageWidth(), pic.getImageHeight(), isDvd() ? 4 : colors, noise, createFrameRandom(index, 1).nextLong());
+    }
+
+    private SubPictureDVD createDvdPicture(int index) {
+        SubPictureDVD pic = new SubPictureDVD();
+        pic.copyInfo(createFramePicture(index));
+        // pick three of the 15 opaque colors of the DVD palette
+        Random random = createFrameRandom(index, 2);
+        int[] pal = new int[4];
+        for (int i = 1; i < pal.length; i++) {
+            pal[i] = 1 + random.nextInt(15);
+        }
+        pic.setPal(pal);
+        pic.setAlpha(new int[] {0, 0xf, 0xf, 0xf});
+        return pic;
+    }
+
+    /**
+     * @param index Caption index
+     * @param salt  Separates the random sequences used for one caption
+     */
+    private Random createFrameRandom(int index, int salt) {
+        return new Random((seed * 0x5DEECE66DL + index) * 3 + salt);
+    }
+
+    private static int getFrameSize(Random random, int min, int max, int limit) {
+        int size = Math.min(min + random.nextInt(max - min + 1), limit);
+        // DVD RLE data is interlaced
+        return size & ~1;
+    }
+
+    private boolean isDvd() {
+        return getResolution() == Resolution.NTSC || getResolution() == Resolution.PAL;
+    }
+
+    private Resolution getResolution() {
+        return resolution == null ? Resolution.HD_1080 : resolution;
+    }
+
+    /**
+     * Create the time stamps of all captions. Captions are placed one after another, pathologies
+     * only move their own start or end time, so the stream length doesn't depend on them.
+     */
+    private void createTimeline() {
+        if (startTimes != null) {
+            return;
+        }
+        Random random = new Random(seed);
+        long[] start = new long[frames];
+        long[] end = new long[frames];
+        long durationTicks = duration * 90L;
+        long gapTicks = gap * 90L;
+        long time = 90000;
+        for (int i = 0; i < frames; i++) {
+            start[i] = (i > 0 && random.nextDouble() < sameStartRatio) ? start[i - 1] : time;
+            end[i] = start[i] + durationTicks;
+            double pathology = random.nextDouble();
+            if (pathology < zeroDurationRatio) {
+                end[i] = start[i];
+            } else if (pathology < zeroDurationRatio + overlapRatio) {
+                end[i] += gapTicks + durationTicks / 2;
+            }
+            time = start[i] + durationTicks + gapTicks;
+        }
+        if (end[frames - 1] > MAX_TIME || time > MAX_TIME) {
+            throw new IllegalArgumentException("Stream too long, reduce duration or gap");
+        }
+        startTimes = start;
+        endTimes = end;
+    }
+
+    /**
+     * Create a caption bitmap: two text lines of glyph-like runs framed by outline pixels on a transparent background.
+     * @param width     Width in pixels
+     * @param height    Height in pixels
+     * @param numColors Number of palette entries to use, entry 0 is the transparent background
+     * @param noise     Share of pixels (0..1) replaced by random colors
+     * @param seed      Random seed
+     * @return Caption bitmap
+     */
+    public static Bitmap createCaption(int width, int height, int numColors, double noise, long seed) {
+        Bitmap bitmap = new Bitmap(width, height);
+        byte[] buffer = bitmap.getInternalBuffer();
+        Random random = new Random(seed);
+        int lineHeight = height / 2;
+        for (int line = 0; line < 2; line++) {
+            int top = line * lineHeight + lineHeight / 8;
+            int bottom = (line + 1) * lineHeight - lineHeight / 8;
+            int x = width / 10;
+            while (x < width - width / 10) {
+                // one glyph: a few vertical strokes framed by outline pixels
+                int glyphWidth = 8 + random.nextInt(width / 60 + 1);
+                int stroke = 1 + random.nextInt(Math.max(numColors - 1, 1));
+                for (int gx = x; gx < Math.min(x + glyphWidth, width); gx++) {
+                    boolean edge = gx == x || gx == x + glyphWidth - 1;
+                    for (int y = top + random.nextInt(4); y < bottom - random.nextInt(4); y++) {
+                        buffer[y * width + gx] = (byte)(edge ? Math.max(numColors - 1, 1) : stroke);
+                    }
+                }
+                x += glyphWidth + 2 + random.nextInt(6);
+                if (random.nextInt(6) == 0) {
+                    // word gap
+                    x += 12;
+                }
+            }
+        }
+        if (noise > 0) {
+            for (int i = 0; i < buffer.length; i++) {
+                if (random.nextDouble() < noise) {
+                    buffer[i] = (byte) random.nextInt(numColors);
+                }
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Create a palette with a transparent entry 0 and random opaque colors.
+     * @param size Number of entries
+     * @param seed Random seed
+     * @return Palette
+     */
+    public static Palette createPalette(int size, long seed) {
+        Palette palette = new Palette(size);
+        Random random = new Random(seed);
+        palette.setARGB(0, 0);
+        for (int i = 1; i < size; i++) {
+            palette.setARGB(i, random.nextInt() | 0xff000000);
+        }
+        return palette;
+    }
+
+    public static void main(String[] args) {
+        Options options = new Options();
+        options.addOption("n", "frames", true, "Number of captions (default 1000)");
+        options.addOption("r", "resolution", true, "Resolution: ntsc, pal, 720p, 1440x1080, 1080p (default 1080p for BD/XML, pal for DVD)");
+        options.addOption("w", "width", true, "Caption width range min-max (default 600-1440)");
+        options.addOption("h", "height", true, "Caption height range min-max (default 70-140)");
+        options.addOption("c", "colors", true, "Number of colors of BD/XML captions 2..256 (default 16)");
+        options.addOption("f", "forced", true, "Share of forced captions 0..1 (default 0)");
+        options.addOption("x", "noise", true, "Share of random pixels 0..1, creates large/fragmented captions (default 0)");
+        options.addOption("d", "duration", true, "Caption duration in ms (default 2000)");
+        options.addOption("g", "gap", true, "Gap between captions in ms (default 500)");
+        options.addOption("o", "overlap", true, "Share of captions overlapping the next 0..1 (default 0)");
+        options.addOption("z", "zero-duration", true, "Share of captions with zero duration 0..1 (default 0)");
+        options.addOption("t", "same-start", true, "Share of captions starting with the previous 0..1 (default 0)");
+        options.addOption("s", "seed", true, "Random seed (default 1)");
+
+        StreamGenerator generator = new StreamGenerator();
+        String fname;
+        try {
+            CommandLine line = new PosixParser().parse(options, args);
+            if (line.getArgs().length != 1) {
+                throw new ParseException("Exactly one output file expected");
+            }
+            fname = line.getArgs()[0];
+            if (line.hasOption("n")) {
+                generator.setFrames(Integer.parseInt(line.getOptionValue("n")));
+            }
+            if (line.hasOption("r")) {
+                generator.setResolution(parseResolution(line.getOptionValue("r")));
+            }
+            if (line.hasOption("w") || line.hasOption("h")) {
+                int[] width = parseRange(line.getOptionValue("w", generator.minWidth + "-" + generator.maxWidth));
+                int[] height = parseRange(line.getOptionValue("h", generator.minHeight + "-" + generator.maxHeight));
+                generator.setCaptionSize(width[0], width[1], height[0], height[1]);
+            }
+            if (line.hasOption("c")) {
+                generator.setColors(Integer.parseInt(line.getOptionValue("c")));
+            }
+            if (line.hasOption("f")) {
+                generator.setForcedRatio(Double.parseDouble(line.getOptionValue("f")));
+            }
+            if (line.hasOption("x")) {
+                generator.setNoise(Double.parseDouble(line.getOptionValue("x")));
+            }
+            if (line.hasOption("d") || line.hasOption("g")) {
+                generator.setTiming(Integer.parseInt(line.getOptionValue("d", String.valueOf(generator.duration))),
+                        Integer.parseInt(line.getOptionValue("g", String.valueOf(generator.gap))));
+            }
+            if (line.hasOption("o")) {
+                generator.setOverlapRatio(Double.parseDouble(line.getOptionValue("o")));
+            }
+            if (line.hasOption("z")) {
+                generator.setZeroDurationRatio(Double.parseDouble(line.getOptionValue("z")));
+            }
+            if (line.hasOption("t")) {
+                generator.setSameStartRatio(Double.parseDouble(line.getOptionValue("t")));
+            }
+            if (line.hasOption("s")) {
+                generator.setSeed(Long.parseLong(line.getOptionValue("s")));
+            }
+        } catch (ParseException ex) {
+            System.err.println(ex.getMessage());
+            new HelpFormatter().printHelp("StreamGenerator [options] <output file (sup, sub/idx, ifo, xml)>", options);
+            System.exit(1);
+            return;
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        try {
+            generator.write(fname);
+        } catch (CoreException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException ex) {
+            System.err.println(ex.getMessage());
+            System.exit(1);
+        }
+        System.out.println("Wrote " + generator.frames + " captions to " + fname + " in " + (System.currentTimeMillis() - start) + "ms");
+    }
+
+    private static Resolution parseResolution(String value) throws ParseException {
+        if (value.equalsIgnoreCase("ntsc") || value.equals("480")) {
+            return Resolution.NTSC;
+        } else if (value.equalsIgnoreCase("pal") || value.equals("576")) {
+            return Resolution.PAL;
+        } else if (value.equalsIgnoreCase("720p") || value.equals("720")) {
+            return Resolution.HD_720;
+        } else if (value.equalsIgnoreCase("1440x1080")) {
+            return Resolution.HD_1440x1080;
+        } else if (value.equalsIgnoreCase("1080p") || value.equals("1080")) {
+            return Resolution.HD_1080;
+        }
+        throw new ParseException("Unknown resolution: " + value);
+    }
+
+    private static int[] parseRange(String value) throws ParseException {
+        String[] values = value.split("-");
+        try {
+            if (values.length == 1) {
+                int size = Integer.parseInt(values[0].trim());
+                return new int[] {size, size};
+            } else if (values.length == 2) {
+                return new int[] {Integer.parseInt(values[0].trim()), Integer.parseInt(values[1].trim())};
+            }
+        } catch (NumberFormatException ex) {
+        }
+        throw new ParseException("Invalid range: " + value);
+    }
+}
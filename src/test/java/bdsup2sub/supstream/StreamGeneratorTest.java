@@ -0,0 +1,205 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream;
+
+import bdsup2sub.core.CoreException;
+import bdsup2sub.core.Resolution;
+import bdsup2sub.supstream.bd.SupBD;
+import bdsup2sub.supstream.bdnxml.SupXml;
+import bdsup2sub.supstream.dvd.SubDvd;
+import bdsup2sub.supstream.dvd.SupDvd;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StreamGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private StreamGenerator subject;
+
+    @Before
+    public void setUp() {
+        subject = new StreamGenerator();
+        subject.setFrames(20);
+        subject.setForcedRatio(0.5);
+    }
+
+    @Test
+    public void shouldWriteBdSup() throws Exception {
+        String fname = getPath("test.sup");
+        subject.write(fname);
+
+        SupBD sup = new SupBD(fname);
+        assertStream(sup);
+        sup.decode(3);
+        assertArrayEquals(subject.createFrameBitmap(3).getInternalBuffer(), sup.getBitmap().getInternalBuffer());
+        sup.close();
+    }
+
+    @Test
+    public void shouldSplitNoisyCaptionsIntoObjectPackets() throws Exception {
+        subject.setFrames(3);
+        subject.setNoise(1);
+        subject.setCaptionSize(1400, 1400, 140, 140);
+        String fname = getPath("noise.sup");
+        subject.write(fname);
+
+        assertTrue(new File(fname).length() > 3 * 0x10000);
+        SupBD sup = new SupBD(fname);
+        assertEquals(3, sup.getFrameCount());
+        sup.decode(1);
+        assertArrayEquals(subject.createFrameBitmap(1).getInternalBuffer(), sup.getBitmap().getInternalBuffer());
+        sup.close();
+    }
+
+    @Test
+    public void shouldWriteVobSub() throws Exception {
+        subject.write(getPath("test.sub"));
+
+        SubDvd sub = new SubDvd(getPath("test.sub"), getPath("test.idx"));
+        assertStream(sub);
+        assertEquals(720, sub.getSubPicture(0).getWidth());
+        assertEquals(576, sub.getSubPicture(0).getHeight());
+        sub.close();
+    }
+
+    @Test
+    public void shouldWriteSupIfo() throws Exception {
+        subject.setResolution(Resolution.NTSC);
+        subject.write(getPath("test.ifo"));
+
+        SupDvd sup = new SupDvd(getPath("test.sup"), getPath("test.ifo"));
+        assertStream(sup);
+        assertEquals(480, sup.getSubPicture(0).getHeight());
+        sup.close();
+    }
+
+    @Test
+    public void shouldWriteXml() throws Exception {
+        subject.setOverlapRatio(1);
+        String fname = getPath("test.xml");
+        subject.write(fname);
+
+        SupXml xml = new SupXml(fname);
+        assertEquals(20, xml.getFrameCount());
+        assertEquals(countForced(), xml.getForcedFrameCount());
+        for (int i = 0; i < 19; i++) {
+            assertTrue(xml.getSubPicture(i).getEndTime() > xml.getSubPicture(i + 1).getStartTime());
+        }
+        assertTrue(new File(getPath("test_0020.png")).exists());
+        xml.close();
+    }
+
+    @Test(expected = CoreException.class)
+    public void shouldRejectHdResolutionForDvdFormats() throws Exception {
+        subject.setResolution(Resolution.HD_1080);
+        subject.write(getPath("test.sub"));
+    }
+
+    @Test
+    public void shouldWriteSameStreamForSameSeed() throws Exception {
+        subject.setNoise(0.1);
+        subject.write(getPath("a.sup"));
+        subject.write(getPath("b.sup"));
+        subject.setSeed(2);
+        subject.write(getPath("c.sup"));
+
+        assertArrayEquals(readFile(getPath("a.sup")), readFile(getPath("b.sup")));
+        assertFalse(Arrays.equals(readFile(getPath("a.sup")), readFile(getPath("c.sup"))));
+    }
+
+    @Test
+    public void shouldCreateTimingPathologies() {
+        subject.setFrames(200);
+        subject.setZeroDurationRatio(0.2);
+        subject.setSameStartRatio(0.2);
+        int zeroDuration = 0;
+        int sameStart = 0;
+        long lastStart = -1;
+        for (int i = 0; i < 200; i++) {
+            SubPicture pic = subject.createFramePicture(i);
+            assertTrue(pic.getStartTime() >= lastStart);
+            if (pic.getStartTime() == pic.getEndTime()) {
+                zeroDuration++;
+            }
+            if (pic.getStartTime() == lastStart) {
+                sameStart++;
+            }
+            lastStart = pic.getStartTime();
+        }
+        assertTrue(zeroDuration > 20 && zeroDuration < 60);
+        assertTrue(sameStart > 20 && sameStart < 60);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectTimeStampsOutOfRange() {
+        subject.setFrames(100000);
+        subject.createFramePicture(0);
+    }
+
+    private void assertStream(SubtitleStream stream) {
+        assertEquals(20, stream.getFrameCount());
+        assertEquals(countForced(), stream.getForcedFrameCount());
+        for (int i = 0; i < 20; i++) {
+            SubPicture expected = subject.createFramePicture(i);
+            SubPicture actual = stream.getSubPicture(i);
+            assertEquals(expected.getStartTime(), actual.getStartTime());
+            assertEquals(expected.isForced(), actual.isForced());
+            assertEquals(expected.getImageWidth(), actual.getImageWidth());
+            assertEquals(expected.getImageHeight(), actual.getImageHeight());
+        }
+    }
+
+    private int countForced() {
+        int forced = 0;
+        for (int i = 0; i < 20; i++) {
+            if (subject.createFramePicture(i).isForced()) {
+                forced++;
+            }
+        }
+        return forced;
+    }
+
+    private String getPath(String name) {
+        return new File(folder.getRoot(), name).getPath();
+    }
+
+    private static byte[] readFile(String fname) throws IOException {
+        File file = new File(fname);
+        byte[] data = new byte[(int) file.length()];
+        InputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            while (pos < data.length) {
+                pos += in.read(data, pos, data.length - pos);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+}
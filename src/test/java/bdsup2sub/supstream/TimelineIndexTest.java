@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimelineIndexTest {
+
+    private TimelineIndex subject;
+
+    @Before
+    public void setUp() {
+        // caption 3 starts before caption 2 and caption 1 lasts until the end of caption 3
+        long[] startTimes = {0, 100, 300, 250, 500};
+        long[] endTimes   = {90, 400, 350, 300, 600};
+        subject = new TimelineIndex(startTimes, endTimes);
+    }
+
+    @Test
+    public void shouldFindAllCaptionsForOpenRange() {
+        assertArrayEquals(new int[] {0, 1, 2, 3, 4}, subject.getOverlapping(0, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void shouldFindCaptionsOverlappingRange() {
+        assertArrayEquals(new int[] {1, 2, 3}, subject.getOverlapping(260, 320));
+    }
+
+    @Test
+    public void shouldFindLongCaptionStartedBeforeRange() {
+        assertArrayEquals(new int[] {1}, subject.getOverlapping(360, 500));
+    }
+
+    @Test
+    public void shouldExcludeCaptionsTouchingRange() {
+        assertArrayEquals(new int[] {1, 3}, subject.getOverlapping(90, 300));
+    }
+
+    @Test
+    public void shouldFindNoCaptionsInGap() {
+        assertArrayEquals(new int[0], subject.getOverlapping(400, 500));
+        assertArrayEquals(new int[0], subject.getOverlapping(700, 800));
+    }
+
+    @Test
+    public void shouldHandleEmptyStream() {
+        subject = new TimelineIndex(new long[0], new long[0]);
+        assertEquals(0, subject.size());
+        assertArrayEquals(new int[0], subject.getOverlapping(0, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.bd;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import bdsup2sub.supstream.SubPicture;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SupBDWriterTest {
+
+    private SupBDWriter subject;
+
+    @Before
+    public void setUp() {
+        subject = new SupBDWriter();
+    }
+
+    @Test
+    public void shouldWriteCaption() throws Exception {
+        assertFrame("9ad678d3f81286dddb12b643b33f14dc", 8543, 300, 40, 8, 0);
+    }
+
+    @Test
+    public void shouldSplitLargeCaptionIntoObjectPackets() throws Exception {
+        assertFrame("9248ac1f3170d8277d8b1c24185433c0", 578537, 1920, 300, 2, 0);
+    }
+
+    @Test
+    public void shouldQuantizeCaptionWithoutTransparentLastColor() throws Exception {
+        assertFrame("fff62a225017ea628e89185a14c78844", 8539, 300, 40, 8, 255);
+        assertFrame("90140fa71bd731eb7e1f90eb3a690488", 578564, 1920, 300, 2, 255);
+    }
+
+    @Test
+    public void shouldWriteSameBytesToChannel() throws IOException {
+        SubPicture pic = createPicture(1920, 300, false);
+        Bitmap bitmap = createBitmap(1920, 300, 2);
+        Palette palette = createPalette(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int size = subject.writeSupFrame(pic, bitmap, palette, Channels.newChannel(out));
+
+        assertEquals(size, out.size());
+        assertArrayEquals(writeToBuffer(pic, bitmap, palette), out.toByteArray());
+    }
+
+    private void assertFrame(String expectedDigest, int expectedSize, int width, int height, int maxRun, int lastAlpha) throws Exception {
+        byte[] frame = writeToBuffer(createPicture(width, height, lastAlpha == 0), createBitmap(width, height, maxRun), createPalette(lastAlpha));
+        assertEquals(expectedSize, frame.length);
+        StringBuilder digest = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("MD5").digest(frame)) {
+            digest.append(String.format("%02x", b));
+        }
+        assertEquals(expectedDigest, digest.toString());
+    }
+
+    private byte[] writeToBuffer(SubPicture pic, Bitmap bitmap, Palette palette) {
+        ByteBuffer buf = ByteBuffer.allocate(0x100000);
+        int size = subject.writeSupFrame(pic, bitmap, palette, buf);
+        assertEquals(size, buf.position());
+        byte[] frame = new byte[size];
+        System.arraycopy(buf.array(), 0, frame, 0, size);
+        return frame;
+    }
+
+    private static SubPicture createPicture(int width, int height, boolean forced) {
+        SubPicture pic = new SubPicture();
+        pic.setWidth(1920);
+        pic.setHeight(1080);
+        pic.setImageWidth(width);
+        pic.setImageHeight(height);
+        pic.setOfsX(100);
+        pic.setOfsY(700);
+        pic.setStartTime(900000);
+        pic.setEndTime(1080000);
+        pic.setCompositionNumber(4);
+        pic.setForced(forced);
+        return pic;
+    }
+
+    private static Palette createPalette(int lastAlpha) {
+        Palette palette = new Palette(256);
+        Random random = new Random(3);
+        for (int i = 0; i < palette.getSize(); i++) {
+            palette.setARGB(i, random.nextInt() | 0x80000000);
+        }
+        palette.setAlpha(255, lastAlpha);
+        return palette;
+    }
+
+    private static Bitmap createBitmap(int width, int height, int maxRun) {
+        Bitmap bitmap = new Bitmap(width, height);
+        Random random = new Random(2);
+        byte[] buffer = bitmap.getInternalBuffer();
+        int i = 0;
+        while (i < buffer.length) {
+            int len = 1 + random.nextInt(maxRun);
+            byte color = (byte)random.nextInt(256);
+            for (int k = 0; k < len && i < buffer.length; k++) {
+                buffer[i++] = color;
+            }
+        }
+        return bitmap;
+    }
+}
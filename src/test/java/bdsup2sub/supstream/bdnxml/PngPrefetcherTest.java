@@ -0,0 +1,152 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.bdnxml;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.BitmapWithPalette;
+import bdsup2sub.bitmap.Palette;
+import bdsup2sub.tools.IndexedPngReader;
+import bdsup2sub.tools.IndexedPngWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PngPrefetcherTest {
+
+    private static final int NUM_CAPTIONS = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<SubPictureXml> subPictures;
+    private PngPrefetcher subject;
+
+    @Before
+    public void setUp() throws IOException {
+        subPictures = new ArrayList<SubPictureXml>();
+        subject = new PngPrefetcher(subPictures, 3);
+        IndexedPngWriter writer = new IndexedPngWriter();
+        for (int i = 0; i < NUM_CAPTIONS; i++) {
+            Bitmap bitmap = new Bitmap(100 + i, 20, (byte)0);
+            bitmap.fillRectangularWithColorIndex(10, 5, 50, 10, (byte)(i + 1));
+            Palette palette = new Palette(256);
+            palette.setARGB(i + 1, 0xff102030 + i);
+            File file = new File(folder.getRoot(), "test_" + i + ".png");
+            OutputStream out = new FileOutputStream(file);
+            try {
+                writer.write(bitmap, palette, out);
+            } finally {
+                out.close();
+            }
+            SubPictureXml pic = new SubPictureXml();
+            pic.setFileName(file.getPath());
+            subPictures.add(pic);
+        }
+        writer.end();
+    }
+
+    @After
+    public void tearDown() {
+        subject.shutdown();
+    }
+
+    @Test
+    public void shouldPrefetchFollowingCaptionsWhenAccessIsSequential() throws IOException {
+        assertNull(subject.get(0));
+        for (int i = 1; i < NUM_CAPTIONS; i++) {
+            assertSameImage(i, subject.get(i));
+        }
+    }
+
+    @Test
+    public void shouldContinueWhenSkippingWithinPrefetchedCaptions() throws IOException {
+        subject.get(0);
+        subject.get(1);
+        assertSameImage(3, subject.get(3));
+        assertSameImage(6, subject.get(6));
+    }
+
+    @Test
+    public void shouldNotPrefetchBeforeSequentialAccess() {
+        assertNull(subject.get(5));
+        assertNull(subject.get(7));
+    }
+
+    @Test
+    public void shouldDropPrefetchedCaptionsWhenJumping() {
+        subject.get(0);
+        subject.get(1);
+        assertNull(subject.get(8));
+        assertNull(subject.get(2));
+    }
+
+    @Test
+    public void shouldKeepPrefetchedCaptionsWhenRequestingSameCaptionAgain() throws IOException {
+        subject.get(0);
+        subject.get(0);
+        assertSameImage(1, subject.get(1));
+    }
+
+    @Test
+    public void shouldHandOutImageOnlyOnce() {
+        subject.get(0);
+        subject.get(1);
+        assertNotNull(subject.get(2));
+        assertNull(subject.get(2));
+    }
+
+    @Test
+    public void shouldReturnNullForUnreadableCaption() {
+        assertTrue(new File(subPictures.get(2).getFileName()).delete());
+        subject.get(0);
+        subject.get(1);
+        assertNull(subject.get(2));
+        assertNotNull(subject.get(3));
+    }
+
+    @Test
+    public void shouldReturnNullAfterShutdown() {
+        subject.get(0);
+        subject.get(1);
+        subject.shutdown();
+        assertNull(subject.get(2));
+    }
+
+    private void assertSameImage(int index, BitmapWithPalette image) throws IOException {
+        assertNotNull(image);
+        IndexedPngReader reader = new IndexedPngReader();
+        try {
+            BitmapWithPalette expected = SupXml.readImage(new File(subPictures.get(index).getFileName()), reader);
+            assertArrayEquals(expected.bitmap.getInternalBuffer(), image.bitmap.getInternalBuffer());
+            for (int i = 0; i < expected.palette.getSize(); i++) {
+                assertEquals(expected.palette.getARGB(i), image.palette.getARGB(i));
+            }
+        } finally {
+            reader.end();
+        }
+    }
+}
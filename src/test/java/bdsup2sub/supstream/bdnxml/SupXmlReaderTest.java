@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.bdnxml;
+
+import bdsup2sub.core.Resolution;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class SupXmlReaderTest {
+
+    private static final int NUM_EVENTS = 5;
+
+    private SupXmlReader subject;
+
+    @Before
+    public void setUp() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SupXmlWriter writer = new SupXmlWriter(out, "Test & title", "deu", Resolution.PAL, 25,
+                90000, 90000 * (NUM_EVENTS + 1), NUM_EVENTS);
+        for (int i = 0; i < NUM_EVENTS; i++) {
+            SubPictureXml pic = new SubPictureXml();
+            pic.setStartTime(90000 * (i + 1));
+            pic.setEndTime(90000 * (i + 1) + 36000);
+            pic.setForced(i == 2);
+            pic.setImageWidth(100 + i);
+            pic.setImageHeight(20);
+            pic.setOfsX(10);
+            pic.setOfsY(500 + i);
+            writer.writeEvent(pic, SupXml.getPNGname("test.xml", i + 1));
+        }
+        writer.finish();
+        subject = new SupXmlReader(new ByteArrayInputStream(out.toByteArray()), "/path/");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        subject.close();
+    }
+
+    @Test
+    public void shouldReadDescription() {
+        assertEquals("Test & title", subject.getTitle());
+        assertEquals("deu", subject.getLanguage());
+        assertEquals(Resolution.PAL, subject.getResolution());
+        assertEquals(25, subject.getFps(), 0.0);
+        assertEquals(NUM_EVENTS, subject.getNumberOfEvents());
+    }
+
+    @Test
+    public void shouldReadAllEvents() throws IOException {
+        for (int i = 0; i < NUM_EVENTS; i++) {
+            SubPictureXml pic = subject.readEvent();
+            assertNotNull(pic);
+            assertEquals(90000 * (i + 1), pic.getStartTime());
+            assertEquals(90000 * (i + 1) + 36000, pic.getEndTime());
+            assertEquals(i == 2, pic.isForced());
+            assertEquals(100 + i, pic.getImageWidth());
+            assertEquals(20, pic.getImageHeight());
+            assertEquals(10, pic.getXOffset());
+            assertEquals(500 + i, pic.getYOffset());
+            assertEquals(720, pic.getWidth());
+            assertEquals(576, pic.getHeight());
+            assertEquals("/path/" + SupXml.getPNGname("test.xml", i + 1), pic.getFileName());
+        }
+        assertNull(subject.readEvent());
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailOnMalformedXml() throws IOException {
+        SupXmlReader reader = new SupXmlReader(new ByteArrayInputStream("<BDN><Events><Event".getBytes("UTF-8")), "");
+        reader.readEvent();
+    }
+}
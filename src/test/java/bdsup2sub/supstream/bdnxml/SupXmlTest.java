@@ -0,0 +1,210 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.bdnxml;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.BitmapWithPalette;
+import bdsup2sub.bitmap.Palette;
+import bdsup2sub.tools.IndexedPngReader;
+import bdsup2sub.tools.IndexedPngWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+import static org.junit.Assert.*;
+
+public class SupXmlTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private IndexedPngReader reader;
+    /** Reports every image as unsupported, so readImage falls back to ImageIO */
+    private IndexedPngReader imageIOReader;
+
+    @Before
+    public void setUp() {
+        reader = new IndexedPngReader();
+        imageIOReader = new IndexedPngReader() {
+            @Override
+            public boolean read(InputStream in) {
+                return false;
+            }
+        };
+    }
+
+    @After
+    public void tearDown() {
+        reader.end();
+        imageIOReader.end();
+    }
+
+    @Test
+    public void shouldKeepPaletteOfIndexedPngWriterImages() throws IOException {
+        // less than 8 bits per pixel up to 16 colors, short PLTE chunk beyond
+        int[] numColors = { 2, 3, 11, 16, 17, 200 };
+        for (int i = 0; i < numColors.length; i++) {
+            BitmapWithPalette image = createIndexed(numColors[i], numColors[i] - 1);
+            File f = writeIndexed(image, numColors[i]);
+
+            assertSameImage(image, SupXml.readImage(f, reader));
+        }
+    }
+
+    @Test
+    public void shouldKeepPaletteOfEightBitImagesWithShortPalette() throws IOException {
+        int[] numColors = { 3, 10, 16 };
+        for (int i = 0; i < numColors.length; i++) {
+            File f = writeEightBitIndexed(numColors[i]);
+
+            BitmapWithPalette image = SupXml.readImage(f, reader);
+            InputStream in = new FileInputStream(f);
+            try {
+                reader.read(in);
+            } finally {
+                in.close();
+            }
+            assertArrayEquals(reader.getBitmap().getInternalBuffer(), image.bitmap.getInternalBuffer());
+            for (int j = 0; j < 256; j++) {
+                assertEquals("palette entry " + j, reader.getPalette().getARGB(j), image.palette.getARGB(j));
+            }
+        }
+    }
+
+    @Test
+    public void shouldDecodeEightBitImageWithTransparentLastEntryLikeImageIO() throws IOException {
+        File f = writeIndexed(createIndexed(256, 255), 256);
+
+        assertSameImage(SupXml.readImage(f, imageIOReader), SupXml.readImage(f, reader));
+    }
+
+    @Test
+    public void shouldQuantizeEightBitImageWithOpaqueLastEntryLikeImageIO() throws IOException {
+        File f = writeIndexed(createIndexed(256, -1), 256);
+
+        assertSameImage(SupXml.readImage(f, imageIOReader), SupXml.readImage(f, reader));
+    }
+
+    /**
+     * Every third color and the one at lastTransparentIndex are invisible, but with different RGB values.
+     * Index 255 is opaque if it is used and lastTransparentIndex is -1.
+     */
+    private static BitmapWithPalette createIndexed(int numColors, int lastTransparentIndex) {
+        Random random = new Random(7);
+        Bitmap bitmap = new Bitmap(64, 16);
+        byte[] buffer = bitmap.getInternalBuffer();
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte)random.nextInt(numColors);
+        }
+        buffer[buffer.length - 1] = (byte)(numColors - 1);
+        Palette palette = new Palette(256);
+        for (int i = 0; i < numColors; i++) {
+            boolean transparent = lastTransparentIndex < 0 ? i % 3 == 0 && i != 255 : i % 3 == 0 || i == lastTransparentIndex;
+            palette.setARGB(i, (transparent ? 0 : 0xff000000) | random.nextInt(0x1000000));
+        }
+        return new BitmapWithPalette(bitmap, palette);
+    }
+
+    private File writeIndexed(BitmapWithPalette image, int numColors) throws IOException {
+        File file = folder.newFile("test_" + numColors + ".png");
+        IndexedPngWriter writer = new IndexedPngWriter();
+        OutputStream out = new FileOutputStream(file);
+        try {
+            writer.write(image.bitmap, image.palette, out);
+        } finally {
+            out.close();
+            writer.end();
+        }
+        return file;
+    }
+
+    /**
+     * IndexedPngWriter uses less than 8 bits per pixel for up to 16 colors, so the PNG is written by hand here
+     * with a PLTE and tRNS chunk of only numColors entries.
+     */
+    private File writeEightBitIndexed(int numColors) throws IOException {
+        Random random = new Random(7);
+        int width = 64;
+        int height = 16;
+        byte[] scanlines = new byte[(width + 1) * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                scanlines[y * (width + 1) + 1 + x] = (byte)random.nextInt(numColors);
+            }
+        }
+        byte[] plte = new byte[3 * numColors];
+        random.nextBytes(plte);
+        byte[] trns = new byte[numColors];
+        for (int i = 0; i < numColors; i++) {
+            trns[i] = (byte)(i % 3 == 0 ? 0 : 0xff);
+        }
+        ByteArrayOutputStream idat = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(idat);
+        deflater.write(scanlines);
+        deflater.close();
+
+        File file = folder.newFile("test_8bit_" + numColors + ".png");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(file));
+        try {
+            out.write(new byte[] { -119, 80, 78, 71, 13, 10, 26, 10 });
+            ByteArrayOutputStream ihdr = new ByteArrayOutputStream();
+            DataOutputStream ihdrOut = new DataOutputStream(ihdr);
+            ihdrOut.writeInt(width);
+            ihdrOut.writeInt(height);
+            ihdrOut.write(new byte[] { 8, 3, 0, 0, 0 });
+            writeChunk(out, "IHDR", ihdr.toByteArray());
+            writeChunk(out, "PLTE", plte);
+            writeChunk(out, "tRNS", trns);
+            writeChunk(out, "IDAT", idat.toByteArray());
+            writeChunk(out, "IEND", new byte[0]);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] data) throws IOException {
+        byte[] typeBytes = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+        out.writeInt(data.length);
+        out.write(typeBytes);
+        out.write(data);
+        out.writeInt((int)crc.getValue());
+    }
+
+    private static void assertSameImage(BitmapWithPalette expected, BitmapWithPalette actual) {
+        assertArrayEquals(expected.bitmap.getInternalBuffer(), actual.bitmap.getInternalBuffer());
+        for (int i = 0; i < 256; i++) {
+            assertEquals("palette entry " + i, expected.palette.getARGB(i), actual.palette.getARGB(i));
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.dvd;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class NibbleBufferTest {
+
+    private NibbleBuffer subject;
+
+    @Before
+    public void setUp() {
+        subject = new NibbleBuffer(1);
+    }
+
+    @Test
+    public void shouldPackHighNibbleFirst() {
+        subject.add(0x1);
+        subject.add(0x2);
+        subject.add(0xf);
+
+        assertEquals(1, subject.size());
+        subject.alignToByte();
+        assertArrayEquals(new byte[] {0x12, (byte)0xf0}, subject.toByteArray());
+    }
+
+    @Test
+    public void shouldUseLowerFourBitsOnly() {
+        subject.add(0x37);
+        subject.add(-1);
+
+        assertArrayEquals(new byte[] {0x7f}, subject.toByteArray());
+    }
+
+    @Test
+    public void shouldNotAlignIfAlreadyAligned() {
+        subject.add(0x1);
+        subject.add(0x2);
+        subject.alignToByte();
+
+        assertEquals(1, subject.size());
+    }
+
+    @Test
+    public void shouldGrowBeyondInitialCapacity() {
+        for (int i = 0; i < 1000; i++) {
+            subject.add(i);
+        }
+
+        byte[] bytes = subject.toByteArray();
+        assertEquals(500, bytes.length);
+        for (int i = 0; i < bytes.length; i++) {
+            assertEquals((((2 * i) & 0xf) << 4) | ((2 * i + 1) & 0xf), bytes[i] & 0xff);
+        }
+    }
+
+    @Test
+    public void shouldBeEmptyAfterClear() {
+        subject.add(0x1);
+        subject.add(0x2);
+        subject.clear();
+        subject.add(0x3);
+        subject.add(0x4);
+
+        assertArrayEquals(new byte[] {0x34}, subject.toByteArray());
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.dvd;
+
+import bdsup2sub.bitmap.Bitmap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SubDvdWriterTest {
+
+    private SubDvdWriter subject;
+
+    @Before
+    public void setUp() {
+        subject = new SubDvdWriter();
+    }
+
+    @Test
+    public void shouldWriteSinglePacketCaption() throws Exception {
+        assertFrame("24ebfeb707a31382a4b93919540fdedd", 2048, 100, 10, 8, false);
+        assertFrame("1a40e3682927b44a63b76e8bcf7b4148", 2048, 100, 10, 8, true);
+    }
+
+    @Test
+    public void shouldSplitLargeCaptionIntoPackets() throws Exception {
+        assertFrame("e70f7ce895a64639f70023e99cd1dbd2", 26624, 720, 200, 6, false);
+        assertFrame("152c1e0a5e270aa1fe9348aa7c693f30", 26624, 720, 200, 6, true);
+        assertFrame("9158d30321db12a00f37ccb222565272", 49152, 720, 300, 3, false);
+        assertFrame("6df9a87ee5044a0b1f05a2eb7147812f", 49152, 720, 300, 3, true);
+    }
+
+    @Test
+    public void shouldWriteCaptionsOfAllSizesLikeBefore() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        for (int height = 2; height <= 120; height++) {
+            for (boolean forced : new boolean[] {false, true}) {
+                digest.update(writeToBuffer(createPicture(180, height, forced), createBitmap(180, height, 5, height)));
+            }
+        }
+        assertEquals("54ee3306cd469c3ecaf84152ea8a84aa", toHex(digest.digest()));
+    }
+
+    @Test
+    public void shouldWriteSameBytesToChannel() throws IOException {
+        SubPictureDVD pic = createPicture(720, 200, false);
+        Bitmap bitmap = createBitmap(720, 200, 6, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int size = subject.writeSubFrame(pic, bitmap, Channels.newChannel(out));
+
+        assertEquals(size, out.size());
+        assertArrayEquals(writeToBuffer(pic, bitmap), out.toByteArray());
+    }
+
+    @Test
+    public void shouldNotWriteIntoTooSmallBuffer() {
+        ByteBuffer buf = ByteBuffer.allocate(0x800);
+        try {
+            subject.writeSubFrame(createPicture(720, 200, false), createBitmap(720, 200, 6, 1), buf);
+            fail();
+        } catch (BufferOverflowException ex) {
+            assertEquals(0, buf.position());
+        }
+    }
+
+    private void assertFrame(String expectedDigest, int expectedSize, int width, int height, int maxRun, boolean forced) throws NoSuchAlgorithmException {
+        byte[] frame = writeToBuffer(createPicture(width, height, forced), createBitmap(width, height, maxRun, 1));
+        assertEquals(expectedSize, frame.length);
+        assertEquals(expectedDigest, toHex(MessageDigest.getInstance("MD5").digest(frame)));
+    }
+
+    private byte[] writeToBuffer(SubPictureDVD pic, Bitmap bitmap) {
+        // dirty buffer: all bytes of the frame must be written
+        ByteBuffer buf = ByteBuffer.allocate(0x20000);
+        while (buf.hasRemaining()) {
+            buf.put((byte)0x5a);
+        }
+        buf.position(3);
+        int size = subject.writeSubFrame(pic, bitmap, buf);
+        assertEquals(3 + size, buf.position());
+        byte[] frame = new byte[size];
+        System.arraycopy(buf.array(), 3, frame, 0, size);
+        return frame;
+    }
+
+    static SubPictureDVD createPicture(int width, int height, boolean forced) {
+        SubPictureDVD pic = new SubPictureDVD();
+        pic.setWidth(720);
+        pic.setHeight(576);
+        pic.setImageWidth(width);
+        pic.setImageHeight(height);
+        pic.setOfsX(10);
+        pic.setOfsY(400);
+        pic.setStartTime(900000);
+        pic.setEndTime(1080000);
+        pic.setForced(forced);
+        pic.setPal(new int[] {0, 1, 2, 3});
+        pic.setAlpha(new int[] {0, 15, 15, 15});
+        return pic;
+    }
+
+    static Bitmap createBitmap(int width, int height, int maxRun, long seed) {
+        Bitmap bitmap = new Bitmap(width, height);
+        Random random = new Random(seed);
+        byte[] buffer = bitmap.getInternalBuffer();
+        int i = 0;
+        while (i < buffer.length) {
+            int len = 1 + random.nextInt(maxRun);
+            byte color = (byte)random.nextInt(4);
+            for (int k = 0; k < len && i < buffer.length; k++) {
+                buffer[i++] = color;
+            }
+        }
+        return bitmap;
+    }
+
+    static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.supstream.dvd;
+
+import bdsup2sub.bitmap.Bitmap;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static bdsup2sub.supstream.dvd.SubDvdWriterTest.createBitmap;
+import static bdsup2sub.supstream.dvd.SubDvdWriterTest.createPicture;
+import static bdsup2sub.supstream.dvd.SubDvdWriterTest.toHex;
+import static org.junit.Assert.*;
+
+public class SupDvdWriterTest {
+
+    private SupDvdWriter subject;
+
+    @Before
+    public void setUp() {
+        subject = new SupDvdWriter();
+    }
+
+    @Test
+    public void shouldWriteCaption() throws Exception {
+        assertFrame("933754bdb4c08a215ef5096d73ddf85f", 203, 100, 10, 8, false);
+        assertFrame("b38555380b72b3d4cd7a1f5dadc42873", 204, 100, 10, 8, true);
+        assertFrame("3725068bd5fd2b3b5589ec0757ba185e", 25091, 720, 200, 6, false);
+        assertFrame("c59ac7db78163f46cd2ef2a6a2d5dda2", 25092, 720, 200, 6, true);
+    }
+
+    @Test
+    public void shouldWriteCaptionsOfAllSizesLikeBefore() throws Exception {
+        MessageDigest digest = MessageDigest.getInstance("MD5");
+        for (int height = 2; height <= 120; height++) {
+            for (boolean forced : new boolean[] {false, true}) {
+                digest.update(writeToBuffer(createPicture(180, height, forced), createBitmap(180, height, 5, height)));
+            }
+        }
+        assertEquals("d75bcf9bf750cfd82c592bcdc1cf3bd3", toHex(digest.digest()));
+    }
+
+    @Test
+    public void shouldWriteSameBytesToChannel() throws IOException {
+        SubPictureDVD pic = createPicture(720, 300, true);
+        Bitmap bitmap = createBitmap(720, 300, 3, 1);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        int size = subject.writeSupFrame(pic, bitmap, Channels.newChannel(out));
+
+        assertEquals(size, out.size());
+        assertArrayEquals(writeToBuffer(pic, bitmap), out.toByteArray());
+    }
+
+    private void assertFrame(String expectedDigest, int expectedSize, int width, int height, int maxRun, boolean forced) throws NoSuchAlgorithmException {
+        byte[] frame = writeToBuffer(createPicture(width, height, forced), createBitmap(width, height, maxRun, 1));
+        assertEquals(expectedSize, frame.length);
+        assertEquals(expectedDigest, toHex(MessageDigest.getInstance("MD5").digest(frame)));
+    }
+
+    private byte[] writeToBuffer(SubPictureDVD pic, Bitmap bitmap) {
+        // dirty buffer: all bytes of the frame must be written
+        ByteBuffer buf = ByteBuffer.allocate(0x10000);
+        while (buf.hasRemaining()) {
+            buf.put((byte)0x5a);
+        }
+        buf.clear();
+        int size = subject.writeSupFrame(pic, bitmap, buf);
+        assertEquals(size, buf.position());
+        byte[] frame = new byte[size];
+        System.arraycopy(buf.array(), 0, frame, 0, size);
+        return frame;
+    }
+}
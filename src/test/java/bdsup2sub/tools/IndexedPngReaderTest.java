@@ -0,0 +1,193 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.BitmapBounds;
+import bdsup2sub.bitmap.Palette;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedPngReaderTest {
+
+    private IndexedPngReader subject;
+
+    @Before
+    public void setUp() {
+        subject = new IndexedPngReader();
+    }
+
+    @After
+    public void tearDown() {
+        subject.end();
+    }
+
+    @Test
+    public void shouldReadIndexedImagesOfAllBitDepths() throws IOException {
+        int[] numColors = { 2, 4, 16, 256 };
+        Palette palette = createPalette();
+        for (int i = 0; i < numColors.length; i++) {
+            Bitmap bitmap = createBitmap(37, 11, numColors[i]);
+
+            assertTrue(subject.read(new ByteArrayInputStream(writeIndexed(bitmap, palette))));
+
+            assertTrue(subject.isIndexed());
+            assertEquals(37, subject.getWidth());
+            assertEquals(11, subject.getHeight());
+            assertArrayEquals(bitmap.getInternalBuffer(), subject.getBitmap().getInternalBuffer());
+            for (int j = 0; j < numColors[i]; j++) {
+                assertEquals(palette.getARGB(j), subject.getPalette().getARGB(j));
+            }
+        }
+    }
+
+    @Test
+    public void shouldReturnSamePixelsAsImageIOForIndexedImage() throws IOException {
+        byte[] png = writeIndexed(createBitmap(300, 40, 200), createPalette());
+
+        assertTrue(subject.read(new ByteArrayInputStream(png)));
+
+        assertArrayEquals(getRGB(ImageIO.read(new ByteArrayInputStream(png))), subject.getArgbPixels());
+    }
+
+    @Test
+    public void shouldReadRgbaImage() throws IOException {
+        BufferedImage image = createRgbaImage(211, 57);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+
+        assertTrue(subject.read(new ByteArrayInputStream(out.toByteArray())));
+
+        assertFalse(subject.isIndexed());
+        assertArrayEquals(getRGB(image), subject.getArgbPixels());
+    }
+
+    @Test
+    public void shouldNotReadUnsupportedImages() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(20, 10, BufferedImage.TYPE_BYTE_GRAY), "png", out);
+        assertFalse(subject.read(new ByteArrayInputStream(out.toByteArray())));
+
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("png").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+        out = new ByteArrayOutputStream();
+        MemoryCacheImageOutputStream ios = new MemoryCacheImageOutputStream(out);
+        writer.setOutput(ios);
+        writer.write(null, new IIOImage(createRgbaImage(20, 10), null, null), param);
+        ios.close();
+        writer.dispose();
+        assertFalse(subject.read(new ByteArrayInputStream(out.toByteArray())));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedImage() throws IOException {
+        byte[] png = writeIndexed(createBitmap(300, 40, 200), createPalette());
+        byte[] truncated = new byte[png.length / 2];
+        System.arraycopy(png, 0, truncated, 0, truncated.length);
+
+        subject.read(new ByteArrayInputStream(truncated));
+    }
+
+    @Test
+    public void shouldReturnSameCroppingBoundsAsBitmap() throws IOException {
+        Palette palette = createPalette();
+        palette.setAlpha(0, 0);
+        palette.setAlpha(1, 20);
+        palette.setAlpha(2, 255);
+        Bitmap bitmap = new Bitmap(120, 50, (byte)0);
+        bitmap.fillRectangularWithColorIndex(10, 5, 100, 40, (byte)1);
+        bitmap.fillRectangularWithColorIndex(30, 12, 17, 9, (byte)2);
+
+        BitmapBounds bounds = subject.readCroppingBounds(new ByteArrayInputStream(writeIndexed(bitmap, palette)), 30);
+
+        BitmapBounds expected = bitmap.getCroppingBounds(palette.getAlpha(), 30);
+        assertEquals(expected.xMin, bounds.xMin);
+        assertEquals(expected.xMax, bounds.xMax);
+        assertEquals(expected.yMin, bounds.yMin);
+        assertEquals(expected.yMax, bounds.yMax);
+    }
+
+    @Test
+    public void shouldNotReturnCroppingBoundsForRgbaImage() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(createRgbaImage(20, 10), "png", out);
+
+        assertNull(subject.readCroppingBounds(new ByteArrayInputStream(out.toByteArray()), 30));
+    }
+
+    private static byte[] writeIndexed(Bitmap bitmap, Palette palette) throws IOException {
+        IndexedPngWriter writer = new IndexedPngWriter();
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            writer.write(bitmap, palette, out);
+            return out.toByteArray();
+        } finally {
+            writer.end();
+        }
+    }
+
+    private static int[] getRGB(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    private static BufferedImage createRgbaImage(int width, int height) {
+        Random random = new Random(42);
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                // smooth areas let the PNG writer choose all kinds of filters
+                int argb = x < width / 2 ? (x * 4 << 24 | y << 16 | (x + y) << 8 | 0x80) : random.nextInt();
+                image.setRGB(x, y, argb);
+            }
+        }
+        return image;
+    }
+
+    private static Bitmap createBitmap(int width, int height, int numColors) {
+        Random random = new Random(42);
+        Bitmap bitmap = new Bitmap(width, height);
+        byte[] buffer = bitmap.getInternalBuffer();
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte)random.nextInt(numColors);
+        }
+        buffer[buffer.length - 1] = (byte)(numColors - 1);
+        return bitmap;
+    }
+
+    private static Palette createPalette() {
+        Random random = new Random(7);
+        Palette palette = new Palette(256);
+        for (int i = 0; i < palette.getSize(); i++) {
+            palette.setARGB(i, random.nextInt() | 0x01000000);
+        }
+        return palette;
+    }
+}
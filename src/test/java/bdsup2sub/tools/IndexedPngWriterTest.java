@@ -0,0 +1,171 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class IndexedPngWriterTest {
+
+    private IndexedPngWriter subject;
+
+    @Before
+    public void setUp() {
+        subject = new IndexedPngWriter();
+    }
+
+    @After
+    public void tearDown() {
+        subject.end();
+    }
+
+    @Test
+    public void shouldWriteEightBitImageSplitIntoIdatChunks() throws IOException {
+        Bitmap bitmap = createBitmap(1000, 300, 256);
+        Palette palette = createPalette(256);
+
+        byte[] png = write(bitmap, palette);
+
+        assertEquals(8, png[24]);
+        assertTrue(getChunkTypes(png).lastIndexOf("IDAT") > getChunkTypes(png).indexOf("IDAT"));
+        assertSamePixels(bitmap, palette, png);
+    }
+
+    @Test
+    public void shouldPackRowsWithSmallestBitDepth() throws IOException {
+        int[] numColors = { 2, 4, 16, 17 };
+        int[] bitDepths = { 1, 2, 4, 8 };
+        for (int i = 0; i < numColors.length; i++) {
+            Bitmap bitmap = createBitmap(13, 7, numColors[i]);
+            Palette palette = createPalette(256);
+
+            byte[] png = write(bitmap, palette);
+
+            assertEquals(bitDepths[i], png[24]);
+            assertSamePixels(bitmap, palette, png);
+        }
+    }
+
+    @Test
+    public void shouldWriteUsedPaletteEntriesOnly() throws IOException {
+        Bitmap bitmap = createBitmap(20, 10, 3);
+        Palette palette = createPalette(256);
+
+        byte[] png = write(bitmap, palette);
+
+        assertEquals(3 * 3, getChunkLength(png, "PLTE"));
+        assertEquals(3, getChunkLength(png, "tRNS"));
+    }
+
+    @Test
+    public void shouldOmitTransparencyForOpaquePalette() throws IOException {
+        Bitmap bitmap = createBitmap(20, 10, 4);
+        Palette palette = createPalette(256);
+        for (int i = 0; i < 4; i++) {
+            palette.setAlpha(i, 255);
+        }
+
+        byte[] png = write(bitmap, palette);
+
+        assertFalse(getChunkTypes(png).contains("tRNS"));
+        assertSamePixels(bitmap, palette, png);
+    }
+
+    @Test
+    public void shouldWriteRepeatedRows() throws IOException {
+        Bitmap bitmap = new Bitmap(50, 20, (byte)0);
+        bitmap.fillRectangularWithColorIndex(5, 3, 40, 12, (byte)7);
+        Palette palette = createPalette(256);
+
+        assertSamePixels(bitmap, palette, write(bitmap, palette));
+    }
+
+    private byte[] write(Bitmap bitmap, Palette palette) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        subject.write(bitmap, palette, out);
+        return out.toByteArray();
+    }
+
+    private static void assertSamePixels(Bitmap bitmap, Palette palette, byte[] png) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(bitmap.getWidth(), image.getWidth());
+        assertEquals(bitmap.getHeight(), image.getHeight());
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            for (int x = 0; x < bitmap.getWidth(); x++) {
+                int index = bitmap.getInternalBuffer()[y * bitmap.getWidth() + x] & 0xff;
+                assertEquals(palette.getARGB(index), image.getRGB(x, y));
+            }
+        }
+    }
+
+    private static List<String> getChunkTypes(byte[] png) {
+        List<String> types = new ArrayList<String>();
+        ByteBuffer buf = ByteBuffer.wrap(png, 8, png.length - 8);
+        while (buf.hasRemaining()) {
+            int length = buf.getInt();
+            types.add(new String(png, buf.position(), 4));
+            buf.position(buf.position() + 4 + length + 4);
+        }
+        return types;
+    }
+
+    private static int getChunkLength(byte[] png, String type) {
+        ByteBuffer buf = ByteBuffer.wrap(png, 8, png.length - 8);
+        while (buf.hasRemaining()) {
+            int length = buf.getInt();
+            if (new String(png, buf.position(), 4).equals(type)) {
+                return length;
+            }
+            buf.position(buf.position() + 4 + length + 4);
+        }
+        return -1;
+    }
+
+    private static Bitmap createBitmap(int width, int height, int numColors) {
+        Random random = new Random(42);
+        Bitmap bitmap = new Bitmap(width, height);
+        byte[] buffer = bitmap.getInternalBuffer();
+        for (int i = 0; i < buffer.length; i++) {
+            buffer[i] = (byte)random.nextInt(numColors);
+        }
+        buffer[buffer.length - 1] = (byte)(numColors - 1);
+        return bitmap;
+    }
+
+    private static Palette createPalette(int size) {
+        Random random = new Random(7);
+        Palette palette = new Palette(size);
+        for (int i = 0; i < size; i++) {
+            palette.setARGB(i, random.nextInt() | 0x01000000);
+        }
+        return palette;
+    }
+}
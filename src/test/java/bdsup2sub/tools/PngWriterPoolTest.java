@@ -0,0 +1,102 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import bdsup2sub.bitmap.Bitmap;
+import bdsup2sub.bitmap.Palette;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class PngWriterPoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private PngWriterPool subject;
+
+    @Before
+    public void setUp() {
+        subject = new PngWriterPool(3, 6, Deflater.FILTERED);
+    }
+
+    @After
+    public void tearDown() {
+        subject.shutdown();
+    }
+
+    @Test
+    public void shouldWriteSameFilesAsSingleWriter() throws IOException {
+        Random random = new Random(42);
+        Bitmap[] bitmaps = new Bitmap[40];
+        Palette palette = new Palette(256);
+        for (int i = 0; i < palette.getSize(); i++) {
+            palette.setARGB(i, random.nextInt());
+        }
+        for (int i = 0; i < bitmaps.length; i++) {
+            bitmaps[i] = new Bitmap(300 + i, 50, (byte)0);
+            bitmaps[i].fillRectangularWithColorIndex(random.nextInt(100), random.nextInt(20), 150, 20, (byte)random.nextInt(256));
+            subject.submit(bitmaps[i], palette, getFile(i).getPath());
+        }
+        subject.finish();
+
+        IndexedPngWriter writer = new IndexedPngWriter(6, Deflater.FILTERED);
+        for (int i = 0; i < bitmaps.length; i++) {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            writer.write(bitmaps[i], palette, expected);
+            assertArrayEquals(expected.toByteArray(), readFile(getFile(i)));
+        }
+        writer.end();
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldReportWriteError() throws IOException {
+        File missingFolder = new File(folder.getRoot(), "missing");
+        subject.submit(new Bitmap(10, 10), new Palette(4), new File(missingFolder, "test.png").getPath());
+        subject.finish();
+    }
+
+    private File getFile(int i) {
+        return new File(folder.getRoot(), "test_" + i + ".png");
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InputStream in = new FileInputStream(file);
+        try {
+            byte[] buf = new byte[4096];
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+        } finally {
+            in.close();
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,261 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.tools;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantizeFilterTest {
+
+    private static final int WIDTH = 300;
+    private static final int HEIGHT = 200;
+
+    private QuantizeFilter subject;
+    private byte[] indexedPixels;
+    private int[] colors;
+
+    @Before
+    public void setUp() {
+        subject = new QuantizeFilter();
+        Random random = new Random(42);
+        indexedPixels = new byte[WIDTH * HEIGHT];
+        random.nextBytes(indexedPixels);
+        colors = new int[256];
+        for (int i = 0; i < colors.length; i++) {
+            colors[i] = random.nextInt();
+        }
+    }
+
+    @Test
+    public void shouldQuantizeIndexedPixelsLikeARGBPixelsWithMedianCut() {
+        subject.setMethod(QuantizeFilter.Method.MEDIAN_CUT);
+        assertIndexedPixelsQuantizedLikeARGBPixels();
+    }
+
+    @Test
+    public void shouldQuantizeIndexedPixelsLikeARGBPixelsWithOctree() {
+        assertIndexedPixelsQuantizedLikeARGBPixels();
+    }
+
+    @Test
+    public void shouldUseOctreeByDefault() {
+        assertEquals(QuantizeFilter.Method.OCTREE, subject.getMethod());
+    }
+
+    @Test
+    public void shouldKeepColorsExactlyWithMedianCut() {
+        subject.setMethod(QuantizeFilter.Method.MEDIAN_CUT);
+        int[] pixels = {0xff102030, 0xff102031, 0xff102030, 0x80ffffff};
+        byte[] outPixels = new byte[pixels.length];
+
+        int[] palette = subject.quantize(pixels, outPixels, 2, 2, 255, false, false);
+
+        assertArrayEquals(new int[] {0xff102030, 0xff102031, 0x80ffffff}, palette);
+        assertArrayEquals(new byte[] {0, 1, 0, 2}, outPixels);
+    }
+
+    @Test
+    public void shouldKeepColorsExactlyWithDithering() {
+        subject.setMethod(QuantizeFilter.Method.MEDIAN_CUT);
+        int[] pixels = {0xff102030, 0xffe0c0a0, 0xffe0c0a1, 0xff102030};
+        byte[] outPixels = new byte[pixels.length];
+
+        int[] palette = subject.quantize(pixels, outPixels, 2, 2, 255, true, true);
+
+        assertArrayEquals(new int[] {0xff102030, 0xffe0c0a0, 0xffe0c0a1}, palette);
+        assertArrayEquals(new byte[] {0, 1, 2, 0}, outPixels);
+    }
+
+    @Test
+    public void shouldKeepIndexedColorsExactlyIfThereAreFewerThanRequestedWithMedianCut() {
+        subject.setMethod(QuantizeFilter.Method.MEDIAN_CUT);
+        byte[] pixels = {5, 7, 5, 9, 3};
+        int[] palette = new int[256];
+        palette[3] = 0x00123456;
+        palette[5] = 0xff102030;
+        palette[7] = 0x00ffffff;
+        palette[9] = 0xff102031;
+        byte[] outPixels = new byte[pixels.length];
+
+        int[] colors = subject.quantize(pixels, palette, outPixels, pixels.length, 255);
+
+        assertArrayEquals(new int[] {0xff102030, 0, 0xff102031}, colors);
+        assertArrayEquals(new byte[] {0, 1, 0, 2, 1}, outPixels);
+    }
+
+    @Test
+    public void shouldQuantizeIfThereAreMoreColorsThanRequested() {
+        int[] pixels = new int[64];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xff000000 | i * 0x040404;
+        }
+        byte[] outPixels = new byte[pixels.length];
+
+        int[] palette = subject.quantize(pixels, outPixels, 8, 8, 16, false, false);
+
+        assertTrue(palette.length <= 16);
+    }
+
+    @Test
+    public void shouldKeepColorsExactlyIfThereAreFewerThanRequested() {
+        int[] pixels = {0xff102030, 0x80ffffff, 0xff102030, 0xffe0c0a0, 0x80ffffff, 0xffe0c0a0};
+        byte[] outPixels = new byte[pixels.length];
+
+        int[] palette = subject.quantize(pixels, outPixels, 3, 2, 255, false, false);
+
+        assertArrayEquals(new int[] {0xff102030, 0x80ffffff, 0xffe0c0a0}, palette);
+        assertArrayEquals(new byte[] {0, 1, 0, 2, 1, 2}, outPixels);
+    }
+
+    @Test
+    public void shouldMergeInvisibleColorsWithMedianCut() {
+        subject.setMethod(QuantizeFilter.Method.MEDIAN_CUT);
+        int[] pixels = {0x00102030, 0x00ffffff, 0xff000000};
+        byte[] outPixels = new byte[pixels.length];
+
+        int[] palette = subject.quantize(pixels, outPixels, 3, 1, 255, false, false);
+
+        assertArrayEquals(new int[] {0, 0xff000000}, palette);
+        assertArrayEquals(new byte[] {0, 0, 1}, outPixels);
+    }
+
+    @Test
+    public void shouldKeepInvisibleColorsApartWithOctree() {
+        int[] pixels = {0x00102030, 0x00ffffff, 0xff000000};
+        byte[] outPixels = new byte[pixels.length];
+
+        int[] palette = subject.quantize(pixels, outPixels, 3, 1, 255, false, false);
+
+        assertEquals(3, palette.length);
+    }
+
+    @Test
+    public void shouldNotExceedNumberOfColors() {
+        assertNumberOfColorsNotExceeded(16, false);
+    }
+
+    @Test
+    public void shouldNotExceedNumberOfColorsWithMedianCut() {
+        subject.setMethod(QuantizeFilter.Method.MEDIAN_CUT);
+        assertNumberOfColorsNotExceeded(16, false);
+    }
+
+    @Test
+    public void shouldNotExceedNumberOfColorsWithDithering() {
+        assertNumberOfColorsNotExceeded(255, true);
+    }
+
+    @Test
+    public void shouldNotExceedNumberOfColorsWithDitheringAndMedianCut() {
+        subject.setMethod(QuantizeFilter.Method.MEDIAN_CUT);
+        assertNumberOfColorsNotExceeded(255, true);
+    }
+
+    @Test
+    public void shouldGiveSameResultWhenReused() throws InterruptedException {
+        assertSameResultWhenReused();
+    }
+
+    @Test
+    public void shouldGiveSameResultWhenReusedWithMedianCut() throws InterruptedException {
+        subject.setMethod(QuantizeFilter.Method.MEDIAN_CUT);
+        assertSameResultWhenReused();
+    }
+
+    private void assertNumberOfColorsNotExceeded(int numColors, boolean dither) {
+        int[] pixels = createRandomPixels(7);
+        byte[] outPixels = new byte[pixels.length];
+
+        int[] palette = subject.quantize(pixels, outPixels, WIDTH, HEIGHT, numColors, dither, dither);
+
+        assertTrue(palette.length <= numColors);
+        for (byte pixel : outPixels) {
+            assertTrue((pixel & 0xff) < palette.length);
+        }
+    }
+
+    /**
+     * Quantize different images with the same instance, which must give the same result as a new instance
+     * on a new thread, i.e. without any storage kept from previous images.
+     */
+    private void assertSameResultWhenReused() throws InterruptedException {
+        int[] firstImage = createRandomPixels(7);
+        // fewer colors, so that cells and table entries of the first image are left over
+        int[] secondImage = createRandomPixels(8);
+        for (int i = 0; i < secondImage.length; i++) {
+            secondImage[i] &= 0xffe0e0e0;
+        }
+        byte[] firstPixels = new byte[firstImage.length];
+        int[] firstPalette = subject.quantize(firstImage, firstPixels, WIDTH, HEIGHT, 255, false, false);
+        subject.quantize(indexedPixels, colors, new byte[indexedPixels.length], indexedPixels.length, 255);
+        byte[] secondPixels = new byte[secondImage.length];
+        // dithering changes the input pixels
+        int[] secondPalette = subject.quantize(secondImage.clone(), secondPixels, WIDTH, HEIGHT, 255, true, true);
+
+        byte[] expectedFirstPixels = new byte[firstImage.length];
+        int[] expectedFirstPalette = quantizeOnNewThread(firstImage, expectedFirstPixels, false);
+        byte[] expectedSecondPixels = new byte[secondImage.length];
+        int[] expectedSecondPalette = quantizeOnNewThread(secondImage, expectedSecondPixels, true);
+
+        assertArrayEquals(expectedFirstPalette, firstPalette);
+        assertArrayEquals(expectedFirstPixels, firstPixels);
+        assertArrayEquals(expectedSecondPalette, secondPalette);
+        assertArrayEquals(expectedSecondPixels, secondPixels);
+    }
+
+    private int[] quantizeOnNewThread(final int[] pixels, final byte[] outPixels, final boolean dither) throws InterruptedException {
+        final QuantizeFilter filter = new QuantizeFilter();
+        filter.setMethod(subject.getMethod());
+        final int[][] palette = new int[1][];
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                palette[0] = filter.quantize(pixels, outPixels, WIDTH, HEIGHT, 255, dither, dither);
+            }
+        };
+        thread.start();
+        thread.join();
+        return palette[0];
+    }
+
+    private void assertIndexedPixelsQuantizedLikeARGBPixels() {
+        int[] argbPixels = new int[indexedPixels.length];
+        for (int i = 0; i < argbPixels.length; i++) {
+            argbPixels[i] = colors[indexedPixels[i] & 0xff];
+        }
+        byte[] expectedPixels = new byte[indexedPixels.length];
+        int[] expectedPalette = subject.quantize(argbPixels, expectedPixels, WIDTH, HEIGHT, 255, false, false);
+
+        byte[] actualPixels = new byte[indexedPixels.length];
+        int[] actualPalette = subject.quantize(indexedPixels, colors, actualPixels, indexedPixels.length, 255);
+
+        assertArrayEquals(expectedPalette, actualPalette);
+        assertArrayEquals(expectedPixels, actualPixels);
+    }
+
+    private static int[] createRandomPixels(long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        return pixels;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2014 Miklos Juhasz (mjuhasz)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package bdsup2sub.utils;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class FileUtilsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File source;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[100000];
+        new Random(42).nextBytes(content);
+        source = folder.newFile("source.png");
+        Files.write(source.toPath(), content);
+    }
+
+    @Test
+    public void shouldCopyFile() throws IOException {
+        File target = new File(folder.getRoot(), "target.png");
+        FileUtils.copyFile(source, target);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void shouldOverwriteExistingFileWhenCopying() throws IOException {
+        File target = folder.newFile("target.png");
+        Files.write(target.toPath(), new byte[200000]);
+        FileUtils.copyFile(source, target);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void shouldKeepFileWhenCopyingOntoItself() throws IOException {
+        FileUtils.copyFile(source, new File(folder.getRoot(), "./source.png"));
+        assertArrayEquals(content, Files.readAllBytes(source.toPath()));
+    }
+
+    @Test
+    public void shouldLinkOrCopyFile() throws IOException {
+        File target = folder.newFile("target.png");
+        FileUtils.linkOrCopyFile(source, target);
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void shouldKeepLinkedFileWhenCopyingOverLink() throws IOException {
+        File target = new File(folder.getRoot(), "target.png");
+        FileUtils.linkOrCopyFile(source, target);
+        File other = folder.newFile("other.png");
+        Files.write(other.toPath(), new byte[200000]);
+        FileUtils.copyFile(other, target);
+        assertArrayEquals(content, Files.readAllBytes(source.toPath()));
+        assertArrayEquals(new byte[200000], Files.readAllBytes(target.toPath()));
+    }
+
+    @Test
+    public void shouldKeepFileWhenLinkingOntoItself() throws IOException {
+        FileUtils.linkOrCopyFile(source, source);
+        assertArrayEquals(content, Files.readAllBytes(source.toPath()));
+    }
+}